@@ -0,0 +1,58 @@
+#!/usr/bin/env bash
+#
+# Rolling deploy: sobe um cluster local, reinicia um nó por vez (SIGTERM,
+# saída ordenada com RESIGN) e mostra, a cada saída, os tempos medidos pelos
+# nós que ficaram: semGravacaoMs (shards sem consumidor) e semLiderMs
+# (cluster sem líder), ver GET /api/status/sucessao.
+#
+# Pré-requisitos: MongoDB e RabbitMQ acessíveis pelas variáveis
+# MONGODB_URI_BOLSAVALORES, RABBITMQ_ADDRESSES_BOLSAVALORES, BRAPI_TOKEN e
+# STOCKDATA_TOKEN.
+#
+# Uso: scripts/rolling-deploy.sh [portas]   (padrão: 8091,8092,8093)
+
+set -euo pipefail
+
+PORTS="${1:-8091,8092,8093}"
+ROOT="$(cd "$(dirname "$0")/.." && pwd)"
+JAR="target/bolsa-valores-0.0.1-SNAPSHOT.jar"
+IFS=',' read -r -a NODES <<< "$PORTS"
+declare -A PIDS
+
+subir() {
+  local port="$1"
+  java -Dserver.port="$port" -Dcluster.known-ports="$PORTS" \
+      -Dbrapi.token="${BRAPI_TOKEN:-}" -Dstockdata.token="${STOCKDATA_TOKEN:-}" \
+      -jar "$JAR" > "$ROOT/target/rolling-$port.log" 2>&1 &
+  PIDS[$port]=$!
+  for _ in $(seq 1 600); do
+    [[ "$(curl -s "http://localhost:$port/api/status/leader" || true)" =~ ^[0-9]+$ ]] && return
+    sleep 0.1
+  done
+  echo "nó $port não conheceu um líder" >&2
+}
+
+cd "$ROOT"
+./mvnw -q -DskipTests package
+
+for port in "${NODES[@]}"; do subir "$port"; done
+trap 'kill "${PIDS[@]}" 2>/dev/null || true' EXIT
+# aguarda a primeira divisão de shards
+sleep 10
+
+for port in "${NODES[@]}"; do
+  lider="$(curl -s "http://localhost:${NODES[0]}/api/status/leader")"
+  [[ "$lider" == "$port" ]] && papel="líder" || papel="follower"
+
+  kill -TERM "${PIDS[$port]}"
+  wait "${PIDS[$port]}" 2>/dev/null || true
+  sleep 1
+
+  for outro in "${NODES[@]}"; do
+    [[ "$outro" == "$port" ]] && continue
+    echo "saiu=$port ($papel),medido_em=$outro,$(curl -s "http://localhost:$outro/api/status/sucessao")"
+  done
+
+  subir "$port"
+  sleep 10
+done
@@ -0,0 +1,53 @@
+#!/usr/bin/env bash
+#
+# Benchmark de inicialização: compara o jar padrão com o perfil fast-start
+# (Spring AOT + CDS + lazy init), medindo timeToFirstElectionMs e
+# timeToFirstServedRequestMs (ver GET /api/status/startup).
+#
+# Pré-requisitos: MongoDB e RabbitMQ acessíveis pelas variáveis
+# MONGODB_URI_BOLSAVALORES, RABBITMQ_ADDRESSES_BOLSAVALORES, BRAPI_TOKEN e
+# STOCKDATA_TOKEN. O nó sobe sozinho, então a eleição é resolvida pelo
+# timeout de OK (o nó se elege).
+#
+# Uso: scripts/startup-benchmark.sh [execuções] [porta]
+
+set -euo pipefail
+
+RUNS="${1:-5}"
+PORT="${2:-8091}"
+ROOT="$(cd "$(dirname "$0")/.." && pwd)"
+JAR="bolsa-valores-0.0.1-SNAPSHOT.jar"
+
+medir() {
+  local nome="$1"; shift
+  local dir="$1"; shift
+  for i in $(seq 1 "$RUNS"); do
+    (cd "$dir" && java "$@" -Dserver.port="$PORT" -Dcluster.known-ports="$PORT" \
+        -Dbrapi.token="${BRAPI_TOKEN:-}" -Dstockdata.token="${STOCKDATA_TOKEN:-}" \
+        -jar "$JAR" > "$ROOT/target/startup-$nome-$i.log" 2>&1) &
+    local pid=$!
+
+    local resultado=""
+    for _ in $(seq 1 600); do
+      resultado="$(curl -s "http://localhost:$PORT/api/status/startup" || true)"
+      if [[ "$resultado" == *timeToFirstElectionMs* && "$resultado" == *timeToFirstServedRequestMs* ]]; then
+        break
+      fi
+      sleep 0.1
+    done
+
+    echo "$nome,$i,$resultado"
+    kill "$pid" 2>/dev/null || true
+    wait "$pid" 2>/dev/null || true
+  done
+}
+
+cd "$ROOT"
+
+./mvnw -q -DskipTests package
+mkdir -p target/padrao && cp "target/$JAR" target/padrao/
+medir padrao target/padrao
+
+./mvnw -q -DskipTests -Pfast-start package
+medir fast-start target/fast-start \
+  -XX:SharedArchiveFile=application.jsa -Dspring.aot.enabled=true -Dspring.profiles.active=fast-start
@@ -0,0 +1,102 @@
+package org.furb.bolsavalores.carga;
+
+import org.furb.bolsavalores.config.AppConfig;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket por cliente: cada cliente pode fazer
+ * {@code app.carga.requisicoes-por-segundo} requisições por segundo, com
+ * rajadas de até {@code app.carga.rajada}. Impede que um único cliente
+ * ocupe sozinho as vagas do {@link LimitadorAdaptativo}.
+ *
+ * <p>Os baldes são recarregados de forma preguiçosa (na próxima requisição
+ * do cliente), e os que ficaram cheios por um tempo são descartados.</p>
+ *
+ * <p>A quantidade de baldes é limitada a {@code app.carga.max-clientes}:
+ * com o mapa cheio, os clientes novos dividem um único balde excedente até a
+ * próxima limpeza, em vez de o mapa crescer com cada IP visto.</p>
+ */
+@Component
+public class BaldesPorCliente {
+
+    /** Tempo sem requisições após o qual o balde de um cliente é descartado. */
+    private static final long INATIVIDADE_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    private final double tokensPorNano;
+    private final double rajada;
+    private final int maxClientes;
+    private final Map<String, Balde> baldes = new ConcurrentHashMap<>();
+
+    /** Balde dividido pelos clientes que chegaram com o mapa cheio. */
+    private final Balde excedente;
+
+    /**
+     * @param appConfig configuração com a taxa e a rajada por cliente
+     */
+    public BaldesPorCliente(AppConfig appConfig) {
+        AppConfig.Carga config = appConfig.getCarga();
+        if (config.getRequisicoesPorSegundo() <= 0 || config.getRajada() < 1 || config.getMaxClientes() < 1) {
+            throw new IllegalArgumentException("app.carga: requisicoes-por-segundo, rajada e max-clientes devem ser positivos");
+        }
+        this.tokensPorNano = config.getRequisicoesPorSegundo() / 1e9;
+        this.rajada = config.getRajada();
+        this.maxClientes = config.getMaxClientes();
+        this.excedente = new Balde();
+    }
+
+    /**
+     * Consome um token do cliente.
+     *
+     * @param cliente identificação do cliente
+     * @return 0 se havia token; senão, o tempo (nanos) até o próximo token
+     */
+    public long consumir(String cliente) {
+        Balde balde = baldes.get(cliente);
+        if (balde == null) {
+            // o tamanho é aproximado sob concorrência: o limite pode ser excedido por poucas entradas
+            balde = baldes.size() < maxClientes ? baldes.computeIfAbsent(cliente, c -> new Balde()) : excedente;
+        }
+        return balde.consumir();
+    }
+
+    /**
+     * @return quantidade de clientes acompanhados
+     */
+    public int clientes() {
+        return baldes.size();
+    }
+
+    /**
+     * Descarta os baldes dos clientes inativos.
+     */
+    @Scheduled(fixedDelay = 60_000, initialDelay = 60_000)
+    public void limpar() {
+        long agora = System.nanoTime();
+        baldes.values().removeIf(balde -> balde.inativo(agora));
+    }
+
+    private final class Balde {
+        private double tokens = rajada;
+        private long atualizadoEm = System.nanoTime();
+
+        synchronized long consumir() {
+            long agora = System.nanoTime();
+            tokens = Math.min(rajada, tokens + (agora - atualizadoEm) * tokensPorNano);
+            atualizadoEm = agora;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) / tokensPorNano);
+        }
+
+        synchronized boolean inativo(long agora) {
+            return agora - atualizadoEm > INATIVIDADE_NANOS;
+        }
+    }
+}
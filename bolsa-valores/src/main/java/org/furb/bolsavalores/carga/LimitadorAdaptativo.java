@@ -0,0 +1,198 @@
+package org.furb.bolsavalores.carga;
+
+import org.furb.bolsavalores.config.AppConfig;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limite adaptativo de requisições simultâneas, ajustado pela latência
+ * observada (algoritmo de gradiente, no estilo do Gradient2 do
+ * concurrency-limits da Netflix).
+ *
+ * <p>
+ * A cada janela ({@code app.carga.janela}) o limite é recalculado:
+ * <ul>
+ *     <li><b>RTT curto</b> — latência média das requisições da janela;</li>
+ *     <li><b>RTT longo</b> — média exponencial dos RTTs curtos, a referência
+ *         do que é "normal" para o MongoDB neste nó;</li>
+ *     <li><b>gradiente</b> — {@code tolerância × longo / curto}, limitado a
+ *         [0,5; 1]. Enquanto a latência não sobe, o gradiente é 1 e o limite
+ *         cresce {@code √limite} por janela; quando as requisições começam a
+ *         enfileirar no banco, o RTT curto sobe e o limite encolhe na mesma
+ *         proporção;</li>
+ *     <li><b>queda</b> — requisições que terminam em timeout ou erro de
+ *         sobrecarga reduzem o limite em 10% (decremento multiplicativo).</li>
+ * </ul>
+ * O limite só cresce se a janela chegou a usar ao menos metade dele, para
+ * não inflar durante períodos ociosos. Acima do limite, a requisição é
+ * recusada na hora, sem ocupar o banco — a latência de quem passa se mantém
+ * estável em vez de todas degradarem juntas.
+ * </p>
+ */
+@Component
+public class LimitadorAdaptativo {
+
+    /** Amostras mínimas para fechar uma janela sem quedas. */
+    private static final int MIN_AMOSTRAS = 10;
+
+    /** Peso de cada janela na média do RTT longo (~ últimas 50 janelas). */
+    private static final double PESO_RTT_LONGO = 1.0 / 50;
+
+    /** Suavização da troca de limite (evita oscilação). */
+    private static final double SUAVIZACAO = 0.2;
+
+    /** Redução aplicada quando a janela teve timeouts ou erros de sobrecarga. */
+    private static final double FATOR_QUEDA = 0.9;
+
+    private final AppConfig.Carga config;
+    private final long janelaNanos;
+
+    private final AtomicInteger emUso = new AtomicInteger();
+    private volatile int limite;
+
+    private final LongAdder aceitas = new LongAdder();
+    private final LongAdder recusadas = new LongAdder();
+
+    /* Estado da janela corrente e do cálculo; protegido por "this". */
+    private double limiteEstimado;
+    private double rttLongoNanos;
+    private double rttCurtoNanos;
+    private long somaRttJanela;
+    private int amostrasJanela;
+    private int maxEmUsoJanela;
+    private boolean quedaNaJanela;
+    private long fimJanela;
+
+    /**
+     * @param appConfig configuração com os limites, a tolerância e a janela
+     */
+    public LimitadorAdaptativo(AppConfig appConfig) {
+        this.config = appConfig.getCarga();
+        if (config.getLimiteMinimo() < 1 || config.getLimiteMaximo() < config.getLimiteMinimo()) {
+            throw new IllegalArgumentException("app.carga: exige 1 <= limite-minimo <= limite-maximo");
+        }
+        this.janelaNanos = config.getJanela().toNanos();
+        this.limiteEstimado = Math.max(config.getLimiteMinimo(), Math.min(config.getLimiteMaximo(), config.getLimiteInicial()));
+        this.limite = (int) limiteEstimado;
+        this.fimJanela = System.nanoTime() + janelaNanos;
+    }
+
+    /**
+     * Tenta ocupar uma vaga.
+     *
+     * @return permissão a ser liberada ao fim da requisição, ou nulo se o limite foi atingido
+     */
+    public Permissao adquirir() {
+        while (true) {
+            int atual = emUso.get();
+            if (atual >= limite) {
+                recusadas.increment();
+                return null;
+            }
+            if (emUso.compareAndSet(atual, atual + 1)) {
+                aceitas.increment();
+                return new Permissao(atual + 1);
+            }
+        }
+    }
+
+    private synchronized void registrar(long rttNanos, int emUsoNoInicio, boolean queda) {
+        if (queda) {
+            quedaNaJanela = true;
+        } else {
+            somaRttJanela += rttNanos;
+            amostrasJanela++;
+        }
+        maxEmUsoJanela = Math.max(maxEmUsoJanela, emUsoNoInicio);
+
+        long agora = System.nanoTime();
+        if (agora < fimJanela || (!quedaNaJanela && amostrasJanela < MIN_AMOSTRAS)) return;
+
+        recalcular();
+        somaRttJanela = 0;
+        amostrasJanela = 0;
+        maxEmUsoJanela = 0;
+        quedaNaJanela = false;
+        fimJanela = agora + janelaNanos;
+    }
+
+    private void recalcular() {
+        double novo;
+        if (quedaNaJanela) {
+            novo = limiteEstimado * FATOR_QUEDA;
+        } else {
+            rttCurtoNanos = (double) somaRttJanela / amostrasJanela;
+            rttLongoNanos = rttLongoNanos == 0
+                    ? rttCurtoNanos
+                    : rttLongoNanos * (1 - PESO_RTT_LONGO) + rttCurtoNanos * PESO_RTT_LONGO;
+            // depois de uma sobrecarga longa, a referência fica alta demais: volta mais rápido
+            if (rttLongoNanos / rttCurtoNanos > 2) rttLongoNanos *= 0.95;
+
+            // janela ociosa: sem sinal suficiente para crescer
+            if (maxEmUsoJanela < limiteEstimado / 2) return;
+
+            double gradiente = Math.max(0.5, Math.min(1.0, config.getToleranciaRtt() * rttLongoNanos / rttCurtoNanos));
+            novo = limiteEstimado * gradiente + Math.sqrt(limiteEstimado);
+            novo = limiteEstimado * (1 - SUAVIZACAO) + novo * SUAVIZACAO;
+        }
+
+        limiteEstimado = Math.max(config.getLimiteMinimo(), Math.min(config.getLimiteMaximo(), novo));
+        int anterior = limite;
+        limite = (int) limiteEstimado;
+        if (limite != anterior && (quedaNaJanela || Math.abs(limite - anterior) * 10 >= anterior)) {
+            System.out.println("[Carga] Limite de concorrência: " + anterior + " -> " + limite
+                    + " (rtt curto=" + String.format("%.1f", rttCurtoNanos / 1e6)
+                    + "ms, longo=" + String.format("%.1f", rttLongoNanos / 1e6) + "ms"
+                    + (quedaNaJanela ? ", quedas na janela" : "") + ")");
+        }
+    }
+
+    /**
+     * Estado atual do limitador, para monitoramento.
+     *
+     * @return mapa com limite, vagas em uso, RTTs e contadores
+     */
+    public synchronized Map<String, Object> snapshot() {
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("limite", limite);
+        info.put("emUso", emUso.get());
+        info.put("limiteMinimo", config.getLimiteMinimo());
+        info.put("limiteMaximo", config.getLimiteMaximo());
+        info.put("rttCurtoMs", rttCurtoNanos / 1e6);
+        info.put("rttLongoMs", rttLongoNanos / 1e6);
+        info.put("aceitas", aceitas.sum());
+        info.put("recusadas", recusadas.sum());
+        return info;
+    }
+
+    /**
+     * Vaga ocupada por uma requisição. Liberar mais de uma vez não tem efeito
+     * (o fim de uma requisição assíncrona pode ser notificado por timeout e
+     * por conclusão).
+     */
+    public final class Permissao {
+        private final long inicioNanos = System.nanoTime();
+        private final int emUsoNoInicio;
+        private final AtomicBoolean liberada = new AtomicBoolean();
+
+        private Permissao(int emUsoNoInicio) {
+            this.emUsoNoInicio = emUsoNoInicio;
+        }
+
+        /**
+         * Devolve a vaga e registra a latência da requisição.
+         *
+         * @param queda true se a requisição terminou por timeout ou sobrecarga
+         */
+        public void liberar(boolean queda) {
+            if (!liberada.compareAndSet(false, true)) return;
+            emUso.decrementAndGet();
+            registrar(System.nanoTime() - inicioNanos, emUsoNoInicio, queda);
+        }
+    }
+}
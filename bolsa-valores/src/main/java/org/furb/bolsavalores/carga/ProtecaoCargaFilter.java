@@ -0,0 +1,140 @@
+package org.furb.bolsavalores.carga;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.furb.bolsavalores.config.AppConfig;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Proteção de carga das leituras em {@code /acoes}: falha rápido em vez de
+ * deixar as consultas se acumularem no MongoDB até todas expirarem.
+ *
+ * <ol>
+ *     <li>cada cliente passa pelo seu token bucket — sem token, 429 TOO MANY
+ *         REQUESTS com {@code Retry-After} até o próximo token. O cliente é o
+ *         IP de origem, que ele não escolhe: um header enviado pelo próprio
+ *         cliente poderia ser trocado a cada requisição para ganhar um balde
+ *         cheio. Atrás de um proxy, o IP real vem do
+ *         {@code X-Forwarded-For} com {@code server.forward-headers-strategy};</li>
+ *     <li>a requisição ocupa uma vaga do {@link LimitadorAdaptativo} — sem
+ *         vaga, 503 SERVICE UNAVAILABLE com {@code Retry-After}.</li>
+ * </ol>
+ *
+ * <p>As leituras reativas terminam depois que o filtro retorna; a vaga é
+ * liberada pelo {@link AsyncListener} ao fim da resposta, e timeouts ou
+ * erros de sobrecarga (500, 503, 504) contam como queda para o limitador.
+ * Exportações e streams NDJSON, que duram o tempo que o cliente levar para
+ * ler, passam só pelo token bucket: sua duração não diz nada sobre a
+ * latência do banco. O mesmo vale para {@code POST /acoes/{symbol}/refresh},
+ * cuja latência é a do provedor externo.</p>
+ *
+ * <p>Os endpoints {@code /status/*} (pings da eleição e dos shards) e
+ * {@code /admin/*} nunca passam por aqui.</p>
+ */
+@Component
+public class ProtecaoCargaFilter extends OncePerRequestFilter {
+
+    /** Espera sugerida quando o limite de concorrência foi atingido. */
+    private static final long RETRY_AFTER_SOBRECARGA_S = 1;
+
+    private final LimitadorAdaptativo limitador;
+    private final BaldesPorCliente baldes;
+    private final AppConfig.Carga config;
+
+    public ProtecaoCargaFilter(LimitadorAdaptativo limitador, BaldesPorCliente baldes, AppConfig appConfig) {
+        this.limitador = limitador;
+        this.baldes = baldes;
+        this.config = appConfig.getCarga();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!config.isHabilitado()) return true;
+        String caminho = request.getRequestURI().substring(request.getContextPath().length());
+        return !(caminho.equals("/acoes") || caminho.startsWith("/acoes/"));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long esperaNanos = baldes.consumir(request.getRemoteAddr());
+        if (esperaNanos > 0) {
+            recusar(response, HttpStatus.TOO_MANY_REQUESTS, Math.max(1, TimeUnit.NANOSECONDS.toSeconds(esperaNanos + 999_999_999)));
+            return;
+        }
+
+        if (streaming(request) || refresh(request)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        LimitadorAdaptativo.Permissao permissao = limitador.adquirir();
+        if (permissao == null) {
+            recusar(response, HttpStatus.SERVICE_UNAVAILABLE, RETRY_AFTER_SOBRECARGA_S);
+            return;
+        }
+
+        try {
+            chain.doFilter(request, response);
+        } catch (IOException | ServletException | RuntimeException e) {
+            permissao.liberar(true);
+            throw e;
+        }
+
+        if (!request.isAsyncStarted()) {
+            permissao.liberar(sobrecarga(response.getStatus()));
+            return;
+        }
+        request.getAsyncContext().addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                permissao.liberar(sobrecarga(response.getStatus()));
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                permissao.liberar(true);
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                permissao.liberar(true);
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+                // a requisição continua ocupando a mesma vaga
+            }
+        });
+    }
+
+    private static boolean refresh(HttpServletRequest request) {
+        return "POST".equals(request.getMethod()) && request.getRequestURI().endsWith("/refresh");
+    }
+
+    private boolean streaming(HttpServletRequest request) {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        return request.getRequestURI().endsWith("/acoes/export")
+                || (accept != null && accept.contains(MediaType.APPLICATION_NDJSON_VALUE));
+    }
+
+    private static boolean sobrecarga(int status) {
+        return status == 500 || status == 503 || status == 504;
+    }
+
+    private static void recusar(HttpServletResponse response, HttpStatus status, long retryAfterSegundos) {
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSegundos));
+    }
+}
@@ -3,8 +3,12 @@ package org.furb.bolsavalores.config;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.data.mongodb.core.timeseries.Granularity;
 import org.springframework.validation.annotation.Validated;
 
+import java.time.Duration;
+import java.util.List;
+
 @Getter
 @Setter
 @Validated
@@ -12,4 +16,238 @@ import org.springframework.validation.annotation.Validated;
 public class AppConfig {
     private String api;
     private String ticker;
+    private Estatisticas estatisticas = new Estatisticas();
+    private Armazenamento armazenamento = new Armazenamento();
+    private Backfill backfill = new Backfill();
+    private Atualizacao atualizacao = new Atualizacao();
+    private Consumo consumo = new Consumo();
+    private Retentativas retentativas = new Retentativas();
+    private Publicacao publicacao = new Publicacao();
+    private Tracing tracing = new Tracing();
+    private Transporte transporte = new Transporte();
+    private Carga carga = new Carga();
+    private Metadados metadados = new Metadados();
+    private Mercado mercado = new Mercado();
+    private CacheRespostas cacheRespostas = new CacheRespostas();
+    private ConsultaLote consultaLote = new ConsultaLote();
+
+    /**
+     * Configuração das estatísticas móveis mantidas por símbolo.
+     */
+    @Getter
+    @Setter
+    public static class Estatisticas {
+        /** Janelas deslizantes calculadas para cada ticker (ex: 1h, 1d, 7d). */
+        private List<Duration> janelas = List.of(Duration.ofHours(1), Duration.ofDays(1), Duration.ofDays(7));
+    }
+
+    /**
+     * Configuração do modo de armazenamento das cotações no MongoDB.
+     */
+    @Getter
+    @Setter
+    public static class Armazenamento {
+        /** Modo de armazenamento: coleção comum ou coleção time-series. */
+        private Modo modo = Modo.DOCUMENTO;
+        /** Granularidade dos buckets da coleção time-series (deve acompanhar a cadência das cotações). */
+        private Granularity granularidade = Granularity.HOURS;
+        /** Quando true, copia a coleção comum para a time-series na inicialização. */
+        private boolean migrar = false;
+        /** Tamanho dos lotes de inserção usados pela migração. */
+        private int loteMigracao = 1000;
+
+        public enum Modo { DOCUMENTO, TIMESERIES }
+    }
+
+    /**
+     * Configuração do backfill histórico de cotações.
+     */
+    @Getter
+    @Setter
+    public static class Backfill {
+        /** Quantidade de cotações por página de gravação (um bulk write + checkpoint por página). */
+        private int pagina = 500;
+        /** Período padrão consultado na BRAPI. */
+        private String range = "1y";
+        /** Intervalo padrão dos candles. */
+        private String interval = "1d";
+    }
+
+    /**
+     * Configuração da atualização sob demanda de cotações.
+     */
+    @Getter
+    @Setter
+    public static class Atualizacao {
+        /** Tempo durante o qual uma cotação buscada é considerada fresca e reaproveitada. */
+        private Duration ttl = Duration.ofSeconds(30);
+    }
+
+    /**
+     * Configuração do consumo adaptativo das filas de ações.
+     */
+    @Getter
+    @Setter
+    public static class Consumo {
+        /** Mínimo de threads processando cotações neste nó. */
+        private int minConsumidores = 1;
+        /** Máximo de threads processando cotações neste nó (padrão: núcleos disponíveis). */
+        private int maxConsumidores = Runtime.getRuntime().availableProcessors();
+        /** Mensagens não confirmadas por shard (limita o que fica em memória aguardando processamento). */
+        private int prefetch = 50;
+        /** Tempo em que o backlog atual deveria ser drenado; base do cálculo de consumidores. */
+        private Duration tempoDrenagem = Duration.ofSeconds(5);
+        /** Intervalo (ms) entre os ajustes da quantidade de consumidores. */
+        private long ajusteMs = 2000;
+        /** Fração dos consumidores que pode estar gravando cotações de lote ao mesmo tempo (mínimo de um). */
+        private double fracaoLote = 0.25;
+        /** Prefetch das filas de lote de cada shard, menor que o das filas ao vivo. */
+        private int prefetchLote = 10;
+    }
+
+    /**
+     * Configuração das retentativas de mensagens de ações que falharam.
+     */
+    @Getter
+    @Setter
+    public static class Retentativas {
+        /** Atraso de cada nível de retentativa (uma fila de espera por nível); tentativas além do último reutilizam o último. */
+        private List<Duration> atrasos = List.of(Duration.ofSeconds(1), Duration.ofSeconds(5), Duration.ofSeconds(30), Duration.ofMinutes(2));
+        /** Total de tentativas antes de a mensagem ir para o parking-lot. */
+        private int maxTentativas = 5;
+    }
+
+    /**
+     * Configuração da publicação das cotações.
+     */
+    @Getter
+    @Setter
+    public static class Publicacao {
+        /** Intervalo após o qual uma cotação inalterada é republicada mesmo assim. */
+        private Duration heartbeat = Duration.ofHours(6);
+    }
+
+    /**
+     * Configuração do transporte das cotações entre o publicador e o consumidor.
+     */
+    @Getter
+    @Setter
+    public static class Transporte {
+        /** {@code rabbit} (shards no RabbitMQ, padrão) ou {@code memoria} (anel em processo, nó único sem broker). */
+        private String tipo = "rabbit";
+        /** Posições pré-alocadas do anel do modo memória (potência de 2). */
+        private int capacidade = 4096;
+        /** Threads consumidoras do anel; cada uma atende uma partição fixa de símbolos. */
+        private int consumidores = Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Configuração do cache de respostas serializadas (ver {@code CacheRespostasService}).
+     */
+    @Getter
+    @Setter
+    public static class CacheRespostas {
+        /** Máximo de respostas guardadas; com o cache cheio, sai a usada há mais tempo (LRU). */
+        private int maxEntradas = 2000;
+        /** Janelas aceitas em {@code /acoes/{symbol}/recent?window=}. */
+        private List<Duration> janelas = List.of(Duration.ofHours(1), Duration.ofDays(1));
+    }
+
+    /**
+     * Limites do histórico de vários símbolos ({@code GET /acoes?symbols=}).
+     */
+    @Getter
+    @Setter
+    public static class ConsultaLote {
+        /** Intervalo usado quando a consulta não informa {@code from} (termina em {@code to} ou agora). */
+        private Duration janelaPadrao = Duration.ofDays(7);
+        /** Máximo de cotações devolvidas; acima disso a consulta é recusada e deve ser reduzida. */
+        private int maxDocumentos = 50_000;
+    }
+
+    /**
+     * Configuração da ingestão do mercado inteiro (lista da BRAPI).
+     */
+    @Getter
+    @Setter
+    public static class Mercado {
+        /** Liga a ingestão periódica; {@code POST /admin/mercado} funciona mesmo desligada. */
+        private boolean habilitado = false;
+        private long intervaloMs = 15 * 60 * 1000;
+        /** Cotações entregues ao publicador de cada vez. */
+        private int lote = 500;
+        /** Itens por página pedidos à BRAPI; com o valor padrão o mercado vem em uma resposta. */
+        private int limitePagina = 5000;
+    }
+
+    /**
+     * Configuração dos metadados dos símbolos (coleção {@code symbols}).
+     */
+    @Getter
+    @Setter
+    public static class Metadados {
+        /** Intervalo (ms) entre as recargas do cache, para ver mudanças registradas por outros nós. */
+        private long recargaMs = 60000;
+        /** Quando true, copia os nomes das cotações antigas para {@code symbols} e os remove das cotações. */
+        private boolean migrar = false;
+    }
+
+    /**
+     * Configuração da proteção de carga das leituras REST (ver {@code org.furb.bolsavalores.carga}).
+     */
+    @Getter
+    @Setter
+    public static class Carga {
+        /** Liga o token bucket por cliente e o limite adaptativo de concorrência em /acoes. */
+        private boolean habilitado = true;
+        /** Limite de requisições simultâneas na subida, antes de haver amostras de latência. */
+        private int limiteInicial = 20;
+        private int limiteMinimo = 4;
+        private int limiteMaximo = 200;
+        /** Quanto a latência pode subir em relação à referência antes de o limite encolher. */
+        private double toleranciaRtt = 1.5;
+        /** Intervalo mínimo entre os recálculos do limite. */
+        private Duration janela = Duration.ofMillis(100);
+        /** Taxa sustentada permitida a cada cliente. */
+        private double requisicoesPorSegundo = 50;
+        /** Requisições que um cliente pode fazer de uma vez, acima da taxa. */
+        private int rajada = 100;
+        /** Máximo de clientes com balde próprio; além disso, os novos dividem um balde só. */
+        private int maxClientes = 10_000;
+    }
+
+    /**
+     * Configuração do tracing das cotações (ver {@code org.furb.bolsavalores.tracing}).
+     */
+    @Getter
+    @Setter
+    public static class Tracing {
+        /** Fração dos traces exportados, entre 0 e 1; decidida na raiz e propagada. */
+        private double amostragem = 1.0;
+        private Memoria memoria = new Memoria();
+        private Arquivo arquivo = new Arquivo();
+        private Mongo mongo = new Mongo();
+
+        @Getter
+        @Setter
+        public static class Memoria {
+            /** Guarda os traces recentes em memória (consultáveis só neste nó). */
+            private boolean habilitado = true;
+            private int maxTraces = 10000;
+        }
+
+        @Getter
+        @Setter
+        public static class Arquivo {
+            /** Arquivo JSON lines de destino; sem valor, o exportador fica desligado. */
+            private String caminho;
+        }
+
+        @Getter
+        @Setter
+        public static class Mongo {
+            /** Grava os spans na coleção compartilhada "spans" (trace completo de qualquer nó). */
+            private boolean habilitado = false;
+        }
+    }
 }
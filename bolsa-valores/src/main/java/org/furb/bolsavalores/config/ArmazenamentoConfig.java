@@ -0,0 +1,88 @@
+package org.furb.bolsavalores.config;
+
+import jakarta.annotation.PostConstruct;
+import org.furb.bolsavalores.model.Acao;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+
+/**
+ * Configuração do armazenamento das cotações no MongoDB.
+ *
+ * <p>Define em qual coleção a entidade {@link Acao} é gravada, conforme
+ * {@code app.armazenamento.modo}:</p>
+ * <ul>
+ *     <li><b>DOCUMENTO</b> — coleção comum {@code acoes}, um documento por cotação;</li>
+ *     <li><b>TIMESERIES</b> — coleção time-series {@code acoes_ts}, com
+ *         {@code regularMarketTime} como timeField e {@code symbol} como metaField.
+ *         O MongoDB agrupa as cotações de um símbolo em buckets comprimidos,
+ *         reduzindo o armazenamento e acelerando varreduras por intervalo.</li>
+ * </ul>
+ *
+ * <p>A entidade referencia {@link #getColecaoAcoes()} via SpEL, então o
+ * {@code AcoesRepository} passa a usar a coleção escolhida sem alterações.</p>
+ */
+@Configuration
+public class ArmazenamentoConfig {
+
+    public static final String COLECAO_DOCUMENTO = "acoes";
+    public static final String COLECAO_TIMESERIES = "acoes_ts";
+
+    private final AppConfig.Armazenamento armazenamento;
+    private final MongoTemplate mongoTemplate;
+
+    public ArmazenamentoConfig(AppConfig appConfig, MongoTemplate mongoTemplate) {
+        this.armazenamento = appConfig.getArmazenamento();
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Nome da coleção usada pela entidade {@link Acao}.
+     *
+     * @return {@code acoes} ou {@code acoes_ts}
+     */
+    public String getColecaoAcoes() {
+        return isTimeSeries() ? COLECAO_TIMESERIES : COLECAO_DOCUMENTO;
+    }
+
+    /**
+     * @return true se o modo time-series estiver ativo
+     */
+    public boolean isTimeSeries() {
+        return armazenamento.getModo() == AppConfig.Armazenamento.Modo.TIMESERIES;
+    }
+
+    /**
+     * Prepara a coleção ativa antes de qualquer gravação.
+     *
+     * <p>No modo time-series a coleção precisa ser criada explicitamente: se o
+     * primeiro insert chegasse antes, o MongoDB criaria uma coleção comum.
+     * Por isso uma falha nesse modo interrompe a inicialização.</p>
+     *
+     * <p>Nos dois modos é garantido o índice {@code (symbol, regularMarketTime)},
+     * usado pela verificação de duplicidade e pelas consultas por intervalo.</p>
+     */
+    @PostConstruct
+    public void inicializar() {
+        String colecao = getColecaoAcoes();
+        try {
+            if (isTimeSeries() && !mongoTemplate.collectionExists(colecao)) {
+                mongoTemplate.createCollection(colecao, CollectionOptions.timeSeries("regularMarketTime",
+                        options -> options.metaField("symbol").granularity(armazenamento.getGranularidade())));
+                System.out.println("[Armazenamento] Coleção time-series criada: " + colecao);
+            }
+
+            mongoTemplate.indexOps(colecao).createIndex(new Index()
+                    .on("symbol", Sort.Direction.ASC)
+                    .on("regularMarketTime", Sort.Direction.ASC)
+                    .named("symbol_time"));
+        } catch (Exception e) {
+            if (isTimeSeries()) {
+                throw new IllegalStateException("Não foi possível preparar a coleção time-series " + colecao, e);
+            }
+            System.err.println("[Armazenamento] Falha ao garantir índices em " + colecao + ": " + e.getMessage());
+        }
+    }
+}
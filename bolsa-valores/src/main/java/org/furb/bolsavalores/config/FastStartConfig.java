@@ -0,0 +1,39 @@
+package org.furb.bolsavalores.config;
+
+import org.furb.bolsavalores.controller.PingController;
+import org.furb.bolsavalores.scheduler.BolsaScheduler;
+import org.furb.bolsavalores.scheduler.MercadoScheduler;
+import org.furb.bolsavalores.service.*;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Ajustes do perfil {@code fast-start}, que liga a inicialização preguiçosa
+ * de beans ({@code spring.main.lazy-initialization}).
+ *
+ * <p>Os beans do caminho crítico continuam sendo criados na subida: sem eles
+ * o nó não participaria da eleição, não registraria os listeners RabbitMQ,
+ * não agendaria suas tarefas e demoraria a responder os pings dos outros nós.</p>
+ */
+@Configuration
+@Profile("fast-start")
+public class FastStartConfig {
+
+    @Bean
+    public static LazyInitializationExcludeFilter caminhoCriticoExcludeFilter() {
+        return LazyInitializationExcludeFilter.forBeanTypes(
+                ElectionService.class,
+                ElectionConsumer.class,
+                AcoesPersistidasConsumer.class,
+                RegrasAlertaConsumer.class,
+                SimbolosConsumer.class,
+                ShardService.class,
+                BolsaScheduler.class,
+                MercadoScheduler.class,
+                ArmazenamentoConfig.class,
+                PingController.class,
+                StartupMetrics.class);
+    }
+}
@@ -0,0 +1,62 @@
+package org.furb.bolsavalores.config;
+
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Remove a fila única das versões anteriores aos shards: a durável
+ * {@code acoes.queue}, ligada a {@code bolsa.acoes.exchange} pelo padrão
+ * {@code bolsa.acoes.#}.
+ *
+ * <p>Ninguém mais consome essa fila, mas o padrão casa com as routing keys
+ * das duas faixas dos shards, então num broker atualizado ela recebe uma
+ * cópia de cada cotação e cresce sem limite. Na subida o binding é removido
+ * e, se a fila estiver vazia e sem consumidores, ela é apagada. Com
+ * mensagens, ela fica (já sem receber novas) para ser inspecionada ou
+ * apagada manualmente. Nos nós seguintes, e nas próximas subidas, não há
+ * mais nada a fazer.</p>
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.transporte", name = "tipo", havingValue = "rabbit", matchIfMissing = true)
+public class FilaAcoesLegada {
+
+    /** Padrão com que a fila legada era ligada à exchange das ações. */
+    static final String ROUTING_KEY_LEGADA = RabbitMQConfig.ROUTING_KEY_ACOES + ".#";
+
+    private final AmqpAdmin amqpAdmin;
+
+    /**
+     * @param amqpAdmin administração do broker
+     */
+    public FilaAcoesLegada(AmqpAdmin amqpAdmin) {
+        this.amqpAdmin = amqpAdmin;
+    }
+
+    /**
+     * Desliga e, se vazia, apaga a fila legada.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void remover() {
+        try {
+            QueueInformation info = amqpAdmin.getQueueInfo(RabbitMQConfig.QUEUE_ACOES);
+            if (info == null) return;
+
+            amqpAdmin.removeBinding(new Binding(RabbitMQConfig.QUEUE_ACOES, Binding.DestinationType.QUEUE,
+                    RabbitMQConfig.EXCHANGE_ACOES, ROUTING_KEY_LEGADA, null));
+            if (info.getMessageCount() == 0 && info.getConsumerCount() == 0) {
+                amqpAdmin.deleteQueue(RabbitMQConfig.QUEUE_ACOES);
+                System.out.println("[Rabbit] Fila legada " + RabbitMQConfig.QUEUE_ACOES + " removida");
+            } else {
+                System.err.println("[Rabbit] Fila legada " + RabbitMQConfig.QUEUE_ACOES + " desligada da exchange, mas mantida: "
+                        + info.getMessageCount() + " mensagens, " + info.getConsumerCount() + " consumidores");
+            }
+        } catch (Exception e) {
+            System.err.println("[Rabbit] Falha ao remover a fila legada " + RabbitMQConfig.QUEUE_ACOES + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package org.furb.bolsavalores.config;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Ajustes do {@code ObjectMapper} criado pelo Spring Boot, usado nas
+ * respostas REST e no {@code CacheRespostasService}.
+ *
+ * <p>O módulo Blackbird troca o acesso por reflexão aos getters/setters por
+ * lambdas geradas em tempo de execução ({@code LambdaMetafactory}), o que
+ * barateia a serialização e a desserialização de cada objeto sem mudar o
+ * JSON produzido. O Spring Boot registra no mapper todo bean {@link Module}.</p>
+ */
+@Configuration
+public class JacksonConfig {
+
+    @Bean
+    public Module blackbirdModule() {
+        return new BlackbirdModule();
+    }
+}
@@ -1,13 +1,20 @@
 package org.furb.bolsavalores.config;
 
+import org.furb.bolsavalores.model.FaixaCotacao;
 import org.springframework.amqp.core.*;
 import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Configuração central do RabbitMQ para o sistema Bolsa de Valores.
  *
@@ -19,27 +26,70 @@ import org.springframework.context.annotation.Configuration;
  * - Container Factory com ACK manual para consumidores que exigem controle explícito
  *
  * Filas usadas:
- *  • acoes.queue — recebe atualizações de ações via Topic Exchange
+ *  • acoes.queue.{shard} — N filas particionadas por hash do símbolo, recebendo
+ *    as atualizações de ações ao vivo via Topic Exchange
+ *  • acoes.lote.queue.{shard} — os mesmos N shards para as cargas em massa
+ *    (ingestão do mercado, reprocessamento), consumidos com prioridade menor
  *  • eleicao.queue.{port} — fila efêmera por instância para eleição de coordenador
+ *  • acoes.persistidas.queue.{port} — fila efêmera por instância que recebe as
+ *    cotações já persistidas (alimenta estatísticas e demais visões locais)
+ *  • acoes.retry.{nivel} — filas de espera (TTL fixo por nível) das retentativas,
+ *    que devolvem a mensagem ao shard de origem quando o TTL expira
+ *  • acoes.parking-lot — mensagens inválidas ou que esgotaram as tentativas
+ *  • alertas.regras.queue.{port} — fila efêmera por instância com as mudanças
+ *    nas regras de alerta
+ *  • simbolos.queue.{port} — fila efêmera por instância com os nomes de
+ *    símbolos que mudaram
  *
  * Exchanges:
  *  • bolsa.acoes.exchange (Topic)
  *  • eleicao.exchange (Direct)
  *  • coordenador.exchange (Fanout)
+ *  • bolsa.acoes.persistidas.exchange (Fanout)
+ *  • acoes.retry.exchange (Headers)
+ *  • acoes.dlx (Fanout) — dead-letter exchange dos shards, ligada ao parking-lot
+ *  • bolsa.alertas.exchange (Topic) — alertas disparados ({@code alerta.{symbol}.{tipo}})
+ *  • bolsa.alertas.regras.exchange (Fanout)
+ *  • bolsa.simbolos.exchange (Fanout)
  */
 @Configuration
+@ConditionalOnProperty(prefix = "app.transporte", name = "tipo", havingValue = "rabbit", matchIfMissing = true)
 public class RabbitMQConfig {
     // ================== CONSTS ==================
 
     public static final String EXCHANGE_ACOES = "bolsa.acoes.exchange";
     public static final String QUEUE_ACOES = "acoes.queue";
-    public static final String ROUTING_KEY_ACOES = "bolsa.acoes.#";
+    public static final String ROUTING_KEY_ACOES = "bolsa.acoes";
+    public static final String QUEUE_ACOES_LOTE = "acoes.lote.queue";
+    public static final String ROUTING_KEY_ACOES_LOTE = "bolsa.acoes.lote";
 
     public static final String EXCHANGE_ELECTION = "eleicao.exchange";
     public static final String QUEUE_ELECTION = "eleicao.queue";
 
     public static final String EXCHANGE_LEADER = "coordenador.exchange";
 
+    public static final String EXCHANGE_ACOES_PERSISTIDAS = "bolsa.acoes.persistidas.exchange";
+    public static final String QUEUE_ACOES_PERSISTIDAS = "acoes.persistidas.queue";
+
+    public static final String EXCHANGE_RETRY = "acoes.retry.exchange";
+    public static final String QUEUE_RETRY = "acoes.retry";
+    public static final String EXCHANGE_DLX = "acoes.dlx";
+    public static final String QUEUE_PARKING_LOT = "acoes.parking-lot";
+
+    public static final String EXCHANGE_ALERTAS = "bolsa.alertas.exchange";
+    public static final String EXCHANGE_REGRAS_ALERTA = "bolsa.alertas.regras.exchange";
+    public static final String QUEUE_REGRAS_ALERTA = "alertas.regras.queue";
+
+    public static final String EXCHANGE_SIMBOLOS = "bolsa.simbolos.exchange";
+    public static final String QUEUE_SIMBOLOS = "simbolos.queue";
+
+    /** Quantidade de tentativas que já falharam para a mensagem. */
+    public static final String HEADER_TENTATIVAS = "x-retry-count";
+    /** Nível de espera (fila acoes.retry.{nivel}) para onde a mensagem é roteada. */
+    public static final String HEADER_NIVEL_RETRY = "x-retry-tier";
+    /** Motivo pelo qual a mensagem foi estacionada. */
+    public static final String HEADER_MOTIVO = "x-motivo";
+
     // ================== ELEIÇÃO (BULLY) ==================
 
     /**
@@ -104,20 +154,276 @@ public class RabbitMQConfig {
     }
 
     /**
-     * Fila durável onde todas as atualizações de ações serão consumidas.
+     * Filas duráveis particionadas (shards) onde as atualizações de ações são consumidas.
+     *
+     * <p>Cada shard {@code i} gera a fila {@code acoes.queue.i}, ligada à exchange
+     * pelo padrão {@code bolsa.acoes.shard.i.#}. Como o shard é derivado do hash do
+     * símbolo, todas as cotações de um mesmo ticker caem sempre na mesma fila.</p>
+     *
+     * <p>As filas usam <i>single active consumer</i>: mesmo que dois nós se inscrevam
+     * no mesmo shard durante uma troca de dono, apenas um deles recebe mensagens,
+     * preservando a ordem por símbolo.</p>
+     *
+     * <p>Mensagens rejeitadas sem requeue vão para a dead-letter exchange
+     * {@code acoes.dlx} (parking-lot). Em um broker onde as filas já existiam
+     * sem esse argumento, elas precisam ser removidas uma vez para serem
+     * redeclaradas.</p>
+     *
+     * <p>Cada shard tem duas filas, uma por {@link FaixaCotacao}: a do tráfego
+     * ao vivo ({@code acoes.queue.i}, padrão {@code bolsa.acoes.shard.i.#}) e a
+     * das cargas em massa ({@code acoes.lote.queue.i}, padrão
+     * {@code bolsa.acoes.lote.shard.i.#}). Uma carga grande fica na fila de
+     * lote e não atrasa as cotações ao vivo que chegam depois dela; as
+     * retentativas voltam pela routing key original, para a mesma faixa.</p>
+     *
+     * @param bolsaExchange exchange principal das ações
+     * @param shardCount    quantidade de shards configurada em {@code cluster.shard-count}
+     */
+    @Bean
+    public Declarables acoesShards(TopicExchange bolsaExchange, @Value("${cluster.shard-count}") int shardCount) {
+        List<Declarable> declarables = new ArrayList<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            for (FaixaCotacao faixa : FaixaCotacao.values()) {
+                Queue queue = QueueBuilder.durable(queueAcoes(shard, faixa))
+                        .singleActiveConsumer()
+                        .deadLetterExchange(EXCHANGE_DLX)
+                        .build();
+                declarables.add(queue);
+                declarables.add(BindingBuilder.bind(queue).to(bolsaExchange)
+                        .with(prefixoRoutingKey(faixa) + ".shard." + shard + ".#"));
+            }
+        }
+        return new Declarables(declarables);
+    }
+
+    /**
+     * Calcula o shard responsável por um símbolo.
+     *
+     * @param symbol     código da ação (ex: PETR4)
+     * @param shardCount quantidade total de shards
+     * @return índice do shard, entre 0 e {@code shardCount - 1}
+     */
+    public static int shardDe(String symbol, int shardCount) {
+        return Math.floorMod(symbol.toUpperCase().hashCode(), shardCount);
+    }
+
+    /**
+     * Nome da fila ao vivo de um shard.
+     *
+     * @param shard índice do shard
+     * @return nome no formato {@code acoes.queue.{shard}}
+     */
+    public static String queueAcoes(int shard) {
+        return queueAcoes(shard, FaixaCotacao.VIVO);
+    }
+
+    /**
+     * Nome da fila de um shard na faixa informada.
+     *
+     * @param shard índice do shard
+     * @param faixa classe de tráfego
+     * @return {@code acoes.queue.{shard}} ou {@code acoes.lote.queue.{shard}}
+     */
+    public static String queueAcoes(int shard, FaixaCotacao faixa) {
+        return (faixa == FaixaCotacao.LOTE ? QUEUE_ACOES_LOTE : QUEUE_ACOES) + "." + shard;
+    }
+
+    /**
+     * Routing key usada para publicar a cotação ao vivo de um símbolo no seu shard.
+     *
+     * @param symbol     código da ação
+     * @param shardCount quantidade total de shards
+     * @return routing key no formato {@code bolsa.acoes.shard.{shard}.{symbol}}
+     */
+    public static String routingKeyAcoes(String symbol, int shardCount) {
+        return routingKeyAcoes(symbol, shardCount, FaixaCotacao.VIVO);
+    }
+
+    /**
+     * Routing key usada para publicar a cotação de um símbolo no seu shard, na faixa informada.
+     *
+     * @param symbol     código da ação
+     * @param shardCount quantidade total de shards
+     * @param faixa      classe de tráfego
+     * @return {@code bolsa.acoes.shard.{shard}.{symbol}} ou {@code bolsa.acoes.lote.shard.{shard}.{symbol}}
+     */
+    public static String routingKeyAcoes(String symbol, int shardCount, FaixaCotacao faixa) {
+        return prefixoRoutingKey(faixa) + ".shard." + shardDe(symbol, shardCount) + "." + symbol.toLowerCase();
+    }
+
+    /**
+     * Converte a routing key de uma cotação para a faixa de lote, mantendo shard e símbolo.
+     *
+     * @param routingKey routing key original (de qualquer faixa)
+     * @return a routing key equivalente na faixa de lote
+     */
+    public static String routingKeyLote(String routingKey) {
+        String vivo = ROUTING_KEY_ACOES + ".shard.";
+        return routingKey.startsWith(vivo)
+                ? ROUTING_KEY_ACOES_LOTE + ".shard." + routingKey.substring(vivo.length())
+                : routingKey;
+    }
+
+    private static String prefixoRoutingKey(FaixaCotacao faixa) {
+        return faixa == FaixaCotacao.LOTE ? ROUTING_KEY_ACOES_LOTE : ROUTING_KEY_ACOES;
+    }
+
+    // ================== RETENTATIVAS E PARKING-LOT ==================
+
+    /**
+     * Filas de espera das retentativas, uma por nível de atraso em
+     * {@code app.retentativas.atrasos} (backoff exponencial).
+     *
+     * <p>A mensagem que falhou é republicada na headers exchange
+     * {@code acoes.retry.exchange} com o header {@code x-retry-tier} e a
+     * routing key original. A fila do nível a retém pelo seu TTL e, ao expirar,
+     * faz o dead-letter de volta para {@code bolsa.acoes.exchange} mantendo a
+     * routing key — ou seja, para o mesmo shard. Como todas as mensagens de um
+     * nível têm o mesmo TTL, elas expiram em ordem, sem bloquear umas às outras.</p>
+     *
+     * @param appConfig configuração com os atrasos de cada nível
+     */
+    @Bean
+    public Declarables acoesRetentativas(AppConfig appConfig) {
+        HeadersExchange retryExchange = new HeadersExchange(EXCHANGE_RETRY);
+        List<Declarable> declarables = new ArrayList<>();
+        declarables.add(retryExchange);
+
+        List<Duration> atrasos = appConfig.getRetentativas().getAtrasos();
+        for (int nivel = 0; nivel < atrasos.size(); nivel++) {
+            Queue queue = QueueBuilder.durable(QUEUE_RETRY + "." + nivel)
+                    .ttl((int) atrasos.get(nivel).toMillis())
+                    .deadLetterExchange(EXCHANGE_ACOES)
+                    .build();
+            declarables.add(queue);
+            declarables.add(BindingBuilder.bind(queue).to(retryExchange)
+                    .where(HEADER_NIVEL_RETRY).matches(String.valueOf(nivel)));
+        }
+        return new Declarables(declarables);
+    }
+
+    /**
+     * Dead-letter exchange dos shards e fila de parking-lot, onde ficam as
+     * mensagens inválidas ou que esgotaram as tentativas até serem
+     * inspecionadas ou reprocessadas via {@code /admin/parking-lot}.
+     */
+    @Bean
+    public Declarables acoesParkingLot() {
+        FanoutExchange dlx = new FanoutExchange(EXCHANGE_DLX);
+        Queue parkingLot = QueueBuilder.durable(QUEUE_PARKING_LOT).build();
+        return new Declarables(dlx, parkingLot, BindingBuilder.bind(parkingLot).to(dlx));
+    }
+
+    // ================== AÇÕES PERSISTIDAS (FANOUT) ==================
+
+    /**
+     * Exchange usada para avisar todos os nós de que uma cotação foi persistida.
+     * Como cada shard é persistido por um único nó, o fanout é o que permite
+     * que qualquer instância mantenha visões completas (ex: estatísticas móveis).
+     */
+    @Bean
+    public FanoutExchange acoesPersistidasExchange() {
+        return new FanoutExchange(EXCHANGE_ACOES_PERSISTIDAS);
+    }
+
+    /**
+     * Fila efêmera (auto-delete) por instância para as cotações persistidas.
+     *
+     * @param port Porta da instância atual.
+     * @return Queue exclusiva, não durável, auto-delete e com nome único.
+     */
+    @Bean
+    public Queue acoesPersistidasQueue(@Value("${server.port}") String port) {
+        return new Queue(QUEUE_ACOES_PERSISTIDAS + "." + port, false, true, true);
+    }
+
+    /**
+     * Bind entre a fila de cotações persistidas da instância e o fanout.
+     */
+    @Bean
+    public Binding acoesPersistidasBinding(Queue acoesPersistidasQueue) {
+        return BindingBuilder.bind(acoesPersistidasQueue).to(acoesPersistidasExchange());
+    }
+
+    // ================== ALERTAS ==================
+
+    /**
+     * Exchange onde são publicados os alertas disparados, com routing key
+     * {@code alerta.{symbol}.{tipo}} — ex: {@code alerta.petr4.#} assina todos
+     * os alertas de PETR4. As filas ficam a cargo de quem consome os alertas.
      */
     @Bean
-    public Queue acoesQueue() {
-        return new Queue(QUEUE_ACOES, true);
+    public TopicExchange alertasExchange() {
+        return new TopicExchange(EXCHANGE_ALERTAS);
     }
 
     /**
-     * Bind para receber todas as atualizações de ações,
-     * usando wildcard "bolsa.acoes.#".
+     * Exchange usada para propagar a todos os nós as mudanças nas regras de alerta.
      */
     @Bean
-    public Binding acoesBinding(Queue acoesQueue, TopicExchange bolsaExchange) {
-        return BindingBuilder.bind(acoesQueue).to(bolsaExchange).with(ROUTING_KEY_ACOES);
+    public FanoutExchange regrasAlertaExchange() {
+        return new FanoutExchange(EXCHANGE_REGRAS_ALERTA);
+    }
+
+    /**
+     * Fila efêmera (auto-delete) por instância para as mudanças nas regras.
+     *
+     * @param port Porta da instância atual.
+     * @return Queue exclusiva, não durável, auto-delete e com nome único.
+     */
+    @Bean
+    public Queue regrasAlertaQueue(@Value("${server.port}") String port) {
+        return new Queue(QUEUE_REGRAS_ALERTA + "." + port, false, true, true);
+    }
+
+    /**
+     * Bind entre a fila de regras da instância e o fanout.
+     */
+    @Bean
+    public Binding regrasAlertaBinding(Queue regrasAlertaQueue) {
+        return BindingBuilder.bind(regrasAlertaQueue).to(regrasAlertaExchange());
+    }
+
+    /**
+     * Routing key de um alerta disparado.
+     *
+     * @param symbol código da ação
+     * @param tipo   tipo da regra
+     * @return routing key no formato {@code alerta.{symbol}.{tipo}}
+     */
+    public static String routingKeyAlerta(String symbol, String tipo) {
+        return "alerta." + symbol.toLowerCase() + "." + tipo.toLowerCase();
+    }
+
+    // ================== METADADOS DOS SÍMBOLOS (FANOUT) ==================
+
+    /**
+     * Exchange usada para avisar todos os nós de que os nomes de um símbolo
+     * mudaram, para que o cache de metadados e as respostas guardadas não
+     * fiquem com o nome antigo.
+     */
+    @Bean
+    public FanoutExchange simbolosExchange() {
+        return new FanoutExchange(EXCHANGE_SIMBOLOS);
+    }
+
+    /**
+     * Fila efêmera (auto-delete) por instância para os símbolos alterados.
+     *
+     * @param port Porta da instância atual.
+     * @return Queue exclusiva, não durável, auto-delete e com nome único.
+     */
+    @Bean
+    public Queue simbolosQueue(@Value("${server.port}") String port) {
+        return new Queue(QUEUE_SIMBOLOS + "." + port, false, true, true);
+    }
+
+    /**
+     * Bind entre a fila de símbolos da instância e o fanout.
+     */
+    @Bean
+    public Binding simbolosBinding(Queue simbolosQueue) {
+        return BindingBuilder.bind(simbolosQueue).to(simbolosExchange());
     }
 
     // ================== CONVERSOR DE MENSAGENS ==================
@@ -135,19 +441,33 @@ public class RabbitMQConfig {
      * Container Factory para consumidores que exigem ACK manual.
      * Uso:
      *  @RabbitListener(queues = "...", containerFactory = "manualAckContainerFactory")
+     *  ou {@code createListenerContainer()}, como faz o ShardService para cada shard.
      * O consumidor deve chamar:
      *  channel.basicAck(deliveryTag, false)
      *
+     * A factory passa pelo configurer do Spring Boot, herdando as propriedades
+     * {@code spring.rabbitmq.listener.simple.*} e, com
+     * {@code spring.threads.virtual.enabled=true}, o executor de virtual threads.
+     *
+     * O prefetch ({@code app.consumo.prefetch}) é maior que 1 porque o
+     * ShardService repassa as mensagens às pistas por símbolo do
+     * {@code ProcessadorAcoes}, que as confirma de forma assíncrona (pelo
+     * {@code ConfirmacoesCanal} do canal, nunca por várias threads direto no canal).
+     *
+     * @param configurer        Configurer padrão do Spring Boot para containers simples.
      * @param connectionFactory Conexão já configurada pelo Spring AMQP.
-     * @return Factory com modo de ACK manual e prefetch 1.
+     * @param appConfig         Configuração com o prefetch do consumo.
+     * @return Factory com modo de ACK manual.
      */
     @Bean
-    public SimpleRabbitListenerContainerFactory manualAckContainerFactory(ConnectionFactory connectionFactory) {
+    public SimpleRabbitListenerContainerFactory manualAckContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer,
+                                                                          ConnectionFactory connectionFactory,
+                                                                          AppConfig appConfig) {
         SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
-        factory.setConnectionFactory(connectionFactory);
+        configurer.configure(factory, connectionFactory);
         factory.setMessageConverter(jackson2JsonMessageConverter());
         factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
-        factory.setPrefetchCount(1);
+        factory.setPrefetchCount(appConfig.getConsumo().getPrefetch());
         return factory;
     }
 }
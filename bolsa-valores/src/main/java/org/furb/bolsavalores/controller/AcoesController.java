@@ -1,14 +1,33 @@
 package org.furb.bolsavalores.controller;
 
 import org.furb.bolsavalores.model.Acao;
-import org.furb.bolsavalores.repository.AcoesRepository;
+import org.furb.bolsavalores.model.EstatisticasAcao;
+import org.furb.bolsavalores.model.TopMovers;
+import org.furb.bolsavalores.model.TraceCotacao;
+import org.furb.bolsavalores.repository.AcoesReactiveRepository;
+import org.furb.bolsavalores.service.AtualizacaoCotacaoService;
+import org.furb.bolsavalores.service.CacheRespostasService;
+import org.furb.bolsavalores.service.ConsultaLoteService;
+import org.furb.bolsavalores.service.EstatisticasService;
+import org.furb.bolsavalores.service.ExportacaoService;
+import org.furb.bolsavalores.service.MetadadosService;
+import org.furb.bolsavalores.service.RastreamentoService;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.data.domain.Range;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.PathVariable;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 /**
  * Controlador REST responsável pela consulta de ações registradas no sistema.
@@ -17,51 +36,365 @@ import java.util.List;
  *  GET /acoes
  *      → Retorna todas as ações salvas no banco.
  *
- *  GET /acoes/{symbol}
- *      → Retorna todas as entradas referentes ao símbolo informado (ex: PETR4).
+ *  GET /acoes/{symbol}?from=&to=
+ *      → Retorna as entradas do símbolo informado (ex: PETR4) em ordem
+ *        cronológica, opcionalmente restritas a um intervalo de tempo.
  *
- * Este controlador acessa o {@link AcoesRepository} para realizar operações
- * de leitura no banco de dados (MongoDB).
+ *  Com {@code Accept: application/x-ndjson}, as duas leituras acima são
+ *  enviadas em streaming (um JSON por linha) conforme chegam do cursor.
+ *
+ *  GET /acoes/{symbol}/latest
+ *      → Retorna a última cotação do símbolo.
+ *
+ *  GET /acoes/{symbol}/recent?window=1h
+ *      → Retorna as cotações do símbolo na janela que termina na última cotação.
+ *
+ *  As duas leituras acima saem do {@link CacheRespostasService}, já serializadas.
+ *
+ *  GET /acoes?symbols=PETR4,VALE3&from=&to=
+ *      → Retorna o histórico de vários símbolos, agrupado por símbolo, em uma
+ *        única consulta ao banco.
+ *
+ *  GET /acoes?symbols=PETR4,VALE3&latest=true
+ *      → Retorna a última cotação de cada símbolo (opcionalmente dentro de
+ *        from/to), em uma única agregação.
+ *
+ *  GET /acoes/export?symbols=PETR4,VALE3&from=&to=&format=csv|arrow
+ *      → Exporta o histórico em streaming (CSV gzip ou Arrow IPC), direto do cursor do MongoDB.
+ *
+ *  GET /acoes/{symbol}/stats?window=1d
+ *      → Retorna as estatísticas móveis do símbolo na janela informada.
+ *
+ *  GET /acoes/top-movers?window=1d&n=20
+ *      → Retorna as maiores altas e baixas entre os símbolos acompanhados.
+ *
+ *  POST /acoes/{symbol}/refresh
+ *      → Busca a cotação atual no provedor e a publica para persistência.
+ *
+ *  GET /acoes/{symbol}/trace?time=
+ *      → Retorna os traces da cotação com a latência de cada etapa
+ *        (provedor, publicação, broker, pista, MongoDB).
+ *
+ * As leituras usam o {@link AcoesReactiveRepository}: o handler devolve um
+ * {@link Flux}/{@link Mono} e a thread do Tomcat é liberada enquanto o MongoDB
+ * responde, então o número de consultas simultâneas não fica limitado ao
+ * pool de threads do servidor. No streaming NDJSON, cada documento só é
+ * pedido ao cursor depois que o anterior foi escrito no socket, de modo que
+ * um cliente lento segura o cursor em vez de acumular a resposta em memória.
+ * As estatísticas e o ranking de variações vêm da memória do
+ * {@link EstatisticasService}, sem consulta ao banco. As cotações são
+ * gravadas sem os nomes do símbolo, que são preenchidos a partir do cache do
+ * {@link MetadadosService}.
  */
 @RestController
 @RequestMapping("/acoes")
 public class AcoesController {
-    private final AcoesRepository acoesRepository;
+    /** Máximo de símbolos em cada lista de {@code /acoes/top-movers}. */
+    static final int MAX_TOP_MOVERS = 100;
+
+    private final AcoesReactiveRepository acoesRepository;
+    private final EstatisticasService estatisticasService;
+    private final ExportacaoService exportacaoService;
+    private final AtualizacaoCotacaoService atualizacaoCotacaoService;
+    private final RastreamentoService rastreamentoService;
+    private final ConsultaLoteService consultaLoteService;
+    private final MetadadosService metadadosService;
+    private final CacheRespostasService cacheRespostasService;
 
     /**
-     * Injeta o repositório de ações.
+     * Injeta o repositório de ações e o serviço de estatísticas.
      *
-     * @param acoesRepository Repositório responsável pela persistência de {@link Acao}.
+     * @param acoesRepository           Repositório reativo de leitura de {@link Acao}.
+     * @param estatisticasService       Serviço com as estatísticas móveis por símbolo.
+     * @param exportacaoService         Serviço de exportação em streaming.
+     * @param atualizacaoCotacaoService Serviço de atualização sob demanda.
+     * @param rastreamentoService       Serviço de consulta dos traces por cotação.
+     * @param consultaLoteService       Serviço de leitura de vários símbolos por consulta.
+     * @param metadadosService          Cache dos nomes dos símbolos.
      */
-    public AcoesController(AcoesRepository acoesRepository) {
+    public AcoesController(AcoesReactiveRepository acoesRepository, EstatisticasService estatisticasService,
+                           ExportacaoService exportacaoService, AtualizacaoCotacaoService atualizacaoCotacaoService,
+                           RastreamentoService rastreamentoService, ConsultaLoteService consultaLoteService,
+                           MetadadosService metadadosService, CacheRespostasService cacheRespostasService) {
         this.acoesRepository = acoesRepository;
+        this.estatisticasService = estatisticasService;
+        this.exportacaoService = exportacaoService;
+        this.atualizacaoCotacaoService = atualizacaoCotacaoService;
+        this.rastreamentoService = rastreamentoService;
+        this.consultaLoteService = consultaLoteService;
+        this.metadadosService = metadadosService;
+        this.cacheRespostasService = cacheRespostasService;
     }
 
     /**
      * Lista todas as ações cadastradas no banco.
      *
-     * @return Lista completa contendo todos os documentos da coleção "acoes".
+     * Em JSON a lista é montada antes de ser escrita; em NDJSON os documentos
+     * são escritos um a um, conforme chegam do cursor.
+     *
+     * @return Todos os documentos da coleção "acoes".
+     */
+    @GetMapping(params = "!symbols", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<Acao> listarAcoes() {
+        return acoesRepository.findAll().map(metadadosService::completar);
+    }
+
+    /**
+     * Busca o histórico de vários símbolos de uma vez, para telas de carteira.
+     *
+     * @param symbols Símbolos separados por vírgula (até {@value ConsultaLoteService#MAX_SIMBOLOS}).
+     * @param from    Início do intervalo (ISO-8601, inclusivo), opcional; padrão:
+     *                {@code to} menos {@code app.consulta-lote.janela-padrao}.
+     * @param to      Fim do intervalo (ISO-8601, inclusivo), opcional; padrão: agora.
+     * @return 200 OK com as cotações agrupadas por símbolo, na ordem pedida
+     *         (símbolos sem cotações ficam de fora).
+     *         400 BAD REQUEST se a lista de símbolos for vazia ou grande demais,
+     *         ou se o intervalo passar de {@code app.consulta-lote.max-documentos} cotações.
      */
-    @GetMapping()
-    public List<Acao> listarAcoes() {
-        return acoesRepository.findAll();
+    @GetMapping(params = "symbols", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Map<String, List<Acao>>>> getBySymbols(@RequestParam List<String> symbols,
+                                                                     @RequestParam(required = false) Instant from,
+                                                                     @RequestParam(required = false) Instant to) {
+        try {
+            return consultaLoteService.historico(symbols, from, to)
+                    .map(ResponseEntity::ok)
+                    .onErrorResume(IllegalArgumentException.class, e -> Mono.just(ResponseEntity.badRequest().build()));
+        } catch (IllegalArgumentException e) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+    }
+
+    /**
+     * Busca a última cotação de vários símbolos de uma vez.
+     *
+     * @param symbols Símbolos separados por vírgula (até {@value ConsultaLoteService#MAX_SIMBOLOS}).
+     * @param from    Início do intervalo (ISO-8601, inclusivo), opcional.
+     * @param to      Fim do intervalo (ISO-8601, inclusivo), opcional; a cotação
+     *                devolvida é a última até esse instante.
+     * @return 200 OK com a última cotação de cada símbolo, na ordem pedida
+     *         (símbolos sem cotações ficam de fora).
+     *         400 BAD REQUEST se a lista de símbolos for vazia ou grande demais.
+     */
+    @GetMapping(params = {"symbols", "latest=true"}, produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Map<String, Acao>>> getLatestBySymbols(@RequestParam List<String> symbols,
+                                                                      @RequestParam(required = false) Instant from,
+                                                                      @RequestParam(required = false) Instant to) {
+        try {
+            return consultaLoteService.ultimas(symbols, from, to).map(ResponseEntity::ok);
+        } catch (IllegalArgumentException e) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
     }
 
     /**
      * Busca ações pelo símbolo informado (ex: "PETR4").
      *
      * O símbolo sempre é convertido para uppercase para padronizar as consultas.
+     * Informando {@code from} e/ou {@code to} (ISO-8601), a consulta é feita por
+     * intervalo, aproveitando o índice/bucketing por símbolo e tempo.
      *
      * @param symbol Símbolo da ação a ser buscada.
+     * @param from   Início do intervalo (inclusivo), opcional.
+     * @param to     Fim do intervalo (inclusivo), opcional.
      * @return 200 OK com a lista de ações, caso existam.
      *         404 NOT FOUND caso nenhuma ação seja encontrada.
      */
-    @GetMapping("/{symbol}")
-    public ResponseEntity<List<Acao>> getBySymbol(@PathVariable String symbol) {
-        var acoes = acoesRepository.findBySymbol(symbol.toUpperCase());
-        if (acoes.isEmpty()) {
+    @GetMapping(value = "/{symbol}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<List<Acao>>> getBySymbol(@PathVariable String symbol,
+                                                        @RequestParam(required = false) Instant from,
+                                                        @RequestParam(required = false) Instant to) {
+        return buscarPorSymbol(symbol, from, to)
+                .collectList()
+                .map(acoes -> acoes.isEmpty()
+                        ? ResponseEntity.notFound().<List<Acao>>build()
+                        : ResponseEntity.ok(acoes));
+    }
+
+    /**
+     * Mesma consulta de {@link #getBySymbol}, em streaming NDJSON: os
+     * documentos são escritos conforme chegam do cursor, sem montar a lista.
+     * Como o status é enviado antes do primeiro documento, um símbolo sem
+     * cotações resulta em 200 OK com corpo vazio.
+     *
+     * @param symbol Símbolo da ação a ser buscada.
+     * @param from   Início do intervalo (inclusivo), opcional.
+     * @param to     Fim do intervalo (inclusivo), opcional.
+     * @return Cotações do símbolo em ordem cronológica.
+     */
+    @GetMapping(value = "/{symbol}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Acao> streamBySymbol(@PathVariable String symbol,
+                                     @RequestParam(required = false) Instant from,
+                                     @RequestParam(required = false) Instant to) {
+        return buscarPorSymbol(symbol, from, to);
+    }
+
+    private Flux<Acao> buscarPorSymbol(String symbol, Instant from, Instant to) {
+        Flux<Acao> acoes = (from == null && to == null)
+                ? acoesRepository.findBySymbolOrderByRegularMarketTimeAsc(symbol.toUpperCase())
+                : acoesRepository.findBySymbolAndRegularMarketTimeBetweenOrderByRegularMarketTimeAsc(
+                        symbol.toUpperCase(),
+                        Range.closed(from == null ? Instant.EPOCH : from, to == null ? Instant.now() : to));
+        return acoes.map(metadadosService::completar);
+    }
+
+    /**
+     * Retorna a última cotação de um símbolo.
+     *
+     * Leitura síncrona: num acerto do cache a resposta é só a cópia dos bytes
+     * guardados para o socket; numa falha, uma consulta ao banco e uma
+     * serialização, que ficam guardadas até a próxima cotação do símbolo.
+     *
+     * @param symbol Símbolo da ação (ex: "PETR4").
+     * @return 200 OK com a cotação.
+     *         404 NOT FOUND se o símbolo ainda não tiver cotações.
+     */
+    @GetMapping(value = "/{symbol}/latest", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getLatest(@PathVariable String symbol) {
+        return json(cacheRespostasService.ultima(symbol));
+    }
+
+    /**
+     * Retorna as cotações recentes de um símbolo, em ordem cronológica. A
+     * janela termina na última cotação (fora do pregão continua mostrando as
+     * últimas cotações), como nas estatísticas.
+     *
+     * @param symbol Símbolo da ação (ex: "PETR4").
+     * @param window Janela no formato simples ("1h", "1d") ou ISO-8601 ("PT1H"),
+     *               entre as de {@code app.cache-respostas.janelas}. Se omitida, usa a primeira.
+     * @return 200 OK com as cotações.
+     *         400 BAD REQUEST se a janela for inválida ou não configurada.
+     *         404 NOT FOUND se o símbolo ainda não tiver cotações.
+     */
+    @GetMapping(value = "/{symbol}/recent", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getRecent(@PathVariable String symbol,
+                                            @RequestParam(required = false) String window) {
+        try {
+            Duration janela = window == null ? cacheRespostasService.getJanelas().get(0) : DurationStyle.detectAndParse(window);
+            return json(cacheRespostasService.recentes(symbol, janela));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    private static ResponseEntity<byte[]> json(Optional<byte[]> corpo) {
+        return corpo.map(bytes -> ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(bytes))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Retorna as estatísticas móveis de um símbolo (média, mínimo, máximo,
+     * desvio padrão e variação percentual) em tempo constante.
+     *
+     * @param symbol Símbolo da ação (ex: "PETR4").
+     * @param window Janela no formato simples ("1h", "1d") ou ISO-8601 ("PT1H").
+     *               Se omitida, usa a primeira janela configurada.
+     * @return 200 OK com as estatísticas.
+     *         400 BAD REQUEST se a janela for inválida ou não configurada.
+     *         404 NOT FOUND se o símbolo ainda não tiver cotações.
+     */
+    @GetMapping("/{symbol}/stats")
+    public ResponseEntity<EstatisticasAcao> getStats(@PathVariable String symbol,
+                                                     @RequestParam(required = false) String window) {
+        try {
+            Duration janela = window == null ? estatisticasService.getJanelas().get(0) : DurationStyle.detectAndParse(window);
+            return ResponseEntity.of(estatisticasService.consultar(symbol, janela));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Retorna as maiores altas e baixas entre os símbolos acompanhados, a
+     * partir do ranking mantido a cada cotação persistida (sem varrer o
+     * histórico).
+     *
+     * @param window Janela no formato simples ("1h", "1d") ou ISO-8601 ("PT1H").
+     *               Se omitida, usa a primeira janela configurada.
+     * @param n      Quantidade de símbolos em cada lista, entre 1 e {@value #MAX_TOP_MOVERS}.
+     * @return 200 OK com as altas e as baixas.
+     *         400 BAD REQUEST se a janela for inválida ou não configurada, ou n fora do limite.
+     */
+    @GetMapping("/top-movers")
+    public ResponseEntity<TopMovers> getTopMovers(@RequestParam(required = false) String window,
+                                                  @RequestParam(defaultValue = "10") int n) {
+        if (n < 1 || n > MAX_TOP_MOVERS) return ResponseEntity.badRequest().build();
+        try {
+            Duration janela = window == null ? estatisticasService.getJanelas().get(0) : DurationStyle.detectAndParse(window);
+            return ResponseEntity.ok(estatisticasService.topMovers(janela, n));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Força a atualização da cotação de um símbolo.
+     *
+     * Pedidos simultâneos para o mesmo símbolo (de clientes ou do scheduler)
+     * compartilham uma única chamada ao provedor, e uma cotação buscada dentro
+     * de {@code app.atualizacao.ttl} é devolvida sem nova chamada. A
+     * coalescência é por nó (ver {@link AtualizacaoCotacaoService}).
+     *
+     * @param symbol Símbolo da ação (ex: "PETR4").
+     * @return 200 OK com a cotação publicada.
+     *         502 BAD GATEWAY se o provedor ou o broker falharem.
+     */
+    @PostMapping("/{symbol}/refresh")
+    public ResponseEntity<Acao> refresh(@PathVariable String symbol) {
+        try {
+            return ResponseEntity.ok(atualizacaoCotacaoService.atualizar(symbol));
+        } catch (RuntimeException e) {
+            System.err.println("[Refresh] ERRO ao atualizar " + symbol.toUpperCase() + ": " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY).build();
+        }
+    }
+
+    /**
+     * Retorna os traces de uma cotação, com a latência de cada etapa do
+     * caminho provedor → publicação → broker → pista → MongoDB.
+     *
+     * @param symbol Símbolo da ação (ex: "PETR4").
+     * @param time   {@code regularMarketTime} da cotação (ISO-8601).
+     * @return 200 OK com os traces.
+     *         404 NOT FOUND se nenhum trace da cotação estiver armazenado.
+     *         501 NOT IMPLEMENTED se nenhum armazenamento de traces estiver habilitado.
+     */
+    @GetMapping("/{symbol}/trace")
+    public ResponseEntity<List<TraceCotacao>> getTrace(@PathVariable String symbol, @RequestParam Instant time) {
+        if (!rastreamentoService.disponivel()) {
+            return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).build();
+        }
+        List<TraceCotacao> traces = rastreamentoService.buscar(symbol, time);
+        if (traces.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(acoes);
+        return ResponseEntity.ok(traces);
+    }
+
+    /**
+     * Exporta o histórico de cotações em streaming, com memória constante.
+     *
+     * @param symbols Símbolos separados por vírgula; se omitido, exporta todos.
+     * @param from    Início do intervalo (ISO-8601, inclusivo), opcional.
+     * @param to      Fim do intervalo (ISO-8601, inclusivo), opcional.
+     * @param format  {@code csv} (CSV compactado com gzip, padrão) ou {@code arrow} (Arrow IPC stream).
+     * @return 200 OK com o arquivo em streaming.
+     *         400 BAD REQUEST se o formato for desconhecido.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportar(@RequestParam(required = false) List<String> symbols,
+                                                          @RequestParam(required = false) Instant from,
+                                                          @RequestParam(required = false) Instant to,
+                                                          @RequestParam(defaultValue = "csv") String format) {
+        return switch (format.toLowerCase()) {
+            case "csv" -> ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType("application/gzip"))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"acoes.csv.gz\"")
+                    .body(out -> exportacaoService.exportarCsvGzip(symbols, from, to, out));
+            case "arrow" -> ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType("application/vnd.apache.arrow.stream"))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"acoes.arrows\"")
+                    .body(out -> exportacaoService.exportarArrow(symbols, from, to, out));
+            default -> ResponseEntity.badRequest().build();
+        };
     }
 }
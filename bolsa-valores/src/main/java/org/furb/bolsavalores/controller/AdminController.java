@@ -0,0 +1,144 @@
+package org.furb.bolsavalores.controller;
+
+import org.furb.bolsavalores.model.BackfillCheckpoint;
+import org.furb.bolsavalores.service.BackfillService;
+import org.furb.bolsavalores.service.IngestaoMercadoService;
+import org.furb.bolsavalores.service.RetentativasService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Controlador com operações administrativas do cluster.
+ *
+ * Endpoints:
+ *
+ *  POST /admin/backfill/{symbol}?range=1y&interval=1d
+ *      → Inicia (ou retoma) o backfill histórico do símbolo em segundo plano.
+ *
+ *  GET /admin/backfill/{symbol}
+ *      → Retorna os checkpoints dos backfills do símbolo.
+ *
+ *  GET /admin/parking-lot?limite=20
+ *      → Lista as mensagens estacionadas (sem removê-las da fila).
+ *
+ *  POST /admin/parking-lot/replay?limite=100
+ *      → Republica as mensagens estacionadas nos shards de origem.
+ *
+ *  POST /admin/mercado
+ *      → Inicia em segundo plano a ingestão do mercado inteiro (lista da BRAPI).
+ *
+ *  GET /admin/mercado
+ *      → Retorna o resumo da última ingestão do mercado neste nó.
+ *
+ * Sem broker ({@code app.transporte.tipo=memoria}) não há parking-lot, e os
+ * endpoints correspondentes respondem 501 NOT IMPLEMENTED.
+ */
+@RestController
+@RequestMapping("/admin")
+public class AdminController {
+    private final BackfillService backfillService;
+    private final RetentativasService retentativasService;
+    private final IngestaoMercadoService ingestaoMercadoService;
+
+    /**
+     * @param backfillService        Serviço de backfill histórico.
+     * @param retentativasService    Serviço de retentativas e parking-lot (ausente sem broker).
+     * @param ingestaoMercadoService Serviço de ingestão do mercado inteiro.
+     */
+    public AdminController(BackfillService backfillService, ObjectProvider<RetentativasService> retentativasService,
+                           IngestaoMercadoService ingestaoMercadoService) {
+        this.backfillService = backfillService;
+        this.retentativasService = retentativasService.getIfAvailable();
+        this.ingestaoMercadoService = ingestaoMercadoService;
+    }
+
+    /**
+     * Inicia o backfill histórico de um símbolo.
+     *
+     * @param symbol   Símbolo da ação (ex: "PETR4").
+     * @param range    Período da BRAPI (ex: 1mo, 1y, max); opcional.
+     * @param interval Intervalo dos candles (ex: 1d); opcional.
+     * @return 202 ACCEPTED com o checkpoint de onde o backfill parte.
+     *         409 CONFLICT se o mesmo backfill já estiver rodando neste nó.
+     */
+    @PostMapping("/backfill/{symbol}")
+    public ResponseEntity<BackfillCheckpoint> backfill(@PathVariable String symbol,
+                                                       @RequestParam(required = false) String range,
+                                                       @RequestParam(required = false) String interval) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(backfillService.iniciar(symbol, range, interval));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    /**
+     * Consulta o progresso dos backfills de um símbolo.
+     *
+     * @param symbol Símbolo da ação.
+     * @return 200 OK com a lista de checkpoints (vazia se nunca houve backfill).
+     */
+    @GetMapping("/backfill/{symbol}")
+    public ResponseEntity<List<BackfillCheckpoint>> backfillStatus(@PathVariable String symbol) {
+        return ResponseEntity.ok(backfillService.listar(symbol));
+    }
+
+    /**
+     * Inspeciona as mensagens do parking-lot.
+     *
+     * @param limite Quantidade máxima de mensagens listadas.
+     * @return 200 OK com routing key, motivo, tentativas e corpo de cada mensagem.
+     *         501 NOT IMPLEMENTED se o nó roda sem broker.
+     */
+    @GetMapping("/parking-lot")
+    public ResponseEntity<List<Map<String, Object>>> parkingLot(@RequestParam(defaultValue = "20") int limite) {
+        if (retentativasService == null) return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).build();
+        return ResponseEntity.ok(retentativasService.inspecionar(limite));
+    }
+
+    /**
+     * Reprocessa as mensagens do parking-lot, devolvendo-as aos shards de
+     * origem com o contador de tentativas zerado.
+     *
+     * @param limite Quantidade máxima de mensagens reprocessadas.
+     * @return 200 OK com a quantidade de mensagens reprocessadas.
+     *         501 NOT IMPLEMENTED se o nó roda sem broker.
+     */
+    @PostMapping("/parking-lot/replay")
+    public ResponseEntity<Map<String, Integer>> replay(@RequestParam(defaultValue = "100") int limite) {
+        if (retentativasService == null) return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).build();
+        return ResponseEntity.ok(Map.of("reprocessadas", retentativasService.reprocessar(limite)));
+    }
+
+    /**
+     * Inicia a ingestão do mercado inteiro.
+     *
+     * @return 202 ACCEPTED com o resumo da ingestão anterior.
+     *         409 CONFLICT se já houver uma ingestão em execução neste nó.
+     */
+    @PostMapping("/mercado")
+    public ResponseEntity<Map<String, Object>> ingerirMercado() {
+        try {
+            Map<String, Object> anterior = ingestaoMercadoService.snapshot();
+            ingestaoMercadoService.iniciar();
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(anterior);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    /**
+     * Consulta a última ingestão do mercado.
+     *
+     * @return 200 OK com início, duração, cotações, publicadas e lotes.
+     */
+    @GetMapping("/mercado")
+    public ResponseEntity<Map<String, Object>> mercadoStatus() {
+        return ResponseEntity.ok(ingestaoMercadoService.snapshot());
+    }
+}
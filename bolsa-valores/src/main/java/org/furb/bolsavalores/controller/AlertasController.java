@@ -0,0 +1,79 @@
+package org.furb.bolsavalores.controller;
+
+import org.furb.bolsavalores.model.RegraAlerta;
+import org.furb.bolsavalores.service.AlertasService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Controlador REST das regras de alerta de preço.
+ *
+ * Endpoints:
+ *
+ *  GET /alertas/regras?symbol=PETR4
+ *      → Lista as regras (todas, ou só as do símbolo informado).
+ *
+ *  POST /alertas/regras
+ *      → Cria uma regra. Corpo: {"symbol": "PETR4", "tipo": "CRUZA_ACIMA", "limite": 40}
+ *        Tipos: CRUZA_ACIMA, CRUZA_ABAIXO, VARIACAO_DIARIA (limite em %).
+ *
+ *  DELETE /alertas/regras/{id}
+ *      → Remove uma regra.
+ *
+ * Os alertas disparados são publicados em {@code bolsa.alertas.exchange},
+ * com routing key {@code alerta.{symbol}.{tipo}}.
+ */
+@RestController
+@RequestMapping("/alertas")
+public class AlertasController {
+    private final AlertasService alertasService;
+
+    /**
+     * @param alertasService Motor de regras de alerta.
+     */
+    public AlertasController(AlertasService alertasService) {
+        this.alertasService = alertasService;
+    }
+
+    /**
+     * Lista as regras de alerta.
+     *
+     * @param symbol Símbolo da ação; opcional.
+     * @return 200 OK com as regras.
+     */
+    @GetMapping("/regras")
+    public List<RegraAlerta> listar(@RequestParam(required = false) String symbol) {
+        return alertasService.listar(symbol);
+    }
+
+    /**
+     * Cria uma regra de alerta, válida em todos os nós do cluster.
+     *
+     * @param regra Regra com symbol, tipo e limite.
+     * @return 201 CREATED com a regra salva.
+     *         400 BAD REQUEST se a regra for inválida.
+     */
+    @PostMapping("/regras")
+    public ResponseEntity<RegraAlerta> criar(@RequestBody RegraAlerta regra) {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(alertasService.adicionar(regra));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Remove uma regra de alerta.
+     *
+     * @param id Identificador da regra.
+     * @return 204 NO CONTENT se removida.
+     *         404 NOT FOUND se a regra não existir.
+     */
+    @DeleteMapping("/regras/{id}")
+    public ResponseEntity<Void> remover(@PathVariable String id) {
+        return alertasService.remover(id) ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    }
+}
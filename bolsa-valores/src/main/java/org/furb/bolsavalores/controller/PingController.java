@@ -1,11 +1,23 @@
 package org.furb.bolsavalores.controller;
 
+import org.furb.bolsavalores.carga.BaldesPorCliente;
+import org.furb.bolsavalores.carga.LimitadorAdaptativo;
+import org.furb.bolsavalores.service.AcoesPublisher;
+import org.furb.bolsavalores.service.CacheRespostasService;
 import org.furb.bolsavalores.service.ElectionService;
+import org.furb.bolsavalores.service.StartupMetrics;
+import org.furb.bolsavalores.service.TransporteCotacoes;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * Controlador responsável por expor endpoints de monitoramento e status
  * relacionados ao algoritmo de eleição (Bully) e ao estado da instância atual.
@@ -23,19 +35,72 @@ import org.springframework.web.bind.annotation.RestController;
  *
  *  GET /status
  *      → Retorna se esta instância é "leader" ou "follower".
+ *
+ *  GET /status/startup
+ *      → Retorna os tempos de inicialização (primeira eleição e primeira requisição).
+ *
+ *  GET /status/threads
+ *      → Retorna contagem de threads e uso de heap, para comparar o modo
+ *        tradicional com o modo de virtual threads sob carga.
+ *
+ *  GET /status/consumo
+ *      → Retorna o transporte em uso e o estado do consumo das cotações
+ *        (consumidores, backlog e latência média).
+ *
+ *  GET /status/publicacao
+ *      → Retorna quantas cotações foram publicadas e quantas foram suprimidas
+ *        por não terem mudado.
+ *
+ *  GET /status/carga
+ *      → Retorna o limite de concorrência atual das leituras, as vagas em uso,
+ *        as latências de referência e as requisições aceitas e recusadas.
+ *
+ *  GET /status/cache
+ *      → Retorna o tamanho e a taxa de acerto do cache de respostas serializadas.
+ *
+ *  GET /status/sucessao
+ *      → Retorna os tempos sem líder e sem gravação medidos na última saída
+ *        ordenada de um nó (RESIGN).
  */
 @RestController
 @RequestMapping("/status")
 public class PingController {
     private final ElectionService electionService;
+    private final StartupMetrics startupMetrics;
+    private final TransporteCotacoes transporte;
+    private final AcoesPublisher acoesPublisher;
+    private final LimitadorAdaptativo limitador;
+    private final BaldesPorCliente baldes;
+    private final CacheRespostasService cacheRespostas;
+    private final boolean virtualThreads;
 
     /**
      * Injeta o serviço responsável pelo algoritmo de eleição.
      *
-     * @param electionService Serviço que controla o estado de líder e início do processo.
+     * @param electionService  Serviço que controla o estado de líder e início do processo.
+     * @param startupMetrics   Métricas de inicialização da instância.
+     * @param transporte       Transporte das cotações (RabbitMQ ou anel em memória).
+     * @param acoesPublisher   Publicador das cotações (contadores de supressão).
+     * @param limitador        Limite adaptativo de concorrência das leituras.
+     * @param baldes           Token buckets por cliente das leituras.
+     * @param cacheRespostas   Cache das respostas serializadas das leituras quentes.
      */
-    public PingController(ElectionService electionService) {
+    public PingController(ElectionService electionService,
+                          StartupMetrics startupMetrics,
+                          TransporteCotacoes transporte,
+                          AcoesPublisher acoesPublisher,
+                          LimitadorAdaptativo limitador,
+                          BaldesPorCliente baldes,
+                          CacheRespostasService cacheRespostas,
+                          @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
         this.electionService = electionService;
+        this.startupMetrics = startupMetrics;
+        this.transporte = transporte;
+        this.acoesPublisher = acoesPublisher;
+        this.limitador = limitador;
+        this.baldes = baldes;
+        this.cacheRespostas = cacheRespostas;
+        this.virtualThreads = virtualThreads;
     }
 
     /**
@@ -83,4 +148,89 @@ public class PingController {
     public ResponseEntity<String> status() {
         return ResponseEntity.ok(electionService.isLeader() ? "leader" : "follower");
     }
+
+    /**
+     * Retorna a última sucessão observada por esta instância.
+     *
+     * @return 200 OK com {@code noSaindo}, {@code shardsAssumidos}, {@code semGravacaoMs}
+     *         (só se esta instância assumiu shards), {@code novoLider} e {@code semLiderMs}
+     *         (só se o nó que saiu era o líder); vazio se nenhum nó saiu desde o início.
+     */
+    @GetMapping("/sucessao")
+    public ResponseEntity<Map<String, Object>> sucessao() {
+        return ResponseEntity.ok(electionService.getUltimaSucessao());
+    }
+
+    /**
+     * Retorna os tempos de inicialização medidos desde o início da JVM.
+     *
+     * @return 200 OK com {@code timeToFirstElectionMs} e {@code timeToFirstServedRequestMs}
+     *         (cada campo aparece somente depois de medido).
+     */
+    @GetMapping("/startup")
+    public ResponseEntity<Map<String, Long>> startup() {
+        return ResponseEntity.ok(startupMetrics.snapshot());
+    }
+
+    /**
+     * Retorna indicadores de threads e memória da JVM.
+     *
+     * <p>As virtual threads não aparecem em {@code liveThreads} (o MXBean conta
+     * apenas threads de plataforma), o que permite observar diretamente se o
+     * número de threads se mantém estável à medida que a concorrência cresce.</p>
+     *
+     * @return 200 OK contendo modo de execução, threads vivas, pico de threads e heap usado (bytes).
+     */
+    @GetMapping("/threads")
+    public ResponseEntity<Map<String, Object>> threads() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("virtualThreads", virtualThreads);
+        body.put("liveThreads", threads.getThreadCount());
+        body.put("peakThreads", threads.getPeakThreadCount());
+        body.put("heapUsedBytes", ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * Retorna o estado do consumo adaptativo das filas de ações.
+     *
+     * @return 200 OK com consumidores, limites, backlog e latência média.
+     */
+    @GetMapping("/consumo")
+    public ResponseEntity<Map<String, Object>> consumo() {
+        return ResponseEntity.ok(transporte.snapshot());
+    }
+
+    /**
+     * Retorna os contadores da detecção de mudanças na publicação.
+     *
+     * @return 200 OK com cotações publicadas, suprimidas e símbolos acompanhados.
+     */
+    @GetMapping("/publicacao")
+    public ResponseEntity<Map<String, Object>> publicacao() {
+        return ResponseEntity.ok(acoesPublisher.snapshot());
+    }
+
+    /**
+     * Retorna o estado da proteção de carga das leituras em /acoes.
+     *
+     * @return 200 OK com limite, vagas em uso, RTT curto/longo, aceitas, recusadas e clientes acompanhados.
+     */
+    @GetMapping("/carga")
+    public ResponseEntity<Map<String, Object>> carga() {
+        Map<String, Object> body = limitador.snapshot();
+        body.put("clientes", baldes.clientes());
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * Retorna o estado do cache de respostas serializadas de /acoes.
+     *
+     * @return 200 OK com entradas, limite, acertos, falhas e taxa de acerto.
+     */
+    @GetMapping("/cache")
+    public ResponseEntity<Map<String, Object>> cache() {
+        return ResponseEntity.ok(cacheRespostas.snapshot());
+    }
 }
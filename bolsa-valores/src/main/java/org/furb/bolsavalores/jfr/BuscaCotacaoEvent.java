@@ -0,0 +1,26 @@
+package org.furb.bolsavalores.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Evento JFR de uma consulta ao provedor de cotações (BRAPI ou StockData).
+ * A duração do evento é o tempo da chamada HTTP, incluindo a conversão da resposta.
+ */
+@Name("org.furb.bolsavalores.BuscaCotacao")
+@Label("Busca de cotação")
+@Category({"Bolsa Valores", "Cotações"})
+@StackTrace(false)
+public class BuscaCotacaoEvent extends Event {
+    @Label("Símbolo")
+    public String symbol;
+
+    @Label("Provedor")
+    public String provedor;
+
+    @Label("Operação")
+    @Description("cotacao (preço atual) ou historico (série range/interval)")
+    public String operacao;
+
+    @Label("Sucesso")
+    public boolean sucesso;
+}
@@ -0,0 +1,23 @@
+package org.furb.bolsavalores.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Evento JFR do processamento de uma cotação pelo consumidor do shard,
+ * da validação até o ACK (ou o encaminhamento para retentativa).
+ */
+@Name("org.furb.bolsavalores.ConsumoCotacao")
+@Label("Consumo de cotação")
+@Category({"Bolsa Valores", "Cotações"})
+@StackTrace(false)
+public class ConsumoCotacaoEvent extends Event {
+    @Label("Símbolo")
+    public String symbol;
+
+    @Label("Resultado")
+    @Description("GRAVADA, DUPLICADA, INVALIDA ou FALHA")
+    public String resultado;
+
+    @Label("Tentativas anteriores")
+    public int tentativas;
+}
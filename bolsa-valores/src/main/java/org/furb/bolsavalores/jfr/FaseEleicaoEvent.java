@@ -0,0 +1,32 @@
+package org.furb.bolsavalores.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Evento JFR de uma fase da eleição de líder (Bully).
+ *
+ * <p>Fases com duração: {@code BUSCA_LIDER} (pings HTTP aos nós conhecidos) e
+ * {@code ELEICAO} (do envio dos ELECTION até receber OK ou esgotar o timeout).
+ * As demais ({@code OK_ENVIADO}, {@code OK_RECEBIDO}, {@code COORDINATOR_RECEBIDO},
+ * {@code LIDER_ASSUMIDO}, {@code RESIGN_RECEBIDO}) são pontuais. No encerramento,
+ * {@code RENUNCIA} cobre a drenagem dos shards e o envio do RESIGN.</p>
+ */
+@Name("org.furb.bolsavalores.FaseEleicao")
+@Label("Fase da eleição")
+@Category({"Bolsa Valores", "Eleição"})
+@StackTrace(false)
+public class FaseEleicaoEvent extends Event {
+    @Label("Fase")
+    public String fase;
+
+    @Label("Id da eleição")
+    public String electionId;
+
+    @Label("Porta")
+    @Description("Porta desta instância")
+    public String porta;
+
+    @Label("Líder")
+    @Description("Porta do líder conhecido ao final da fase, se houver")
+    public String lider;
+}
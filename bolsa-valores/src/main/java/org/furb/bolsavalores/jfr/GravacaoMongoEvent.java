@@ -0,0 +1,19 @@
+package org.furb.bolsavalores.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Evento JFR de uma operação do consumidor no MongoDB.
+ */
+@Name("org.furb.bolsavalores.GravacaoMongo")
+@Label("Operação no MongoDB")
+@Category({"Bolsa Valores", "MongoDB"})
+@StackTrace(false)
+public class GravacaoMongoEvent extends Event {
+    @Label("Símbolo")
+    public String symbol;
+
+    @Label("Operação")
+    @Description("exists (verificação de duplicidade) ou save")
+    public String operacao;
+}
@@ -0,0 +1,24 @@
+package org.furb.bolsavalores.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Evento JFR da publicação de uma cotação no transporte (exchange de ações ou anel em memória).
+ * Cotações suprimidas pela detecção de mudanças também geram o evento.
+ */
+@Name("org.furb.bolsavalores.PublicacaoCotacao")
+@Label("Publicação de cotação")
+@Category({"Bolsa Valores", "Cotações"})
+@StackTrace(false)
+public class PublicacaoCotacaoEvent extends Event {
+    @Label("Símbolo")
+    public String symbol;
+
+    @Label("Transporte")
+    @Description("amqp ou memoria (app.transporte.tipo)")
+    public String transporte;
+
+    @Label("Suprimida")
+    @Description("true se a cotação era igual à última publicada e não foi enviada")
+    public boolean suprimida;
+}
@@ -1,9 +1,11 @@
 package org.furb.bolsavalores.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.Instant;
@@ -14,16 +16,23 @@ import java.time.Instant;
  * <p>Esta classe modela os dados retornados pela API da Brapi,
  * normalizando apenas as informações essenciais para persistência.</p>
  *
- * <p>A coleção MongoDB utilizada é <b>acoes</b>.</p>
+ * <p>A coleção MongoDB utilizada é <b>acoes</b> ou, no modo time-series,
+ * <b>acoes_ts</b> (ver {@link org.furb.bolsavalores.config.ArmazenamentoConfig}).</p>
+ *
+ * <p>Os nomes ({@link #shortName}, {@link #longName}) vêm do provedor, mas
+ * não são gravados com a cotação nem enviados nas mensagens: ficam na
+ * coleção {@code symbols} ({@link Simbolo}) e são preenchidos de volta nas
+ * respostas da API.</p>
  */
 @Data
 @Getter
 @Setter
-@Document(collection="acoes")
+@Document(collection="#{@armazenamentoConfig.colecaoAcoes}")
 public class Acao {
     /**
      * Identificador único da ação no MongoDB.
-     * Gerado automaticamente pelo banco ao salvar o documento.
+     * Definido pela chave de idempotência ({@link #chaveIdempotencia(String, Instant)}),
+     * para que ingestão ao vivo e backfill nunca gerem a mesma cotação duas vezes.
      */
     @Id
     private String id;
@@ -34,13 +43,17 @@ public class Acao {
     private String symbol;
 
     /**
-     * Nome curto da empresa ou ativo.
+     * Nome curto da empresa ou ativo (não persistido; ver {@link Simbolo}).
      */
+    @Transient
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private String shortName;
 
     /**
-     * Nome completo da empresa ou ativo.
+     * Nome completo da empresa ou ativo (não persistido; ver {@link Simbolo}).
      */
+    @Transient
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private String longName;
 
     /**
@@ -53,4 +66,15 @@ public class Acao {
      * Representado em formato UTC via {@link Instant}.
      */
     private Instant regularMarketTime;
+
+    /**
+     * Chave de idempotência de uma cotação: símbolo + horário da cotação.
+     *
+     * @param symbol            código da ação
+     * @param regularMarketTime horário da cotação
+     * @return chave no formato {@code PETR4:1700000000000}
+     */
+    public static String chaveIdempotencia(String symbol, Instant regularMarketTime) {
+        return symbol.toUpperCase() + ":" + regularMarketTime.toEpochMilli();
+    }
 }
@@ -0,0 +1,24 @@
+package org.furb.bolsavalores.model;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Evento local disparado em cada nó quando uma nova cotação foi persistida
+ * no cluster (por este ou por outro nó).
+ *
+ * <p>Os componentes de análise (estatísticas móveis, rankings, caches) escutam
+ * este evento em vez de consultar o MongoDB, mantendo seus dados atualizados
+ * de forma incremental.</p>
+ */
+@Getter
+public class AcaoPersistidaEvent extends ApplicationEvent {
+
+    /** Cotação que acabou de ser salva. */
+    private final Acao acao;
+
+    public AcaoPersistidaEvent(Object source, Acao acao) {
+        super(source);
+        this.acao = acao;
+    }
+}
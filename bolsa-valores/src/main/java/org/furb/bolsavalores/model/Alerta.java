@@ -0,0 +1,26 @@
+package org.furb.bolsavalores.model;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * Alerta disparado por uma {@link RegraAlerta}, publicado em
+ * {@code bolsa.alertas.exchange}.
+ */
+@Data
+public class Alerta {
+    private String regraId;
+    private String symbol;
+    private RegraAlerta.Tipo tipo;
+    private double limite;
+
+    /** Preço da cotação que disparou o alerta. */
+    private double preco;
+
+    /** Preço anterior ou, em {@code VARIACAO_DIARIA}, preço da primeira cotação do dia. */
+    private double precoReferencia;
+
+    private Instant regularMarketTime;
+    private Instant disparadoEm;
+}
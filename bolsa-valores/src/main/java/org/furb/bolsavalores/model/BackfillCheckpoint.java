@@ -0,0 +1,38 @@
+package org.furb.bolsavalores.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Progresso de um backfill histórico, salvo a cada página gravada.
+ *
+ * <p>Permite que uma execução interrompida continue a partir da última
+ * cotação confirmada, em vez de recomeçar a série inteira.</p>
+ */
+@Data
+@Document(collection = "backfill_checkpoints")
+public class BackfillCheckpoint {
+    /** Identificador no formato {@code SYMBOL:range:interval}. */
+    @Id
+    private String id;
+
+    private String symbol;
+    private String range;
+    private String interval;
+
+    /** Horário da última cotação gravada; o backfill retoma após ele. */
+    private Instant ultimoHorario;
+
+    /** Cotações efetivamente inseridas (duplicadas não contam). */
+    private long inseridas;
+
+    /** Cotações descartadas por já existirem no banco. */
+    private long duplicadas;
+
+    private boolean concluido;
+    private String erro;
+    private Instant atualizadoEm;
+}
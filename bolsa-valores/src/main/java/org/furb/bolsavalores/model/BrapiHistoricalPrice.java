@@ -0,0 +1,19 @@
+package org.furb.bolsavalores.model;
+
+import lombok.Data;
+
+/**
+ * Ponto da série histórica retornada pela BRAPI em
+ * {@code /quote/{ticker}?range=&interval=} (campo {@code historicalDataPrice}).
+ */
+@Data
+public class BrapiHistoricalPrice {
+    /** Horário do candle em segundos desde a época UNIX. */
+    private long date;
+    private double open;
+    private double high;
+    private double low;
+    private double close;
+    private long volume;
+    private double adjustedClose;
+}
@@ -4,6 +4,8 @@ import lombok.Data;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.util.List;
+
 @Data
 @Getter
 @Setter
@@ -13,4 +15,5 @@ public class BrapiResponse {
     private String longName;
     private double regularMarketPrice;
     private String regularMarketTime;
+    private List<BrapiHistoricalPrice> historicalDataPrice;
 }
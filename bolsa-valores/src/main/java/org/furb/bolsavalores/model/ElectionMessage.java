@@ -14,7 +14,7 @@ import java.io.Serializable;
  * <p>A mensagem transporta informações essenciais como:
  * <ul>
  *   <li>ID único da eleição</li>
- *   <li>Tipo da mensagem (ELECTION, OK, COORDINATOR)</li>
+ *   <li>Tipo da mensagem (ELECTION, OK, COORDINATOR, RESIGN)</li>
  *   <li>Identificação da porta do remetente</li>
  *   <li>Timestamp de início do processo remetente</li>
  *   <li>Payload opcional</li>
@@ -38,9 +38,11 @@ public class ElectionMessage implements Serializable {
      *       informar que participará da eleição.</li>
      *   <li><b>COORDINATOR</b>: broadcast enviado pelo processo vencedor, informando
      *       que ele se tornou o líder atual.</li>
+     *   <li><b>RESIGN</b>: broadcast enviado por um processo que está sendo encerrado,
+     *       depois de liberar seus shards. Se ele era o líder, indica o sucessor.</li>
      * </ul>
      */
-    public enum Type { ELECTION, OK, COORDINATOR }
+    public enum Type { ELECTION, OK, COORDINATOR, RESIGN }
 
     /**
      * Identificador único da eleição.
@@ -51,7 +53,7 @@ public class ElectionMessage implements Serializable {
     private String electionId;
 
     /**
-     * Tipo da mensagem enviada (ELECTION, OK ou COORDINATOR).
+     * Tipo da mensagem enviada (ELECTION, OK, COORDINATOR ou RESIGN).
      *
      * <p>Define o comportamento que o receptor deve executar ao processar
      * esta mensagem.</p>
@@ -77,6 +79,21 @@ public class ElectionMessage implements Serializable {
      */
     private long senderStartTime;
 
+    /**
+     * Porta do sucessor indicado em uma mensagem RESIGN do líder.
+     *
+     * <p>Nulo quando o remetente não era o líder ou não encontrou nenhum
+     * outro nó vivo; nesse caso os demais iniciam uma eleição.</p>
+     */
+    private String successorPort;
+
+    /**
+     * Instante (epoch ms) em que o remetente de um RESIGN parou de consumir
+     * seus shards. Referência para medir o tempo sem gravação até os outros
+     * nós assumirem esses shards.
+     */
+    private long releasedAt;
+
     /**
      * Campo opcional para transportar dados adicionais.
      *
@@ -0,0 +1,44 @@
+package org.furb.bolsavalores.model;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * Estatísticas móveis de um símbolo em uma janela deslizante de tempo.
+ *
+ * <p>Retornadas pelo endpoint {@code GET /acoes/{symbol}/stats?window=}.
+ * A janela é ancorada na cotação mais recente recebida para o símbolo.</p>
+ */
+@Data
+public class EstatisticasAcao {
+    /** Código da ação (ex: PETR4). */
+    private String symbol;
+
+    /** Janela considerada (ex: PT1H, P1D). */
+    private String janela;
+
+    /** Quantidade de cotações dentro da janela. */
+    private int amostras;
+
+    /** Média móvel simples do preço na janela. */
+    private double media;
+
+    /** Menor preço da janela. */
+    private double minimo;
+
+    /** Maior preço da janela. */
+    private double maximo;
+
+    /** Desvio padrão populacional do preço na janela. */
+    private double desvioPadrao;
+
+    /** Variação percentual entre a primeira e a última cotação da janela. */
+    private double variacaoPercentual;
+
+    /** Horário da cotação mais antiga ainda dentro da janela. */
+    private Instant inicio;
+
+    /** Horário da cotação mais recente. */
+    private Instant fim;
+}
@@ -0,0 +1,16 @@
+package org.furb.bolsavalores.model;
+
+/**
+ * Classe de tráfego de uma cotação, que define a fila por onde ela passa.
+ *
+ * <ul>
+ *     <li>{@link #VIVO} — cotações do acompanhamento ao vivo (scheduler e
+ *         refresh sob demanda), que devem ser gravadas o quanto antes;</li>
+ *     <li>{@link #LOTE} — cargas em massa (ingestão do mercado inteiro,
+ *         reprocessamento do parking-lot), que podem esperar.</li>
+ * </ul>
+ */
+public enum FaixaCotacao {
+    VIVO,
+    LOTE
+}
@@ -0,0 +1,42 @@
+package org.furb.bolsavalores.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Progresso da migração {@code acoes -> acoes_ts}, salvo a cada lote gravado.
+ *
+ * <p>O documento também é a trava da migração: só o nó em {@link #dono}
+ * copia, enquanto a reserva ({@link #reservadoAte}) não expira.</p>
+ */
+@Data
+@Document(collection = "migracao_checkpoints")
+public class MigracaoCheckpoint {
+    /** Identificador no formato {@code origem->destino}. */
+    @Id
+    private String id;
+
+    /** Horário da última cotação copiada; a migração retoma a partir dele. */
+    private Instant ultimoHorario;
+
+    /** Símbolos já copiados no {@link #ultimoHorario} (descartados ao retomar). */
+    private Set<String> copiadosNoHorario = new HashSet<>();
+
+    /** Cotações copiadas até agora. */
+    private long copiadas;
+
+    private boolean concluida;
+
+    /** Nó que está migrando. */
+    private String dono;
+
+    /** Fim da reserva do {@link #dono}, renovada a cada lote. */
+    private Instant reservadoAte;
+
+    private Instant atualizadoEm;
+}
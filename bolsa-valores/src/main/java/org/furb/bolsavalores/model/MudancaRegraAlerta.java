@@ -0,0 +1,20 @@
+package org.furb.bolsavalores.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Mensagem de broadcast ({@code bolsa.alertas.regras.exchange}) que avisa
+ * todos os nós de que uma regra foi adicionada ou removida, para que seus
+ * índices em memória continuem iguais ao MongoDB.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MudancaRegraAlerta {
+    public enum Tipo { ADICIONADA, REMOVIDA }
+
+    private Tipo tipo;
+    private RegraAlerta regra;
+}
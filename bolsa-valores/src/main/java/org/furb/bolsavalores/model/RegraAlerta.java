@@ -0,0 +1,39 @@
+package org.furb.bolsavalores.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Regra de alerta de preço cadastrada por um usuário.
+ *
+ * <p>Exemplos: "PETR4 cruza acima de 40" ({@code CRUZA_ACIMA}, limite 40) ou
+ * "VALE3 varia mais de 3% no dia" ({@code VARIACAO_DIARIA}, limite 3).</p>
+ */
+@Data
+@Document(collection = "regras_alerta")
+public class RegraAlerta {
+    @Id
+    private String id;
+
+    /** Código da ação monitorada. */
+    private String symbol;
+
+    private Tipo tipo;
+
+    /** Preço de referência ou, em {@code VARIACAO_DIARIA}, variação em % (absoluta). */
+    private double limite;
+
+    private Instant criadaEm;
+
+    public enum Tipo {
+        /** Dispara quando o preço passa de abaixo do limite para igual ou acima dele. */
+        CRUZA_ACIMA,
+        /** Dispara quando o preço passa de acima do limite para igual ou abaixo dele. */
+        CRUZA_ABAIXO,
+        /** Dispara uma vez por dia, quando a variação sobre a primeira cotação do dia supera o limite. */
+        VARIACAO_DIARIA
+    }
+}
@@ -0,0 +1,29 @@
+package org.furb.bolsavalores.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Metadados de um símbolo, gravados uma vez na coleção {@code symbols} em vez
+ * de repetidos em cada cotação.
+ *
+ * <p>Os nomes quase nunca mudam; as cotações e as mensagens levam só símbolo,
+ * preço e horário, e a API REST completa os nomes a partir do cache do
+ * {@link org.furb.bolsavalores.service.MetadadosService}.</p>
+ */
+@Data
+@Document(collection = "symbols")
+public class Simbolo {
+    /** Código da ação (ex: PETR4), em maiúsculas. */
+    @Id
+    private String symbol;
+
+    private String shortName;
+    private String longName;
+
+    /** Última vez em que os nomes mudaram. */
+    private Instant atualizadoEm;
+}
@@ -0,0 +1,23 @@
+package org.furb.bolsavalores.model;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Evento local disparado em cada nó quando os nomes de um símbolo mudaram
+ * (registrados por este ou por outro nó).
+ *
+ * <p>Quem guarda respostas com os nomes (ex: o cache de respostas) escuta
+ * este evento para não servir o nome antigo.</p>
+ */
+@Getter
+public class SimboloAtualizadoEvent extends ApplicationEvent {
+
+    /** Metadados novos do símbolo. */
+    private final Simbolo simbolo;
+
+    public SimboloAtualizadoEvent(Object source, Simbolo simbolo) {
+        super(source);
+        this.simbolo = simbolo;
+    }
+}
@@ -0,0 +1,27 @@
+package org.furb.bolsavalores.model;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Maiores altas e baixas entre os símbolos acompanhados, em uma janela.
+ *
+ * <p>Retornadas pelo endpoint {@code GET /acoes/top-movers?window=&n=}. Como
+ * nas estatísticas, a janela de cada símbolo é ancorada na sua cotação mais
+ * recente.</p>
+ */
+@Data
+public class TopMovers {
+    /** Janela considerada (ex: PT1H, P1D). */
+    private String janela;
+
+    /** Quantidade de símbolos no ranking. */
+    private int simbolos;
+
+    /** Maiores variações positivas, da maior para a menor. */
+    private List<VariacaoSimbolo> altas;
+
+    /** Maiores variações negativas, da maior queda para a menor. */
+    private List<VariacaoSimbolo> baixas;
+}
@@ -0,0 +1,35 @@
+package org.furb.bolsavalores.model;
+
+import lombok.Data;
+import org.furb.bolsavalores.tracing.Span;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trace de uma cotação, do provedor até o MongoDB, com a latência de cada etapa.
+ *
+ * <p>Retornado pelo endpoint {@code GET /acoes/{symbol}/trace?time=}. Uma
+ * mesma cotação pode ter mais de um trace (ex: scheduler e refresh sob
+ * demanda buscando o mesmo instante).</p>
+ */
+@Data
+public class TraceCotacao {
+    private String traceId;
+
+    /**
+     * Latência por etapa, em microssegundos: {@code provedor}, {@code publicacao},
+     * {@code broker} (da publicação até a entrega na pista), {@code pista}
+     * (espera na fila do símbolo), {@code mongo}, {@code consumo} e {@code total}.
+     * Etapas que não ocorreram no trace ficam de fora.
+     */
+    private Map<String, Long> latenciasMicros = new LinkedHashMap<>();
+
+    /** Quantidade de vezes que a cotação foi consumida (1 + retentativas). */
+    private int entregas;
+
+    /** Trechos do trace, em ordem de início. */
+    private List<Span> spans = new ArrayList<>();
+}
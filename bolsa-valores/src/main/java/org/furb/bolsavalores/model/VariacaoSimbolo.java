@@ -0,0 +1,30 @@
+package org.furb.bolsavalores.model;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * Variação de um símbolo em uma janela, como aparece no ranking de
+ * {@code GET /acoes/top-movers}.
+ */
+@Data
+public class VariacaoSimbolo {
+    /** Código da ação (ex: PETR4). */
+    private String symbol;
+
+    /** Variação percentual entre a cotação de referência e a mais recente. */
+    private double variacaoPercentual;
+
+    /** Preço da cotação mais antiga ainda dentro da janela. */
+    private double precoReferencia;
+
+    /** Preço da cotação mais recente. */
+    private double preco;
+
+    /** Horário da cotação de referência. */
+    private Instant inicio;
+
+    /** Horário da cotação mais recente. */
+    private Instant fim;
+}
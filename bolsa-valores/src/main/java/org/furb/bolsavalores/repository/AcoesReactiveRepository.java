@@ -0,0 +1,24 @@
+package org.furb.bolsavalores.repository;
+
+import org.furb.bolsavalores.model.Acao;
+import org.springframework.data.domain.Range;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+
+/**
+ * Versão reativa do {@link AcoesRepository}, usada pelas leituras REST.
+ *
+ * <p>As consultas devolvem um {@link Flux} ligado ao cursor do MongoDB pelo
+ * driver reactive streams: os documentos são pedidos ao servidor conforme a
+ * demanda do assinante (backpressure) e nenhuma thread fica bloqueada
+ * esperando o banco. As gravações continuam no repositório bloqueante,
+ * nas pistas do {@code ProcessadorAcoes}.</p>
+ */
+@Repository
+public interface AcoesReactiveRepository extends ReactiveMongoRepository<Acao, String> {
+    Flux<Acao> findBySymbolOrderByRegularMarketTimeAsc(String symbol);
+    Flux<Acao> findBySymbolAndRegularMarketTimeBetweenOrderByRegularMarketTimeAsc(String symbol, Range<Instant> range);
+}
@@ -1,6 +1,7 @@
 package org.furb.bolsavalores.repository;
 
 import org.furb.bolsavalores.model.Acao;
+import org.springframework.data.domain.Range;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
@@ -8,8 +9,20 @@ import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
+/**
+ * Repositório das cotações.
+ *
+ * <p>Todas as consultas filtram por {@code symbol} (metaField) e, quando possível,
+ * por intervalo de {@code regularMarketTime} (timeField). Esse formato usa o índice
+ * {@code (symbol, regularMarketTime)} na coleção comum e, na coleção time-series,
+ * permite ao MongoDB descartar buckets inteiros pelo mínimo/máximo de tempo
+ * de cada bucket sem descomprimi-los.</p>
+ */
 @Repository
 public interface AcoesRepository extends MongoRepository<Acao, String> {
-    List<Acao> findBySymbol(String symbol);
-    Optional<Acao> findBySymbolAndRegularMarketTime(String symbol, Instant regularMarketTime);
+    Optional<Acao> findFirstBySymbolOrderByRegularMarketTimeDesc(String symbol);
+    Optional<Acao> findFirstBySymbolAndRegularMarketTimeLessThanOrderByRegularMarketTimeDesc(String symbol, Instant regularMarketTime);
+    Optional<Acao> findFirstBySymbolAndRegularMarketTimeGreaterThanEqualOrderByRegularMarketTimeAsc(String symbol, Instant regularMarketTime);
+    List<Acao> findBySymbolAndRegularMarketTimeBetweenOrderByRegularMarketTimeAsc(String symbol, Range<Instant> range);
+    boolean existsBySymbolAndRegularMarketTime(String symbol, Instant regularMarketTime);
 }
@@ -0,0 +1,12 @@
+package org.furb.bolsavalores.repository;
+
+import org.furb.bolsavalores.model.BackfillCheckpoint;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface BackfillCheckpointRepository extends MongoRepository<BackfillCheckpoint, String> {
+    List<BackfillCheckpoint> findBySymbol(String symbol);
+}
@@ -0,0 +1,12 @@
+package org.furb.bolsavalores.repository;
+
+import org.furb.bolsavalores.model.RegraAlerta;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface RegraAlertaRepository extends MongoRepository<RegraAlerta, String> {
+    List<RegraAlerta> findBySymbol(String symbol);
+}
@@ -0,0 +1,9 @@
+package org.furb.bolsavalores.repository;
+
+import org.furb.bolsavalores.model.Simbolo;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SimbolosRepository extends MongoRepository<Simbolo, String> {
+}
@@ -1,16 +1,13 @@
 package org.furb.bolsavalores.scheduler;
 
 import org.furb.bolsavalores.config.AppConfig;
-import org.furb.bolsavalores.config.RabbitMQConfig;
 import org.furb.bolsavalores.model.Acao;
-import org.furb.bolsavalores.service.ConsultaBolsaService;
+import org.furb.bolsavalores.service.AtualizacaoCotacaoService;
 import org.furb.bolsavalores.service.ElectionService;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.furb.bolsavalores.tracing.Tracer;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
-import java.time.Instant;
-
 /**
  * Scheduler responsável por buscar periodicamente a cotação de ações
  * e publicar atualizações no RabbitMQ. A execução automática acontece
@@ -20,28 +17,31 @@ import java.time.Instant;
  * Este componente:
  *   • Consulta o serviço externo de bolsa (Yahoo/Brapi API)
  *   • Converte a resposta para o modelo interno {@link Acao}
- *   • Publica os dados no Exchange de ações via RabbitMQ
+ *   • Publica os dados no shard do Exchange de ações
+ *   • Compartilha a busca com o refresh sob demanda ({@link AtualizacaoCotacaoService}),
+ *     evitando chamadas repetidas ao provedor
  *   • Envia ping periódico ao líder para verificar sua presença
  */
 @Component
 public class BolsaScheduler {
-    private final ConsultaBolsaService consultaBolsaService;
-    private final RabbitTemplate rabbitTemplate;
+    private final AtualizacaoCotacaoService atualizacaoCotacaoService;
     private final ElectionService electionService;
     private final AppConfig appConfig;
+    private final Tracer tracer;
 
     /**
      * Construtor com injeção de dependências.
      *
-     * @param consultaBolsaService Serviço que consulta o preço da ação.
-     * @param rabbitTemplate       Template para publicar mensagens no RabbitMQ.
-     * @param electionService      Serviço responsável pela lógica de liderança.
+     * @param atualizacaoCotacaoService Serviço que consulta e publica a cotação da ação.
+     * @param electionService           Serviço responsável pela lógica de liderança.
+     * @param tracer                    Tracing; cada execução é a raiz do trace da cotação.
      */
-    public BolsaScheduler(ConsultaBolsaService consultaBolsaService, RabbitTemplate rabbitTemplate, ElectionService electionService, AppConfig appConfig) {
-        this.consultaBolsaService = consultaBolsaService;
-        this.rabbitTemplate = rabbitTemplate;
+    public BolsaScheduler(AtualizacaoCotacaoService atualizacaoCotacaoService, ElectionService electionService,
+                          AppConfig appConfig, Tracer tracer) {
+        this.atualizacaoCotacaoService = atualizacaoCotacaoService;
         this.electionService = electionService;
         this.appConfig = appConfig;
+        this.tracer = tracer;
     }
 
     /**
@@ -49,25 +49,20 @@ public class BolsaScheduler {
      *
      * Agora:
      *   • Usa API e ticker definidos em AppConfig
-     *   • Usa método síncrono consulta() do serviço
-     *   • Publica a ação no Exchange usando routing key dinâmica
+     *   • Usa o serviço de atualização (com TTL e single-flight)
+     *   • Publica a ação no Exchange usando routing key do shard do símbolo
      */
     @Scheduled(fixedRate = 60 * 60 * 1000, initialDelay = 10 * 1000)
     public void atualizarCotacaoAutomatica() {
-        // Followers atualizam preços; o líder apenas coordena o cluster.
-        if (electionService.isLeader()) return;
+        // Followers atualizam preços; o líder apenas coordena o cluster (exceto quando está sozinho, sem broker).
+        if (!electionService.deveBuscarCotacoes()) return;
 
         String ticker = appConfig.getTicker();
 
-        try {
-            // consulta de acordo com API escolhida (AppConfig.API)
-            Acao acao = consultaBolsaService.consultar();
-
-            // routing key dinâmica
-            String routingKey = "bolsa.acoes." + ticker.toLowerCase();
-
-            // publica no RabbitMQ
-            rabbitTemplate.convertAndSend(RabbitMQConfig.EXCHANGE_ACOES, routingKey, acao);
+        try (Tracer.Escopo escopo = tracer.iniciar("scheduler.atualizar")) {
+            escopo.atributo("symbol", ticker);
+            // consulta de acordo com API escolhida (AppConfig.API) e publica no transporte configurado
+            atualizacaoCotacaoService.atualizar(ticker);
 
             System.out.println("[Scheduler] Atualização enviada: " + ticker
                     + " via API=" + appConfig.getApi());
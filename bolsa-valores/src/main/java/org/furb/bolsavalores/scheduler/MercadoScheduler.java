@@ -0,0 +1,41 @@
+package org.furb.bolsavalores.scheduler;
+
+import org.furb.bolsavalores.service.ElectionService;
+import org.furb.bolsavalores.service.IngestaoMercadoService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scheduler da ingestão do mercado inteiro, ligado por
+ * {@code app.mercado.habilitado=true}.
+ *
+ * Ao contrário do {@link BolsaScheduler}, a ingestão roda só no líder (o nó
+ * sozinho, sem broker, é o líder): a lista tem milhares de símbolos e
+ * buscá-la em cada follower multiplicaria as chamadas à BRAPI e as gravações.
+ * Numa troca de líder, dois nós podem executar no mesmo intervalo; como as
+ * cotações recebem o início do intervalo como horário, a segunda execução
+ * gera as mesmas chaves de idempotência e é descartada na gravação.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.mercado", name = "habilitado", havingValue = "true")
+public class MercadoScheduler {
+    private final IngestaoMercadoService ingestaoMercadoService;
+    private final ElectionService electionService;
+
+    public MercadoScheduler(IngestaoMercadoService ingestaoMercadoService, ElectionService electionService) {
+        this.ingestaoMercadoService = ingestaoMercadoService;
+        this.electionService = electionService;
+    }
+
+    @Scheduled(fixedDelayString = "${app.mercado.intervalo-ms:900000}", initialDelay = 30 * 1000)
+    public void ingerirMercado() {
+        if (!electionService.isLeader()) return;
+
+        try {
+            ingestaoMercadoService.ingerir();
+        } catch (Exception ex) {
+            System.err.println("[Scheduler] ERRO na ingestão do mercado: " + ex.getMessage());
+        }
+    }
+}
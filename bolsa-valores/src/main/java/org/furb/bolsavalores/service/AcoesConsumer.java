@@ -1,107 +1,257 @@
 package org.furb.bolsavalores.service;
 
-import com.rabbitmq.client.Channel;
+import org.furb.bolsavalores.config.AppConfig;
 import org.furb.bolsavalores.config.RabbitMQConfig;
+import org.furb.bolsavalores.jfr.ConsumoCotacaoEvent;
+import org.furb.bolsavalores.jfr.GravacaoMongoEvent;
 import org.furb.bolsavalores.model.Acao;
 import org.furb.bolsavalores.repository.AcoesRepository;
+import org.furb.bolsavalores.tracing.ContextoTrace;
+import org.furb.bolsavalores.tracing.Tracer;
 import org.springframework.amqp.core.Message;
-import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+
 /**
  * Consumidor responsável por receber mensagens de atualização de ações
- * enviadas para a fila {@link RabbitMQConfig#QUEUE_ACOES}.
+ * enviadas para as filas particionadas {@code acoes.queue.{shard}} (ao vivo)
+ * e {@code acoes.lote.queue.{shard}} (cargas em massa). A prioridade da faixa
+ * ao vivo é decidida antes, no agendamento das pistas do {@link ProcessadorAcoes}.
+ *
+ * Os containers de consumo são criados dinamicamente pelo {@link ShardService}
+ * apenas para os shards que pertencem a esta instância, de modo que todos os
+ * nós vivos persistem em paralelo — cada um a sua fatia de símbolos. Dentro do
+ * nó, o {@link ProcessadorAcoes} chama este consumidor a partir das pistas por
+ * símbolo, com vários símbolos sendo gravados ao mesmo tempo.
  *
- * Este consumidor utiliza **ACK manual**, garantindo que somente o líder
- * processe e salve as ações. A responsabilidade é:
+ * Este consumidor utiliza **ACK manual**: o ACK só é enviado depois que a ação
+ * foi validada e salva no banco. O uso de ACK manual evita perda de mensagens
+ * em caso de falha, e como cada símbolo pertence a um único shard (com
+ * consumidor ativo único) e a uma única pista serial, a ordem por símbolo é mantida
+ * — exceto para as cotações que falharam: elas voltam das filas de retentativa
+ * depois das mais novas do símbolo (ver {@link RetentativasService}).
  *
- *   • Followers: rejeitam a mensagem com requeue (basicNack)
- *   • Leader: valida duplicação, salva no banco e envia ACK
+ * A gravação é sempre um insert: a coleção time-series ({@code acoes_ts})
+ * não aceita substituição por {@code _id} e não garante {@code _id} único.
+ * Lá, quem descarta as duplicadas é a verificação por symbol + horário feita
+ * antes do insert, que não corre com outra gravação do mesmo símbolo porque
+ * roda dentro da pista serial do símbolo. Na coleção comum o {@code _id} é a
+ * chave de idempotência e uma corrida (ex: com o backfill) termina em
+ * {@link DuplicateKeyException}, tratada como duplicada.
  *
- * O uso de ACK manual evita perda de mensagens em caso de falha e garante
- * consistência no cluster, já que apenas o líder faz persistência.
+ * No modo sem broker ({@code app.transporte.tipo=memoria}) as cotações chegam
+ * pelo {@link TransporteMemoria} em {@link #receberLocal}: a verificação de
+ * duplicidade e a gravação são as mesmas, o ACK não existe e o aviso de
+ * persistência é um evento local.
  */
 @Service
 public class AcoesConsumer {
+    /** Resultado do processamento de uma cotação sem symbol ou horário. */
+    static final String INVALIDA = "INVALIDA";
+
     private final AcoesRepository acoesRepository;
-    private final ElectionService electionService;
+    private final AcoesPersistidasPublisher persistidasPublisher;
+    private final ObjectProvider<RetentativasService> retentativasService;
+    private final AlertasService alertasService;
+    private final Tracer tracer;
+    private final boolean local;
 
     /**
-     * @param acoesRepository Repositório MongoDB para persistência de ações.
-     * @param electionService Serviço que define se esta instância é o líder.
+     * @param acoesRepository      Repositório MongoDB para persistência de ações.
+     * @param persistidasPublisher Aviso das ações persistidas ao cluster.
+     * @param retentativasService  Serviço de retentativas com backoff e parking-lot (ausente sem broker).
+     * @param alertasService       Motor de regras de alerta, avaliado após a gravação.
+     * @param tracer               Tracing; continua o trace recebido no header {@code traceparent}.
+     * @param appConfig            Configuração com o tipo de transporte.
      */
-    public AcoesConsumer(AcoesRepository acoesRepository, ElectionService electionService) {
+    public AcoesConsumer(AcoesRepository acoesRepository, AcoesPersistidasPublisher persistidasPublisher,
+                         ObjectProvider<RetentativasService> retentativasService, AlertasService alertasService,
+                         Tracer tracer, AppConfig appConfig) {
         this.acoesRepository = acoesRepository;
-        this.electionService = electionService;
+        this.persistidasPublisher = persistidasPublisher;
+        this.retentativasService = retentativasService;
+        this.alertasService = alertasService;
+        this.tracer = tracer;
+        this.local = "memoria".equals(appConfig.getTransporte().getTipo());
     }
 
     /**
-     * Método que consome mensagens da fila de ações.
+     * Método que consome mensagens de um shard da fila de ações.
      *
      * Configurações:
-     *   • Fila: QUEUE_ACOES
-     *   • ACK manual (via manualAckContainerFactory)
+     *   • Fila: acoes.queue.{shard} ou acoes.lote.queue.{shard} (atribuídas pelo ShardService)
+     *   • ACK manual (via manualAckContainerFactory), enviado pelo {@link ConfirmacoesCanal} do canal
      *
      * Fluxo de processamento:
      *
-     *   1) Se NÃO for líder → envia basicNack(requeue = true) e devolve a mensagem.
+     *   0) Valida a mensagem: sem symbol ou sem regularMarketTime ela nunca
+     *      poderá ser gravada → vai direto para o parking-lot.
      *
-     *   2) Verifica se o registro já existe (idempotência):
+     *   1) Verifica se o registro já existe (idempotência):
+     *        - Define o _id pela chave symbol + regularMarketTime, a mesma
+     *          usada pelo backfill.
      *        - Busca por symbol + regularMarketTime.
      *        - Se existir → ACK e ignora.
      *
-     *   3) Salva no banco e envia basicAck() manualmente.
+     *   2) Insere no banco e envia basicAck() manualmente (chave duplicada
+     *      no insert → ACK e ignora, como no passo 1).
+     *      Em seguida avisa todos os nós pelo fanout de ações persistidas
+     *      e avalia as regras de alerta do símbolo.
      *
-     *   4) Em caso de erro → NACK com requeue (para retry futuro).
+     *   3) Em caso de erro → nova tentativa com backoff exponencial
+     *      (ou parking-lot, se as tentativas se esgotaram). Ver {@link RetentativasService}.
      *
-     * @param acao    Conteúdo da mensagem convertido automaticamente pelo Jackson.
-     * @param message Metadados da mensagem AMQP.
-     * @param channel Canal RabbitMQ usado para enviar ACK/NACK.
+     * @param acao         Conteúdo da mensagem convertido pelo Jackson.
+     * @param message      Metadados da mensagem AMQP.
+     * @param confirmacoes ACKs do canal em que a mensagem foi recebida.
      */
-    @RabbitListener(queues = RabbitMQConfig.QUEUE_ACOES, containerFactory = "manualAckContainerFactory")
-    public void receive(Acao acao, Message message, Channel channel) {
-        long deliveryTag = message.getMessageProperties().getDeliveryTag();
+    public void receive(Acao acao, Message message, ConfirmacoesCanal confirmacoes) {
+        MessageProperties props = message.getMessageProperties();
+        int tentativas = props.getHeader(RabbitMQConfig.HEADER_TENTATIVAS) instanceof Number n ? n.intValue() : 0;
         try {
-            // ============================
-            // 1 — Somente o líder processa
-            // ============================
-            if (!electionService.isLeader() || electionService.currentLeaderPort.trim().isEmpty()) {
-                // Rejeita a mensagem e devolve para outro nó
-                channel.basicNack(deliveryTag, false, true);
-                return;
+            String resultado = processar(acao, "amqp",
+                    ContextoTrace.deTraceparent(props.getHeader(ContextoTrace.HEADER)),
+                    ProcessadorAcoes.esperaNaPistaMicros(message), tentativas,
+                    () -> confirmacoes.confirmar(props.getDeliveryTag()));
+            if (INVALIDA.equals(resultado)) {
+                retentativasService.getObject().estacionar(message, confirmacoes, validar(acao));
+            }
+        } catch (Exception e) {
+            // ==========================================
+            // 3 — Falha → retentativa com backoff
+            // ==========================================
+            System.err.println("Erro ao processar ação: " + e.getMessage());
+            try {
+                retentativasService.getObject().reagendar(message, confirmacoes, e);
+            } catch (Exception ex) {
+                System.err.println("Falha ao reagendar a ação: " + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Consome uma cotação entregue pelo anel em memória. Mesmo fluxo de
+     * {@link #receive}, sem ACK; as retentativas ficam com o {@link TransporteMemoria}.
+     *
+     * @param acao       cotação publicada
+     * @param pai        contexto do trecho de publicação
+     * @param esperaAnel tempo (µs) da publicação até o início do consumo
+     * @param tentativas tentativas anteriores que falharam
+     * @return {@code GRAVADA}, {@code DUPLICADA} ou {@value #INVALIDA}
+     * @throws Exception se a gravação falhar
+     */
+    public String receberLocal(Acao acao, ContextoTrace pai, long esperaAnel, int tentativas) throws Exception {
+        return processar(acao, "memoria", pai, esperaAnel, tentativas, () -> { });
+    }
+
+    /**
+     * Valida, verifica duplicidade e grava a cotação, chamando {@code confirmar}
+     * logo depois da gravação (ou da detecção de duplicidade).
+     *
+     * @return resultado do processamento; cotações inválidas não são confirmadas
+     */
+    private String processar(Acao acao, String transporte, ContextoTrace pai, Long espera, int tentativas,
+                             Confirmacao confirmar) throws Exception {
+        ConsumoCotacaoEvent evento = new ConsumoCotacaoEvent();
+        evento.begin();
+        evento.symbol = acao == null ? null : acao.getSymbol();
+        evento.tentativas = tentativas;
+        Tracer.Escopo escopo = tracer.iniciar(transporte + ".consumir", pai);
+        escopo.atributo("symbol", evento.symbol)
+                .atributo("tentativas", evento.tentativas)
+                .atributo("pista.espera.us", espera);
+        try {
+            // ======================
+            // 0 — Validação
+            // ======================
+            if (validar(acao) != null) {
+                evento.resultado = INVALIDA;
+                return evento.resultado;
             }
 
             // ============================================================
-            // 2 — Verifica duplicação usando symbol + regularMarketTime
+            // 1 — Verifica duplicação usando symbol + regularMarketTime
             // ============================================================
-            boolean existe = acoesRepository
-                             .findBySymbolAndRegularMarketTime(
+            acao.setId(Acao.chaveIdempotencia(acao.getSymbol(), acao.getRegularMarketTime()));
+            escopo.atributo("cotacao", acao.getId());
+            GravacaoMongoEvent consulta = iniciarGravacao(acao, "exists");
+            boolean existe;
+            try (Tracer.Escopo mongo = tracer.iniciar("mongo.exists")) {
+                mongo.atributo("cotacao", acao.getId());
+                existe = acoesRepository.existsBySymbolAndRegularMarketTime(
                                 acao.getSymbol(),
-                                acao.getRegularMarketTime())
-                             .isPresent();
+                                acao.getRegularMarketTime());
+            }
+            consulta.commit();
             if (existe) {
                 System.out.println("Ação já existe");
-                channel.basicAck(deliveryTag, false);
-                return;
+                evento.resultado = "DUPLICADA";
+                confirmar.confirmar();
+                return evento.resultado;
             }
 
             // ======================
-            // 3 — Salva e confirma
+            // 2 — Salva e confirma
             // ======================
-            acoesRepository.save(acao);
-            channel.basicAck(deliveryTag, false);
-            System.out.println("Ação salva e ACK enviado pelo líder: " + acao.getSymbol());
+            GravacaoMongoEvent gravacao = iniciarGravacao(acao, "insert");
+            try (Tracer.Escopo mongo = tracer.iniciar("mongo.insert")) {
+                mongo.atributo("cotacao", acao.getId());
+                acoesRepository.insert(acao);
+            } catch (DuplicateKeyException e) {
+                // gravada por outra origem entre a verificação e o insert
+                gravacao.commit();
+                evento.resultado = "DUPLICADA";
+                confirmar.confirmar();
+                return evento.resultado;
+            }
+            gravacao.commit();
+            confirmar.confirmar();
+            evento.resultado = "GRAVADA";
+            System.out.println("Ação salva" + (local ? ": " : " e ACK enviado: ") + acao.getSymbol());
+
+            persistidasPublisher.publicar(acao);
+            alertasService.avaliar(acao);
+            return evento.resultado;
 
         } catch (Exception e) {
-            // =============================
-            // 4 — Falha → NACK com requeue
-            // =============================
-            System.err.println("Erro ao processar ação: " + e.getMessage());
-            try {
-                channel.basicNack(deliveryTag, false, true);
-            } catch (Exception ex) {
-                System.err.println("Falha ao enviar NACK: " + ex.getMessage());
-            }
+            evento.resultado = "FALHA";
+            escopo.erro(e);
+            throw e;
+        } finally {
+            escopo.atributo("resultado", evento.resultado);
+            escopo.close();
+            evento.commit();
         }
     }
+
+    private GravacaoMongoEvent iniciarGravacao(Acao acao, String operacao) {
+        GravacaoMongoEvent evento = new GravacaoMongoEvent();
+        evento.begin();
+        evento.symbol = acao.getSymbol();
+        evento.operacao = operacao;
+        return evento;
+    }
+
+    /**
+     * Verifica os campos sem os quais a cotação não pode ser gravada.
+     *
+     * @param acao cotação recebida
+     * @return motivo da invalidez, ou null se a cotação for válida
+     */
+    String validar(Acao acao) {
+        if (acao == null) return "Mensagem vazia";
+        if (acao.getSymbol() == null || acao.getSymbol().isBlank()) return "Cotação sem symbol";
+        if (acao.getRegularMarketTime() == null) return "Cotação de " + acao.getSymbol() + " sem regularMarketTime";
+        return null;
+    }
+
+    /** ACK da cotação; no-op no transporte em memória. */
+    @FunctionalInterface
+    private interface Confirmacao {
+        void confirmar() throws IOException;
+    }
 }
@@ -0,0 +1,41 @@
+package org.furb.bolsavalores.service;
+
+import org.furb.bolsavalores.model.Acao;
+import org.furb.bolsavalores.model.AcaoPersistidaEvent;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+/**
+ * Consumer que recebe, em todas as instâncias, as cotações persistidas
+ * pelo dono de cada shard (via {@code bolsa.acoes.persistidas.exchange}).
+ *
+ * <p>Cada mensagem é republicada localmente como {@link AcaoPersistidaEvent},
+ * para que os componentes de análise se atualizem sem acessar o MongoDB.</p>
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.transporte", name = "tipo", havingValue = "rabbit", matchIfMissing = true)
+public class AcoesPersistidasConsumer {
+
+    /** Publicador de eventos locais do Spring. */
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * @param eventPublisher publicador de eventos da aplicação
+     */
+    public AcoesPersistidasConsumer(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Listener da fila efêmera de cotações persistidas desta instância.
+     *
+     * @param acao cotação persistida
+     */
+    @RabbitListener(queues = "#{acoesPersistidasQueue.name}")
+    public void onMessage(Acao acao) {
+        if (acao == null) return;
+        eventPublisher.publishEvent(new AcaoPersistidaEvent(this, acao));
+    }
+}
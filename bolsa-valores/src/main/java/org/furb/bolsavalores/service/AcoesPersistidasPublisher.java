@@ -0,0 +1,57 @@
+package org.furb.bolsavalores.service;
+
+import org.furb.bolsavalores.config.AppConfig;
+import org.furb.bolsavalores.config.RabbitMQConfig;
+import org.furb.bolsavalores.model.Acao;
+import org.furb.bolsavalores.model.AcaoPersistidaEvent;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+/**
+ * Avisa o cluster das cotações gravadas, pelo fanout
+ * {@code bolsa.acoes.persistidas.exchange}; cada nó (inclusive este) as
+ * recebe no {@link AcoesPersistidasConsumer} como {@link AcaoPersistidaEvent}.
+ *
+ * <p>Usado pelo {@link AcoesConsumer} (ingestão) e pelo {@link BackfillService},
+ * para que estatísticas, ranking e cache vejam as duas origens. Sem broker
+ * ({@code app.transporte.tipo=memoria}) o aviso é direto um evento local.</p>
+ */
+@Service
+public class AcoesPersistidasPublisher {
+
+    private final ObjectProvider<RabbitTemplate> rabbitTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean local;
+
+    /**
+     * @param rabbitTemplate template do fanout (ausente sem broker)
+     * @param eventPublisher publicador do evento local no modo sem broker
+     * @param appConfig      configuração com o tipo de transporte
+     */
+    public AcoesPersistidasPublisher(ObjectProvider<RabbitTemplate> rabbitTemplate,
+                                     ApplicationEventPublisher eventPublisher, AppConfig appConfig) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.eventPublisher = eventPublisher;
+        this.local = "memoria".equals(appConfig.getTransporte().getTipo());
+    }
+
+    /**
+     * Publica a cotação persistida. A falha aqui não invalida a persistência
+     * já confirmada.
+     *
+     * @param acao cotação recém-salva
+     */
+    public void publicar(Acao acao) {
+        if (local) {
+            eventPublisher.publishEvent(new AcaoPersistidaEvent(this, acao));
+            return;
+        }
+        try {
+            rabbitTemplate.getObject().convertAndSend(RabbitMQConfig.EXCHANGE_ACOES_PERSISTIDAS, "", acao);
+        } catch (Exception e) {
+            System.err.println("Falha ao avisar persistência da ação " + acao.getSymbol() + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package org.furb.bolsavalores.service;
+
+import org.furb.bolsavalores.config.AppConfig;
+import org.furb.bolsavalores.jfr.PublicacaoCotacaoEvent;
+import org.furb.bolsavalores.model.Acao;
+import org.furb.bolsavalores.model.FaixaCotacao;
+import org.furb.bolsavalores.tracing.Tracer;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Publicador das cotações de ações no {@link TransporteCotacoes} configurado
+ * (shards no RabbitMQ ou anel em memória).
+ *
+ * <p>Suprime cotações repetidas antes de chegarem ao transporte: fora do
+ * pregão os provedores continuam devolvendo o mesmo horário e preço, que o
+ * consumidor só descartaria depois de uma consulta ao MongoDB. Para isso é
+ * mantida a impressão (horário e preço) da última cotação publicada de cada
+ * símbolo; uma cotação igual só é republicada depois de
+ * {@code app.publicacao.heartbeat}, para sinalizar que o símbolo continua
+ * sendo acompanhado.</p>
+ *
+ * <p>Os nomes do símbolo são registrados no {@link MetadadosService} e a
+ * cotação segue para o transporte só com símbolo, preço e horário.</p>
+ */
+@Service
+public class AcoesPublisher {
+
+    /** Impressão da última cotação publicada de um símbolo. */
+    private record Impressao(Instant time, double price, Instant publicadaEm) {
+        boolean mesmaCotacao(Acao acao) {
+            return Objects.equals(time, acao.getRegularMarketTime())
+                    && Double.compare(price, acao.getRegularMarketPrice()) == 0;
+        }
+    }
+
+    private final TransporteCotacoes transporte;
+    private final Duration heartbeat;
+    private final Tracer tracer;
+    private final MetadadosService metadadosService;
+
+    /** Última cotação publicada por símbolo. */
+    private final Map<String, Impressao> ultimas = new ConcurrentHashMap<>();
+
+    private final LongAdder publicadas = new LongAdder();
+    private final LongAdder suprimidas = new LongAdder();
+
+    /**
+     * @param transporte       Transporte até o consumidor (RabbitMQ ou memória).
+     * @param appConfig        Configuração com o intervalo de heartbeat.
+     * @param tracer           Tracing; o contexto segue com a cotação até o consumo.
+     * @param metadadosService Registro dos nomes do símbolo, que não vão no transporte.
+     */
+    public AcoesPublisher(TransporteCotacoes transporte, AppConfig appConfig, Tracer tracer,
+                          MetadadosService metadadosService) {
+        this.transporte = transporte;
+        this.heartbeat = appConfig.getPublicacao().getHeartbeat();
+        this.tracer = tracer;
+        this.metadadosService = metadadosService;
+    }
+
+    /**
+     * Publica a cotação ao vivo no transporte, a menos que seja igual à última
+     * publicada e o heartbeat ainda não tenha vencido.
+     *
+     * @param acao cotação a ser publicada
+     * @return true se a cotação foi publicada, false se foi suprimida
+     */
+    public boolean publicar(Acao acao) {
+        return publicar(acao, FaixaCotacao.VIVO);
+    }
+
+    private boolean publicar(Acao acao, FaixaCotacao faixa) {
+        String symbol = acao.getSymbol().toUpperCase();
+        PublicacaoCotacaoEvent evento = new PublicacaoCotacaoEvent();
+        evento.begin();
+        evento.symbol = symbol;
+        evento.transporte = transporte.nome();
+        metadadosService.registrar(acao);
+        try (Tracer.Escopo escopo = tracer.iniciar(transporte.nome() + ".publicar")) {
+            escopo.atributo("symbol", symbol).atributo("faixa", faixa.name().toLowerCase());
+            if (acao.getRegularMarketTime() != null) {
+                escopo.atributo("cotacao", Acao.chaveIdempotencia(symbol, acao.getRegularMarketTime()));
+            }
+            Instant agora = Instant.now();
+            Impressao nova = new Impressao(acao.getRegularMarketTime(), acao.getRegularMarketPrice(), agora);
+
+            // decide e registra de forma atômica, para que duas publicações simultâneas não passem juntas
+            Impressao registrada = ultimas.compute(symbol, (s, anterior) ->
+                    anterior != null && anterior.mesmaCotacao(acao) && anterior.publicadaEm().plus(heartbeat).isAfter(agora)
+                            ? anterior : nova);
+            if (registrada != nova) {
+                suprimidas.increment();
+                evento.suprimida = true;
+                escopo.atributo("suprimida", true);
+                return false;
+            }
+
+            try {
+                transporte.enviar(MetadadosService.semMetadados(acao), escopo.contexto(), faixa);
+            } catch (RuntimeException e) {
+                escopo.erro(e);
+                // a cotação não chegou ao transporte: não pode servir de referência para suprimir a próxima
+                ultimas.remove(symbol, nova);
+                throw e;
+            }
+            publicadas.increment();
+            return true;
+        } finally {
+            evento.commit();
+        }
+    }
+
+    /**
+     * Publica um lote de cotações na faixa de lote do transporte, cada uma com
+     * as mesmas regras de {@link #publicar(Acao)}. Uma falha no transporte
+     * interrompe o lote.
+     *
+     * @param lote cotações a serem publicadas
+     * @return quantas foram publicadas (as demais foram suprimidas)
+     */
+    public int publicarLote(List<Acao> lote) {
+        int enviadas = 0;
+        for (Acao acao : lote) {
+            if (publicar(acao, FaixaCotacao.LOTE)) enviadas++;
+        }
+        return enviadas;
+    }
+
+    /**
+     * Contadores da detecção de mudanças, para monitoramento.
+     *
+     * @return mapa com publicadas, suprimidas, símbolos acompanhados e heartbeat
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("publicadas", publicadas.sum());
+        info.put("suprimidas", suprimidas.sum());
+        info.put("simbolos", ultimas.size());
+        info.put("heartbeat", heartbeat.toString());
+        return info;
+    }
+}
@@ -0,0 +1,344 @@
+package org.furb.bolsavalores.service;
+
+import jakarta.annotation.PostConstruct;
+import org.furb.bolsavalores.config.RabbitMQConfig;
+import org.furb.bolsavalores.model.Acao;
+import org.furb.bolsavalores.model.Alerta;
+import org.furb.bolsavalores.model.MudancaRegraAlerta;
+import org.furb.bolsavalores.model.RegraAlerta;
+import org.furb.bolsavalores.repository.AcoesRepository;
+import org.furb.bolsavalores.repository.RegraAlertaRepository;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Motor de regras de alerta de preço.
+ *
+ * <p>
+ * As regras ficam no MongoDB ({@code regras_alerta}) e, em memória, em um
+ * índice por símbolo com uma {@link TreeMap} por tipo, ordenada pelo limite.
+ * Cada cotação é avaliada em O(log n + disparos), sem percorrer todas as regras:
+ * <ul>
+ *     <li>{@code CRUZA_ACIMA}: limites no intervalo {@code (anterior, atual]};</li>
+ *     <li>{@code CRUZA_ABAIXO}: limites no intervalo {@code [atual, anterior)};</li>
+ *     <li>{@code VARIACAO_DIARIA}: limites no intervalo {@code [maior variação do dia, variação atual)},
+ *         então cada regra dispara no máximo uma vez por dia.</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * A avaliação é feita pelo {@link AcoesConsumer} logo após a gravação, no nó
+ * dono do shard do símbolo — assim cada cotação é avaliada uma única vez no
+ * cluster, na ordem da pista do símbolo. Todos os nós mantêm todas as regras
+ * (carregadas na subida e atualizadas pelo fanout de mudanças), para que
+ * qualquer um possa assumir o shard. Quando um nó vê um símbolo pela primeira
+ * vez, o preço anterior e a primeira cotação do dia são buscados no MongoDB,
+ * para não perder cruzamentos após um rebalanceamento ou reinício. O estado
+ * de preço dos símbolos de um shard é esquecido quando o shard chega ou sai
+ * deste nó ({@link #esquecerShard}): se o shard voltar, o que outro nó gravou
+ * enquanto isso é relido do MongoDB, em vez de comparado com um preço velho.
+ * Uma cotação mais antiga que a última avaliada do símbolo (ex: de volta de
+ * uma retentativa) é ignorada: ela não é um movimento de preço, e avaliá-la
+ * dispararia cruzamentos que não aconteceram.
+ * </p>
+ *
+ * <p>Os alertas disparados são publicados em {@code bolsa.alertas.exchange}.
+ * Sem broker ({@code app.transporte.tipo=memoria}) eles são apenas registrados
+ * no log e as mudanças de regras valem só para este nó.</p>
+ */
+@Service
+public class AlertasService {
+
+    /** Fuso usado para delimitar o "dia" da variação diária (pregão da B3). */
+    private static final ZoneId FUSO_PREGAO = ZoneId.of("America/Sao_Paulo");
+
+    private final RegraAlertaRepository regraRepository;
+    private final AcoesRepository acoesRepository;
+    /** Template para alertas e mudanças de regras; nulo sem broker. */
+    private final RabbitTemplate rabbitTemplate;
+
+    /** Índice de regras e estado de preço por símbolo. */
+    private final Map<String, IndiceSimbolo> indices = new ConcurrentHashMap<>();
+
+    /**
+     * @param regraRepository repositório das regras de alerta
+     * @param acoesRepository repositório das cotações (estado inicial de cada símbolo)
+     * @param rabbitTemplate  template usado para publicar alertas e mudanças de regras (ausente sem broker)
+     */
+    public AlertasService(RegraAlertaRepository regraRepository, AcoesRepository acoesRepository,
+                          ObjectProvider<RabbitTemplate> rabbitTemplate) {
+        this.regraRepository = regraRepository;
+        this.acoesRepository = acoesRepository;
+        this.rabbitTemplate = rabbitTemplate.getIfAvailable();
+    }
+
+    /**
+     * Carrega todas as regras salvas para o índice em memória.
+     */
+    @PostConstruct
+    public void carregar() {
+        try {
+            List<RegraAlerta> regras = regraRepository.findAll();
+            regras.forEach(this::indexar);
+            System.out.println("[Alertas] " + regras.size() + " regras carregadas");
+        } catch (Exception e) {
+            System.err.println("[Alertas] Falha ao carregar regras: " + e.getMessage());
+        }
+    }
+
+    // ================== GESTÃO DAS REGRAS ==================
+
+    /**
+     * Valida, salva e propaga uma nova regra para todos os nós.
+     *
+     * @param regra regra com symbol, tipo e limite
+     * @return regra salva, com id
+     * @throws IllegalArgumentException se a regra for inválida
+     */
+    public RegraAlerta adicionar(RegraAlerta regra) {
+        if (regra.getSymbol() == null || regra.getSymbol().isBlank()) {
+            throw new IllegalArgumentException("symbol é obrigatório");
+        }
+        if (regra.getTipo() == null) {
+            throw new IllegalArgumentException("tipo é obrigatório: " + Arrays.toString(RegraAlerta.Tipo.values()));
+        }
+        if (!(regra.getLimite() > 0) || Double.isInfinite(regra.getLimite())) {
+            throw new IllegalArgumentException("limite deve ser positivo");
+        }
+        regra.setId(null);
+        regra.setSymbol(regra.getSymbol().toUpperCase());
+        regra.setCriadaEm(Instant.now());
+
+        RegraAlerta salva = regraRepository.save(regra);
+        propagar(new MudancaRegraAlerta(MudancaRegraAlerta.Tipo.ADICIONADA, salva));
+        return salva;
+    }
+
+    /**
+     * Remove uma regra e propaga a remoção para todos os nós.
+     *
+     * @param id identificador da regra
+     * @return true se a regra existia
+     */
+    public boolean remover(String id) {
+        Optional<RegraAlerta> regra = regraRepository.findById(id);
+        if (regra.isEmpty()) return false;
+        regraRepository.deleteById(id);
+        propagar(new MudancaRegraAlerta(MudancaRegraAlerta.Tipo.REMOVIDA, regra.get()));
+        return true;
+    }
+
+    /**
+     * @param symbol código da ação; se nulo, lista todas as regras
+     * @return regras salvas
+     */
+    public List<RegraAlerta> listar(String symbol) {
+        return symbol == null ? regraRepository.findAll() : regraRepository.findBySymbol(symbol.toUpperCase());
+    }
+
+    /**
+     * Aplica no índice local uma mudança recebida pelo fanout (inclusive as
+     * feitas por este mesmo nó).
+     *
+     * @param mudanca regra adicionada ou removida
+     */
+    public void aplicar(MudancaRegraAlerta mudanca) {
+        if (mudanca == null || mudanca.getRegra() == null) return;
+        switch (mudanca.getTipo()) {
+            case ADICIONADA -> indexar(mudanca.getRegra());
+            case REMOVIDA -> desindexar(mudanca.getRegra());
+        }
+    }
+
+    private void propagar(MudancaRegraAlerta mudanca) {
+        // aplica localmente já, para a regra valer antes da volta do fanout
+        aplicar(mudanca);
+        if (rabbitTemplate != null) rabbitTemplate.convertAndSend(RabbitMQConfig.EXCHANGE_REGRAS_ALERTA, "", mudanca);
+    }
+
+    private void indexar(RegraAlerta regra) {
+        indices.computeIfAbsent(regra.getSymbol().toUpperCase(), s -> new IndiceSimbolo()).adicionar(regra);
+    }
+
+    private void desindexar(RegraAlerta regra) {
+        IndiceSimbolo indice = indices.get(regra.getSymbol().toUpperCase());
+        if (indice != null) indice.remover(regra);
+    }
+
+    /**
+     * Descarta o estado de preço (não as regras) dos símbolos de um shard,
+     * que é recarregado do MongoDB na próxima cotação de cada um.
+     *
+     * @param shard      shard assumido ou liberado por este nó
+     * @param shardCount quantidade de shards
+     */
+    public void esquecerShard(int shard, int shardCount) {
+        indices.forEach((symbol, indice) -> {
+            if (RabbitMQConfig.shardDe(symbol, shardCount) == shard) indice.esquecerPreco();
+        });
+    }
+
+    // ================== AVALIAÇÃO ==================
+
+    /**
+     * Avalia as regras do símbolo contra uma cotação recém-gravada e publica
+     * os alertas disparados. Falhas não afetam a gravação já confirmada.
+     *
+     * @param acao cotação persistida
+     */
+    public void avaliar(Acao acao) {
+        try {
+            String symbol = acao.getSymbol().toUpperCase();
+            IndiceSimbolo indice = indices.computeIfAbsent(symbol, s -> new IndiceSimbolo());
+
+            List<Alerta> disparados;
+            synchronized (indice) {
+                if (!indice.inicializado) inicializar(indice, symbol, acao.getRegularMarketTime());
+                disparados = indice.avaliar(acao);
+            }
+
+            for (Alerta alerta : disparados) {
+                if (rabbitTemplate != null) {
+                    rabbitTemplate.convertAndSend(RabbitMQConfig.EXCHANGE_ALERTAS,
+                            RabbitMQConfig.routingKeyAlerta(symbol, alerta.getTipo().name()), alerta);
+                }
+                System.out.println("[Alertas] " + symbol + " " + alerta.getTipo() + " " + alerta.getLimite()
+                        + " disparado a " + alerta.getPreco());
+            }
+        } catch (Exception e) {
+            System.err.println("[Alertas] Falha ao avaliar " + acao.getSymbol() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Recupera do MongoDB a cotação anterior e a primeira do dia, para que a
+     * primeira avaliação do símbolo neste nó já tenha referência.
+     */
+    private void inicializar(IndiceSimbolo indice, String symbol, Instant horario) {
+        indice.inicializado = true;
+        acoesRepository.findFirstBySymbolAndRegularMarketTimeLessThanOrderByRegularMarketTimeDesc(symbol, horario)
+                .ifPresent(anterior -> {
+                    indice.ultimoHorario = anterior.getRegularMarketTime();
+                    indice.ultimoPreco = anterior.getRegularMarketPrice();
+                });
+
+        LocalDate dia = horario.atZone(FUSO_PREGAO).toLocalDate();
+        Instant inicioDoDia = dia.atStartOfDay(FUSO_PREGAO).toInstant();
+        acoesRepository.findFirstBySymbolAndRegularMarketTimeGreaterThanEqualOrderByRegularMarketTimeAsc(symbol, inicioDoDia)
+                .filter(primeira -> primeira.getRegularMarketTime().isBefore(horario))
+                .ifPresent(primeira -> {
+                    indice.dia = dia;
+                    indice.abertura = primeira.getRegularMarketPrice();
+                    // aproximação: a maior variação do dia até aqui não é conhecida, usa a da cotação anterior
+                    if (indice.ultimoPreco != null) indice.maiorVariacao = variacao(indice.ultimoPreco, indice.abertura);
+                });
+    }
+
+    private static double variacao(double preco, double abertura) {
+        return abertura == 0 ? 0 : Math.abs(preco - abertura) / abertura * 100;
+    }
+
+    /**
+     * Regras de um símbolo, ordenadas pelo limite, e o estado de preço
+     * necessário para detectar cruzamentos.
+     */
+    private static final class IndiceSimbolo {
+        private final TreeMap<Double, List<RegraAlerta>> acima = new TreeMap<>();
+        private final TreeMap<Double, List<RegraAlerta>> abaixo = new TreeMap<>();
+        private final TreeMap<Double, List<RegraAlerta>> variacaoDiaria = new TreeMap<>();
+
+        private boolean inicializado;
+        private Instant ultimoHorario;
+        private Double ultimoPreco;
+        private LocalDate dia;
+        private double abertura;
+        private double maiorVariacao;
+
+        private TreeMap<Double, List<RegraAlerta>> arvore(RegraAlerta.Tipo tipo) {
+            return switch (tipo) {
+                case CRUZA_ACIMA -> acima;
+                case CRUZA_ABAIXO -> abaixo;
+                case VARIACAO_DIARIA -> variacaoDiaria;
+            };
+        }
+
+        synchronized void esquecerPreco() {
+            inicializado = false;
+            ultimoHorario = null;
+            ultimoPreco = null;
+            dia = null;
+            abertura = 0;
+            maiorVariacao = 0;
+        }
+
+        synchronized void adicionar(RegraAlerta regra) {
+            List<RegraAlerta> mesmas = arvore(regra.getTipo()).computeIfAbsent(regra.getLimite(), l -> new ArrayList<>());
+            mesmas.removeIf(r -> Objects.equals(r.getId(), regra.getId()));
+            mesmas.add(regra);
+        }
+
+        synchronized void remover(RegraAlerta regra) {
+            TreeMap<Double, List<RegraAlerta>> arvore = arvore(regra.getTipo());
+            List<RegraAlerta> mesmas = arvore.get(regra.getLimite());
+            if (mesmas == null) return;
+            mesmas.removeIf(r -> Objects.equals(r.getId(), regra.getId()));
+            if (mesmas.isEmpty()) arvore.remove(regra.getLimite());
+        }
+
+        synchronized List<Alerta> avaliar(Acao acao) {
+            Instant horario = acao.getRegularMarketTime();
+            double preco = acao.getRegularMarketPrice();
+            // cotações fora de ordem não representam um movimento de preço
+            if (ultimoHorario != null && !horario.isAfter(ultimoHorario)) return List.of();
+
+            LocalDate diaCotacao = horario.atZone(FUSO_PREGAO).toLocalDate();
+            if (!diaCotacao.equals(dia)) {
+                dia = diaCotacao;
+                abertura = preco;
+                maiorVariacao = 0;
+            }
+
+            List<Alerta> disparados = new ArrayList<>();
+            if (ultimoPreco != null) {
+                double anterior = ultimoPreco;
+                if (preco > anterior) coletar(acima.subMap(anterior, false, preco, true), acao, anterior, disparados);
+                if (preco < anterior) coletar(abaixo.subMap(preco, true, anterior, false), acao, anterior, disparados);
+            }
+
+            double variacao = variacao(preco, abertura);
+            if (variacao > maiorVariacao) {
+                coletar(variacaoDiaria.subMap(maiorVariacao, true, variacao, false), acao, abertura, disparados);
+                maiorVariacao = variacao;
+            }
+
+            ultimoHorario = horario;
+            ultimoPreco = preco;
+            return disparados;
+        }
+
+        private static void coletar(SortedMap<Double, List<RegraAlerta>> faixa, Acao acao, double referencia,
+                                    List<Alerta> disparados) {
+            for (List<RegraAlerta> regras : faixa.values()) {
+                for (RegraAlerta regra : regras) {
+                    Alerta alerta = new Alerta();
+                    alerta.setRegraId(regra.getId());
+                    alerta.setSymbol(regra.getSymbol());
+                    alerta.setTipo(regra.getTipo());
+                    alerta.setLimite(regra.getLimite());
+                    alerta.setPreco(acao.getRegularMarketPrice());
+                    alerta.setPrecoReferencia(referencia);
+                    alerta.setRegularMarketTime(acao.getRegularMarketTime());
+                    alerta.setDisparadoEm(Instant.now());
+                    disparados.add(alerta);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package org.furb.bolsavalores.service;
+
+import org.furb.bolsavalores.config.AppConfig;
+import org.furb.bolsavalores.model.Acao;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serviço que busca a cotação de um símbolo no provedor e a publica na
+ * exchange de ações, usado tanto pelo {@code BolsaScheduler} quanto pelo
+ * endpoint {@code POST /acoes/{symbol}/refresh}.
+ *
+ * <p>
+ * Para que uma rajada de pedidos custe uma única chamada ao provedor:
+ * <ul>
+ *     <li><b>TTL de frescor</b> — uma cotação buscada há menos de
+ *         {@code app.atualizacao.ttl} é devolvida sem nova consulta;</li>
+ *     <li><b>single-flight</b> — pedidos simultâneos para o mesmo símbolo
+ *         aguardam a mesma chamada em andamento, em vez de abrir outras.</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * Os dois valem por nó: a mesma rajada espalhada pelo balanceador entre N
+ * nós custa até N chamadas ao provedor (uma por nó e por TTL), e cada nó
+ * publica a sua cópia. As cópias com o mesmo horário de cotação são
+ * descartadas na gravação pela chave de idempotência; coalescer entre os
+ * nós exigiria encaminhar o pedido ao dono do shard do símbolo.
+ * </p>
+ */
+@Service
+public class AtualizacaoCotacaoService {
+
+    /** Última cotação buscada por símbolo e o momento da busca. */
+    private record Entrada(Acao acao, Instant buscadaEm) {}
+
+    private final ConsultaBolsaService consultaBolsaService;
+    private final AcoesPublisher acoesPublisher;
+    private final Duration ttl;
+
+    private final Map<String, Entrada> ultimas = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Acao>> emVoo = new ConcurrentHashMap<>();
+
+    public AtualizacaoCotacaoService(ConsultaBolsaService consultaBolsaService,
+                                     AcoesPublisher acoesPublisher,
+                                     AppConfig appConfig) {
+        this.consultaBolsaService = consultaBolsaService;
+        this.acoesPublisher = acoesPublisher;
+        this.ttl = appConfig.getAtualizacao().getTtl();
+    }
+
+    /**
+     * Retorna uma cotação fresca do símbolo, buscando e publicando se necessário.
+     *
+     * @param symbol código da ação
+     * @return cotação buscada nesta chamada, em outra chamada simultânea ou dentro do TTL
+     */
+    public Acao atualizar(String symbol) {
+        String chave = symbol.toUpperCase();
+
+        Acao fresca = fresca(chave);
+        if (fresca != null) return fresca;
+
+        CompletableFuture<Acao> minha = new CompletableFuture<>();
+        CompletableFuture<Acao> existente = emVoo.putIfAbsent(chave, minha);
+        if (existente != null) return aguardar(existente);
+
+        try {
+            // outra chamada pode ter terminado entre a checagem do TTL e o putIfAbsent
+            Acao acao = fresca(chave);
+            if (acao == null) {
+                acao = consultaBolsaService.consultar(chave);
+                acoesPublisher.publicar(acao);
+                ultimas.put(chave, new Entrada(acao, Instant.now()));
+            }
+            minha.complete(acao);
+            return acao;
+        } catch (RuntimeException e) {
+            minha.completeExceptionally(e);
+            throw e;
+        } finally {
+            emVoo.remove(chave, minha);
+        }
+    }
+
+    private Acao fresca(String chave) {
+        Entrada entrada = ultimas.get(chave);
+        if (entrada == null || entrada.buscadaEm().plus(ttl).isBefore(Instant.now())) return null;
+        return entrada.acao();
+    }
+
+    private Acao aguardar(CompletableFuture<Acao> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package org.furb.bolsavalores.service;
+
+import org.furb.bolsavalores.config.AppConfig;
+import org.furb.bolsavalores.model.Acao;
+import org.furb.bolsavalores.model.BackfillCheckpoint;
+import org.furb.bolsavalores.repository.BackfillCheckpointRepository;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Serviço de backfill: preenche o histórico de um ticker a partir da API
+ * de range/interval da BRAPI.
+ *
+ * <p>
+ * A série retornada é gravada em páginas de {@code app.backfill.pagina}
+ * cotações. Cada página:
+ * <ol>
+ *     <li>recebe o {@code _id} pela mesma chave de idempotência da ingestão ao
+ *         vivo ({@link Acao#chaveIdempotencia}), descartando as cotações que já
+ *         existem no banco;</li>
+ *     <li>é gravada com um único bulk write não ordenado (um erro de chave
+ *         duplicada, por corrida com a ingestão ao vivo, não interrompe o resto);</li>
+ *     <li>avisa o cluster das cotações inseridas pelo mesmo fanout da ingestão
+ *         ({@link AcoesPersistidasPublisher}), para que estatísticas, ranking e
+ *         cache de respostas de todos os nós as vejam;</li>
+ *     <li>atualiza o {@link BackfillCheckpoint} do símbolo.</li>
+ * </ol>
+ * Uma execução interrompida retoma da cotação seguinte ao último checkpoint.
+ * </p>
+ *
+ * <p>No modo time-series o {@code _id} não é único: a checagem dos horários
+ * já gravados é a única proteção contra duplicadas, e uma cotação ao vivo
+ * com o mesmo horário de um candle, gravada entre a checagem e o bulk
+ * write, fica duplicada.</p>
+ *
+ * <p>A BRAPI não pagina a série histórica; a paginação é aplicada na
+ * gravação, que é onde está o custo.</p>
+ */
+@Service
+public class BackfillService {
+
+    /** Código de erro do MongoDB para violação de chave única. */
+    private static final int CODIGO_CHAVE_DUPLICADA = 11000;
+
+    private final ConsultaBolsaService consultaBolsaService;
+    private final MongoTemplate mongoTemplate;
+    private final BackfillCheckpointRepository checkpointRepository;
+    private final TaskExecutor taskExecutor;
+    private final AppConfig.Backfill config;
+    private final MetadadosService metadadosService;
+    private final AcoesPersistidasPublisher persistidasPublisher;
+
+    /** Backfills em execução neste nó, para não rodar o mesmo checkpoint duas vezes. */
+    private final Set<String> emExecucao = ConcurrentHashMap.newKeySet();
+
+    public BackfillService(ConsultaBolsaService consultaBolsaService,
+                           MongoTemplate mongoTemplate,
+                           BackfillCheckpointRepository checkpointRepository,
+                           @Qualifier("applicationTaskExecutor") TaskExecutor taskExecutor,
+                           AppConfig appConfig,
+                           MetadadosService metadadosService,
+                           AcoesPersistidasPublisher persistidasPublisher) {
+        this.consultaBolsaService = consultaBolsaService;
+        this.mongoTemplate = mongoTemplate;
+        this.checkpointRepository = checkpointRepository;
+        this.taskExecutor = taskExecutor;
+        this.config = appConfig.getBackfill();
+        this.metadadosService = metadadosService;
+        this.persistidasPublisher = persistidasPublisher;
+    }
+
+    /**
+     * Agenda o backfill em segundo plano.
+     *
+     * @param symbol   código da ação
+     * @param range    período; usa {@code app.backfill.range} se nulo
+     * @param interval intervalo; usa {@code app.backfill.interval} se nulo
+     * @return checkpoint atual (ou recém-criado) do backfill
+     * @throws IllegalStateException se o mesmo backfill já estiver em execução neste nó
+     */
+    public BackfillCheckpoint iniciar(String symbol, String range, String interval) {
+        String r = range == null ? config.getRange() : range;
+        String i = interval == null ? config.getInterval() : interval;
+        BackfillCheckpoint checkpoint = carregarCheckpoint(symbol.toUpperCase(), r, i);
+
+        if (!emExecucao.add(checkpoint.getId())) {
+            throw new IllegalStateException("Backfill já em execução: " + checkpoint.getId());
+        }
+        taskExecutor.execute(() -> {
+            try {
+                executar(checkpoint);
+            } finally {
+                emExecucao.remove(checkpoint.getId());
+            }
+        });
+        return checkpoint;
+    }
+
+    /**
+     * @param symbol código da ação
+     * @return checkpoints de todos os backfills do símbolo
+     */
+    public List<BackfillCheckpoint> listar(String symbol) {
+        return checkpointRepository.findBySymbol(symbol.toUpperCase());
+    }
+
+    /**
+     * Executa o backfill de forma síncrona, a partir do checkpoint informado.
+     *
+     * @param checkpoint progresso salvo do backfill
+     */
+    void executar(BackfillCheckpoint checkpoint) {
+        String symbol = checkpoint.getSymbol();
+        System.out.println("[Backfill] Iniciando " + checkpoint.getId()
+                + (checkpoint.getUltimoHorario() == null ? "" : " a partir de " + checkpoint.getUltimoHorario()));
+        checkpoint.setConcluido(false);
+        try {
+            List<Acao> historico = consultaBolsaService.consultarHistorico(symbol, checkpoint.getRange(), checkpoint.getInterval());
+            if (!historico.isEmpty()) metadadosService.registrar(historico.get(0));
+
+            Instant retomarApos = checkpoint.getUltimoHorario();
+            List<Acao> pagina = new ArrayList<>(config.getPagina());
+            for (Acao acao : historico) {
+                if (retomarApos != null && !acao.getRegularMarketTime().isAfter(retomarApos)) continue;
+                pagina.add(acao);
+                if (pagina.size() == config.getPagina()) {
+                    gravarPagina(pagina, checkpoint);
+                    pagina.clear();
+                }
+            }
+            if (!pagina.isEmpty()) gravarPagina(pagina, checkpoint);
+
+            checkpoint.setConcluido(true);
+            checkpoint.setErro(null);
+            salvar(checkpoint);
+            System.out.println("[Backfill] Concluído " + checkpoint.getId() + ": " + checkpoint.getInseridas()
+                    + " inseridas, " + checkpoint.getDuplicadas() + " já existentes");
+        } catch (Exception e) {
+            checkpoint.setErro(e.getMessage());
+            salvar(checkpoint);
+            System.err.println("[Backfill] ERRO em " + checkpoint.getId() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Grava uma página de cotações com bulk write não ordenado e avança o checkpoint.
+     */
+    private void gravarPagina(List<Acao> pagina, BackfillCheckpoint checkpoint) {
+        Instant inicio = pagina.get(0).getRegularMarketTime();
+        Instant fim = pagina.get(pagina.size() - 1).getRegularMarketTime();
+        Set<Instant> existentes = horariosExistentes(checkpoint.getSymbol(), inicio, fim);
+
+        List<Acao> novas = new ArrayList<>(pagina.size());
+        for (Acao acao : pagina) {
+            if (existentes.contains(acao.getRegularMarketTime())) continue;
+            acao.setId(Acao.chaveIdempotencia(acao.getSymbol(), acao.getRegularMarketTime()));
+            novas.add(acao);
+        }
+
+        Set<Integer> falhas = Set.of();
+        if (!novas.isEmpty()) {
+            try {
+                mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Acao.class)
+                        .insert(novas)
+                        .execute();
+            } catch (BulkOperationException e) {
+                // chaves duplicadas (cotação gravada ao vivo entre a checagem e o insert) são esperadas
+                boolean somenteDuplicadas = e.getErrors().stream().allMatch(erro -> erro.getCode() == CODIGO_CHAVE_DUPLICADA);
+                if (!somenteDuplicadas) throw e;
+                falhas = new HashSet<>();
+                for (var erro : e.getErrors()) falhas.add(erro.getIndex());
+            }
+        }
+
+        long inseridas = 0;
+        for (int i = 0; i < novas.size(); i++) {
+            if (falhas.contains(i)) continue;
+            inseridas++;
+            persistidasPublisher.publicar(novas.get(i));
+        }
+        checkpoint.setInseridas(checkpoint.getInseridas() + inseridas);
+        checkpoint.setDuplicadas(checkpoint.getDuplicadas() + (pagina.size() - inseridas));
+        checkpoint.setUltimoHorario(fim);
+        salvar(checkpoint);
+    }
+
+    /**
+     * Busca, em uma única consulta por símbolo e intervalo, os horários já gravados.
+     */
+    private Set<Instant> horariosExistentes(String symbol, Instant inicio, Instant fim) {
+        Query query = new Query(where("symbol").is(symbol).and("regularMarketTime").gte(inicio).lte(fim));
+        query.fields().include("regularMarketTime");
+
+        Set<Instant> horarios = new HashSet<>();
+        for (Acao acao : mongoTemplate.find(query, Acao.class)) horarios.add(acao.getRegularMarketTime());
+        return horarios;
+    }
+
+    private BackfillCheckpoint carregarCheckpoint(String symbol, String range, String interval) {
+        String id = symbol + ":" + range + ":" + interval;
+        return checkpointRepository.findById(id).orElseGet(() -> {
+            BackfillCheckpoint novo = new BackfillCheckpoint();
+            novo.setId(id);
+            novo.setSymbol(symbol);
+            novo.setRange(range);
+            novo.setInterval(interval);
+            return salvar(novo);
+        });
+    }
+
+    private BackfillCheckpoint salvar(BackfillCheckpoint checkpoint) {
+        checkpoint.setAtualizadoEm(Instant.now());
+        return checkpointRepository.save(checkpoint);
+    }
+}
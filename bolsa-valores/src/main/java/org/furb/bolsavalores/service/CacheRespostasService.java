@@ -0,0 +1,233 @@
+package org.furb.bolsavalores.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.furb.bolsavalores.config.AppConfig;
+import org.furb.bolsavalores.model.Acao;
+import org.furb.bolsavalores.model.AcaoPersistidaEvent;
+import org.furb.bolsavalores.model.SimboloAtualizadoEvent;
+import org.furb.bolsavalores.repository.AcoesRepository;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Range;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Cache dos bytes JSON das leituras quentes: a última cotação de um símbolo
+ * e as cotações recentes (janela ancorada na última cotação).
+ *
+ * <p>
+ * Cada símbolo tem uma versão, incrementada a cada {@link AcaoPersistidaEvent}
+ * (em todos os nós, pelo fanout de cotações persistidas, que também leva as
+ * cotações gravadas pelo backfill) e a cada {@link SimboloAtualizadoEvent}
+ * (nomes do símbolo alterados). Uma resposta guardada vale
+ * enquanto a versão do símbolo for a mesma de quando ela foi gerada; servir
+ * um acerto é só devolver o {@code byte[]}, sem consulta ao banco nem
+ * serialização.
+ * </p>
+ *
+ * <p>
+ * Na falha a consulta usa o repositório síncrono e a serialização usa
+ * {@link ObjectWriter}s criados uma vez a partir do mapper do Spring (com o
+ * módulo Blackbird, ver {@code JacksonConfig}), que já trazem o serializador
+ * resolvido e escrevem direto no buffer de bytes. A versão é lida antes da
+ * consulta: se uma cotação chegar no meio, a resposta gerada fica com a versão
+ * antiga e é refeita na leitura seguinte. A resposta é serializada inteira
+ * para um {@code byte[]}, e não direto no corpo da resposta HTTP, porque é
+ * esse array que fica guardado; o acerto é que escreve os bytes prontos.
+ * </p>
+ *
+ * <p>
+ * O cache guarda até {@code app.cache-respostas.max-entradas} respostas, em um
+ * {@link LinkedHashMap} em ordem de acesso (LRU): guardar uma resposta além do
+ * limite descarta a usada há mais tempo, em O(1). Uma resposta desatualizada
+ * não é servida e deixa de ser acessada, então vai para o fim da fila e sai
+ * antes das quentes. O mapa fica sob uma trava; as seções críticas são só a
+ * consulta e a inserção, e a consulta ao banco e a serialização ficam fora.
+ * </p>
+ */
+@Service
+public class CacheRespostasService {
+
+    /** Resposta serializada e a versão do símbolo que ela reflete. */
+    private record Entrada(long versao, byte[] corpo) {
+    }
+
+    private final AcoesRepository acoesRepository;
+    private final MetadadosService metadadosService;
+    private final ObjectWriter escritorAcao;
+    private final ObjectWriter escritorLista;
+    private final int maxEntradas;
+    private final List<Duration> janelas;
+
+    private final Map<String, AtomicLong> versoes = new ConcurrentHashMap<>();
+
+    /** Respostas em ordem de acesso; acessado só sob a trava do próprio mapa. */
+    private final LinkedHashMap<String, Entrada> entradas;
+
+    private final LongAdder acertos = new LongAdder();
+    private final LongAdder falhas = new LongAdder();
+
+    /**
+     * @param acoesRepository  repositório consultado nas falhas do cache
+     * @param metadadosService nomes dos símbolos, preenchidos antes da serialização
+     * @param objectMapper     mapper do Spring, base dos escritores
+     * @param appConfig        configuração com o tamanho do cache e as janelas aceitas
+     */
+    public CacheRespostasService(AcoesRepository acoesRepository, MetadadosService metadadosService,
+                                 ObjectMapper objectMapper, AppConfig appConfig) {
+        this.acoesRepository = acoesRepository;
+        this.metadadosService = metadadosService;
+        this.escritorAcao = objectMapper.writerFor(Acao.class);
+        this.escritorLista = objectMapper.writerFor(
+                objectMapper.getTypeFactory().constructCollectionType(List.class, Acao.class));
+        this.maxEntradas = appConfig.getCacheRespostas().getMaxEntradas();
+        this.janelas = List.copyOf(appConfig.getCacheRespostas().getJanelas());
+        this.entradas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entrada> maisAntiga) {
+                return size() > maxEntradas;
+            }
+        };
+    }
+
+    /**
+     * Invalida as respostas do símbolo da cotação persistida.
+     *
+     * @param event evento de ação persistida
+     */
+    @EventListener
+    public void onAcaoPersistida(AcaoPersistidaEvent event) {
+        String symbol = event.getAcao().getSymbol();
+        if (symbol != null) contador(symbol.toUpperCase()).incrementAndGet();
+    }
+
+    /**
+     * Invalida as respostas do símbolo cujos nomes mudaram.
+     *
+     * @param event evento de símbolo atualizado
+     */
+    @EventListener
+    public void onSimboloAtualizado(SimboloAtualizadoEvent event) {
+        contador(event.getSimbolo().getSymbol().toUpperCase()).incrementAndGet();
+    }
+
+    /**
+     * @param symbol código da ação
+     * @return JSON da última cotação do símbolo, ou vazio se ele não tiver cotações
+     */
+    public Optional<byte[]> ultima(String symbol) {
+        String s = symbol.toUpperCase();
+        return servir("ultima:" + s, s, () -> acoesRepository.findFirstBySymbolOrderByRegularMarketTimeDesc(s)
+                .map(acao -> serializar(escritorAcao, metadadosService.completar(acao))));
+    }
+
+    /**
+     * @param symbol código da ação
+     * @param janela janela desejada; deve ser uma das configuradas
+     * @return JSON das cotações do símbolo na janela que termina na última
+     *         cotação, em ordem cronológica, ou vazio se ele não tiver cotações
+     * @throws IllegalArgumentException se a janela não estiver configurada
+     */
+    public Optional<byte[]> recentes(String symbol, Duration janela) {
+        if (!janelas.contains(janela)) {
+            throw new IllegalArgumentException("Janela não configurada: " + janela + " (disponíveis: " + janelas + ")");
+        }
+        String s = symbol.toUpperCase();
+        return servir("recentes:" + janela + ":" + s, s, () -> acoesRepository.findFirstBySymbolOrderByRegularMarketTimeDesc(s)
+                .map(ultima -> {
+                    Instant fim = ultima.getRegularMarketTime();
+                    List<Acao> acoes = acoesRepository.findBySymbolAndRegularMarketTimeBetweenOrderByRegularMarketTimeAsc(
+                            s, Range.closed(fim.minus(janela), fim));
+                    acoes.forEach(metadadosService::completar);
+                    return serializar(escritorLista, acoes);
+                }));
+    }
+
+    /**
+     * @return janelas aceitas em {@link #recentes}
+     */
+    public List<Duration> getJanelas() {
+        return janelas;
+    }
+
+    /**
+     * Contadores do cache, para monitoramento.
+     *
+     * @return mapa com entradas, símbolos versionados, limite, acertos, falhas e taxa de acerto
+     */
+    public Map<String, Object> snapshot() {
+        long a = acertos.sum();
+        long f = falhas.sum();
+        int tamanho;
+        synchronized (entradas) {
+            tamanho = entradas.size();
+        }
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("entradas", tamanho);
+        info.put("simbolosVersionados", versoes.size());
+        info.put("maxEntradas", maxEntradas);
+        info.put("acertos", a);
+        info.put("falhas", f);
+        info.put("taxaAcerto", a + f == 0 ? 0.0 : (double) a / (a + f));
+        return info;
+    }
+
+    private Optional<byte[]> servir(String chave, String symbol, Supplier<Optional<byte[]>> gerar) {
+        long versao = versao(symbol);
+        Entrada entrada;
+        synchronized (entradas) {
+            entrada = entradas.get(chave);
+        }
+        if (entrada != null && entrada.versao() == versao) {
+            acertos.increment();
+            return Optional.of(entrada.corpo());
+        }
+        falhas.increment();
+        Optional<byte[]> corpo = gerar.get();
+        corpo.ifPresent(bytes -> guardar(chave, new Entrada(versao, bytes)));
+        return corpo;
+    }
+
+    private void guardar(String chave, Entrada nova) {
+        if (maxEntradas <= 0) return;
+        synchronized (entradas) {
+            // duas falhas simultâneas: fica a resposta da versão mais nova
+            entradas.merge(chave, nova, (atual, gerada) -> gerada.versao() >= atual.versao() ? gerada : atual);
+        }
+    }
+
+    /**
+     * Versão atual do símbolo, sem criar o contador: a leitura aceita qualquer
+     * texto como símbolo e não pode fazer o mapa crescer. Um símbolo sem
+     * contador está na versão 0; o primeiro evento cria o contador e o leva a 1.
+     */
+    private long versao(String symbol) {
+        AtomicLong versao = versoes.get(symbol);
+        return versao == null ? 0 : versao.get();
+    }
+
+    /** Contador de versão do símbolo, criado só pelos eventos de invalidação. */
+    private AtomicLong contador(String symbol) {
+        return versoes.computeIfAbsent(symbol, s -> new AtomicLong());
+    }
+
+    private byte[] serializar(ObjectWriter escritor, Object valor) {
+        try {
+            return escritor.writeValueAsBytes(valor);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Falha ao serializar a resposta: " + e.getMessage(), e);
+        }
+    }
+}
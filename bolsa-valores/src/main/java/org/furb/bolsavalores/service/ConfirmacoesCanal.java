@@ -0,0 +1,143 @@
+package org.furb.bolsavalores.service;
+
+import com.rabbitmq.client.Channel;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * ACKs das entregas de um canal do container de um shard.
+ *
+ * <p>As entregas são registradas pela thread do container, na ordem em que
+ * chegam, e liquidadas (confirmadas ou rejeitadas) pelas threads das pistas,
+ * em qualquer ordem. O canal só é usado sob a trava deste objeto, e só para
+ * o prefixo contíguo de entregas já liquidadas: as confirmações seguidas
+ * viram um único {@code basicAck(multiple=true)} e as rejeições (sem requeue,
+ * para a DLX) são enviadas na sua posição. Uma entrega lenta segura as
+ * confirmações das seguintes, o que é limitado pelo prefetch do shard.</p>
+ *
+ * <p>Se o canal cair, as entregas não confirmadas voltam para a fila e são
+ * reentregues ao próximo consumidor, que descarta as já gravadas pela
+ * chave de idempotência.</p>
+ *
+ * <p>Ao liberar um shard, o consumo é cancelado pelo próprio canal
+ * ({@link #cancelarConsumo()}), que continua aberto: o broker para de
+ * entregar e as entregas em andamento ainda podem ser confirmadas.</p>
+ */
+public final class ConfirmacoesCanal {
+
+    private enum Estado { PENDENTE, CONFIRMADA, REJEITADA }
+
+    private final Channel canal;
+    private final String consumerTag;
+    private final String descricao;
+    private boolean consumoCancelado;
+
+    /** Entregas registradas e ainda não enviadas ao broker, por delivery tag. */
+    private final TreeMap<Long, Estado> entregas = new TreeMap<>();
+
+    /**
+     * @param canal       canal do container
+     * @param consumerTag consumidor do container no canal (nulo se desconhecido)
+     * @param descricao   fila do canal, para os logs
+     */
+    ConfirmacoesCanal(Channel canal, String consumerTag, String descricao) {
+        this.canal = canal;
+        this.consumerTag = consumerTag;
+        this.descricao = descricao;
+    }
+
+    /**
+     * @param canal canal a comparar
+     * @return true se este registro é do canal informado
+     */
+    boolean doCanal(Channel canal) {
+        return this.canal == canal;
+    }
+
+    /**
+     * Registra uma entrega recebida; chamado pela thread do container, na
+     * ordem das delivery tags.
+     *
+     * @param deliveryTag tag da entrega
+     */
+    synchronized void registrar(long deliveryTag) {
+        entregas.put(deliveryTag, Estado.PENDENTE);
+    }
+
+    /**
+     * Marca a entrega como processada (ACK).
+     *
+     * @param deliveryTag tag da entrega
+     */
+    public void confirmar(long deliveryTag) {
+        liquidar(deliveryTag, Estado.CONFIRMADA);
+    }
+
+    /**
+     * Marca a entrega para rejeição sem requeue (vai para a DLX do shard).
+     * Entregas já liquidadas não mudam, então também serve de garantia de
+     * que nenhuma entrega segura as demais para sempre.
+     *
+     * @param deliveryTag tag da entrega
+     */
+    public void rejeitar(long deliveryTag) {
+        liquidar(deliveryTag, Estado.REJEITADA);
+    }
+
+    /**
+     * Cancela o consumidor do container sem fechar o canal: o broker deixa de
+     * entregar mensagens (e, com <i>single active consumer</i>, ativa o
+     * próximo consumidor da fila), mas as entregas já recebidas continuam
+     * podendo ser confirmadas por este canal. Só a primeira chamada tem efeito.
+     */
+    synchronized void cancelarConsumo() {
+        if (consumoCancelado || consumerTag == null) return;
+        consumoCancelado = true;
+        try {
+            canal.basicCancel(consumerTag);
+        } catch (Exception e) {
+            System.err.println("[Consumo] Falha ao cancelar o consumo de " + descricao + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return entregas registradas ainda não enviadas ao broker
+     */
+    synchronized int pendentes() {
+        return entregas.size();
+    }
+
+    private synchronized void liquidar(long deliveryTag, Estado estado) {
+        if (entregas.get(deliveryTag) != Estado.PENDENTE) return;
+        entregas.put(deliveryTag, estado);
+        enviar();
+    }
+
+    /**
+     * Envia ao broker o prefixo contíguo de entregas liquidadas.
+     */
+    private void enviar() {
+        long ultimaConfirmada = -1;
+        try {
+            while (!entregas.isEmpty()) {
+                Map.Entry<Long, Estado> primeira = entregas.firstEntry();
+                if (primeira.getValue() == Estado.PENDENTE) break;
+                entregas.pollFirstEntry();
+                if (primeira.getValue() == Estado.CONFIRMADA) {
+                    ultimaConfirmada = primeira.getKey();
+                } else {
+                    if (ultimaConfirmada >= 0) canal.basicAck(ultimaConfirmada, true);
+                    ultimaConfirmada = -1;
+                    canal.basicReject(primeira.getKey(), false);
+                }
+            }
+            if (ultimaConfirmada >= 0) canal.basicAck(ultimaConfirmada, true);
+        } catch (Exception e) {
+            // canal fechado: o broker devolve as entregas não confirmadas à fila
+            entregas.clear();
+            System.err.println("[Consumo] Falha ao confirmar entregas de " + descricao + ": " + e.getMessage()
+                    + " — serão reentregues");
+        }
+    }
+}
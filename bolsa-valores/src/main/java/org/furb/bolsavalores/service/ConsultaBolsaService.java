@@ -1,12 +1,20 @@
 package org.furb.bolsavalores.service;
 
 import org.furb.bolsavalores.config.AppConfig;
+import org.furb.bolsavalores.jfr.BuscaCotacaoEvent;
 import org.furb.bolsavalores.model.*;
+import org.furb.bolsavalores.tracing.Tracer;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 
 @Service
@@ -16,31 +24,189 @@ public class ConsultaBolsaService {
     private String stockdataToken;
     private final Map<String, WebClient> clients;
     private final AppConfig config;
+    private final Tracer tracer;
 
     public ConsultaBolsaService(@Value("${brapi.token}") String brapiToken,
                                 @Value("${stockdata.token}") String stockdataToken,
                                 Map<String, WebClient> clients,
-                                AppConfig config) {
+                                AppConfig config,
+                                Tracer tracer) {
         this.brapiToken = brapiToken;
         this.stockdataToken = stockdataToken;
         this.clients = clients;
         this.config = config;
+        this.tracer = tracer;
     }
 
     public Acao consultar() {
+        return consultar(config.getTicker());
+    }
+
+    /**
+     * Consulta a cotação atual de um ticker na API configurada em {@code app.api}.
+     *
+     * @param ticker código da ação
+     * @return cotação atual
+     */
+    public Acao consultar(String ticker) {
         String api = config.getApi();
-        String ticker = config.getTicker();
 
         WebClient client = clients.get(api.toLowerCase());
         if (client == null) {
             throw new IllegalArgumentException("API não suportada: " + api);
         }
 
-        return switch (api.toLowerCase().trim()) {
-            case "brapi" -> consultaBrapi(client, ticker);
-            case "stockdata" -> consultaStockData(client, ticker);
-            default -> throw new IllegalArgumentException("API inválida: " + api);
-        };
+        String provedor = api.toLowerCase().trim();
+        BuscaCotacaoEvent evento = iniciarEvento(ticker, provedor, "cotacao");
+        try (Tracer.Escopo escopo = tracer.iniciar("provedor.cotacao")) {
+            escopo.atributo("symbol", ticker).atributo("provedor", provedor);
+            try {
+                Acao acao = switch (provedor) {
+                    case "brapi" -> consultaBrapi(client, ticker);
+                    case "stockdata" -> consultaStockData(client, ticker);
+                    default -> throw new IllegalArgumentException("API inválida: " + api);
+                };
+                evento.sucesso = true;
+                if (acao.getRegularMarketTime() != null) {
+                    escopo.atributo("cotacao", Acao.chaveIdempotencia(acao.getSymbol(), acao.getRegularMarketTime()));
+                }
+                return acao;
+            } catch (RuntimeException e) {
+                escopo.erro(e);
+                throw e;
+            }
+        } finally {
+            evento.commit();
+        }
+    }
+
+    /**
+     * Consulta a série histórica de um ticker na BRAPI.
+     *
+     * <p>Usa {@code /quote/{ticker}?range=&interval=}; cada candle vira uma
+     * {@link Acao} com o preço de fechamento e o horário do candle. A lista
+     * volta em ordem cronológica.</p>
+     *
+     * @param ticker   código da ação
+     * @param range    período (ex: 1mo, 1y, max)
+     * @param interval intervalo dos candles (ex: 1d, 1h)
+     * @return cotações históricas ordenadas por horário
+     */
+    public List<Acao> consultarHistorico(String ticker, String range, String interval) {
+        WebClient client = clients.get("brapi");
+
+        BuscaCotacaoEvent evento = iniciarEvento(ticker, "brapi", "historico");
+        BrapiResponse response;
+        try (Tracer.Escopo escopo = tracer.iniciar("provedor.historico")) {
+            escopo.atributo("symbol", ticker).atributo("range", range).atributo("interval", interval);
+            response = client.get()
+                    .uri(uriBuilder -> uriBuilder
+                            .path("/quote/{ticker}")
+                            .queryParam("range", range)
+                            .queryParam("interval", interval)
+                            .queryParam("token", brapiToken)
+                            .build(ticker))
+                    .retrieve()
+                    .bodyToMono(BrapiResponseWrapper.class)
+                    .map(wrapper -> {
+                        if (wrapper.getResults() == null || wrapper.getResults().isEmpty()) {
+                            throw new RuntimeException("BRAPI retornou uma lista vazia para: " + ticker);
+                        }
+                        return wrapper.getResults().get(0);
+                    })
+                    .block();
+            evento.sucesso = response != null;
+        } finally {
+            evento.commit();
+        }
+
+        if (response == null || response.getHistoricalDataPrice() == null) {
+            throw new RuntimeException("Não foi possível obter o histórico da BRAPI para: " + ticker);
+        }
+
+        List<Acao> historico = new ArrayList<>(response.getHistoricalDataPrice().size());
+        for (BrapiHistoricalPrice ponto : response.getHistoricalDataPrice()) {
+            Acao acao = new Acao();
+            acao.setSymbol(response.getSymbol());
+            acao.setShortName(response.getShortName());
+            acao.setLongName(response.getLongName());
+            acao.setRegularMarketPrice(ponto.getClose());
+            acao.setRegularMarketTime(Instant.ofEpochSecond(ponto.getDate()));
+            historico.add(acao);
+        }
+        historico.sort(Comparator.comparing(Acao::getRegularMarketTime));
+        return historico;
+    }
+
+    /**
+     * Consulta o mercado inteiro na BRAPI ({@code /quote/list}), decodificando
+     * o corpo à medida que chega.
+     *
+     * <p>Cada pedaço do corpo passa pelo {@link DecodificadorMercadoBrapi} e é
+     * liberado em seguida; as cotações são emitidas assim que o item
+     * correspondente termina, sem esperar o fim da resposta. A demanda do
+     * assinante chega até a leitura do socket: um consumidor lento segura a
+     * leitura em vez de acumular o corpo em memória. Se a BRAPI indicar mais
+     * páginas, a seguinte só é pedida quando a atual termina.</p>
+     *
+     * @param limitePagina itens por página pedidos à BRAPI ({@code limit})
+     * @param horario      horário atribuído a todas as cotações (a lista não traz o de cada uma)
+     * @return cotações do mercado, na ordem da resposta
+     */
+    public Flux<Acao> consultarMercado(int limitePagina, Instant horario) {
+        return consultarPaginaMercado(clients.get("brapi"), 1, limitePagina, horario);
+    }
+
+    private Flux<Acao> consultarPaginaMercado(WebClient client, int pagina, int limitePagina, Instant horario) {
+        return Flux.defer(() -> {
+            BuscaCotacaoEvent evento = iniciarEvento("*", "brapi", "mercado");
+            DecodificadorMercadoBrapi decodificador = new DecodificadorMercadoBrapi(horario);
+
+            Flux<Acao> corpo = client.get()
+                    .uri(uriBuilder -> uriBuilder
+                            .path("/quote/list")
+                            .queryParam("page", pagina)
+                            .queryParam("limit", limitePagina)
+                            .queryParam("token", brapiToken)
+                            .build())
+                    .retrieve()
+                    .bodyToFlux(DataBuffer.class)
+                    .concatMapIterable(buffer -> {
+                        try {
+                            byte[] pedaco = new byte[buffer.readableByteCount()];
+                            buffer.read(pedaco);
+                            return decodificador.alimentar(pedaco);
+                        } finally {
+                            DataBufferUtils.release(buffer);
+                        }
+                    })
+                    // pedaços ainda na fila quando a assinatura é cancelada
+                    .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                    .concatWith(Flux.defer(() -> Flux.fromIterable(decodificador.finalizar())))
+                    .doOnComplete(() -> {
+                        evento.sucesso = true;
+                        System.out.println("[Mercado] Página " + pagina + ": " + decodificador.getCotacoes()
+                                + " cotações, " + decodificador.getDescartadas() + " descartadas, "
+                                + decodificador.getBytes() + " bytes");
+                    })
+                    .doFinally(sinal -> evento.commit());
+
+            return corpo.concatWith(Flux.defer(() -> decodificador.isProximaPagina()
+                    ? consultarPaginaMercado(client, pagina + 1, limitePagina, horario)
+                    : Flux.empty()));
+        });
+    }
+
+    /**
+     * Cria o evento JFR de uma consulta ao provedor, já iniciado.
+     */
+    private BuscaCotacaoEvent iniciarEvento(String ticker, String provedor, String operacao) {
+        BuscaCotacaoEvent evento = new BuscaCotacaoEvent();
+        evento.begin();
+        evento.symbol = ticker;
+        evento.provedor = provedor;
+        evento.operacao = operacao;
+        return evento;
     }
 
     private Acao consultaBrapi(WebClient webClient, String ticker) {
@@ -0,0 +1,151 @@
+package org.furb.bolsavalores.service;
+
+import org.furb.bolsavalores.config.AppConfig;
+import org.furb.bolsavalores.model.Acao;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Leituras de vários símbolos em uma única ida ao MongoDB, para telas de
+ * carteira que antes faziam uma requisição (e uma consulta) por ativo.
+ *
+ * <ul>
+ *     <li><b>histórico</b> — um {@code find} com {@code symbol $in [...]} e o
+ *         intervalo de tempo, ordenado por símbolo e horário, atendido pelo
+ *         índice {@code (symbol, regularMarketTime)}. O intervalo nunca é
+ *         aberto: sem {@code from}, vale {@code app.consulta-lote.janela-padrao}
+ *         até {@code to} (ou agora). O resultado é montado em memória, então
+ *         é limitado a {@code app.consulta-lote.max-documentos} cotações; uma
+ *         consulta maior é recusada, para o cliente reduzir o intervalo ou os
+ *         símbolos, em vez de devolver um histórico truncado;</li>
+ *     <li><b>última cotação</b> — uma agregação {@code $match → $sort → $group
+ *         ($first) → $replaceRoot}. A ordenação é a inversa exata do índice,
+ *         então o MongoDB percorre o índice de trás para frente e pega o
+ *         primeiro documento de cada símbolo, sem ordenar em memória.</li>
+ * </ul>
+ * Os resultados são agrupados por símbolo, na ordem em que os símbolos
+ * foram pedidos; símbolos sem cotações ficam de fora. Os nomes vêm do cache
+ * do {@link MetadadosService}.
+ */
+@Service
+public class ConsultaLoteService {
+
+    /** Quantidade máxima de símbolos por consulta. */
+    public static final int MAX_SIMBOLOS = 200;
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final MetadadosService metadadosService;
+    private final Duration janelaPadrao;
+    private final int maxDocumentos;
+
+    public ConsultaLoteService(ReactiveMongoTemplate mongoTemplate, MetadadosService metadadosService,
+                               AppConfig appConfig) {
+        this.mongoTemplate = mongoTemplate;
+        this.metadadosService = metadadosService;
+        this.janelaPadrao = appConfig.getConsultaLote().getJanelaPadrao();
+        this.maxDocumentos = appConfig.getConsultaLote().getMaxDocumentos();
+    }
+
+    /**
+     * Histórico dos símbolos no intervalo, em ordem cronológica.
+     *
+     * @param symbols símbolos desejados
+     * @param from    início do intervalo (inclusivo), opcional; padrão: {@code to} menos a janela padrão
+     * @param to      fim do intervalo (inclusivo), opcional; padrão: agora
+     * @return cotações agrupadas por símbolo; termina com {@link IllegalArgumentException}
+     *         se o intervalo tiver mais que {@code app.consulta-lote.max-documentos} cotações
+     * @throws IllegalArgumentException se a lista de símbolos for vazia ou maior que {@value #MAX_SIMBOLOS}
+     */
+    public Mono<Map<String, List<Acao>>> historico(Collection<String> symbols, Instant from, Instant to) {
+        List<String> pedidos = normalizar(symbols);
+        Instant fim = to == null ? Instant.now() : to;
+        Instant inicio = from == null ? fim.minus(janelaPadrao) : from;
+        Query query = new Query(criterio(pedidos, inicio, fim))
+                .with(Sort.by("symbol", "regularMarketTime"))
+                .limit(maxDocumentos + 1);
+
+        return mongoTemplate.find(query, Acao.class)
+                .map(metadadosService::completar)
+                .collectList()
+                .flatMap(acoes -> {
+                    if (acoes.size() > maxDocumentos) {
+                        return Mono.error(new IllegalArgumentException("O intervalo tem mais de " + maxDocumentos
+                                + " cotações; reduza o intervalo ou a quantidade de símbolos"));
+                    }
+                    Map<String, List<Acao>> grupos = new HashMap<>();
+                    for (Acao acao : acoes) grupos.computeIfAbsent(acao.getSymbol(), s -> new ArrayList<>()).add(acao);
+                    return Mono.just(ordenar(pedidos, grupos));
+                });
+    }
+
+    /**
+     * Última cotação de cada símbolo. Com {@code from}/{@code to}, a última
+     * dentro do intervalo (ex: fechamento de uma data com {@code to}).
+     *
+     * @param symbols símbolos desejados
+     * @param from    início do intervalo (inclusivo), opcional
+     * @param to      fim do intervalo (inclusivo), opcional
+     * @return última cotação por símbolo
+     * @throws IllegalArgumentException se a lista de símbolos for vazia ou maior que {@value #MAX_SIMBOLOS}
+     */
+    public Mono<Map<String, Acao>> ultimas(Collection<String> symbols, Instant from, Instant to) {
+        List<String> pedidos = normalizar(symbols);
+        TypedAggregation<Acao> agregacao = Aggregation.newAggregation(Acao.class,
+                Aggregation.match(criterio(pedidos, from, to)),
+                Aggregation.sort(Sort.by(Sort.Direction.DESC, "symbol", "regularMarketTime")),
+                Aggregation.group("symbol").first(Aggregation.ROOT).as("ultima"),
+                Aggregation.replaceRoot("ultima"));
+
+        return mongoTemplate.aggregate(agregacao, Acao.class)
+                .map(metadadosService::completar)
+                .collectMap(Acao::getSymbol)
+                .map(ultimas -> ordenar(pedidos, ultimas));
+    }
+
+    private Criteria criterio(List<String> symbols, Instant from, Instant to) {
+        Criteria criteria = where("symbol").in(symbols);
+        if (from != null || to != null) {
+            criteria.and("regularMarketTime")
+                    .gte(from == null ? Instant.EPOCH : from)
+                    .lte(to == null ? Instant.now() : to);
+        }
+        return criteria;
+    }
+
+    /**
+     * Converte para maiúsculas, remove vazios e repetidos e valida o tamanho.
+     */
+    private List<String> normalizar(Collection<String> symbols) {
+        Set<String> unicos = new LinkedHashSet<>();
+        if (symbols != null) {
+            for (String symbol : symbols) {
+                if (symbol != null && !symbol.isBlank()) unicos.add(symbol.trim().toUpperCase());
+            }
+        }
+        if (unicos.isEmpty() || unicos.size() > MAX_SIMBOLOS) {
+            throw new IllegalArgumentException("Informe de 1 a " + MAX_SIMBOLOS + " símbolos");
+        }
+        return List.copyOf(unicos);
+    }
+
+    private static <T> Map<String, T> ordenar(List<String> pedidos, Map<String, T> grupos) {
+        Map<String, T> ordenado = new LinkedHashMap<>();
+        for (String symbol : pedidos) {
+            T valor = grupos.get(symbol);
+            if (valor != null) ordenado.put(symbol, valor);
+        }
+        return ordenado;
+    }
+}
@@ -0,0 +1,209 @@
+package org.furb.bolsavalores.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import org.furb.bolsavalores.model.Acao;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodificador incremental da resposta de {@code /quote/list} da BRAPI.
+ *
+ * <p>Recebe o corpo em pedaços, na ordem em que chegam da rede, e usa o
+ * parser não bloqueante do Jackson para ler os tokens disponíveis em cada um.
+ * Só o item corrente de {@code stocks} é montado em memória: cada item
+ * completo vira uma {@link Acao} devolvida na hora, e os demais campos da
+ * resposta são apenas atravessados. O que fica retido entre dois pedaços é o
+ * token incompleto do fim do pedaço anterior.</p>
+ *
+ * <p>Campos usados de cada item: {@code stock}, {@code name} (nome curto e
+ * longo, a lista não os separa) e {@code close}. A lista não traz o horário de
+ * cada cotação; todas recebem o horário passado ao construtor (o início do
+ * intervalo da ingestão, ver {@link IngestaoMercadoService}). Da raiz é lido
+ * {@code hasNextPage}, para a paginação.</p>
+ *
+ * <p>Não é thread-safe: uma instância por resposta.</p>
+ */
+public class DecodificadorMercadoBrapi {
+
+    private static final JsonFactory FABRICA = new JsonFactory();
+
+    /** Profundidade dos itens de {@code stocks}: raiz (1) → array (2) → item (3). */
+    private static final int PROFUNDIDADE_ITEM = 3;
+
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+    private final Instant horario;
+
+    private int profundidade;
+    private boolean emStocks;
+    private String campo;
+    private Acao atual;
+    private boolean comPreco;
+
+    private boolean proximaPagina;
+    private long bytes;
+    private int cotacoes;
+    private int descartadas;
+
+    /**
+     * @param horario horário atribuído às cotações desta resposta
+     */
+    public DecodificadorMercadoBrapi(Instant horario) {
+        try {
+            this.parser = FABRICA.createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            throw new IllegalStateException("Não foi possível criar o parser JSON", e);
+        }
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+        this.horario = horario;
+    }
+
+    /**
+     * Processa mais um pedaço do corpo.
+     *
+     * @param pedaco bytes recebidos; o array não é guardado depois da chamada
+     *               (o parser só o lê enquanto há tokens disponíveis)
+     * @return cotações completadas neste pedaço (possivelmente vazia)
+     */
+    public List<Acao> alimentar(byte[] pedaco) {
+        bytes += pedaco.length;
+        try {
+            feeder.feedInput(pedaco, 0, pedaco.length);
+            return lerDisponiveis();
+        } catch (IOException e) {
+            throw new IllegalStateException("Resposta inválida da BRAPI (/quote/list): " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Sinaliza o fim do corpo e confere se o documento foi lido por inteiro.
+     *
+     * @return cotações que ainda estavam pendentes
+     * @throws IllegalStateException se o corpo terminou no meio do documento
+     */
+    public List<Acao> finalizar() {
+        feeder.endOfInput();
+        try {
+            List<Acao> restantes = lerDisponiveis();
+            if (profundidade != 0) {
+                throw new IllegalStateException("Resposta da BRAPI (/quote/list) truncada após " + bytes + " bytes");
+            }
+            return restantes;
+        } catch (IOException e) {
+            throw new IllegalStateException("Resposta inválida da BRAPI (/quote/list): " + e.getMessage(), e);
+        } finally {
+            try {
+                parser.close();
+            } catch (IOException ignored) {
+                // parser em memória: nada a liberar
+            }
+        }
+    }
+
+    /** @return true se a raiz indicou {@code hasNextPage: true} */
+    public boolean isProximaPagina() {
+        return proximaPagina;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public int getCotacoes() {
+        return cotacoes;
+    }
+
+    /** @return itens de {@code stocks} sem símbolo ou sem preço, ignorados */
+    public int getDescartadas() {
+        return descartadas;
+    }
+
+    private List<Acao> lerDisponiveis() throws IOException {
+        List<Acao> prontas = List.of();
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            Acao pronta = processar(token);
+            if (pronta != null) {
+                if (prontas.isEmpty()) prontas = new ArrayList<>();
+                prontas.add(pronta);
+            }
+        }
+        return prontas;
+    }
+
+    /**
+     * Avança a máquina de estados com um token.
+     *
+     * @return a cotação completada por este token, se houver
+     */
+    private Acao processar(JsonToken token) throws IOException {
+        switch (token) {
+            case START_OBJECT -> {
+                profundidade++;
+                if (emStocks && profundidade == PROFUNDIDADE_ITEM) {
+                    atual = new Acao();
+                    comPreco = false;
+                }
+            }
+            case START_ARRAY -> {
+                profundidade++;
+                if (profundidade == PROFUNDIDADE_ITEM - 1 && "stocks".equals(campo)) emStocks = true;
+            }
+            case END_OBJECT -> {
+                profundidade--;
+                if (emStocks && profundidade == PROFUNDIDADE_ITEM - 1 && atual != null) {
+                    Acao pronta = atual;
+                    atual = null;
+                    return concluir(pronta);
+                }
+            }
+            case END_ARRAY -> {
+                profundidade--;
+                if (emStocks && profundidade == PROFUNDIDADE_ITEM - 2) emStocks = false;
+            }
+            case FIELD_NAME -> campo = parser.currentName();
+            default -> atribuir(token);
+        }
+        return null;
+    }
+
+    /** Guarda um valor escalar, se for um campo de interesse do item ou da raiz. */
+    private void atribuir(JsonToken token) throws IOException {
+        if (profundidade == 1 && "hasNextPage".equals(campo)) {
+            proximaPagina = token == JsonToken.VALUE_TRUE;
+            return;
+        }
+        if (atual == null || profundidade != PROFUNDIDADE_ITEM || token == JsonToken.VALUE_NULL) return;
+        switch (campo) {
+            case "stock" -> atual.setSymbol(parser.getText());
+            case "name" -> {
+                atual.setShortName(parser.getText());
+                atual.setLongName(parser.getText());
+            }
+            case "close" -> {
+                if (token.isNumeric()) {
+                    atual.setRegularMarketPrice(parser.getDoubleValue());
+                    comPreco = true;
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    private Acao concluir(Acao acao) {
+        if (acao.getSymbol() == null || acao.getSymbol().isBlank() || !comPreco) {
+            descartadas++;
+            return null;
+        }
+        acao.setRegularMarketTime(horario);
+        cotacoes++;
+        return acao;
+    }
+}
@@ -2,6 +2,7 @@ package org.furb.bolsavalores.service;
 
 import org.furb.bolsavalores.model.ElectionMessage;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 /**
@@ -9,12 +10,13 @@ import org.springframework.stereotype.Component;
  * ao algoritmo de eleição distribuída (variação do Bully Algorithm).
  *
  * <p>Este componente escuta a fila dinâmica criada para cada instância
- * da aplicação e responde a três tipos de mensagens:</p>
+ * da aplicação e responde a quatro tipos de mensagens:</p>
  *
  * <ul>
  *   <li><strong>ELECTION</strong> – indica que outro nó iniciou uma eleição</li>
  *   <li><strong>OK</strong> – confirma que um nó com maior prioridade está ativo</li>
  *   <li><strong>COORDINATOR</strong> – informa qual nó é o novo coordenador/líder</li>
+ *   <li><strong>RESIGN</strong> – um nó está saindo do cluster (e, se líder, indica o sucessor)</li>
  * </ul>
  *
  * <p>A lógica específica de cada etapa é delegada para o
@@ -22,6 +24,7 @@ import org.springframework.stereotype.Component;
  * centralizadas e testáveis.</p>
  */
 @Component
+@ConditionalOnProperty(prefix = "app.transporte", name = "tipo", havingValue = "rabbit", matchIfMissing = true)
 public class ElectionConsumer {
 
     /** Serviço responsável por coordenar toda a lógica da eleição. */
@@ -49,6 +52,7 @@ public class ElectionConsumer {
      *   <li><strong>ELECTION</strong> – aciona {@code onElectionReceived()}</li>
      *   <li><strong>OK</strong> – aciona {@code onOk()}</li>
      *   <li><strong>COORDINATOR</strong> – aciona {@code onCoordinator()}</li>
+     *   <li><strong>RESIGN</strong> – aciona {@code onResign()}</li>
      * </ul>
      *
      * @param msg mensagem recebida contendo o tipo e dados da eleição
@@ -68,7 +72,12 @@ public class ElectionConsumer {
                 break;
             case COORDINATOR:
                 System.out.println("[" + electionService.getMyPort() + "] RECEBIDO COORDINATOR de " + msg.getSenderPort());
-                electionService.onCoordinator(msg.getSenderPort());
+                electionService.onCoordinator(msg.getSenderPort(), msg.getSenderStartTime(), msg.getElectionId());
+                break;
+            case RESIGN:
+                System.out.println("[" + electionService.getMyPort() + "] RECEBIDO RESIGN de " + msg.getSenderPort()
+                        + " (sucessor=" + msg.getSuccessorPort() + ")");
+                electionService.onResign(msg);
                 break;
         }
     }
@@ -2,10 +2,16 @@ package org.furb.bolsavalores.service;
 
 import jakarta.annotation.PostConstruct;
 import lombok.Getter;
+import org.furb.bolsavalores.config.AppConfig;
 import org.furb.bolsavalores.config.RabbitMQConfig;
+import org.furb.bolsavalores.jfr.FaseEleicaoEvent;
 import org.furb.bolsavalores.model.ElectionMessage;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
@@ -13,6 +19,7 @@ import java.net.*;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Serviço responsável por coordenar o algoritmo de eleição distribuída
@@ -48,13 +55,41 @@ import java.util.concurrent.*;
  *     <li>O líder transmite uma mensagem COORDINATOR via fanout.</li>
  * </ol>
  * </p>
+ *
+ * <p>
+ * Split-brain: as mensagens da eleição podem se perder (partição do broker,
+ * pausa longa), então um nó sem OK só se elege depois de confirmar por HTTP
+ * que não há líder e que nenhum nó mais antigo está vivo. Se ainda assim
+ * dois nós se declararem líderes (ex: partição que separou também o HTTP),
+ * o líder mais novo cede: ao receber o COORDINATOR do mais antigo, ou na
+ * verificação que cada líder faz dos outros nós a cada ping. Um COORDINATOR
+ * de um nó mais novo não derruba o líder: ele reenvia o seu.
+ * </p>
+ *
+ * <p>
+ * No encerramento ordenado (deploy), o nó drena e libera seus shards e
+ * transmite um RESIGN no mesmo fanout. Os demais assumem os shards na hora
+ * e, se o nó era o líder, o sucessor indicado (o nó vivo mais antigo, o
+ * mesmo que venceria a eleição) assume a liderança sem uma eleição completa.
+ * A renúncia roda no {@link #stop()} deste bean, na fase mais alta do
+ * encerramento, enquanto a conexão com o RabbitMQ ainda está aberta. Os tempos sem líder e sem gravação da última sucessão ficam em
+ * {@link #getUltimaSucessao()}.
+ * </p>
+ *
+ * <p>
+ * Sem broker ({@code app.transporte.tipo=memoria}) o nó roda isolado: assume
+ * a liderança na subida, sem eleição, e continua buscando as cotações.
+ * </p>
  */
 @Service
-public class ElectionService {
+public class ElectionService implements SmartLifecycle {
 
-    /** Template usado para envio de mensagens RabbitMQ. */
+    /** Template usado para envio de mensagens RabbitMQ (nulo no modo isolado). */
     private final RabbitTemplate rabbitTemplate;
 
+    /** Indica se o nó roda sem broker, como único nó do cluster. */
+    @Getter private final boolean isolado;
+
     /** Lista de portas conhecidas do cluster, usada para enviar mensagens diretas ELECTION. */
     private final List<String> knownNodes;
 
@@ -73,23 +108,72 @@ public class ElectionService {
     /** Mapa de Futures para controlar respostas OK durante eleições. */
     private final Map<String, CompletableFuture<Boolean>> electionFutures = new ConcurrentHashMap<>();
 
+    /** Indica se o bean foi iniciado e ainda não renunciou (ciclo de vida do contexto). */
+    private volatile boolean rodando;
+
+    /** Id da eleição aguardando o timeout de OK, ou nulo se não há eleição em curso. */
+    private final AtomicReference<String> eleicaoEmCurso = new AtomicReference<>();
+
     /** Timeout de espera por um OK antes de assumir liderança. */
     private final long OK_WAIT_MS = 3000;
 
     /** Cliente HTTP usado para verificar se o líder está vivo. */
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final RestTemplate restTemplate;
+
+    /**
+     * Agendador compartilhado para as tarefas assíncronas da eleição.
+     * Com {@code spring.threads.virtual.enabled=true} cada tarefa roda em uma virtual thread.
+     */
+    private final TaskScheduler taskScheduler;
+
+    /** Métricas de inicialização (tempo até conhecer o primeiro líder). */
+    private final StartupMetrics startupMetrics;
+
+    /** Shards deste nó, drenados e liberados no encerramento (nulo no modo isolado). */
+    private final ShardService shardService;
+
+    /** Instante (epoch ms) do RESIGN do líder anterior, enquanto o novo líder não é conhecido. */
+    private volatile long renunciaLiderEm;
+
+    /** Tempos medidos na última sucessão recebida. */
+    private final Map<String, Object> ultimaSucessao = new ConcurrentHashMap<>();
 
     /**
      * Construtor do serviço de eleição.
      *
-     * @param rabbitTemplate          template para envio de mensagens RabbitMQ
+     * @param rabbitTemplate          template para envio de mensagens RabbitMQ (ausente sem broker)
      * @param knownPortsCsv           lista CSV das portas do cluster
      * @param myPort                  porta local desta instância
+     * @param taskScheduler           agendador das tarefas assíncronas da eleição
+     * @param startupMetrics          métricas de inicialização da instância
+     * @param shardService            shards deste nó, liberados no encerramento (ausente sem broker)
+     * @param pingTimeoutMs           timeout (ms) das chamadas HTTP aos outros nós
+     * @param appConfig               configuração com o tipo de transporte
+     * @throws IllegalStateException se o transporte exige o RabbitMQ e ele não está configurado
      */
-    public ElectionService(RabbitTemplate rabbitTemplate,
+    public ElectionService(ObjectProvider<RabbitTemplate> rabbitTemplate,
                            @Value("${cluster.known-ports}") String knownPortsCsv,
-                           @Value("${server.port}") String myPort) {
-        this.rabbitTemplate = rabbitTemplate;
+                           @Value("${server.port}") String myPort,
+                           TaskScheduler taskScheduler,
+                           StartupMetrics startupMetrics,
+                           ObjectProvider<ShardService> shardService,
+                           @Value("${cluster.ping-timeout-ms:1000}") int pingTimeoutMs,
+                           AppConfig appConfig) {
+        this.rabbitTemplate = rabbitTemplate.getIfAvailable();
+        this.isolado = "memoria".equals(appConfig.getTransporte().getTipo());
+        if (!isolado && this.rabbitTemplate == null) {
+            // sem o template o nó se declararia líder sozinho, ao lado do líder real
+            throw new IllegalStateException("app.transporte.tipo=" + appConfig.getTransporte().getTipo()
+                    + " exige o RabbitMQ configurado");
+        }
+        this.taskScheduler = taskScheduler;
+        this.startupMetrics = startupMetrics;
+        this.shardService = shardService.getIfAvailable();
+
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(pingTimeoutMs);
+        requestFactory.setReadTimeout(pingTimeoutMs);
+        this.restTemplate = new RestTemplate(requestFactory);
         this.knownNodes = parsePorts(knownPortsCsv);
         this.myPort = myPort;
         this.myStartTime = Instant.now().toEpochMilli();
@@ -111,13 +195,18 @@ public class ElectionService {
 
     /**
      * Executado automaticamente após a inicialização do bean.
-     * Inicia a busca por um líder após 1 segundo.
+     * Inicia a busca por um líder após 1 segundo; no modo isolado, assume a
+     * liderança imediatamente.
      */
     @PostConstruct
     public void init() {
-        Executors.newSingleThreadScheduledExecutor().schedule(() -> {
+        if (isolado) {
+            becomeLeader(null);
+            return;
+        }
+        taskScheduler.schedule(() -> {
                 if (!tryFindLeader()) startElection();
-            }, 1, TimeUnit.SECONDS);
+            }, Instant.now().plusSeconds(1));
     }
 
     /**
@@ -127,25 +216,31 @@ public class ElectionService {
      */
     private boolean tryFindLeader() {
         System.out.println("[" + myPort + "] Procurando o líder atual...");
-        for (String node : knownNodes) {
-            if (node.equals(myPort)) continue;
-            try {
-                String url = "http://localhost:" + node + "/api/status";
-                String status = restTemplate.getForObject(url, String.class);
-
-                if ("leader".equalsIgnoreCase(status)) {
-                    this.currentLeaderPort = node;
-                    this.isLeader = false;
-                    System.out.println("[" + myPort + "] líder encontrado! Porta " + node);
-                    return true;
+        FaseEleicaoEvent evento = iniciarFase("BUSCA_LIDER", null);
+        try {
+            for (String node : knownNodes) {
+                if (node.equals(myPort)) continue;
+                try {
+                    String url = "http://localhost:" + node + "/api/status";
+                    String status = restTemplate.getForObject(url, String.class);
+
+                    if ("leader".equalsIgnoreCase(status)) {
+                        this.currentLeaderPort = node;
+                        this.isLeader = false;
+                        startupMetrics.registrarEleicao();
+                        System.out.println("[" + myPort + "] líder encontrado! Porta " + node);
+                        return true;
+                    }
+                }
+                catch (Exception e) {
+                    System.err.println("[" + myPort + "] erro ao dar ping na porta " + node + ": " + e.getMessage());
                 }
             }
-            catch (Exception e) {
-                System.err.println("[" + myPort + "] erro ao dar ping na porta " + node + ": " + e.getMessage());
-            }
+            System.out.println("[" + myPort + "] Líder não encontrado");
+            return false;
+        } finally {
+            encerrarFase(evento);
         }
-        System.out.println("[" + myPort + "] Líder não encontrado");
-        return false;
     }
 
     /**
@@ -153,45 +248,77 @@ public class ElectionService {
      * para todos os nós conhecidos.
      *
      * Caso nenhum nó mais velho responda com OK dentro do timeout,
-     * esta instância se torna o líder.
+     * esta instância se torna o líder. A espera não prende a thread que
+     * chamou: a conclusão é agendada para o fim do timeout. Enquanto uma
+     * eleição está em curso, novos pedidos são absorvidos por ela (o
+     * ELECTION já foi enviado a todos os nós).
      */
-    public synchronized void startElection() {
+    public void startElection() {
+        String electionId = UUID.randomUUID().toString();
+        if (!eleicaoEmCurso.compareAndSet(null, electionId)) {
+            System.out.println("[" + myPort + "] Eleição já em curso; pedido absorvido");
+            return;
+        }
         System.out.println("[" + myPort + "] Iniciando eleição (startTime=" + myStartTime + ")");
         isLeader = false;
         currentLeaderPort = null;
 
-        String electionId = UUID.randomUUID().toString();
+        FaseEleicaoEvent evento = iniciarFase("ELEICAO", electionId);
         CompletableFuture<Boolean> future = new CompletableFuture<>();
         electionFutures.put(electionId, future);
 
-        // Broadcast ELECTION para todos os nós
-        for (String targetPort : knownNodes) {
-            if (targetPort.equals(myPort)) continue;
-            ElectionMessage msg = new ElectionMessage();
-            msg.setElectionId(electionId);
-            msg.setType(ElectionMessage.Type.ELECTION);
-            msg.setSenderPort(myPort);
-            msg.setSenderStartTime(myStartTime);
-
-            rabbitTemplate.convertAndSend(RabbitMQConfig.EXCHANGE_ELECTION,
-                    "process." + targetPort, msg);
-            System.out.println("[" + myPort + "] ELECTION -> process." + targetPort);
+        try {
+            // Broadcast ELECTION para todos os nós
+            for (String targetPort : knownNodes) {
+                if (targetPort.equals(myPort)) continue;
+                ElectionMessage msg = new ElectionMessage();
+                msg.setElectionId(electionId);
+                msg.setType(ElectionMessage.Type.ELECTION);
+                msg.setSenderPort(myPort);
+                msg.setSenderStartTime(myStartTime);
+
+                rabbitTemplate.convertAndSend(RabbitMQConfig.EXCHANGE_ELECTION,
+                        "process." + targetPort, msg);
+                System.out.println("[" + myPort + "] ELECTION -> process." + targetPort);
+            }
+        } catch (RuntimeException ex) {
+            electionFutures.remove(electionId);
+            eleicaoEmCurso.compareAndSet(electionId, null);
+            encerrarFase(evento);
+            throw ex;
         }
 
+        taskScheduler.schedule(() -> concluirEleicao(electionId, future, evento),
+                Instant.now().plusMillis(OK_WAIT_MS));
+    }
+
+    /**
+     * Fim do timeout de uma eleição: sem OK de um nó mais velho, esta
+     * instância se torna o líder — a menos que o HTTP mostre um líder já
+     * eleito ou um nó mais velho vivo, cujo OK se perdeu.
+     */
+    private void concluirEleicao(String electionId, CompletableFuture<Boolean> future, FaseEleicaoEvent evento) {
         try {
-            boolean gotOk = future.get(OK_WAIT_MS, TimeUnit.MILLISECONDS);
-            if (gotOk) {
+            if (Boolean.TRUE.equals(future.getNow(false))) {
                 System.out.println("[" + myPort + "] Recebeu OK; aguardando COORDINATOR...");
-            } else {
-                becomeLeader();
+                return;
+            }
+            // o OK pode ter se perdido: confirma por HTTP antes de se eleger
+            if (tryFindLeader()) return;
+            for (String node : knownNodes) {
+                if (!node.equals(myPort) && consultarInicio(node) < myStartTime) {
+                    System.out.println("[" + myPort + "] Sem OK, mas o nó mais antigo " + node
+                            + " está vivo; a eleição fica com ele");
+                    return;
+                }
             }
-        } catch (TimeoutException te) {
-            becomeLeader();
+            becomeLeader(electionId);
         } catch (Exception ex) {
             ex.printStackTrace();
-            becomeLeader();
         } finally {
             electionFutures.remove(electionId);
+            eleicaoEmCurso.compareAndSet(electionId, null);
+            encerrarFase(evento);
         }
     }
 
@@ -201,6 +328,7 @@ public class ElectionService {
      * @param electionId id da eleição em curso
      */
     public void onOk(String electionId) {
+        encerrarFase(iniciarFase("OK_RECEBIDO", electionId));
         CompletableFuture<Boolean> f = electionFutures.get(electionId);
         if (f != null && !f.isDone()) {
             f.complete(true);
@@ -209,29 +337,56 @@ public class ElectionService {
 
     /**
      * Recebe a mensagem COORDINATOR indicando o novo líder.
+     * <p>
+     * Se esta instância é líder e mais antiga que o emissor, ela mantém a
+     * liderança e reenvia o seu COORDINATOR, que faz o emissor ceder.
+     * </p>
      *
-     * @param leaderPort porta da instância líder
+     * @param leaderPort      porta da instância líder
+     * @param leaderStartTime startTime do emissor
+     * @param electionId      id da eleição que elegeu o líder
      */
-    public void onCoordinator(String leaderPort) {
+    public void onCoordinator(String leaderPort, long leaderStartTime, String electionId) {
+        if (isLeader && !myPort.equals(leaderPort) && myStartTime < leaderStartTime) {
+            System.out.println("[" + myPort + "] COORDINATOR de " + leaderPort + ", mais novo — reafirmando a liderança");
+            anunciarCoordenador(electionId);
+            return;
+        }
         this.currentLeaderPort = leaderPort;
         boolean leaderIsMe = myPort.equals(leaderPort);
         this.isLeader = leaderIsMe;
+        startupMetrics.registrarEleicao();
+        registrarLiderConhecido(leaderPort);
+        encerrarFase(iniciarFase("COORDINATOR_RECEBIDO", electionId));
         System.out.println("[" + myPort + "] COORDINATOR recebido -> " + leaderPort + " (isLeader=" + isLeader + ")");
     }
 
     /**
      * Torna esta instância o líder e envia uma mensagem COORDINATOR
      * via exchange fanout.
+     *
+     * @param electionId id da eleição vencida, repassado no COORDINATOR
      */
-    private void becomeLeader() {
+    private void becomeLeader(String electionId) {
         this.isLeader = true;
         this.currentLeaderPort = myPort;
+        startupMetrics.registrarEleicao();
+        registrarLiderConhecido(myPort);
+        encerrarFase(iniciarFase("LIDER_ASSUMIDO", electionId));
         System.out.println("[" + myPort + "] Tornou-se líder!");
+        if (isolado) return;
+        anunciarCoordenador(electionId);
+    }
+
+    /**
+     * Transmite o COORDINATOR desta instância a todos os nós.
+     */
+    private void anunciarCoordenador(String electionId) {
         ElectionMessage coord = new ElectionMessage();
         coord.setType(ElectionMessage.Type.COORDINATOR);
         coord.setSenderPort(myPort);
         coord.setSenderStartTime(myStartTime);
-        coord.setElectionId(UUID.randomUUID().toString());
+        coord.setElectionId(electionId);
 
         rabbitTemplate.convertAndSend(RabbitMQConfig.EXCHANGE_LEADER, "", coord);
         System.out.println("[" + myPort + "] Broadcast COORDINATOR");
@@ -241,7 +396,8 @@ public class ElectionService {
      * Lógica executada quando um nó recebe uma mensagem ELECTION.
      * <p>
      * Se esta instância for mais velha que o emissor, ela responde OK
-     * e inicia sua própria eleição.
+     * e inicia sua própria eleição. Se ela já é o líder, apenas reenvia o
+     * COORDINATOR, sem largar a liderança por uma nova eleição.
      * </p>
      *
      * @param msg mensagem de eleição recebida
@@ -257,8 +413,16 @@ public class ElectionService {
 
             rabbitTemplate.convertAndSend(RabbitMQConfig.EXCHANGE_ELECTION,
                     "process." + msg.getSenderPort(), ok);
+            encerrarFase(iniciarFase("OK_ENVIADO", msg.getElectionId()));
 
-            Executors.newSingleThreadScheduledExecutor().schedule(this::startElection, 200, TimeUnit.MILLISECONDS);
+            if (isLeader) {
+                anunciarCoordenador(null);
+            } else {
+                // a eleição em curso pode terminar nesse intervalo e eleger esta instância
+                taskScheduler.schedule(() -> {
+                    if (!isLeader) startElection();
+                }, Instant.now().plusMillis(200));
+            }
         } else {
             System.out.println("[" + myPort + "] Sou mais novo que " + msg.getSenderPort() + " -> ignoro");
         }
@@ -268,6 +432,7 @@ public class ElectionService {
      * Verifica periodicamente se o líder está ativo.
      * <p>
      * Caso o líder não responda ao ping HTTP, uma nova eleição é iniciada.
+     * No líder, verifica se outro nó também se declara líder (split-brain).
      * </p>
      */
     public void pingLeader() {
@@ -277,7 +442,10 @@ public class ElectionService {
             return;
         }
 
-        if (isLeader) return;
+        if (isLeader) {
+            verificarOutrosLideres();
+            return;
+        }
 
         try {
             String leaderUrl = "http://localhost:" + currentLeaderPort + "/api/status/ping";
@@ -291,4 +459,268 @@ public class ElectionService {
             startElection();
         }
     }
+
+    /**
+     * Regra de quem busca a cotação do ticker configurado
+     * ({@code BolsaScheduler}): os followers (o líder apenas coordena o
+     * cluster), ou o nó isolado, sem broker. A ingestão do mercado inteiro
+     * roda só no líder ({@code MercadoScheduler}).
+     *
+     * @return true se este nó deve buscar cotações
+     */
+    public boolean deveBuscarCotacoes() {
+        return !isLeader || isolado;
+    }
+
+    /**
+     * Marca o bean como iniciado; a subida da eleição fica no {@link #init()}.
+     */
+    @Override
+    public void start() {
+        rodando = true;
+    }
+
+    /**
+     * Renuncia no início do encerramento do contexto (ver {@link #renunciar()}).
+     */
+    @Override
+    public void stop() {
+        if (!rodando) return;
+        rodando = false;
+        renunciar();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return rodando;
+    }
+
+    /**
+     * Fase mais alta: o Spring para os beans {@link SmartLifecycle} da fase
+     * mais alta para a mais baixa, todos antes de qualquer
+     * {@code @PreDestroy}. A {@code CachingConnectionFactory} (fase
+     * {@link Integer#MIN_VALUE}) fecha as conexões no seu {@code stop()};
+     * com um {@code @PreDestroy}, os ACKs da drenagem já encontrariam os
+     * canais fechados e as mensagens seriam reentregues ao sucessor.
+     */
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Encerramento ordenado: drena as pistas dos shards deste nó (as
+     * mensagens em andamento são gravadas e confirmadas), libera os shards e
+     * transmite um RESIGN para que os demais os assumam imediatamente. Se
+     * este nó é o líder, o RESIGN indica o sucessor.
+     *
+     * <p>Chamado pelo {@link #stop()}, antes de a conexão com o RabbitMQ ser
+     * fechada: os ACKs da drenagem e o RESIGN ainda usam os canais abertos.</p>
+     */
+    public void renunciar() {
+        if (isolado) return;
+        String electionId = UUID.randomUUID().toString();
+        FaseEleicaoEvent evento = iniciarFase("RENUNCIA", electionId);
+        try {
+            if (shardService != null) shardService.encerrar();
+            long liberadoEm = System.currentTimeMillis();
+
+            ElectionMessage resign = new ElectionMessage();
+            resign.setType(ElectionMessage.Type.RESIGN);
+            resign.setElectionId(electionId);
+            resign.setSenderPort(myPort);
+            resign.setSenderStartTime(myStartTime);
+            resign.setReleasedAt(liberadoEm);
+            if (isLeader) resign.setSuccessorPort(escolherSucessor());
+
+            isLeader = false;
+            rabbitTemplate.convertAndSend(RabbitMQConfig.EXCHANGE_LEADER, "", resign);
+            System.out.println("[" + myPort + "] Broadcast RESIGN (sucessor=" + resign.getSuccessorPort() + ")");
+        } catch (Exception e) {
+            System.err.println("[" + myPort + "] Falha ao renunciar: " + e.getMessage()
+                    + " — os demais nós detectarão a saída pelo ping");
+        } finally {
+            encerrarFase(evento);
+        }
+    }
+
+    /**
+     * Trata o RESIGN de outro nó: assume na hora os shards que ele liberou
+     * e, se ele era o líder, passa a liderança ao sucessor indicado.
+     *
+     * <p>O sucessor se declara líder com um COORDINATOR. Os demais aguardam
+     * esse COORDINATOR e, se ele não chegar a tempo (ex: o sucessor também
+     * caiu), iniciam uma eleição. Sem sucessor indicado, a eleição começa
+     * imediatamente.</p>
+     *
+     * <p>A tomada dos shards (pings aos nós e até alguns segundos drenando as
+     * pistas) vai para o agendador: a thread do listener da eleição só trata
+     * a liderança, sem segurar as demais mensagens da eleição.</p>
+     *
+     * @param msg mensagem RESIGN recebida
+     */
+    public void onResign(ElectionMessage msg) {
+        String saindo = msg.getSenderPort();
+        if (myPort.equals(saindo)) return;
+        encerrarFase(iniciarFase("RESIGN_RECEBIDO", msg.getElectionId()));
+
+        ultimaSucessao.clear();
+        ultimaSucessao.put("noSaindo", saindo);
+        ultimaSucessao.put("renunciaEm", msg.getReleasedAt());
+        if (shardService != null) taskScheduler.schedule(() -> assumirShards(saindo, msg.getReleasedAt()), Instant.now());
+
+        boolean eraLider = saindo.equals(currentLeaderPort) || msg.getSuccessorPort() != null;
+        if (!eraLider) return;
+
+        isLeader = false;
+        currentLeaderPort = null;
+        renunciaLiderEm = msg.getReleasedAt();
+        String sucessor = msg.getSuccessorPort();
+
+        if (myPort.equals(sucessor)) {
+            becomeLeader(msg.getElectionId());
+        } else if (sucessor == null) {
+            taskScheduler.schedule(this::startElection, Instant.now());
+        } else {
+            taskScheduler.schedule(() -> {
+                if (currentLeaderPort == null) {
+                    System.out.println("[" + myPort + "] Sucessor " + sucessor + " não assumiu — iniciando eleição");
+                    startElection();
+                }
+            }, Instant.now().plusMillis(OK_WAIT_MS));
+        }
+    }
+
+    /**
+     * Assume os shards liberados por um nó que renunciou, fora da thread do
+     * listener da eleição.
+     */
+    private void assumirShards(String saindo, long liberadosEm) {
+        try {
+            Set<Integer> assumidos = shardService.excluirNo(saindo);
+            long semGravacaoMs = System.currentTimeMillis() - liberadosEm;
+            ultimaSucessao.put("shardsAssumidos", assumidos);
+            if (!assumidos.isEmpty()) {
+                ultimaSucessao.put("semGravacaoMs", semGravacaoMs);
+                System.out.println("[" + myPort + "] Assumiu os shards " + assumidos + " de " + saindo
+                        + " após " + semGravacaoMs + "ms sem consumo");
+            }
+        } catch (Exception e) {
+            System.err.println("[" + myPort + "] Falha ao assumir os shards de " + saindo + ": " + e.getMessage()
+                    + " — o rebalanceamento periódico os redistribui");
+        }
+    }
+
+    /**
+     * @return tempos da última sucessão: shards assumidos, {@code semGravacaoMs}
+     *         (da liberação dos shards pelo nó que saiu até este nó consumi-los) e
+     *         {@code semLiderMs} (do RESIGN do líder até este nó conhecer o novo líder)
+     */
+    public Map<String, Object> getUltimaSucessao() {
+        return new LinkedHashMap<>(ultimaSucessao);
+    }
+
+    /**
+     * Mede o tempo sem líder, se houver um RESIGN de líder pendente.
+     */
+    private void registrarLiderConhecido(String leaderPort) {
+        long renuncia = renunciaLiderEm;
+        if (renuncia == 0) return;
+        renunciaLiderEm = 0;
+        long semLiderMs = System.currentTimeMillis() - renuncia;
+        ultimaSucessao.put("novoLider", leaderPort);
+        ultimaSucessao.put("semLiderMs", semLiderMs);
+        System.out.println("[" + myPort + "] Novo líder " + leaderPort + " conhecido após " + semLiderMs + "ms sem líder");
+    }
+
+    /**
+     * Procura outro nó que também se declare líder. Se ele for mais antigo,
+     * esta instância cede a liderança; se for mais novo, reenvia o
+     * COORDINATOR para que ele ceda.
+     */
+    private void verificarOutrosLideres() {
+        for (String node : knownNodes) {
+            if (node.equals(myPort)) continue;
+            try {
+                String status = restTemplate.getForObject("http://localhost:" + node + "/api/status", String.class);
+                if (!"leader".equalsIgnoreCase(status)) continue;
+            } catch (Exception ignored) {
+                continue; // nó fora do ar
+            }
+
+            long inicio = consultarInicio(node);
+            if (inicio < myStartTime) {
+                System.out.println("[" + myPort + "] Split-brain: " + node + " também é líder e é mais antigo — cedendo");
+                isLeader = false;
+                currentLeaderPort = node;
+                return;
+            }
+            if (inicio != Long.MAX_VALUE) {
+                System.out.println("[" + myPort + "] Split-brain: " + node + " também é líder — reenviando COORDINATOR");
+                anunciarCoordenador(null);
+            }
+        }
+    }
+
+    /**
+     * Escolhe o sucessor: o nó vivo mais antigo (menor startTime), o mesmo
+     * que venceria uma eleição Bully.
+     *
+     * @return porta do sucessor, ou nulo se nenhum outro nó responder
+     */
+    private String escolherSucessor() {
+        return noVivoMaisAntigo();
+    }
+
+    /**
+     * @return porta do outro nó vivo com menor startTime, ou nulo se nenhum responder
+     */
+    private String noVivoMaisAntigo() {
+        String escolhido = null;
+        long maisAntigo = Long.MAX_VALUE;
+        for (String node : knownNodes) {
+            if (node.equals(myPort)) continue;
+            long startTime = consultarInicio(node);
+            if (startTime < maisAntigo) {
+                maisAntigo = startTime;
+                escolhido = node;
+            }
+        }
+        return escolhido;
+    }
+
+    /**
+     * @return startTime informado pelo nó, ou {@link Long#MAX_VALUE} se ele não responder
+     */
+    private long consultarInicio(String node) {
+        try {
+            Long startTime = restTemplate.getForObject("http://localhost:" + node + "/api/status/uptime", Long.class);
+            return startTime == null ? Long.MAX_VALUE : startTime;
+        } catch (Exception ignored) {
+            return Long.MAX_VALUE; // nó fora do ar
+        }
+    }
+
+    /**
+     * Cria o evento JFR de uma fase da eleição, já iniciado.
+     *
+     * @param fase       nome da fase
+     * @param electionId id da eleição, quando houver
+     */
+    private FaseEleicaoEvent iniciarFase(String fase, String electionId) {
+        FaseEleicaoEvent evento = new FaseEleicaoEvent();
+        evento.begin();
+        evento.fase = fase;
+        evento.electionId = electionId;
+        evento.porta = myPort;
+        return evento;
+    }
+
+    /**
+     * Finaliza o evento da fase com o líder conhecido naquele momento.
+     */
+    private void encerrarFase(FaseEleicaoEvent evento) {
+        evento.lider = currentLeaderPort;
+        evento.commit();
+    }
 }
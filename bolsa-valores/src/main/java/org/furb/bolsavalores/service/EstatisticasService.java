@@ -0,0 +1,400 @@
+package org.furb.bolsavalores.service;
+
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.furb.bolsavalores.config.AppConfig;
+import org.furb.bolsavalores.config.ArmazenamentoConfig;
+import org.furb.bolsavalores.model.Acao;
+import org.furb.bolsavalores.model.AcaoPersistidaEvent;
+import org.furb.bolsavalores.model.EstatisticasAcao;
+import org.furb.bolsavalores.model.TopMovers;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Serviço que mantém estatísticas móveis (média, mínimo, máximo, desvio
+ * padrão e variação percentual) por símbolo, para cada janela configurada
+ * em {@code app.estatisticas.janelas}.
+ *
+ * <p>
+ * As estatísticas são atualizadas incrementalmente a cada
+ * {@link AcaoPersistidaEvent}, com custo O(1) amortizado por cotação:
+ * <ul>
+ *     <li>soma e soma dos quadrados acumuladas para média e desvio padrão;</li>
+ *     <li>deques monotônicas para mínimo e máximo;</li>
+ *     <li>descarte das cotações que saíram da janela pela cabeça da fila.</li>
+ * </ul>
+ * A leitura também é O(1), independente do tamanho do histórico salvo no MongoDB.
+ * </p>
+ *
+ * <p>
+ * Cada janela mantém também um {@link RankingVariacao} com a variação
+ * percentual de todos os símbolos, reposicionado a cada cotação em
+ * O(log n). As maiores altas e baixas ({@link #topMovers}) custam só a
+ * leitura das N primeiras entradas de cada ponta.
+ * </p>
+ *
+ * <p>
+ * A janela é ancorada na cotação mais recente do símbolo (e não no relógio),
+ * de modo que fora do pregão a janela continua refletindo as últimas cotações.
+ * O ranking usa a mesma referência, mas entre todos os símbolos: um símbolo
+ * cuja última cotação ficou mais de uma janela atrás da mais recente sai do
+ * ranking, embora suas estatísticas continuem consultáveis.
+ * </p>
+ *
+ * <p>
+ * Na inicialização, as janelas são preenchidas a partir do MongoDB
+ * ({@link #aquecer()}) com uma única agregação: a última cotação de cada
+ * símbolo (pelo índice {@code (symbol, regularMarketTime)}) e, por
+ * {@code $lookup}, as cotações da maior janela terminando nela, lidas em um
+ * cursor. Sem isso, um nó recém-iniciado responderia estatísticas e rankings
+ * só com as cotações recebidas depois da subida.
+ * </p>
+ *
+ * <p>
+ * O aquecimento roda em segundo plano, sem atrasar a subida nem o consumo
+ * dos shards. As cotações persistidas que chegam enquanto ele roda são
+ * guardadas e aplicadas, na ordem de chegada, logo depois dele; assim as
+ * janelas recebem primeiro o histórico e depois as cotações novas,
+ * independentemente da ordem de criação dos beans. Até o fim do
+ * aquecimento as consultas podem devolver janelas incompletas. Uma falha é
+ * registrada e o serviço segue com as cotações recebidas.
+ * </p>
+ */
+@Service
+public class EstatisticasService {
+
+    /** Janelas configuradas, em ordem de declaração. */
+    private final List<Duration> janelas;
+
+    /** Janelas deslizantes por símbolo, na mesma ordem de {@link #janelas}. */
+    private final Map<String, List<JanelaDeslizante>> porSimbolo = new ConcurrentHashMap<>();
+
+    /** Ranking por variação percentual de cada janela, na mesma ordem de {@link #janelas}. */
+    private final List<RankingVariacao> rankings;
+
+    private final MongoTemplate mongoTemplate;
+    private final ArmazenamentoConfig armazenamentoConfig;
+
+    /** Cotações recebidas durante o aquecimento, aplicadas depois dele; acessado sob a trava da própria lista. */
+    private final List<Acao> recebidasAquecendo = new ArrayList<>();
+    private boolean aquecendo;
+
+    /**
+     * @param appConfig           configuração com as janelas das estatísticas
+     * @param mongoTemplate       template usado na agregação do aquecimento
+     * @param armazenamentoConfig coleção de cotações ativa
+     */
+    public EstatisticasService(AppConfig appConfig, MongoTemplate mongoTemplate,
+                               ArmazenamentoConfig armazenamentoConfig) {
+        this.janelas = List.copyOf(appConfig.getEstatisticas().getJanelas());
+        if (janelas.isEmpty()) {
+            throw new IllegalArgumentException("app.estatisticas.janelas deve conter ao menos uma janela");
+        }
+        List<RankingVariacao> lista = new ArrayList<>();
+        for (Duration janela : janelas) lista.add(new RankingVariacao(janela));
+        this.rankings = List.copyOf(lista);
+        this.mongoTemplate = mongoTemplate;
+        this.armazenamentoConfig = armazenamentoConfig;
+    }
+
+    /**
+     * Inicia o aquecimento em segundo plano. As cotações recebidas a partir
+     * daqui ficam guardadas até ele terminar.
+     */
+    @PostConstruct
+    public void iniciarAquecimento() {
+        synchronized (recebidasAquecendo) {
+            aquecendo = true;
+        }
+        Thread.ofVirtual().name("estatisticas-aquecimento").start(this::aquecer);
+    }
+
+    /**
+     * Preenche as janelas e os rankings com as cotações já persistidas e
+     * depois aplica as recebidas enquanto isso.
+     */
+    void aquecer() {
+        synchronized (recebidasAquecendo) {
+            aquecendo = true;
+        }
+        long maiorJanelaMs = Collections.max(janelas).toMillis();
+        long inicio = System.currentTimeMillis();
+        long cotacoes = 0;
+        try (Stream<Acao> historico = mongoTemplate.aggregateStream(
+                agregacaoAquecimento(armazenamentoConfig.getColecaoAcoes(), maiorJanelaMs),
+                armazenamentoConfig.getColecaoAcoes(), Acao.class)) {
+            for (Iterator<Acao> it = historico.iterator(); it.hasNext(); cotacoes++) registrar(it.next());
+            System.out.println("[Estatisticas] Janelas aquecidas: " + porSimbolo.size() + " símbolos, " + cotacoes
+                    + " cotações em " + (System.currentTimeMillis() - inicio) + " ms");
+        } catch (Exception e) {
+            System.err.println("[Estatisticas] Falha ao aquecer as janelas (" + cotacoes
+                    + " cotações carregadas): " + e.getMessage());
+        } finally {
+            synchronized (recebidasAquecendo) {
+                for (Acao acao : recebidasAquecendo) registrar(acao);
+                recebidasAquecendo.clear();
+                aquecendo = false;
+            }
+        }
+    }
+
+    /**
+     * Última cotação de cada símbolo (o {@code $sort} + {@code $group} usa o
+     * índice {@code (symbol, regularMarketTime)}) e, por {@code $lookup}, as
+     * cotações da maior janela terminando nela, em ordem cronológica, uma por
+     * documento.
+     */
+    static Aggregation agregacaoAquecimento(String colecao, long maiorJanelaMs) {
+        AggregationOperation janela = contexto -> new Document("$lookup", new Document()
+                .append("from", colecao)
+                .append("localField", "_id")
+                .append("foreignField", "symbol")
+                .append("let", new Document("inicio", new Document("$subtract", List.of("$fim", maiorJanelaMs))))
+                .append("pipeline", List.of(
+                        new Document("$match", new Document("$expr",
+                                new Document("$gte", List.of("$regularMarketTime", "$$inicio")))),
+                        new Document("$sort", new Document("regularMarketTime", 1)),
+                        new Document("$project", new Document("_id", 0)
+                                .append("regularMarketPrice", 1).append("regularMarketTime", 1))))
+                .append("as", "cotacoes"));
+        // depois do $lookup os campos não são mais os de Acao: os estágios seguem em BSON
+        AggregationOperation porCotacao = contexto -> new Document("$unwind", "$cotacoes");
+        AggregationOperation formato = contexto -> new Document("$project", new Document("_id", 0)
+                .append("symbol", "$_id")
+                .append("regularMarketPrice", "$cotacoes.regularMarketPrice")
+                .append("regularMarketTime", "$cotacoes.regularMarketTime"));
+        return Aggregation.newAggregation(
+                Aggregation.sort(Sort.by(Sort.Direction.DESC, "symbol", "regularMarketTime")),
+                Aggregation.group("symbol").first("regularMarketTime").as("fim"),
+                janela, porCotacao, formato);
+    }
+
+    /**
+     * Atualiza as janelas do símbolo com a cotação recém-persistida.
+     *
+     * @param event evento de ação persistida
+     */
+    @EventListener
+    public void onAcaoPersistida(AcaoPersistidaEvent event) {
+        synchronized (recebidasAquecendo) {
+            if (aquecendo) {
+                recebidasAquecendo.add(event.getAcao());
+                return;
+            }
+        }
+        registrar(event.getAcao());
+    }
+
+    /**
+     * Registra uma cotação em todas as janelas do seu símbolo e reposiciona
+     * o símbolo no ranking de cada janela.
+     *
+     * @param acao cotação a ser registrada
+     */
+    public void registrar(Acao acao) {
+        if (acao.getSymbol() == null || acao.getRegularMarketTime() == null) return;
+
+        String symbol = acao.getSymbol().toUpperCase();
+        List<JanelaDeslizante> janelasDoSimbolo = porSimbolo.computeIfAbsent(symbol, s -> {
+            List<JanelaDeslizante> lista = new ArrayList<>();
+            for (Duration janela : janelas) lista.add(new JanelaDeslizante(janela));
+            return lista;
+        });
+
+        for (int i = 0; i < janelasDoSimbolo.size(); i++) {
+            janelasDoSimbolo.get(i).adicionar(acao.getRegularMarketTime(), acao.getRegularMarketPrice(),
+                    symbol, rankings.get(i));
+        }
+    }
+
+    /**
+     * Retorna as janelas configuradas.
+     *
+     * @return lista imutável de janelas
+     */
+    public List<Duration> getJanelas() {
+        return janelas;
+    }
+
+    /**
+     * Consulta as estatísticas de um símbolo em uma janela.
+     *
+     * @param symbol código da ação
+     * @param janela janela desejada; deve ser uma das configuradas
+     * @return estatísticas, ou vazio caso o símbolo ainda não tenha cotações
+     * @throws IllegalArgumentException se a janela não estiver configurada
+     */
+    public Optional<EstatisticasAcao> consultar(String symbol, Duration janela) {
+        int indice = janelas.indexOf(janela);
+        if (indice < 0) {
+            throw new IllegalArgumentException("Janela não configurada: " + janela + " (disponíveis: " + janelas + ")");
+        }
+
+        List<JanelaDeslizante> janelasDoSimbolo = porSimbolo.get(symbol.toUpperCase());
+        if (janelasDoSimbolo == null) return Optional.empty();
+
+        EstatisticasAcao stats = janelasDoSimbolo.get(indice).snapshot();
+        if (stats == null) return Optional.empty();
+        stats.setSymbol(symbol.toUpperCase());
+        return Optional.of(stats);
+    }
+
+    /**
+     * Consulta as maiores altas e baixas entre os símbolos em uma janela.
+     *
+     * @param janela janela desejada; deve ser uma das configuradas
+     * @param n      quantidade máxima de símbolos em cada lista
+     * @return ranking da janela (listas vazias se ainda não houver cotações)
+     * @throws IllegalArgumentException se a janela não estiver configurada
+     */
+    public TopMovers topMovers(Duration janela, int n) {
+        int indice = janelas.indexOf(janela);
+        if (indice < 0) {
+            throw new IllegalArgumentException("Janela não configurada: " + janela + " (disponíveis: " + janelas + ")");
+        }
+        RankingVariacao ranking = rankings.get(indice);
+        TopMovers topMovers = new TopMovers();
+        topMovers.setJanela(janela.toString());
+        topMovers.setSimbolos(ranking.tamanho());
+        topMovers.setAltas(ranking.altas(n));
+        topMovers.setBaixas(ranking.baixas(n));
+        return topMovers;
+    }
+
+    /**
+     * Janela deslizante de tempo com agregados incrementais.
+     *
+     * <p>Os preços são acumulados deslocados pelo primeiro preço observado
+     * ({@code referencia}), o que reduz o cancelamento numérico no cálculo
+     * da variância por soma dos quadrados.</p>
+     */
+    static class JanelaDeslizante {
+        private record Ponto(Instant time, double price) {}
+
+        private final Duration tamanho;
+        private final ArrayDeque<Ponto> pontos = new ArrayDeque<>();
+        private final ArrayDeque<Ponto> minimos = new ArrayDeque<>();
+        private final ArrayDeque<Ponto> maximos = new ArrayDeque<>();
+
+        private double referencia = Double.NaN;
+        private double soma;
+        private double somaQuadrados;
+
+        JanelaDeslizante(Duration tamanho) {
+            this.tamanho = tamanho;
+        }
+
+        /**
+         * Adiciona a cotação e, se ela entrou na janela, reposiciona o símbolo
+         * no ranking sob a mesma trava (as atualizações do símbolo no ranking
+         * ficam na ordem das cotações).
+         */
+        synchronized void adicionar(Instant time, double price, String symbol, RankingVariacao ranking) {
+            if (!adicionar(time, price)) return;
+            Ponto primeiro = pontos.peekFirst();
+            Ponto ultimo = pontos.peekLast();
+            ranking.atualizar(symbol, primeiro.price(), ultimo.price(), primeiro.time(), ultimo.time());
+        }
+
+        /**
+         * @return true se a cotação entrou na janela
+         */
+        synchronized boolean adicionar(Instant time, double price) {
+            Ponto ultimo = pontos.peekLast();
+            if (ultimo != null && !time.isAfter(ultimo.time())) return inserirAtrasado(time, price);
+
+            if (Double.isNaN(referencia)) referencia = price;
+            Ponto ponto = new Ponto(time, price);
+
+            pontos.addLast(ponto);
+            acumular(price);
+            empilharExtremos(ponto);
+
+            descartarAntigos(time.minus(tamanho));
+            return true;
+        }
+
+        /**
+         * Insere uma cotação mais antiga que a última, na sua posição, se ela
+         * ainda estiver na janela. Desempilha só as cotações mais novas que
+         * ela e refaz as deques de mínimo e máximo.
+         */
+        private boolean inserirAtrasado(Instant time, double price) {
+            if (time.isBefore(pontos.peekLast().time().minus(tamanho))) return false;
+
+            ArrayDeque<Ponto> posteriores = new ArrayDeque<>();
+            while (!pontos.isEmpty() && pontos.peekLast().time().isAfter(time)) posteriores.push(pontos.pollLast());
+            boolean repetida = !pontos.isEmpty() && pontos.peekLast().time().equals(time);
+            if (!repetida) {
+                pontos.addLast(new Ponto(time, price));
+                acumular(price);
+            }
+            while (!posteriores.isEmpty()) pontos.addLast(posteriores.pop());
+            if (repetida) return false;
+
+            minimos.clear();
+            maximos.clear();
+            for (Ponto ponto : pontos) empilharExtremos(ponto);
+            return true;
+        }
+
+        private void acumular(double price) {
+            double desvio = price - referencia;
+            soma += desvio;
+            somaQuadrados += desvio * desvio;
+        }
+
+        private void empilharExtremos(Ponto ponto) {
+            while (!minimos.isEmpty() && minimos.peekLast().price() >= ponto.price()) minimos.pollLast();
+            minimos.addLast(ponto);
+            while (!maximos.isEmpty() && maximos.peekLast().price() <= ponto.price()) maximos.pollLast();
+            maximos.addLast(ponto);
+        }
+
+        private void descartarAntigos(Instant limite) {
+            while (!pontos.isEmpty() && pontos.peekFirst().time().isBefore(limite)) {
+                Ponto removido = pontos.pollFirst();
+                double desvio = removido.price() - referencia;
+                soma -= desvio;
+                somaQuadrados -= desvio * desvio;
+
+                if (minimos.peekFirst() == removido) minimos.pollFirst();
+                if (maximos.peekFirst() == removido) maximos.pollFirst();
+            }
+        }
+
+        synchronized EstatisticasAcao snapshot() {
+            if (pontos.isEmpty()) return null;
+
+            int n = pontos.size();
+            double mediaDeslocada = soma / n;
+            double variancia = Math.max(0, somaQuadrados / n - mediaDeslocada * mediaDeslocada);
+            Ponto primeiro = pontos.peekFirst();
+            Ponto ultimo = pontos.peekLast();
+
+            EstatisticasAcao stats = new EstatisticasAcao();
+            stats.setJanela(tamanho.toString());
+            stats.setAmostras(n);
+            stats.setMedia(referencia + mediaDeslocada);
+            stats.setMinimo(minimos.peekFirst().price());
+            stats.setMaximo(maximos.peekFirst().price());
+            stats.setDesvioPadrao(Math.sqrt(variancia));
+            stats.setVariacaoPercentual(primeiro.price() == 0 ? 0
+                    : (ultimo.price() - primeiro.price()) / primeiro.price() * 100);
+            stats.setInicio(primeiro.time());
+            stats.setFim(ultimo.time());
+            return stats;
+        }
+    }
+}
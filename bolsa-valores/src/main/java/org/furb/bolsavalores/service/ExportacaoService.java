@@ -0,0 +1,155 @@
+package org.furb.bolsavalores.service;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.TimeStampMilliTZVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.furb.bolsavalores.model.Acao;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Serviço de exportação do histórico de cotações.
+ *
+ * <p>Os dados são lidos por cursor do MongoDB e escritos diretamente na
+ * saída da resposta HTTP, sem materializar a lista em memória: o heap usado
+ * é limitado ao lote do cursor (e, no Arrow, ao lote de colunas corrente),
+ * independente do tamanho da extração.</p>
+ *
+ * <p>Formatos:</p>
+ * <ul>
+ *     <li><b>csv</b> — CSV compactado com gzip ({@code symbol,regularMarketPrice,regularMarketTime});</li>
+ *     <li><b>arrow</b> — formato colunar Arrow IPC (stream), em record batches de
+ *         {@value #LINHAS_POR_LOTE_ARROW} linhas.</li>
+ * </ul>
+ */
+@Service
+public class ExportacaoService {
+
+    /** Tamanho do lote pedido ao cursor do MongoDB. */
+    private static final int LOTE_CURSOR = 1000;
+
+    /** Linhas por record batch do Arrow. */
+    private static final int LINHAS_POR_LOTE_ARROW = 8192;
+
+    /** Limite de memória off-heap do Arrow por exportação. */
+    private static final long LIMITE_MEMORIA_ARROW = 64L * 1024 * 1024;
+
+    private static final Schema SCHEMA_ARROW = new Schema(List.of(
+            Field.notNullable("symbol", new ArrowType.Utf8()),
+            Field.notNullable("regularMarketPrice", new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE)),
+            new Field("regularMarketTime", FieldType.notNullable(new ArrowType.Timestamp(TimeUnit.MILLISECOND, "UTC")), null)));
+
+    private final MongoTemplate mongoTemplate;
+
+    public ExportacaoService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Escreve as cotações filtradas em CSV compactado com gzip.
+     *
+     * @param symbols símbolos desejados; vazio ou nulo exporta todos
+     * @param from    início do intervalo (inclusivo), opcional
+     * @param to      fim do intervalo (inclusivo), opcional
+     * @param out     saída da resposta
+     */
+    public void exportarCsvGzip(Collection<String> symbols, Instant from, Instant to, OutputStream out) throws IOException {
+        GZIPOutputStream gzip = new GZIPOutputStream(out, 64 * 1024);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8), 64 * 1024);
+
+        writer.write("symbol,regularMarketPrice,regularMarketTime\n");
+        try (Stream<Acao> cursor = mongoTemplate.stream(consulta(symbols, from, to), Acao.class)) {
+            for (Acao acao : (Iterable<Acao>) cursor::iterator) {
+                writer.write(acao.getSymbol());
+                writer.write(',');
+                writer.write(Double.toString(acao.getRegularMarketPrice()));
+                writer.write(',');
+                writer.write(acao.getRegularMarketTime().toString());
+                writer.write('\n');
+            }
+        }
+        writer.flush();
+        gzip.finish();
+    }
+
+    /**
+     * Escreve as cotações filtradas no formato Arrow IPC (stream).
+     *
+     * @param symbols símbolos desejados; vazio ou nulo exporta todos
+     * @param from    início do intervalo (inclusivo), opcional
+     * @param to      fim do intervalo (inclusivo), opcional
+     * @param out     saída da resposta
+     */
+    public void exportarArrow(Collection<String> symbols, Instant from, Instant to, OutputStream out) throws IOException {
+        try (BufferAllocator allocator = new RootAllocator(LIMITE_MEMORIA_ARROW);
+             VectorSchemaRoot root = VectorSchemaRoot.create(SCHEMA_ARROW, allocator);
+             ArrowStreamWriter writer = new ArrowStreamWriter(root, null, Channels.newChannel(out));
+             Stream<Acao> cursor = mongoTemplate.stream(consulta(symbols, from, to), Acao.class)) {
+
+            VarCharVector symbol = (VarCharVector) root.getVector("symbol");
+            Float8Vector price = (Float8Vector) root.getVector("regularMarketPrice");
+            TimeStampMilliTZVector time = (TimeStampMilliTZVector) root.getVector("regularMarketTime");
+
+            writer.start();
+            root.allocateNew();
+            int linha = 0;
+            for (Acao acao : (Iterable<Acao>) cursor::iterator) {
+                symbol.setSafe(linha, acao.getSymbol().getBytes(StandardCharsets.UTF_8));
+                price.setSafe(linha, acao.getRegularMarketPrice());
+                time.setSafe(linha, acao.getRegularMarketTime().toEpochMilli());
+                if (++linha == LINHAS_POR_LOTE_ARROW) {
+                    root.setRowCount(linha);
+                    writer.writeBatch();
+                    root.allocateNew();
+                    linha = 0;
+                }
+            }
+            if (linha > 0) {
+                root.setRowCount(linha);
+                writer.writeBatch();
+            }
+            writer.end();
+        }
+    }
+
+    /**
+     * Monta a consulta por símbolos ({@code $in}) e intervalo de tempo, ordenada
+     * por símbolo e horário — ordem atendida pelo índice {@code (symbol, regularMarketTime)}.
+     */
+    private Query consulta(Collection<String> symbols, Instant from, Instant to) {
+        Criteria criteria = where("regularMarketTime").ne(null);
+        if (from != null) criteria.gte(from);
+        if (to != null) criteria.lte(to);
+        if (symbols != null && !symbols.isEmpty()) {
+            criteria.and("symbol").in(symbols.stream().map(String::toUpperCase).toList());
+        }
+
+        Query query = new Query(criteria);
+        query.fields().include("symbol", "regularMarketPrice", "regularMarketTime");
+        return query.with(Sort.by("symbol", "regularMarketTime")).cursorBatchSize(LOTE_CURSOR);
+    }
+}
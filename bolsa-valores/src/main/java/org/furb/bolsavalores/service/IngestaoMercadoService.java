@@ -0,0 +1,162 @@
+package org.furb.bolsavalores.service;
+
+import org.furb.bolsavalores.config.AppConfig;
+import org.furb.bolsavalores.model.Acao;
+import org.furb.bolsavalores.tracing.Tracer;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Ingestão do mercado inteiro da B3 a partir da lista da BRAPI.
+ *
+ * <p>A resposta de {@code /quote/list} é decodificada enquanto chega
+ * ({@link ConsultaBolsaService#consultarMercado}) e as cotações são agrupadas
+ * em lotes de {@code app.mercado.lote}. Cada lote vai para o
+ * {@link AcoesPublisher} assim que fica completo, com o resto do corpo ainda
+ * em trânsito; o próximo lote só é pedido depois que o anterior foi
+ * publicado. Em memória ficam no máximo o lote corrente, o seguinte e os
+ * pedaços do corpo ainda não decodificados, qualquer que seja o tamanho da
+ * resposta.</p>
+ *
+ * <p>A lista não traz o horário de cada cotação: todas as cotações de uma
+ * execução recebem o início do intervalo da ingestão
+ * ({@code app.mercado.intervalo-ms}) em que ela começou. Assim, execuções no
+ * mesmo intervalo (ex: o líder antigo e o novo numa troca de liderança, ou
+ * uma execução sob demanda logo após a agendada) geram as mesmas chaves de
+ * idempotência e só a primeira é gravada; cada intervalo grava um ponto por
+ * símbolo. A detecção de mudanças do publicador vale aqui também.</p>
+ */
+@Service
+public class IngestaoMercadoService {
+
+    private final ConsultaBolsaService consultaBolsaService;
+    private final AcoesPublisher acoesPublisher;
+    private final TaskExecutor taskExecutor;
+    private final Tracer tracer;
+    private final AppConfig.Mercado config;
+
+    private final AtomicBoolean emExecucao = new AtomicBoolean();
+    private volatile Map<String, Object> ultimaExecucao = Map.of();
+
+    public IngestaoMercadoService(ConsultaBolsaService consultaBolsaService,
+                                  AcoesPublisher acoesPublisher,
+                                  @Qualifier("applicationTaskExecutor") TaskExecutor taskExecutor,
+                                  Tracer tracer,
+                                  AppConfig appConfig) {
+        this.consultaBolsaService = consultaBolsaService;
+        this.acoesPublisher = acoesPublisher;
+        this.taskExecutor = taskExecutor;
+        this.tracer = tracer;
+        this.config = appConfig.getMercado();
+    }
+
+    /**
+     * Agenda uma ingestão em segundo plano.
+     *
+     * @throws IllegalStateException se já houver uma ingestão em execução neste nó
+     */
+    public void iniciar() {
+        if (!emExecucao.compareAndSet(false, true)) {
+            throw new IllegalStateException("Ingestão do mercado já em execução");
+        }
+        taskExecutor.execute(() -> {
+            try {
+                executar();
+            } catch (Exception e) {
+                System.err.println("[Mercado] ERRO na ingestão: " + e.getMessage());
+            } finally {
+                emExecucao.set(false);
+            }
+        });
+    }
+
+    /**
+     * Executa uma ingestão de forma síncrona; não faz nada se outra já estiver
+     * em execução neste nó.
+     */
+    public void ingerir() {
+        if (!emExecucao.compareAndSet(false, true)) {
+            System.out.println("[Mercado] Ingestão anterior ainda em execução; ciclo ignorado");
+            return;
+        }
+        try {
+            executar();
+        } finally {
+            emExecucao.set(false);
+        }
+    }
+
+    /**
+     * @return resumo da última ingestão deste nó (vazio se nunca houve)
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> info = new LinkedHashMap<>(ultimaExecucao);
+        info.put("emExecucao", emExecucao.get());
+        info.put("lote", config.getLote());
+        return info;
+    }
+
+    /**
+     * @return início do intervalo da ingestão que contém o instante
+     */
+    static Instant inicioDoIntervalo(Instant instante, long intervaloMs) {
+        return Instant.ofEpochMilli(instante.toEpochMilli() / intervaloMs * intervaloMs);
+    }
+
+    private void executar() {
+        Instant inicio = Instant.now();
+        Instant horario = inicioDoIntervalo(inicio, config.getIntervaloMs());
+        long cotacoes = 0;
+        long publicadas = 0;
+        int lotes = 0;
+        String erro = null;
+
+        try (Tracer.Escopo escopo = tracer.iniciar("mercado.ingerir")) {
+            escopo.atributo("provedor", "brapi");
+            try (Stream<List<Acao>> fluxo = consultaBolsaService.consultarMercado(config.getLimitePagina(), horario)
+                    .buffer(config.getLote())
+                    .toStream(1)) {
+                Iterator<List<Acao>> it = fluxo.iterator();
+                while (it.hasNext()) {
+                    List<Acao> lote = it.next();
+                    publicadas += acoesPublisher.publicarLote(lote);
+                    cotacoes += lote.size();
+                    lotes++;
+                }
+            } catch (RuntimeException e) {
+                escopo.erro(e);
+                erro = e.getMessage();
+                throw e;
+            } finally {
+                escopo.atributo("cotacoes", cotacoes).atributo("lotes", lotes);
+                registrar(inicio, cotacoes, publicadas, lotes, erro);
+            }
+        }
+    }
+
+    private void registrar(Instant inicio, long cotacoes, long publicadas, int lotes, String erro) {
+        Duration duracao = Duration.between(inicio, Instant.now());
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("inicio", inicio.toString());
+        info.put("duracaoMs", duracao.toMillis());
+        info.put("cotacoes", cotacoes);
+        info.put("publicadas", publicadas);
+        info.put("lotes", lotes);
+        if (erro != null) info.put("erro", erro);
+        ultimaExecucao = info;
+
+        System.out.println("[Mercado] Ingestão " + (erro == null ? "concluída" : "interrompida") + ": "
+                + cotacoes + " cotações em " + lotes + " lotes (" + publicadas + " publicadas) em "
+                + duracao.toMillis() + " ms");
+    }
+}
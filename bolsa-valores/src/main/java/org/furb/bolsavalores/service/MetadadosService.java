@@ -0,0 +1,243 @@
+package org.furb.bolsavalores.service;
+
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.furb.bolsavalores.config.AppConfig;
+import org.furb.bolsavalores.config.ArmazenamentoConfig;
+import org.furb.bolsavalores.config.RabbitMQConfig;
+import org.furb.bolsavalores.model.Acao;
+import org.furb.bolsavalores.model.Simbolo;
+import org.furb.bolsavalores.model.SimboloAtualizadoEvent;
+import org.furb.bolsavalores.repository.SimbolosRepository;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Metadados dos símbolos (nomes curto e longo), mantidos na coleção
+ * {@code symbols} e em um cache em memória.
+ *
+ * <ul>
+ *     <li><b>publicação</b> — o nó que busca a cotação registra os nomes
+ *         vindos do provedor; só há gravação quando eles mudam. A cotação
+ *         segue para o transporte sem os nomes;</li>
+ *     <li><b>propagação</b> — a mudança gravada vai para todos os nós pelo
+ *         fanout {@code bolsa.simbolos.exchange}; cada um atualiza o cache e
+ *         dispara um {@link SimboloAtualizadoEvent}, que invalida as respostas
+ *         guardadas do símbolo;</li>
+ *     <li><b>leitura</b> — as respostas da API completam os nomes a partir do
+ *         cache, sem consulta ao banco. O cache é carregado na subida e
+ *         recarregado a cada {@code app.metadados.recarga-ms}, o que cobre um
+ *         aviso perdido do fanout (a coleção tem um documento por símbolo).</li>
+ * </ul>
+ *
+ * <p>Com {@code app.metadados.migrar=true}, a subida copia os nomes das
+ * cotações antigas para {@code symbols} e os remove das cotações (só na
+ * coleção comum; a time-series não permite esse update).</p>
+ *
+ * <p>Sem broker ({@code app.transporte.tipo=memoria}) a mudança vale só para
+ * este nó.</p>
+ */
+@Service
+public class MetadadosService {
+
+    private final SimbolosRepository repository;
+    private final MongoTemplate mongoTemplate;
+    private final ArmazenamentoConfig armazenamentoConfig;
+    private final boolean migrar;
+    /** Template do fanout de símbolos; nulo sem broker. */
+    private final RabbitTemplate rabbitTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Map<String, Simbolo> cache = new ConcurrentHashMap<>();
+
+    /**
+     * @param repository          repositório da coleção {@code symbols}
+     * @param mongoTemplate       usado na migração das cotações antigas
+     * @param armazenamentoConfig coleção ativa das cotações
+     * @param appConfig           configuração com a flag de migração
+     * @param rabbitTemplate      template usado para propagar os nomes alterados (ausente sem broker)
+     * @param eventPublisher      publicador do {@link SimboloAtualizadoEvent}
+     */
+    public MetadadosService(SimbolosRepository repository, MongoTemplate mongoTemplate,
+                            ArmazenamentoConfig armazenamentoConfig, AppConfig appConfig,
+                            ObjectProvider<RabbitTemplate> rabbitTemplate, ApplicationEventPublisher eventPublisher) {
+        this.repository = repository;
+        this.mongoTemplate = mongoTemplate;
+        this.armazenamentoConfig = armazenamentoConfig;
+        this.migrar = appConfig.getMetadados().isMigrar();
+        this.rabbitTemplate = rabbitTemplate.getIfAvailable();
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostConstruct
+    public void inicializar() {
+        if (migrar) migrarCotacoesAntigas();
+        recarregar();
+    }
+
+    /**
+     * Recarrega o cache a partir da coleção {@code symbols}.
+     */
+    @Scheduled(fixedDelayString = "${app.metadados.recarga-ms:60000}", initialDelay = 60000)
+    public void recarregar() {
+        try {
+            for (Simbolo simbolo : repository.findAll()) aplicar(simbolo);
+        } catch (Exception e) {
+            System.err.println("[Metadados] Falha ao recarregar os símbolos: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Registra os nomes vindos do provedor, gravando apenas se mudaram.
+     * Uma falha aqui não impede a publicação da cotação.
+     *
+     * @param acao cotação com os nomes preenchidos
+     */
+    public void registrar(Acao acao) {
+        if (acao.getShortName() == null && acao.getLongName() == null) return;
+        String symbol = acao.getSymbol().toUpperCase();
+        Simbolo atual = cache.get(symbol);
+        if (atual != null && Objects.equals(atual.getShortName(), acao.getShortName())
+                && Objects.equals(atual.getLongName(), acao.getLongName())) {
+            return;
+        }
+
+        Simbolo novo = new Simbolo();
+        novo.setSymbol(symbol);
+        novo.setShortName(acao.getShortName());
+        novo.setLongName(acao.getLongName());
+        novo.setAtualizadoEm(Instant.now());
+        try {
+            repository.save(novo);
+            System.out.println("[Metadados] " + symbol + " registrado: " + novo.getLongName());
+        } catch (Exception e) {
+            System.err.println("[Metadados] Falha ao registrar " + symbol + ": " + e.getMessage());
+            return;
+        }
+        propagar(novo);
+    }
+
+    /**
+     * Aplica no cache local os nomes de um símbolo (recebidos pelo fanout,
+     * inclusive os registrados por este nó, ou lidos na recarga). Se eles
+     * mudaram, dispara o {@link SimboloAtualizadoEvent}.
+     *
+     * @param simbolo metadados do símbolo
+     */
+    public void aplicar(Simbolo simbolo) {
+        if (simbolo == null || simbolo.getSymbol() == null) return;
+        String symbol = simbolo.getSymbol().toUpperCase();
+        Simbolo anterior = cache.put(symbol, simbolo);
+        if (anterior != null && Objects.equals(anterior.getShortName(), simbolo.getShortName())
+                && Objects.equals(anterior.getLongName(), simbolo.getLongName())) {
+            return;
+        }
+        eventPublisher.publishEvent(new SimboloAtualizadoEvent(this, simbolo));
+    }
+
+    private void propagar(Simbolo simbolo) {
+        // aplica localmente já, para as respostas deste nó não esperarem a volta do fanout
+        aplicar(simbolo);
+        if (rabbitTemplate == null) return;
+        try {
+            rabbitTemplate.convertAndSend(RabbitMQConfig.EXCHANGE_SIMBOLOS, "", simbolo);
+        } catch (Exception e) {
+            System.err.println("[Metadados] Falha ao propagar " + simbolo.getSymbol() + ": " + e.getMessage()
+                    + " — os demais nós o verão na próxima recarga");
+        }
+    }
+
+    /**
+     * Preenche os nomes da cotação a partir do cache.
+     *
+     * @param acao cotação lida do banco
+     * @return a própria cotação, com os nomes se o símbolo for conhecido
+     */
+    public Acao completar(Acao acao) {
+        Simbolo simbolo = acao.getSymbol() == null ? null : cache.get(acao.getSymbol().toUpperCase());
+        if (simbolo != null) {
+            acao.setShortName(simbolo.getShortName());
+            acao.setLongName(simbolo.getLongName());
+        }
+        return acao;
+    }
+
+    /**
+     * @param symbol código da ação
+     * @return metadados do símbolo, se conhecidos
+     */
+    public Optional<Simbolo> buscar(String symbol) {
+        return Optional.ofNullable(cache.get(symbol.toUpperCase()));
+    }
+
+    /**
+     * Copia da cotação só o que vai para o transporte e para o banco.
+     *
+     * @param acao cotação completa
+     * @return cópia com símbolo, preço e horário
+     */
+    public static Acao semMetadados(Acao acao) {
+        Acao copia = new Acao();
+        copia.setSymbol(acao.getSymbol());
+        copia.setRegularMarketPrice(acao.getRegularMarketPrice());
+        copia.setRegularMarketTime(acao.getRegularMarketTime());
+        return copia;
+    }
+
+    /**
+     * Copia para {@code symbols} os nomes mais recentes de cada símbolo das
+     * cotações antigas (sem sobrescrever os já registrados) e remove os
+     * nomes das cotações.
+     */
+    private void migrarCotacoesAntigas() {
+        String colecao = armazenamentoConfig.getColecaoAcoes();
+        try {
+            Aggregation agregacao = Aggregation.newAggregation(
+                    Aggregation.match(where("longName").exists(true)),
+                    Aggregation.sort(Sort.by("symbol", "regularMarketTime")),
+                    Aggregation.group("symbol").last("shortName").as("shortName").last("longName").as("longName"));
+
+            int registrados = 0;
+            for (Document doc : mongoTemplate.aggregate(agregacao, colecao, Document.class)) {
+                String symbol = doc.getString("_id");
+                if (symbol == null || repository.existsById(symbol.toUpperCase())) continue;
+                Simbolo simbolo = new Simbolo();
+                simbolo.setSymbol(symbol.toUpperCase());
+                simbolo.setShortName(doc.getString("shortName"));
+                simbolo.setLongName(doc.getString("longName"));
+                simbolo.setAtualizadoEm(Instant.now());
+                repository.save(simbolo);
+                registrados++;
+            }
+            System.out.println("[Metadados] " + registrados + " símbolos copiados de " + colecao);
+
+            if (armazenamentoConfig.isTimeSeries()) {
+                System.out.println("[Metadados] Coleção time-series: nomes mantidos nas cotações antigas");
+                return;
+            }
+            long limpas = mongoTemplate.updateMulti(
+                    new Query(where("longName").exists(true)),
+                    new Update().unset("shortName").unset("longName"),
+                    colecao).getModifiedCount();
+            System.out.println("[Metadados] Nomes removidos de " + limpas + " cotações");
+        } catch (Exception e) {
+            System.err.println("[Metadados] Falha na migração dos metadados: " + e.getMessage());
+        }
+    }
+}
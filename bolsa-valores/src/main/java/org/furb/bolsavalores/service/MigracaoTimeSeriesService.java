@@ -0,0 +1,237 @@
+package org.furb.bolsavalores.service;
+
+import org.furb.bolsavalores.config.AppConfig;
+import org.furb.bolsavalores.config.ArmazenamentoConfig;
+import org.furb.bolsavalores.model.Acao;
+import org.furb.bolsavalores.model.MigracaoCheckpoint;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Ferramenta de migração da coleção comum {@code acoes} para a coleção
+ * time-series {@code acoes_ts}.
+ *
+ * <p>Executa na inicialização quando {@code app.armazenamento.migrar=true}
+ * (normalmente junto com {@code app.armazenamento.modo=timeseries}, para
+ * que a coleção de destino já tenha sido criada pelo {@link ArmazenamentoConfig}).</p>
+ *
+ * <p>Os documentos são lidos por cursor em ordem de {@code regularMarketTime}
+ * (ordem em que o MongoDB preenche os buckets com mais eficiência) e gravados
+ * em lotes de {@code app.armazenamento.lote-migracao}. O progresso fica em um
+ * {@link MigracaoCheckpoint}, salvo a cada lote: o destino não serve de
+ * referência, porque as cotações ao vivo já são gravadas nele durante a
+ * migração. Uma execução interrompida retoma do último horário copiado,
+ * descartando os símbolos desse horário que já foram copiados; o primeiro
+ * lote após a retomada ainda é conferido contra o destino, para o caso de a
+ * queda ter ocorrido entre o insert e o checkpoint.</p>
+ *
+ * <p>O checkpoint também é a trava: só um nó migra por vez. Os demais nós
+ * com {@code migrar=true} sobem sem migrar; se o dono cair, a reserva
+ * expira em {@link #RESERVA} e a próxima subida retoma de onde ele parou.</p>
+ */
+@Service
+@ConditionalOnProperty(prefix = "app.armazenamento", name = "migrar", havingValue = "true")
+public class MigracaoTimeSeriesService implements ApplicationRunner {
+
+    /** Duração da reserva do checkpoint, renovada a cada lote. */
+    static final Duration RESERVA = Duration.ofMinutes(2);
+
+    private static final String ID_CHECKPOINT =
+            ArmazenamentoConfig.COLECAO_DOCUMENTO + "->" + ArmazenamentoConfig.COLECAO_TIMESERIES;
+
+    private final MongoTemplate mongoTemplate;
+    private final int tamanhoLote;
+    private final String dono;
+
+    public MigracaoTimeSeriesService(MongoTemplate mongoTemplate, AppConfig appConfig,
+                                     @Value("${server.port}") String porta) {
+        this.mongoTemplate = mongoTemplate;
+        this.tamanhoLote = appConfig.getArmazenamento().getLoteMigracao();
+        this.dono = porta + ":" + UUID.randomUUID();
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        migrar();
+    }
+
+    /**
+     * Copia as cotações ainda não migradas, se nenhum outro nó estiver migrando.
+     *
+     * @return quantidade de cotações inseridas no destino
+     */
+    public long migrar() {
+        String origem = ArmazenamentoConfig.COLECAO_DOCUMENTO;
+        String destino = ArmazenamentoConfig.COLECAO_TIMESERIES;
+
+        if (!mongoTemplate.collectionExists(destino)) {
+            throw new IllegalStateException("Coleção " + destino + " não existe; inicie com app.armazenamento.modo=timeseries");
+        }
+
+        MigracaoCheckpoint checkpoint = reservar();
+        if (checkpoint == null) {
+            MigracaoCheckpoint atual = mongoTemplate.findById(ID_CHECKPOINT, MigracaoCheckpoint.class);
+            System.out.println("[Migração] Em execução em outro nó ("
+                    + (atual == null ? "?" : atual.getDono()) + "); ignorada neste nó");
+            return 0;
+        }
+
+        try {
+            Instant retomarDe = checkpoint.getUltimoHorario();
+            Set<String> jaCopiadosNoLimite = Set.copyOf(checkpoint.getCopiadosNoHorario());
+
+            Query query = new Query(where("regularMarketTime").ne(null))
+                    .with(Sort.by("regularMarketTime"))
+                    .cursorBatchSize(tamanhoLote);
+            if (retomarDe != null) {
+                query.addCriteria(where("regularMarketTime").gte(retomarDe));
+            }
+
+            System.out.println("[Migração] Iniciando " + origem + " -> " + destino
+                    + (retomarDe == null ? "" : " a partir de " + retomarDe));
+
+            long total = 0;
+            boolean conferirDestino = retomarDe != null;
+            List<Acao> lote = new ArrayList<>(tamanhoLote);
+            try (Stream<Acao> cursor = mongoTemplate.stream(query, Acao.class, origem)) {
+                for (Acao acao : (Iterable<Acao>) cursor::iterator) {
+                    if (acao.getRegularMarketTime().equals(retomarDe) && jaCopiadosNoLimite.contains(acao.getSymbol())) {
+                        continue;
+                    }
+                    lote.add(acao);
+                    if (lote.size() == tamanhoLote) {
+                        total += gravar(lote, destino, checkpoint, conferirDestino);
+                        conferirDestino = false;
+                        System.out.println("[Migração] " + total + " cotações copiadas");
+                    }
+                }
+            }
+            total += gravar(lote, destino, checkpoint, conferirDestino);
+
+            checkpoint.setConcluida(true);
+            salvar(checkpoint);
+            System.out.println("[Migração] Concluída: " + total + " cotações copiadas");
+            return total;
+        } finally {
+            liberar();
+        }
+    }
+
+    /**
+     * Grava um lote e avança o checkpoint.
+     *
+     * @param conferir descarta antes as cotações que já estão no destino
+     */
+    private long gravar(List<Acao> lote, String destino, MigracaoCheckpoint checkpoint, boolean conferir) {
+        if (lote.isEmpty()) return 0;
+        Acao ultima = lote.get(lote.size() - 1);
+        Instant horario = ultima.getRegularMarketTime();
+
+        Set<String> noHorario = horario.equals(checkpoint.getUltimoHorario())
+                ? new HashSet<>(checkpoint.getCopiadosNoHorario()) : new HashSet<>();
+        for (Acao acao : lote) {
+            if (acao.getRegularMarketTime().equals(horario)) noHorario.add(acao.getSymbol());
+        }
+
+        List<Acao> novas = conferir ? naoCopiadas(lote, destino) : lote;
+        if (!novas.isEmpty()) mongoTemplate.insert(novas, destino);
+        int quantidade = novas.size();
+        lote.clear();
+
+        checkpoint.setUltimoHorario(horario);
+        checkpoint.setCopiadosNoHorario(noHorario);
+        checkpoint.setCopiadas(checkpoint.getCopiadas() + quantidade);
+        salvar(checkpoint);
+        return quantidade;
+    }
+
+    /**
+     * Cotações do lote que ainda não estão no destino, por símbolo e horário.
+     */
+    private List<Acao> naoCopiadas(List<Acao> lote, String destino) {
+        Instant inicio = lote.get(0).getRegularMarketTime();
+        Instant fim = lote.get(lote.size() - 1).getRegularMarketTime();
+        Query query = new Query(where("regularMarketTime").gte(inicio).lte(fim));
+        query.fields().include("symbol").include("regularMarketTime");
+
+        Set<String> existentes = new HashSet<>();
+        for (Acao acao : mongoTemplate.find(query, Acao.class, destino)) {
+            existentes.add(Acao.chaveIdempotencia(acao.getSymbol(), acao.getRegularMarketTime()));
+        }
+        List<Acao> novas = new ArrayList<>(lote.size());
+        for (Acao acao : lote) {
+            if (!existentes.contains(Acao.chaveIdempotencia(acao.getSymbol(), acao.getRegularMarketTime()))) novas.add(acao);
+        }
+        return novas;
+    }
+
+    /**
+     * Reserva o checkpoint para este nó (criando-o na primeira execução).
+     *
+     * @return checkpoint reservado, ou nulo se outro nó tiver uma reserva válida
+     */
+    private MigracaoCheckpoint reservar() {
+        Instant agora = Instant.now();
+        Query livre = new Query(where("_id").is(ID_CHECKPOINT).orOperator(
+                where("dono").is(null), where("reservadoAte").lt(agora), where("dono").is(dono)));
+        Update reserva = new Update()
+                .set("dono", dono)
+                .set("reservadoAte", agora.plus(RESERVA))
+                .set("atualizadoEm", agora);
+        try {
+            return mongoTemplate.findAndModify(livre, reserva,
+                    FindAndModifyOptions.options().upsert(true).returnNew(true), MigracaoCheckpoint.class);
+        } catch (DuplicateKeyException e) {
+            // o checkpoint existe e está reservado por outro nó
+            return null;
+        }
+    }
+
+    /**
+     * Salva o progresso e renova a reserva.
+     *
+     * @throws IllegalStateException se a reserva tiver passado para outro nó
+     */
+    private void salvar(MigracaoCheckpoint checkpoint) {
+        Instant agora = Instant.now();
+        Update progresso = new Update()
+                .set("ultimoHorario", checkpoint.getUltimoHorario())
+                .set("copiadosNoHorario", checkpoint.getCopiadosNoHorario())
+                .set("copiadas", checkpoint.getCopiadas())
+                .set("concluida", checkpoint.isConcluida())
+                .set("reservadoAte", agora.plus(RESERVA))
+                .set("atualizadoEm", agora);
+        long atualizados = mongoTemplate.updateFirst(doDono(), progresso, MigracaoCheckpoint.class).getModifiedCount();
+        if (atualizados == 0) {
+            throw new IllegalStateException("Reserva da migração perdida para outro nó");
+        }
+    }
+
+    private void liberar() {
+        mongoTemplate.updateFirst(doDono(), new Update().unset("dono").unset("reservadoAte"), MigracaoCheckpoint.class);
+    }
+
+    private Query doDono() {
+        return new Query(where("_id").is(ID_CHECKPOINT).and("dono").is(dono));
+    }
+}
@@ -0,0 +1,473 @@
+package org.furb.bolsavalores.service;
+
+import com.rabbitmq.client.Channel;
+import jakarta.annotation.PreDestroy;
+import org.furb.bolsavalores.config.AppConfig;
+import org.furb.bolsavalores.config.RabbitMQConfig;
+import org.furb.bolsavalores.model.Acao;
+import org.furb.bolsavalores.model.FaixaCotacao;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Processa as cotações recebidas dos shards em paralelo, mantendo a ordem
+ * por símbolo.
+ *
+ * <p>
+ * O container de cada shard apenas registra a entrega ({@link #registrarEntrega}),
+ * a entrega a {@link #despachar} e volta a consumir; o trabalho (verificação
+ * de duplicidade, gravação no MongoDB e ACK) é feito pelo {@link AcoesConsumer}
+ * em um pool de threads:
+ * <ul>
+ *     <li><b>pistas por símbolo</b> — cada símbolo tem uma fila serial própria
+ *         e no máximo uma thread a executando por vez, então as cotações de um
+ *         ticker são gravadas na ordem em que chegaram do shard, enquanto
+ *         tickers diferentes avançam em paralelo. A pista existe só enquanto
+ *         tem cotações: ociosa, ela sai do mapa, e a próxima cotação do
+ *         símbolo cria outra;</li>
+ *     <li><b>ACKs pelo canal do container</b> — as pistas não usam o canal
+ *         diretamente: liquidam a entrega no {@link ConfirmacoesCanal} do
+ *         canal, que envia ao broker, sob uma trava, só o prefixo contíguo de
+ *         entregas liquidadas (um {@code basicAck(multiple=true)} por
+ *         sequência). Nenhuma entrega volta para a fila com requeue: falhas
+ *         vão para as filas de retentativa (ver {@link RetentativasService});</li>
+ *     <li><b>concorrência adaptativa</b> — a cada ajuste o pool é
+ *         redimensionado entre {@code app.consumo.min-consumidores} e
+ *         {@code app.consumo.max-consumidores} pela lei de Little:
+ *         {@code backlog × latência média / tempo-drenagem}, onde o backlog
+ *         soma as mensagens pendentes nas pistas e as prontas nas filas dos
+ *         shards deste nó. O pool cresce de uma vez e encolhe uma thread
+ *         por ajuste, evitando oscilação;</li>
+ *     <li><b>faixas</b> — as pistas são separadas por {@link FaixaCotacao}, e
+ *         a fila do pool é de prioridade: uma pista ao vivo pronta sempre passa
+ *         na frente das de lote. Além disso, no máximo
+ *         {@code app.consumo.fracao-lote} dos consumidores executam pistas de
+ *         lote ao mesmo tempo; as demais pistas de lote prontas esperam, em
+ *         rodízio, por uma vaga. Assim uma carga em massa nunca ocupa o pool
+ *         inteiro, e uma cotação ao vivo que chega durante a carga espera no
+ *         máximo o fim das gravações em andamento.</li>
+ * </ul>
+ * O total em memória é limitado pelo prefetch de cada shard
+ * ({@code app.consumo.prefetch} e {@code app.consumo.prefetch-lote}), já que
+ * só chegam novas mensagens depois dos ACKs.
+ * </p>
+ *
+ * <p>
+ * A ordem é garantida por símbolo dentro de cada faixa. Entre uma cotação ao
+ * vivo e uma de lote do mesmo símbolo não há ordem: uma carga em massa
+ * (reprocessamento, ingestão do mercado) pode gravar cotações mais antigas
+ * que a última ao vivo. Elas são gravadas mesmo assim — o histórico precisa
+ * delas — e quem consome as cotações persistidas trata a cotação antiga como
+ * atrasada, como as que voltam das retentativas: o {@link EstatisticasService}
+ * a insere na sua posição da janela, o {@link AlertasService} a ignora e o
+ * {@link CacheRespostasService} só invalida as respostas, que são refeitas a
+ * partir do banco. A chave de idempotência cobre só as cópias repetidas, não
+ * a ordem.
+ * </p>
+ */
+@Service
+@ConditionalOnProperty(prefix = "app.transporte", name = "tipo", havingValue = "rabbit", matchIfMissing = true)
+public class ProcessadorAcoes {
+
+    /** Header local (não enviado ao broker) com o instante, em nanos, em que a mensagem entrou na pista. */
+    static final String HEADER_DESPACHADA_EM = "x-despachada-em-nanos";
+
+    /** Intervalo de espera ao drenar as pistas de um shard liberado. */
+    private static final long ESPERA_DRENAGEM_MS = 50;
+
+    private final AcoesConsumer acoesConsumer;
+    private final AmqpAdmin amqpAdmin;
+    private final AppConfig.Consumo config;
+
+    /** Pool que executa as pistas; o core size é o número atual de consumidores. */
+    private final ThreadPoolExecutor pool;
+
+    /** Pistas seriais com cotações pendentes, por faixa e símbolo. */
+    private final Map<String, Pista> pistas = new ConcurrentHashMap<>();
+
+    /** ACKs do canal atual de cada container, por shard e faixa. */
+    private final Map<String, ConfirmacoesCanal> confirmacoes = new ConcurrentHashMap<>();
+
+    /** Ordem de chegada das pistas na fila do pool, para desempate dentro da mesma faixa. */
+    private final AtomicLong ordemAgendamento = new AtomicLong();
+
+    /** Pistas de lote prontas esperando uma vaga, e quantas estão no pool. */
+    private final ArrayDeque<Pista> lotesEsperando = new ArrayDeque<>();
+    private int lotesNoPool;
+
+    /** Mensagens despachadas e ainda não processadas, por faixa. */
+    private final Map<FaixaCotacao, AtomicInteger> pendentesPorFaixa = new EnumMap<>(FaixaCotacao.class);
+
+    /** Mensagens despachadas e ainda não processadas, por shard. */
+    private final Map<Integer, AtomicInteger> pendentesPorShard = new ConcurrentHashMap<>();
+
+    /** Shards sendo liberados: uma entrega recebida deles cancela o consumo do canal. */
+    private final Set<Integer> liberando = ConcurrentHashMap.newKeySet();
+
+    /** Soma dos tempos de processamento e quantidade de mensagens desde o último ajuste. */
+    private final LongAdder nanosProcessando = new LongAdder();
+    private final LongAdder processadas = new LongAdder();
+
+    private volatile double latenciaMediaNanos;
+    private volatile long backlogBroker;
+
+    /**
+     * @param acoesConsumer consumidor que grava e confirma cada cotação
+     * @param amqpAdmin     usado para ler a profundidade das filas dos shards
+     * @param appConfig     configuração com os limites de consumidores
+     */
+    public ProcessadorAcoes(AcoesConsumer acoesConsumer, AmqpAdmin amqpAdmin, AppConfig appConfig) {
+        this.acoesConsumer = acoesConsumer;
+        this.amqpAdmin = amqpAdmin;
+        this.config = appConfig.getConsumo();
+        if (config.getMinConsumidores() < 1 || config.getMaxConsumidores() < config.getMinConsumidores()) {
+            throw new IllegalArgumentException("app.consumo: exige 1 <= min-consumidores <= max-consumidores");
+        }
+
+        AtomicInteger sequencia = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(
+                config.getMinConsumidores(), config.getMaxConsumidores(),
+                30, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(),
+                r -> new Thread(r, "acoes-consumidor-" + sequencia.incrementAndGet()));
+        for (FaixaCotacao faixa : FaixaCotacao.values()) pendentesPorFaixa.put(faixa, new AtomicInteger());
+    }
+
+    /**
+     * Passa a acompanhar a fila de um shard assumido por este nó.
+     *
+     * @param shard índice do shard
+     */
+    public void registrarShard(int shard) {
+        liberando.remove(shard);
+        pendentesPorShard.putIfAbsent(shard, new AtomicInteger());
+    }
+
+    /**
+     * Para de receber mensagens de um shard e aguarda as já recebidas serem
+     * processadas e confirmadas, para que o container possa ser parado sem
+     * deixar ACKs pendentes.
+     *
+     * <p>O consumo é cancelado primeiro, com os canais abertos
+     * ({@link ConfirmacoesCanal#cancelarConsumo()}); um canal que ainda não
+     * entregou nada é cancelado na sua primeira entrega. Sem isso, cada ACK
+     * liberaria espaço no prefetch, novas mensagens continuariam chegando e o
+     * shard poderia nunca esvaziar dentro do prazo. O que não terminar dentro
+     * do prazo será reentregue ao novo dono do shard (e descartado lá pela
+     * verificação de duplicidade, se já tiver sido gravado).</p>
+     *
+     * @param shard índice do shard
+     * @param prazo tempo máximo de espera
+     */
+    public void liberarShard(int shard, Duration prazo) {
+        liberando.add(shard);
+        for (FaixaCotacao faixa : FaixaCotacao.values()) {
+            ConfirmacoesCanal doCanal = confirmacoes.get(shard + ":" + faixa);
+            if (doCanal != null) doCanal.cancelarConsumo();
+        }
+
+        long limite = System.nanoTime() + prazo.toNanos();
+        try {
+            while (temPendentes(shard) && System.nanoTime() < limite) {
+                Thread.sleep(ESPERA_DRENAGEM_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        pendentesPorShard.remove(shard);
+        for (FaixaCotacao faixa : FaixaCotacao.values()) confirmacoes.remove(shard + ":" + faixa);
+    }
+
+    /**
+     * @return true se o shard tem mensagens nas pistas ou entregas ainda não
+     *         enviadas ao broker
+     */
+    private boolean temPendentes(int shard) {
+        AtomicInteger pendentes = pendentesPorShard.get(shard);
+        if (pendentes != null && pendentes.get() > 0) return true;
+        for (FaixaCotacao faixa : FaixaCotacao.values()) {
+            ConfirmacoesCanal doCanal = confirmacoes.get(shard + ":" + faixa);
+            if (doCanal != null && doCanal.pendentes() > 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Registra uma entrega recebida pelo container de um shard, na ordem de
+     * chegada; deve ser chamado pela thread do container antes de qualquer
+     * liquidação da entrega.
+     *
+     * @param shard   shard de origem
+     * @param faixa   faixa da fila de origem
+     * @param message mensagem AMQP recebida
+     * @param channel canal do container
+     * @return ACKs do canal, usados para liquidar a entrega
+     */
+    public ConfirmacoesCanal registrarEntrega(int shard, FaixaCotacao faixa, Message message, Channel channel) {
+        ConfirmacoesCanal doCanal = confirmacoes.compute(shard + ":" + faixa, (chave, atual) ->
+                atual != null && atual.doCanal(channel) ? atual
+                        : new ConfirmacoesCanal(channel, message.getMessageProperties().getConsumerTag(),
+                                RabbitMQConfig.queueAcoes(shard, faixa)));
+        doCanal.registrar(message.getMessageProperties().getDeliveryTag());
+        if (liberando.contains(shard)) doCanal.cancelarConsumo();
+        return doCanal;
+    }
+
+    /**
+     * Enfileira a cotação na pista do seu símbolo, na faixa da fila de origem.
+     * Retorna imediatamente; a entrega é liquidada pelo {@link AcoesConsumer}
+     * na thread da pista (ou rejeitada para a DLX, se ele terminar sem liquidá-la).
+     *
+     * @param shard        shard de origem
+     * @param faixa        faixa da fila de origem
+     * @param acao         cotação convertida
+     * @param message      mensagem AMQP original
+     * @param confirmacoes ACKs do canal, de {@link #registrarEntrega}
+     */
+    public void despachar(int shard, FaixaCotacao faixa, Acao acao, Message message, ConfirmacoesCanal confirmacoes) {
+        AtomicInteger pendentes = pendentesPorShard.computeIfAbsent(shard, s -> new AtomicInteger());
+        AtomicInteger pendentesFaixa = pendentesPorFaixa.get(faixa);
+        pendentes.incrementAndGet();
+        pendentesFaixa.incrementAndGet();
+        message.getMessageProperties().setHeader(HEADER_DESPACHADA_EM, System.nanoTime());
+
+        String symbol = acao.getSymbol() == null ? "" : acao.getSymbol().toUpperCase();
+        String chave = faixa + ":" + symbol;
+        Runnable tarefa = () -> {
+            long inicio = System.nanoTime();
+            try {
+                acoesConsumer.receive(acao, message, confirmacoes);
+            } catch (RuntimeException e) {
+                System.err.println("[Consumo] Falha inesperada ao processar " + chave + ": " + e.getMessage());
+            } finally {
+                confirmacoes.rejeitar(message.getMessageProperties().getDeliveryTag());
+                nanosProcessando.add(System.nanoTime() - inicio);
+                processadas.increment();
+                pendentes.decrementAndGet();
+                pendentesFaixa.decrementAndGet();
+            }
+        };
+        while (!pistas.computeIfAbsent(chave, c -> new Pista(c, faixa)).enfileirar(tarefa)) {
+            // a pista encontrada acabou de se encerrar e já saiu do mapa: a próxima volta cria outra
+        }
+    }
+
+    /**
+     * Tempo que a mensagem aguardou na pista do símbolo até começar a ser
+     * processada (separa a espera local da espera no broker, no tracing).
+     *
+     * @param message mensagem despachada por {@link #despachar}
+     * @return espera em microssegundos, ou nulo se a mensagem não passou por uma pista
+     */
+    public static Long esperaNaPistaMicros(Message message) {
+        Object despachadaEm = message.getMessageProperties().getHeader(HEADER_DESPACHADA_EM);
+        return despachadaEm instanceof Long nanos ? (System.nanoTime() - nanos) / 1000 : null;
+    }
+
+    /**
+     * Recalcula periodicamente a quantidade de consumidores a partir do
+     * backlog e da latência média observada desde o último ajuste.
+     */
+    @Scheduled(fixedDelayString = "${app.consumo.ajuste-ms:2000}", initialDelay = 2000)
+    public void ajustar() {
+        long quantidade = processadas.sumThenReset();
+        long nanos = nanosProcessando.sumThenReset();
+        if (quantidade > 0) latenciaMediaNanos = (double) nanos / quantidade;
+
+        backlogBroker = lerBacklogBroker();
+        long backlog = pendentesLocais() + backlogBroker;
+
+        int atual = pool.getCorePoolSize();
+        int desejado = (int) Math.ceil(backlog * latenciaMediaNanos / config.getTempoDrenagem().toNanos());
+        desejado = Math.max(config.getMinConsumidores(), Math.min(config.getMaxConsumidores(), desejado));
+        if (desejado < atual) desejado = atual - 1;
+
+        if (desejado != atual) {
+            pool.setCorePoolSize(desejado);
+            System.out.println("[Consumo] Consumidores: " + atual + " -> " + desejado
+                    + " (backlog=" + backlog + ", latência média=" + String.format("%.1f", latenciaMediaNanos / 1e6) + "ms)");
+        }
+    }
+
+    /**
+     * Estado atual do processamento, para monitoramento.
+     *
+     * @return mapa com consumidores, limites, backlog e latência média
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("consumidores", pool.getCorePoolSize());
+        info.put("ativos", pool.getActiveCount());
+        info.put("minConsumidores", config.getMinConsumidores());
+        info.put("maxConsumidores", config.getMaxConsumidores());
+        info.put("pendentesLocais", pendentesLocais());
+        info.put("pendentesVivo", pendentesPorFaixa.get(FaixaCotacao.VIVO).get());
+        info.put("pendentesLote", pendentesPorFaixa.get(FaixaCotacao.LOTE).get());
+        synchronized (lotesEsperando) {
+            info.put("pistasLoteNoPool", lotesNoPool);
+            info.put("pistasLoteEsperando", lotesEsperando.size());
+        }
+        info.put("limiteLote", limiteLote());
+        info.put("backlogBroker", backlogBroker);
+        info.put("latenciaMediaMs", latenciaMediaNanos / 1e6);
+        info.put("pistas", pistas.size());
+        return info;
+    }
+
+    private long pendentesLocais() {
+        long total = 0;
+        for (AtomicInteger pendentes : pendentesPorShard.values()) total += pendentes.get();
+        return total;
+    }
+
+    /**
+     * Soma as mensagens prontas nas filas (das duas faixas) dos shards deste nó.
+     */
+    private long lerBacklogBroker() {
+        long total = 0;
+        for (Integer shard : pendentesPorShard.keySet()) {
+            for (FaixaCotacao faixa : FaixaCotacao.values()) {
+                try {
+                    QueueInformation info = amqpAdmin.getQueueInfo(RabbitMQConfig.queueAcoes(shard, faixa));
+                    if (info != null) total += info.getMessageCount();
+                } catch (Exception e) {
+                    System.err.println("[Consumo] Falha ao consultar a fila " + RabbitMQConfig.queueAcoes(shard, faixa)
+                            + ": " + e.getMessage());
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Quantas pistas de lote podem estar no pool ao mesmo tempo: a fração
+     * configurada dos consumidores atuais, com no mínimo uma.
+     */
+    private int limiteLote() {
+        return Math.max(1, (int) (pool.getCorePoolSize() * config.getFracaoLote()));
+    }
+
+    /**
+     * Coloca uma pista com tarefas na fila do pool. As de lote só entram se
+     * houver vaga; senão esperam em {@link #lotesEsperando}.
+     */
+    private void agendar(Pista pista) {
+        if (pista.faixa == FaixaCotacao.LOTE) {
+            synchronized (lotesEsperando) {
+                if (lotesNoPool >= limiteLote()) {
+                    lotesEsperando.addLast(pista);
+                    return;
+                }
+                lotesNoPool++;
+            }
+        }
+        pista.ordem = ordemAgendamento.incrementAndGet();
+        pool.execute(pista);
+    }
+
+    /**
+     * Devolve a vaga de uma pista de lote que terminou sua tarefa, passando-a
+     * para a próxima pista de lote à espera.
+     */
+    private void liberarVagaLote() {
+        Pista proxima;
+        synchronized (lotesEsperando) {
+            proxima = lotesEsperando.pollFirst();
+            if (proxima == null) {
+                lotesNoPool--;
+                return;
+            }
+        }
+        proxima.ordem = ordemAgendamento.incrementAndGet();
+        pool.execute(proxima);
+    }
+
+    /**
+     * Encerra o pool após os shards terem sido liberados, aguardando as
+     * gravações em andamento.
+     */
+    @PreDestroy
+    public void encerrar() throws InterruptedException {
+        pool.shutdown();
+        if (!pool.awaitTermination(10, TimeUnit.SECONDS)) pool.shutdownNow();
+    }
+
+    /**
+     * Fila serial de um símbolo em uma faixa. Fica agendada no pool enquanto
+     * tiver tarefas e executa uma por vez, devolvendo a thread ao pool entre
+     * uma tarefa e outra para que as demais pistas não esperem. Na fila do
+     * pool, as pistas ao vivo vêm antes das de lote e, dentro da faixa, por
+     * ordem de agendamento.
+     *
+     * <p>Quando a última tarefa termina, a pista se retira do mapa e passa a
+     * recusar tarefas, sob a mesma trava: a próxima cotação do símbolo cria
+     * uma pista nova, que só começa depois do fim da anterior.</p>
+     */
+    private final class Pista implements Runnable, Comparable<Pista> {
+        private final String chave;
+        private final FaixaCotacao faixa;
+        private final ArrayDeque<Runnable> tarefas = new ArrayDeque<>();
+        private boolean agendada;
+        private boolean encerrada;
+        private volatile long ordem;
+
+        Pista(String chave, FaixaCotacao faixa) {
+            this.chave = chave;
+            this.faixa = faixa;
+        }
+
+        /**
+         * @return false se a pista já se encerrou e a tarefa não foi aceita
+         */
+        boolean enfileirar(Runnable tarefa) {
+            synchronized (this) {
+                if (encerrada) return false;
+                tarefas.addLast(tarefa);
+                if (agendada) return true;
+                agendada = true;
+            }
+            agendar(this);
+            return true;
+        }
+
+        @Override
+        public void run() {
+            Runnable tarefa;
+            synchronized (this) {
+                tarefa = tarefas.pollFirst();
+            }
+            boolean reagendar;
+            try {
+                if (tarefa != null) tarefa.run();
+            } finally {
+                synchronized (this) {
+                    reagendar = !tarefas.isEmpty();
+                    if (!reagendar) {
+                        agendada = false;
+                        encerrada = true;
+                        pistas.remove(chave, this);
+                    }
+                }
+                if (faixa == FaixaCotacao.LOTE) liberarVagaLote();
+                if (reagendar) agendar(this);
+            }
+        }
+
+        @Override
+        public int compareTo(Pista outra) {
+            int porFaixa = faixa.compareTo(outra.faixa);
+            return porFaixa != 0 ? porFaixa : Long.compare(ordem, outra.ordem);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package org.furb.bolsavalores.service;
+
+import org.furb.bolsavalores.model.VariacaoSimbolo;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Ranking dos símbolos pela variação percentual em uma janela.
+ *
+ * <p>Os símbolos ficam em uma skip list ordenada por variação (e símbolo,
+ * para desempate), com um índice por símbolo que aponta para a entrada
+ * atual. Atualizar um símbolo remove a entrada antiga e insere a nova, em
+ * O(log n); as maiores altas e baixas são lidas pelas pontas da lista,
+ * percorrendo só as N entradas devolvidas.</p>
+ *
+ * <p>As atualizações de um mesmo símbolo devem ser serializadas por quem
+ * chama (o {@link EstatisticasService} as faz sob a trava da janela do
+ * símbolo). A leitura não trava: durante a atualização de um símbolo ele
+ * pode ficar momentaneamente fora do resultado.</p>
+ *
+ * <p>Um símbolo cuja cotação mais recente ficou mais de uma janela atrás da
+ * cotação mais recente do ranking (ex: um ativo que deixou de ser negociado)
+ * sai do ranking: a variação dele descreve um período que não é mais o da
+ * janela. A referência é a cotação mais recente recebida, não o relógio,
+ * então fora do pregão o ranking continua com as últimas variações. Um
+ * segundo índice, ordenado pelo horário da última cotação, permite descartar
+ * esses símbolos pela cabeça em O(log n) cada, sem percorrer o ranking.</p>
+ */
+class RankingVariacao {
+
+    private record Entrada(String symbol, double variacao, double referencia, double preco,
+                           Instant inicio, Instant fim) {
+    }
+
+    private static final Comparator<Entrada> ORDEM =
+            Comparator.comparingDouble(Entrada::variacao).thenComparing(Entrada::symbol);
+
+    private static final Comparator<Entrada> ORDEM_FIM =
+            Comparator.comparing(Entrada::fim).thenComparing(Entrada::symbol);
+
+    private final Duration janela;
+    private final ConcurrentSkipListSet<Entrada> ordenadas = new ConcurrentSkipListSet<>(ORDEM);
+    private final ConcurrentSkipListSet<Entrada> porFim = new ConcurrentSkipListSet<>(ORDEM_FIM);
+    private final Map<String, Entrada> porSimbolo = new ConcurrentHashMap<>();
+
+    /** Horário da cotação mais recente entre todos os símbolos. */
+    private final AtomicReference<Instant> maisRecente = new AtomicReference<>(Instant.MIN);
+
+    /**
+     * @param janela tamanho da janela; símbolos com a última cotação mais de
+     *               uma janela atrás da mais recente do ranking são descartados
+     */
+    RankingVariacao(Duration janela) {
+        this.janela = janela;
+    }
+
+    /**
+     * Reposiciona o símbolo no ranking.
+     *
+     * @param symbol     código da ação (maiúsculo)
+     * @param referencia preço da cotação mais antiga da janela
+     * @param preco      preço da cotação mais recente
+     * @param inicio     horário da cotação de referência
+     * @param fim        horário da cotação mais recente
+     */
+    void atualizar(String symbol, double referencia, double preco, Instant inicio, Instant fim) {
+        double variacao = referencia == 0 ? 0 : (preco - referencia) / referencia * 100;
+        Entrada nova = new Entrada(symbol, variacao, referencia, preco, inicio, fim);
+        Instant limite = maisRecente.accumulateAndGet(fim, (a, b) -> a.isAfter(b) ? a : b).minus(janela);
+
+        if (fim.isBefore(limite)) {
+            Entrada anterior = porSimbolo.remove(symbol);
+            if (anterior != null) remover(anterior);
+        } else {
+            Entrada anterior = porSimbolo.put(symbol, nova);
+            if (anterior != null) remover(anterior);
+            ordenadas.add(nova);
+            porFim.add(nova);
+        }
+        descartarDesatualizados(limite);
+    }
+
+    /**
+     * Remove do ranking os símbolos com a última cotação anterior ao limite.
+     * A remoção do índice é condicional: se o símbolo foi atualizado enquanto
+     * isso, a entrada nova fica.
+     */
+    private void descartarDesatualizados(Instant limite) {
+        for (Entrada entrada : porFim) {
+            if (!entrada.fim().isBefore(limite)) return;
+            remover(entrada);
+            porSimbolo.remove(entrada.symbol(), entrada);
+        }
+    }
+
+    private void remover(Entrada entrada) {
+        ordenadas.remove(entrada);
+        porFim.remove(entrada);
+    }
+
+    /**
+     * @param n quantidade máxima
+     * @return as maiores altas (variação positiva), da maior para a menor
+     */
+    List<VariacaoSimbolo> altas(int n) {
+        return primeiras(ordenadas.descendingIterator(), n, +1);
+    }
+
+    /**
+     * @param n quantidade máxima
+     * @return as maiores baixas (variação negativa), da maior queda para a menor
+     */
+    List<VariacaoSimbolo> baixas(int n) {
+        return primeiras(ordenadas.iterator(), n, -1);
+    }
+
+    /** @return quantidade de símbolos no ranking */
+    int tamanho() {
+        return porSimbolo.size();
+    }
+
+    private List<VariacaoSimbolo> primeiras(Iterator<Entrada> it, int n, int sinal) {
+        List<VariacaoSimbolo> resultado = new ArrayList<>(Math.min(n, 64));
+        while (resultado.size() < n && it.hasNext()) {
+            Entrada entrada = it.next();
+            if (Math.signum(entrada.variacao()) != sinal) break;
+            resultado.add(converter(entrada));
+        }
+        return resultado;
+    }
+
+    private VariacaoSimbolo converter(Entrada entrada) {
+        VariacaoSimbolo variacao = new VariacaoSimbolo();
+        variacao.setSymbol(entrada.symbol());
+        variacao.setVariacaoPercentual(entrada.variacao());
+        variacao.setPrecoReferencia(entrada.referencia());
+        variacao.setPreco(entrada.preco());
+        variacao.setInicio(entrada.inicio());
+        variacao.setFim(entrada.fim());
+        return variacao;
+    }
+}
@@ -0,0 +1,129 @@
+package org.furb.bolsavalores.service;
+
+import org.furb.bolsavalores.model.Acao;
+import org.furb.bolsavalores.model.TraceCotacao;
+import org.furb.bolsavalores.tracing.ArmazenamentoSpans;
+import org.furb.bolsavalores.tracing.Span;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Reconstrói os traces de uma cotação a partir dos trechos armazenados
+ * ({@link ArmazenamentoSpans}) e calcula a latência de cada etapa.
+ *
+ * <p>
+ * A etapa {@code broker} é calculada entre o fim da publicação e o início do
+ * consumo, descontada a espera na pista; quando os dois trechos foram
+ * executados em nós diferentes ela inclui a diferença entre os relógios.
+ * Havendo retentativas, as etapas de consumo e gravação consideram a última
+ * entrega.
+ * </p>
+ */
+@Service
+public class RastreamentoService {
+
+    private final List<ArmazenamentoSpans> armazenamentos;
+
+    /**
+     * @param armazenamentos exportadores que guardam trechos para consulta (pode não haver nenhum)
+     */
+    public RastreamentoService(ObjectProvider<ArmazenamentoSpans> armazenamentos) {
+        this.armazenamentos = armazenamentos.orderedStream().toList();
+    }
+
+    /**
+     * @return true se há algum armazenamento de trechos habilitado
+     */
+    public boolean disponivel() {
+        return !armazenamentos.isEmpty();
+    }
+
+    /**
+     * Busca os traces de uma cotação.
+     *
+     * @param symbol símbolo da ação
+     * @param time   {@code regularMarketTime} da cotação
+     * @return traces encontrados, do mais antigo para o mais recente
+     */
+    public List<TraceCotacao> buscar(String symbol, Instant time) {
+        String chave = Acao.chaveIdempotencia(symbol.toUpperCase(), time);
+
+        // Memória e MongoDB podem devolver os mesmos trechos
+        Map<String, Span> unicos = new LinkedHashMap<>();
+        for (ArmazenamentoSpans armazenamento : armazenamentos) {
+            for (Span span : armazenamento.buscarPorCotacao(chave)) unicos.putIfAbsent(span.getSpanId(), span);
+        }
+
+        Map<String, List<Span>> porTrace = new LinkedHashMap<>();
+        for (Span span : unicos.values()) porTrace.computeIfAbsent(span.getTraceId(), t -> new ArrayList<>()).add(span);
+
+        List<TraceCotacao> traces = new ArrayList<>();
+        for (List<Span> spans : porTrace.values()) traces.add(montar(spans));
+        traces.sort(Comparator.comparing(t -> t.getSpans().get(0).getInicio()));
+        return traces;
+    }
+
+    private TraceCotacao montar(List<Span> spans) {
+        spans.sort(Comparator.comparing(Span::getInicio));
+
+        TraceCotacao trace = new TraceCotacao();
+        trace.setTraceId(spans.get(0).getTraceId());
+        trace.setSpans(spans);
+
+        Span publicacao = null;
+        Span consumo = null;
+        long provedor = 0;
+        boolean temProvedor = false;
+        for (Span span : spans) {
+            if (span.getNome().startsWith("provedor.")) {
+                provedor += span.getDuracaoMicros();
+                temProvedor = true;
+            } else if (span.getNome().endsWith(".publicar") && publicacao == null) {
+                publicacao = span;
+            } else if (span.getNome().endsWith(".consumir")) {
+                consumo = span;
+                trace.setEntregas(trace.getEntregas() + 1);
+            }
+        }
+
+        Map<String, Long> latencias = trace.getLatenciasMicros();
+        if (temProvedor) latencias.put("provedor", provedor);
+        if (publicacao != null) latencias.put("publicacao", publicacao.getDuracaoMicros());
+
+        if (consumo != null) {
+            long pista = atributoLong(consumo, "pista.espera.us");
+            if (publicacao != null) {
+                long broker = micros(publicacao.fim(), consumo.getInicio()) - pista;
+                latencias.put("broker", Math.max(0, broker));
+            }
+            latencias.put("pista", pista);
+
+            long mongo = 0;
+            for (Span span : spans) {
+                if (span.getNome().startsWith("mongo.") && consumo.getSpanId().equals(span.getParentSpanId())) {
+                    mongo += span.getDuracaoMicros();
+                }
+            }
+            latencias.put("mongo", mongo);
+            latencias.put("consumo", consumo.getDuracaoMicros());
+        }
+
+        Instant inicio = spans.get(0).getInicio();
+        Instant fim = spans.stream().map(Span::fim).max(Comparator.naturalOrder()).orElse(inicio);
+        latencias.put("total", micros(inicio, fim));
+        return trace;
+    }
+
+    private static long micros(Instant de, Instant ate) {
+        return Duration.between(de, ate).toNanos() / 1000;
+    }
+
+    private static long atributoLong(Span span, String chave) {
+        String valor = span.getAtributos().get(chave);
+        return valor == null ? 0 : Long.parseLong(valor);
+    }
+}
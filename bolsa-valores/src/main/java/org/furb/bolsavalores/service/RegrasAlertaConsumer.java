@@ -0,0 +1,35 @@
+package org.furb.bolsavalores.service;
+
+import org.furb.bolsavalores.model.MudancaRegraAlerta;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Consumer que recebe, em todas as instâncias, as mudanças nas regras de
+ * alerta (via {@code bolsa.alertas.regras.exchange}) e as aplica no índice
+ * local do {@link AlertasService}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.transporte", name = "tipo", havingValue = "rabbit", matchIfMissing = true)
+public class RegrasAlertaConsumer {
+
+    private final AlertasService alertasService;
+
+    /**
+     * @param alertasService motor de regras de alerta
+     */
+    public RegrasAlertaConsumer(AlertasService alertasService) {
+        this.alertasService = alertasService;
+    }
+
+    /**
+     * Listener da fila efêmera de mudanças de regras desta instância.
+     *
+     * @param mudanca regra adicionada ou removida
+     */
+    @RabbitListener(queues = "#{regrasAlertaQueue.name}")
+    public void onMessage(MudancaRegraAlerta mudanca) {
+        alertasService.aplicar(mudanca);
+    }
+}
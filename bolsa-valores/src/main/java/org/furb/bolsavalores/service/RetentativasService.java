@@ -0,0 +1,202 @@
+package org.furb.bolsavalores.service;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.GetResponse;
+import org.furb.bolsavalores.config.AppConfig;
+import org.furb.bolsavalores.config.RabbitMQConfig;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Serviço que trata as mensagens de ações que não puderam ser processadas.
+ *
+ * <p>
+ * Em vez de devolver a mensagem à fila com {@code basicNack(requeue=true)} —
+ * o que faz uma mensagem envenenada voltar imediatamente, em loop, ocupando
+ * o consumidor do shard — a mensagem original é confirmada e uma cópia segue
+ * um de dois caminhos:
+ * <ul>
+ *     <li><b>retentativa</b> (falhas transitórias, ex: MongoDB indisponível) —
+ *         a cópia vai para a fila de espera do nível correspondente à tentativa
+ *         ({@code app.retentativas.atrasos}) e volta ao shard de origem quando o
+ *         TTL expira;</li>
+ *     <li><b>parking-lot</b> (mensagem inválida ou tentativas esgotadas) — a
+ *         cópia vai para {@code acoes.parking-lot} com o motivo em
+ *         {@code x-motivo}, onde pode ser inspecionada e reprocessada.</li>
+ * </ul>
+ * Se a cópia não puder ser publicada, a original é rejeitada sem requeue e a
+ * dead-letter exchange dos shards a leva ao parking-lot.
+ * </p>
+ *
+ * <p>
+ * A pista do símbolo não espera a retentativa: as cotações seguintes são
+ * gravadas e a que falhou chega depois delas, fora de ordem. Segurar a pista
+ * pelo atraso da retentativa (até minutos) pararia o símbolo por causa de uma
+ * falha transitória. Quem consome as cotações persistidas tolera a
+ * cotação atrasada: o {@link EstatisticasService} a insere na sua posição da
+ * janela e o {@link AlertasService} a ignora, já que o preço que ela
+ * representa foi superado pelas mais novas.
+ * </p>
+ */
+@Service
+@ConditionalOnProperty(prefix = "app.transporte", name = "tipo", havingValue = "rabbit", matchIfMissing = true)
+public class RetentativasService {
+
+    private final RabbitTemplate rabbitTemplate;
+    private final List<Duration> atrasos;
+    private final int maxTentativas;
+
+    /**
+     * @param rabbitTemplate template usado para republicar as mensagens
+     * @param appConfig      configuração com os níveis de atraso e o máximo de tentativas
+     */
+    public RetentativasService(RabbitTemplate rabbitTemplate, AppConfig appConfig) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.atrasos = List.copyOf(appConfig.getRetentativas().getAtrasos());
+        this.maxTentativas = appConfig.getRetentativas().getMaxTentativas();
+        if (atrasos.isEmpty()) {
+            throw new IllegalArgumentException("app.retentativas.atrasos deve conter ao menos um atraso");
+        }
+    }
+
+    /**
+     * Agenda uma nova tentativa da mensagem, com backoff exponencial, ou a
+     * estaciona se as tentativas tiverem se esgotado.
+     *
+     * @param message      mensagem que falhou
+     * @param confirmacoes ACKs do canal em que a mensagem foi recebida
+     * @param erro         falha ocorrida no processamento
+     */
+    public void reagendar(Message message, ConfirmacoesCanal confirmacoes, Exception erro) {
+        int tentativas = tentativas(message) + 1;
+        if (tentativas >= maxTentativas) {
+            estacionar(message, confirmacoes, "Esgotou " + tentativas + " tentativas: " + erro.getMessage());
+            return;
+        }
+
+        int nivel = Math.min(tentativas - 1, atrasos.size() - 1);
+        Message copia = MessageBuilder.fromClonedMessage(message)
+                .removeHeader(ProcessadorAcoes.HEADER_DESPACHADA_EM)
+                .setHeader(RabbitMQConfig.HEADER_TENTATIVAS, tentativas)
+                .setHeader(RabbitMQConfig.HEADER_NIVEL_RETRY, String.valueOf(nivel))
+                .build();
+        encaminhar(RabbitMQConfig.EXCHANGE_RETRY, copia, message, confirmacoes);
+        System.err.println("[Retentativa] Tentativa " + tentativas + " falhou (" + erro.getMessage()
+                + "); nova tentativa em " + atrasos.get(nivel));
+    }
+
+    /**
+     * Envia a mensagem para o parking-lot, sem novas tentativas.
+     *
+     * @param message      mensagem a ser estacionada
+     * @param confirmacoes ACKs do canal em que a mensagem foi recebida
+     * @param motivo       motivo gravado no header {@code x-motivo}
+     */
+    public void estacionar(Message message, ConfirmacoesCanal confirmacoes, String motivo) {
+        Message copia = MessageBuilder.fromClonedMessage(message)
+                .removeHeader(ProcessadorAcoes.HEADER_DESPACHADA_EM)
+                .setHeader(RabbitMQConfig.HEADER_MOTIVO, motivo)
+                .build();
+        encaminhar(RabbitMQConfig.EXCHANGE_DLX, copia, message, confirmacoes);
+        System.err.println("[Retentativa] Mensagem estacionada no parking-lot: " + motivo);
+    }
+
+    /**
+     * Lista as primeiras mensagens do parking-lot sem removê-las: elas são
+     * lidas sem ACK e devolvidas à fila no final.
+     *
+     * @param limite quantidade máxima de mensagens
+     * @return routing key, motivo, tentativas e corpo de cada mensagem
+     */
+    public List<Map<String, Object>> inspecionar(int limite) {
+        return rabbitTemplate.execute(channel -> {
+            List<Map<String, Object>> mensagens = new ArrayList<>();
+            long ultimaTag = -1;
+            for (int i = 0; i < limite; i++) {
+                GetResponse response = channel.basicGet(RabbitMQConfig.QUEUE_PARKING_LOT, false);
+                if (response == null) break;
+                ultimaTag = response.getEnvelope().getDeliveryTag();
+                mensagens.add(descrever(response));
+            }
+            if (ultimaTag >= 0) channel.basicNack(ultimaTag, true, true);
+            return mensagens;
+        });
+    }
+
+    /**
+     * Republica as primeiras mensagens do parking-lot no shard de origem, com
+     * o contador de tentativas zerado. O reprocessamento é uma carga em massa:
+     * vai para a fila de lote do shard, sem atrasar as cotações ao vivo.
+     *
+     * @param limite quantidade máxima de mensagens
+     * @return quantidade de mensagens reprocessadas
+     */
+    public int reprocessar(int limite) {
+        Integer total = rabbitTemplate.execute(channel -> {
+            int reprocessadas = 0;
+            for (int i = 0; i < limite; i++) {
+                GetResponse response = channel.basicGet(RabbitMQConfig.QUEUE_PARKING_LOT, false);
+                if (response == null) break;
+
+                Map<String, Object> headers = new HashMap<>();
+                if (response.getProps().getHeaders() != null) headers.putAll(response.getProps().getHeaders());
+                headers.remove(RabbitMQConfig.HEADER_TENTATIVAS);
+                headers.remove(RabbitMQConfig.HEADER_NIVEL_RETRY);
+                headers.remove(RabbitMQConfig.HEADER_MOTIVO);
+                headers.remove("x-death");
+                AMQP.BasicProperties props = response.getProps().builder().headers(headers).build();
+
+                channel.basicPublish(RabbitMQConfig.EXCHANGE_ACOES,
+                        RabbitMQConfig.routingKeyLote(response.getEnvelope().getRoutingKey()), props, response.getBody());
+                channel.basicAck(response.getEnvelope().getDeliveryTag(), false);
+                reprocessadas++;
+            }
+            return reprocessadas;
+        });
+        System.out.println("[Retentativa] " + total + " mensagens reprocessadas do parking-lot");
+        return total == null ? 0 : total;
+    }
+
+    private void encaminhar(String exchange, Message copia, Message original, ConfirmacoesCanal confirmacoes) {
+        long deliveryTag = original.getMessageProperties().getDeliveryTag();
+        try {
+            rabbitTemplate.send(exchange, original.getMessageProperties().getReceivedRoutingKey(), copia);
+        } catch (AmqpException e) {
+            System.err.println("[Retentativa] Falha ao republicar (" + e.getMessage() + "); rejeitando para a DLX");
+            confirmacoes.rejeitar(deliveryTag);
+            return;
+        }
+        confirmacoes.confirmar(deliveryTag);
+    }
+
+    private int tentativas(Message message) {
+        Object valor = message.getMessageProperties().getHeader(RabbitMQConfig.HEADER_TENTATIVAS);
+        return valor instanceof Number n ? n.intValue() : 0;
+    }
+
+    private Map<String, Object> descrever(GetResponse response) {
+        Map<String, Object> headers = response.getProps().getHeaders() == null
+                ? Map.of() : response.getProps().getHeaders();
+
+        Object motivo = headers.get(RabbitMQConfig.HEADER_MOTIVO);
+        if (motivo == null && headers.get("x-death") instanceof List<?> mortes && !mortes.isEmpty()
+                && mortes.get(0) instanceof Map<?, ?> morte) {
+            motivo = morte.get("reason");
+        }
+
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("routingKey", response.getEnvelope().getRoutingKey());
+        info.put("motivo", motivo == null ? null : motivo.toString());
+        info.put("tentativas", headers.get(RabbitMQConfig.HEADER_TENTATIVAS));
+        info.put("corpo", new String(response.getBody(), StandardCharsets.UTF_8));
+        return info;
+    }
+}
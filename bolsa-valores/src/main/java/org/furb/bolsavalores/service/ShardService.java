@@ -0,0 +1,345 @@
+package org.furb.bolsavalores.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import org.furb.bolsavalores.config.RabbitMQConfig;
+import org.furb.bolsavalores.config.AppConfig;
+import org.furb.bolsavalores.model.Acao;
+import org.furb.bolsavalores.model.FaixaCotacao;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.api.ChannelAwareMessageListener;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serviço responsável por distribuir os shards das filas de ações entre os
+ * nós vivos do cluster.
+ *
+ * <p>
+ * Cada nó descobre periodicamente quais nós conhecidos estão respondendo em
+ * {@code /status/ping} e calcula, de forma determinística, quais shards lhe
+ * pertencem: com os nós vivos ordenados por porta, o shard {@code i} é de
+ * {@code vivos[i % vivos.size()]}. Como todos os nós aplicam a mesma regra,
+ * não é necessário trocar mensagens para combinar a divisão.
+ * </p>
+ *
+ * <p>
+ * Para cada shard próprio são iniciados dois containers de consumo exclusivo
+ * (criados a partir do {@code manualAckContainerFactory}), um por faixa
+ * ({@code acoes.queue.i} e {@code acoes.lote.queue.i}), que entregam as
+ * mensagens ao {@link ProcessadorAcoes}, responsável por gravá-las em
+ * paralelo com pistas seriais por símbolo e prioridade para a faixa ao vivo.
+ * O container de lote usa um prefetch menor
+ * ({@code app.consumo.prefetch-lote}). Quando um nó cai, os demais deixam de
+ * enxergá-lo no próximo rebalanceamento e assumem os shards dele.
+ * </p>
+ *
+ * <p>
+ * A ordem por símbolo é preservada porque cada símbolo pertence a um único
+ * shard e as filas usam <i>single active consumer</i>: só um nó recebe as
+ * mensagens de cada fila. Na troca de dono, o nó antigo cancela o consumo
+ * antes de drenar as pistas do shard (ver {@link #pararShard}), então o novo
+ * passa a receber enquanto o antigo ainda grava as mensagens que já tinha
+ * recebido; nessa janela, limitada pelo prefetch, uma cotação pode ser
+ * gravada depois de uma mais nova do mesmo símbolo, e é tratada como atrasada
+ * (ver {@link ProcessadorAcoes}).
+ * </p>
+ *
+ * <p>
+ * Um nó encerrado de forma ordenada avisa os demais com um RESIGN (ver
+ * {@link ElectionService#renunciar}); eles o retiram da divisão na hora, por
+ * {@link #excluirNo}, sem esperar o próximo rebalanceamento.
+ * </p>
+ */
+@Service
+@ConditionalOnProperty(prefix = "app.transporte", name = "tipo", havingValue = "rabbit", matchIfMissing = true)
+public class ShardService {
+
+    /** Tempo máximo aguardando as pistas de um shard antes de liberá-lo. */
+    private static final Duration PRAZO_DRENAGEM = Duration.ofSeconds(5);
+
+    /**
+     * Por quanto tempo um nó que anunciou sua saída fica fora da divisão,
+     * mesmo que ainda responda ao ping enquanto termina de encerrar.
+     */
+    private static final Duration QUARENTENA_SAIDA = Duration.ofSeconds(30);
+
+    /** Processador que valida e persiste as ações recebidas, em pistas por símbolo. */
+    private final ProcessadorAcoes processadorAcoes;
+
+    /** Serviço que estaciona as mensagens que não puderam ser convertidas. */
+    private final RetentativasService retentativasService;
+
+    /** Motor de alertas, cujo estado por símbolo é descartado quando um shard muda de dono. */
+    private final AlertasService alertasService;
+
+    /** Factory com ACK manual usada para criar os containers de cada shard. */
+    private final SimpleRabbitListenerContainerFactory containerFactory;
+
+    /** Conversor JSON das mensagens de ações. */
+    private final MessageConverter messageConverter;
+
+    /** Lista de portas conhecidas do cluster. */
+    private final List<String> knownNodes;
+
+    /** Porta da instância atual. */
+    private final String myPort;
+
+    /** Quantidade total de shards. */
+    @Getter private final int shardCount;
+
+    /** Prefetch dos containers das filas de lote. */
+    private final int prefetchLote;
+
+    /** Containers ativos (um por faixa), indexados pelo número do shard. */
+    private final Map<Integer, List<SimpleMessageListenerContainer>> containers = new ConcurrentHashMap<>();
+
+    /** Nós que anunciaram a saída, com o instante (epoch ms) até quando ficam fora da divisão. */
+    private final Map<String, Long> nosSaindo = new ConcurrentHashMap<>();
+
+    /** Indica que os shards foram liberados no encerramento; nenhum é assumido depois disso. */
+    private volatile boolean encerrado;
+
+    /** Cliente HTTP com timeouts curtos, usado para verificar quais nós estão vivos. */
+    private final RestTemplate restTemplate;
+
+    /**
+     * @param processadorAcoes    processador das ações recebidas
+     * @param retentativasService serviço de retentativas e parking-lot
+     * @param alertasService      motor de alertas dos símbolos dos shards
+     * @param containerFactory    factory de containers com ACK manual
+     * @param messageConverter    conversor JSON das mensagens
+     * @param knownPortsCsv       lista CSV das portas do cluster
+     * @param myPort              porta local desta instância
+     * @param shardCount          quantidade de shards das filas de ações
+     * @param pingTimeoutMs       timeout (ms) do ping HTTP aos outros nós
+     * @param appConfig           configuração com o prefetch das filas de lote
+     */
+    public ShardService(ProcessadorAcoes processadorAcoes,
+                        RetentativasService retentativasService,
+                        AlertasService alertasService,
+                        @Qualifier("manualAckContainerFactory") SimpleRabbitListenerContainerFactory containerFactory,
+                        MessageConverter messageConverter,
+                        @Value("${cluster.known-ports}") String knownPortsCsv,
+                        @Value("${server.port}") String myPort,
+                        @Value("${cluster.shard-count}") int shardCount,
+                        @Value("${cluster.ping-timeout-ms:1000}") int pingTimeoutMs,
+                        AppConfig appConfig) {
+        this.processadorAcoes = processadorAcoes;
+        this.retentativasService = retentativasService;
+        this.alertasService = alertasService;
+        this.containerFactory = containerFactory;
+        this.messageConverter = messageConverter;
+        this.knownNodes = parsePorts(knownPortsCsv);
+        this.myPort = myPort;
+        this.shardCount = shardCount;
+        this.prefetchLote = appConfig.getConsumo().getPrefetchLote();
+
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(pingTimeoutMs);
+        requestFactory.setReadTimeout(pingTimeoutMs);
+        this.restTemplate = new RestTemplate(requestFactory);
+    }
+
+    /**
+     * Converte a lista de portas do CSV para uma lista.
+     *
+     * @param csv lista no formato "8081,8082,8083"
+     * @return lista de portas normalizada
+     */
+    private List<String> parsePorts(String csv) {
+        if (csv == null || csv.isBlank()) return Collections.emptyList();
+        List<String> ports = new ArrayList<>();
+        for (String p : csv.split(",")) ports.add(p.trim());
+        return ports;
+    }
+
+    /**
+     * Recalcula periodicamente a divisão de shards e ajusta os containers
+     * locais: inicia o consumo dos shards recém-atribuídos e encerra o dos
+     * shards que passaram para outro nó.
+     */
+    @Scheduled(fixedDelayString = "${cluster.shard-rebalance-ms:5000}", initialDelay = 2000)
+    public synchronized void rebalancear() {
+        if (encerrado) return;
+        aplicarDivisao();
+    }
+
+    /**
+     * Retira da divisão um nó que anunciou a saída e rebalanceia na hora,
+     * assumindo os shards que passaram a ser desta instância.
+     *
+     * @param porta porta do nó que está saindo
+     * @return shards assumidos por esta instância
+     */
+    public synchronized Set<Integer> excluirNo(String porta) {
+        nosSaindo.put(porta, System.currentTimeMillis() + QUARENTENA_SAIDA.toMillis());
+        if (encerrado) return Collections.emptySet();
+        return aplicarDivisao();
+    }
+
+    /**
+     * Inicia o consumo dos shards recém-atribuídos e encerra o dos shards
+     * que passaram para outro nó.
+     *
+     * @return shards assumidos nesta rodada
+     */
+    private Set<Integer> aplicarDivisao() {
+        Set<Integer> meus = calcularShards(descobrirNosVivos());
+
+        for (Integer shard : new ArrayList<>(containers.keySet())) {
+            if (!meus.contains(shard)) pararShard(shard);
+        }
+        Set<Integer> assumidos = new TreeSet<>();
+        for (Integer shard : meus) {
+            if (!containers.containsKey(shard)) {
+                iniciarShard(shard);
+                assumidos.add(shard);
+            }
+        }
+        return assumidos;
+    }
+
+    /**
+     * Retorna os shards consumidos atualmente por esta instância.
+     *
+     * @return conjunto ordenado com os índices dos shards
+     */
+    public Set<Integer> getShardsAtivos() {
+        return new TreeSet<>(containers.keySet());
+    }
+
+    /**
+     * Lista os nós que respondem ao ping, incluindo esta instância.
+     *
+     * @return portas vivas ordenadas numericamente
+     */
+    private List<String> descobrirNosVivos() {
+        long agora = System.currentTimeMillis();
+        nosSaindo.values().removeIf(ate -> ate < agora);
+
+        List<String> vivos = new ArrayList<>();
+        vivos.add(myPort);
+        for (String node : knownNodes) {
+            if (node.equals(myPort) || nosSaindo.containsKey(node)) continue;
+            try {
+                String response = restTemplate.getForObject("http://localhost:" + node + "/api/status/ping", String.class);
+                if ("alive".equalsIgnoreCase(response)) vivos.add(node);
+            } catch (Exception ignored) {
+                // nó fora do ar: simplesmente não entra na divisão
+            }
+        }
+        vivos.sort(Comparator.comparingInt(Integer::parseInt));
+        return vivos;
+    }
+
+    /**
+     * Aplica a regra de distribuição round-robin sobre os nós vivos.
+     *
+     * @param vivos portas vivas ordenadas
+     * @return shards que pertencem a esta instância
+     */
+    private Set<Integer> calcularShards(List<String> vivos) {
+        Set<Integer> meus = new TreeSet<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            if (vivos.get(shard % vivos.size()).equals(myPort)) meus.add(shard);
+        }
+        return meus;
+    }
+
+    /**
+     * Cria e inicia os containers de consumo de um shard, um por faixa.
+     *
+     * @param shard índice do shard
+     */
+    private void iniciarShard(int shard) {
+        processadorAcoes.registrarShard(shard);
+        alertasService.esquecerShard(shard, shardCount);
+        List<SimpleMessageListenerContainer> doShard = new ArrayList<>();
+        for (FaixaCotacao faixa : FaixaCotacao.values()) {
+            SimpleMessageListenerContainer container = criarContainer(shard, faixa);
+            container.start();
+            doShard.add(container);
+        }
+        containers.put(shard, doShard);
+        System.out.println("[" + myPort + "] Assumiu o shard " + shard);
+    }
+
+    /**
+     * Cria o container da fila de um shard em uma faixa.
+     */
+    private SimpleMessageListenerContainer criarContainer(int shard, FaixaCotacao faixa) {
+        SimpleMessageListenerContainer container = containerFactory.createListenerContainer();
+        container.setQueueNames(RabbitMQConfig.queueAcoes(shard, faixa));
+        if (faixa == FaixaCotacao.LOTE) container.setPrefetchCount(prefetchLote);
+        container.setMessageListener((ChannelAwareMessageListener) (message, channel) -> {
+            ConfirmacoesCanal confirmacoes = processadorAcoes.registrarEntrega(shard, faixa, message, channel);
+            Acao acao;
+            try {
+                acao = converter(message);
+            } catch (MessageConversionException e) {
+                // JSON inválido nunca será convertido: vai direto para o parking-lot
+                retentativasService.estacionar(message, confirmacoes, "JSON inválido: " + e.getMessage());
+                return;
+            }
+            processadorAcoes.despachar(shard, faixa, acao, message, confirmacoes);
+        });
+        container.afterPropertiesSet();
+        return container;
+    }
+
+    /**
+     * Encerra o consumo de um shard. Antes de parar o container, cancela o
+     * consumo (sem fechar o canal) e aguarda as pistas processarem e
+     * confirmarem, no canal ainda aberto, as mensagens já recebidas do shard.
+     * O cancelamento é feito pelo canal, e não pelo container: parar o
+     * container fecha o canal, e o {@code DirectMessageListenerContainer}
+     * também o fecha ao confirmar o cancelamento de uma fila removida.
+     *
+     * @param shard índice do shard
+     */
+    private void pararShard(int shard) {
+        List<SimpleMessageListenerContainer> doShard = containers.remove(shard);
+        if (doShard == null) return;
+        processadorAcoes.liberarShard(shard, PRAZO_DRENAGEM);
+        for (SimpleMessageListenerContainer container : doShard) {
+            container.stop();
+            container.destroy();
+        }
+        alertasService.esquecerShard(shard, shardCount);
+        System.out.println("[" + myPort + "] Liberou o shard " + shard);
+    }
+
+    /**
+     * Converte o corpo JSON da mensagem em {@link Acao}.
+     */
+    private Acao converter(Message message) {
+        message.getMessageProperties().setInferredArgumentType(Acao.class);
+        return (Acao) messageConverter.fromMessage(message);
+    }
+
+    /**
+     * Libera todos os shards ao encerrar a aplicação, para que os outros nós
+     * possam assumi-los. Chamado pela renúncia ({@link ElectionService#stop()}),
+     * com a conexão ainda aberta; o {@code @PreDestroy} só cobre um contexto
+     * encerrado sem ela. Depois disso o rebalanceamento não assume mais shards.
+     */
+    @PreDestroy
+    public synchronized void encerrar() {
+        encerrado = true;
+        for (Integer shard : new ArrayList<>(containers.keySet())) pararShard(shard);
+    }
+}
@@ -0,0 +1,35 @@
+package org.furb.bolsavalores.service;
+
+import org.furb.bolsavalores.model.Simbolo;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Consumer que recebe, em todas as instâncias, os nomes de símbolos que
+ * mudaram (via {@code bolsa.simbolos.exchange}) e os aplica no cache do
+ * {@link MetadadosService}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.transporte", name = "tipo", havingValue = "rabbit", matchIfMissing = true)
+public class SimbolosConsumer {
+
+    private final MetadadosService metadadosService;
+
+    /**
+     * @param metadadosService metadados dos símbolos
+     */
+    public SimbolosConsumer(MetadadosService metadadosService) {
+        this.metadadosService = metadadosService;
+    }
+
+    /**
+     * Listener da fila efêmera de símbolos desta instância.
+     *
+     * @param simbolo metadados novos do símbolo
+     */
+    @RabbitListener(queues = "#{simbolosQueue.name}")
+    public void onMessage(Simbolo simbolo) {
+        metadadosService.aplicar(simbolo);
+    }
+}
@@ -0,0 +1,67 @@
+package org.furb.bolsavalores.service;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Mede o tempo de inicialização da instância, contado a partir do início da JVM:
+ *
+ * <ul>
+ *     <li><b>timeToFirstElectionMs</b> — até o nó conhecer um líder
+ *         (encontrado, eleito ou anunciado via COORDINATOR);</li>
+ *     <li><b>timeToFirstServedRequestMs</b> — até a primeira requisição HTTP
+ *         ser respondida.</li>
+ * </ul>
+ *
+ * <p>É registrado como filtro servlet para capturar a primeira requisição.
+ * Os valores ficam disponíveis em {@code GET /status/startup} e são usados
+ * pelo script {@code scripts/startup-benchmark.sh} para comparar o modo
+ * padrão com o perfil {@code fast-start}.</p>
+ */
+@Component
+public class StartupMetrics extends OncePerRequestFilter {
+
+    /** Instante (epoch ms) em que a JVM foi iniciada. */
+    private final long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+
+    private volatile long primeiraEleicao;
+    private volatile long primeiraRequisicao;
+
+    /**
+     * Marca o momento em que o nó passou a conhecer o líder pela primeira vez.
+     */
+    public void registrarEleicao() {
+        if (primeiraEleicao != 0) return;
+        primeiraEleicao = System.currentTimeMillis();
+        System.out.println("[Startup] timeToFirstElectionMs=" + (primeiraEleicao - jvmStart));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        chain.doFilter(request, response);
+        if (primeiraRequisicao == 0) {
+            primeiraRequisicao = System.currentTimeMillis();
+            System.out.println("[Startup] timeToFirstServedRequestMs=" + (primeiraRequisicao - jvmStart));
+        }
+    }
+
+    /**
+     * @return tempos medidos até agora; ausentes enquanto o evento não ocorrer
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> tempos = new LinkedHashMap<>();
+        if (primeiraEleicao != 0) tempos.put("timeToFirstElectionMs", primeiraEleicao - jvmStart);
+        if (primeiraRequisicao != 0) tempos.put("timeToFirstServedRequestMs", primeiraRequisicao - jvmStart);
+        return tempos;
+    }
+}
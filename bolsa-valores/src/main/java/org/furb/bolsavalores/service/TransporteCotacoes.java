@@ -0,0 +1,42 @@
+package org.furb.bolsavalores.service;
+
+import org.furb.bolsavalores.model.Acao;
+import org.furb.bolsavalores.model.FaixaCotacao;
+import org.furb.bolsavalores.tracing.ContextoTrace;
+
+import java.util.Map;
+
+/**
+ * Meio pelo qual as cotações publicadas pelo {@link AcoesPublisher} chegam
+ * ao {@link AcoesConsumer}. Escolhido por {@code app.transporte.tipo}:
+ * <ul>
+ *     <li>{@code rabbit} — {@link TransporteRabbit}: shards no RabbitMQ,
+ *         consumidos pelo nó dono de cada shard;</li>
+ *     <li>{@code memoria} — {@link TransporteMemoria}: anel pré-alocado no
+ *         próprio processo, para um nó único sem broker.</li>
+ * </ul>
+ * Nos dois casos as cotações de um símbolo são gravadas na ordem em que
+ * foram publicadas.
+ */
+public interface TransporteCotacoes {
+
+    /**
+     * @return prefixo dos trechos de tracing deste transporte (ex: {@code amqp})
+     */
+    String nome();
+
+    /**
+     * Entrega a cotação para persistência.
+     *
+     * @param acao     cotação a ser gravada
+     * @param contexto trecho de publicação, propagado até o consumo
+     * @param faixa    classe de tráfego; as de {@link FaixaCotacao#LOTE} não
+     *                 devem atrasar as ao vivo
+     */
+    void enviar(Acao acao, ContextoTrace contexto, FaixaCotacao faixa);
+
+    /**
+     * @return estado do consumo das cotações, para monitoramento
+     */
+    Map<String, Object> snapshot();
+}
@@ -0,0 +1,369 @@
+package org.furb.bolsavalores.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.furb.bolsavalores.config.AppConfig;
+import org.furb.bolsavalores.model.Acao;
+import org.furb.bolsavalores.model.FaixaCotacao;
+import org.furb.bolsavalores.tracing.ContextoTrace;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Transporte em processo para um nó único sem broker
+ * ({@code app.transporte.tipo=memoria}, perfil {@code brokerless}).
+ *
+ * <p>
+ * As cotações passam por um anel pré-alocado de {@code app.transporte.capacidade}
+ * posições, reaproveitadas a cada volta (nenhuma alocação por cotação além da
+ * cópia da {@link Acao}):
+ * <ul>
+ *     <li><b>produtor único</b> — as publicações são sequenciadas sob uma trava
+ *         curta (só copiam a cotação para a posição e avançam o cursor), e o
+ *         cursor publicado é uma escrita volátil que torna a posição visível
+ *         aos consumidores;</li>
+ *     <li><b>vários consumidores</b> — cada uma das {@code app.transporte.consumidores}
+ *         threads percorre todas as posições, mas só processa os símbolos da
+ *         sua partição (hash do símbolo), então cada símbolo é gravado por uma
+ *         única thread, na ordem de publicação;</li>
+ *     <li><b>backpressure</b> — uma posição só é reaproveitada depois de lida
+ *         por todos os consumidores; com o anel cheio, o produtor espera (até
+ *         {@value #ESPERA_MAXIMA_PUBLICACAO_S}s) em vez de descartar.</li>
+ * </ul>
+ * Consumidores ociosos giram um pouco antes de dormir, para que uma cotação
+ * publicada logo em seguida seja atendida sem a latência de acordar a thread.
+ * </p>
+ *
+ * <p>
+ * A gravação é a mesma do modo RabbitMQ ({@link AcoesConsumer#receberLocal}):
+ * duplicidade pela chave symbol + horário e aviso de persistência, sem ACK.
+ * Uma cotação que falha vai para uma fila lateral de espera e, passado o
+ * atraso de {@code app.retentativas}, é publicada de novo no anel, como as
+ * filas de retentativa do modo RabbitMQ: o consumidor segue para as próximas
+ * posições em vez de dormir segurando a sua, e a cotação repetida continua
+ * sendo gravada pela thread da partição do símbolo — depois das mais novas,
+ * como no modo RabbitMQ (ver {@link RetentativasService}). Esgotadas as
+ * tentativas, ou se o anel estiver cheio na volta, a cotação é descartada e
+ * registrada no log (não há parking-lot sem broker).
+ * </p>
+ */
+@Service
+@ConditionalOnProperty(prefix = "app.transporte", name = "tipo", havingValue = "memoria")
+public class TransporteMemoria implements TransporteCotacoes {
+
+    /** Iterações de espera ativa de um consumidor ocioso antes de dormir. */
+    private static final int GIROS_ANTES_DE_DORMIR = 2000;
+
+    /** Tempo máximo que uma publicação espera por espaço no anel. */
+    private static final long ESPERA_MAXIMA_PUBLICACAO_S = 5;
+
+    /** Posição do anel, reaproveitada a cada volta. */
+    private static final class Posicao {
+        Acao acao;
+        ContextoTrace contexto;
+        long publicadaEmNanos;
+        int tentativas;
+    }
+
+    private final AcoesConsumer acoesConsumer;
+    private final List<Duration> atrasos;
+    private final int maxTentativas;
+
+    private final Posicao[] anel;
+    private final int mascara;
+
+    /** Última sequência publicada; a escrita volátil libera o conteúdo da posição. */
+    private final AtomicLong publicada = new AtomicLong(-1);
+
+    /** Próxima sequência a publicar; só alterada sob {@link #produtor}. */
+    private long proxima;
+    private final ReentrantLock produtor = new ReentrantLock();
+
+    /** Última sequência percorrida por cada consumidor. */
+    private final AtomicLong[] lidas;
+    private final Thread[] consumidores;
+
+    /** Espera dos consumidores ociosos. */
+    private final ReentrantLock espera = new ReentrantLock();
+    private final Condition novaCotacao = espera.newCondition();
+    private final AtomicInteger aguardando = new AtomicInteger();
+    private volatile boolean ativo = true;
+
+    /** Fila lateral das cotações que falharam, até voltarem ao anel. */
+    private final ScheduledExecutorService retentativas = Executors.newSingleThreadScheduledExecutor(
+            r -> new Thread(r, "anel-retentativas"));
+    private final AtomicInteger emRetentativa = new AtomicInteger();
+
+    private final LongAdder gravadas = new LongAdder();
+    private final LongAdder duplicadas = new LongAdder();
+    private final LongAdder descartadas = new LongAdder();
+    private final LongAdder nanosAtePersistir = new LongAdder();
+
+    /**
+     * @param acoesConsumer consumidor que grava cada cotação
+     * @param appConfig     configuração do anel e das retentativas
+     */
+    public TransporteMemoria(AcoesConsumer acoesConsumer, AppConfig appConfig) {
+        this.acoesConsumer = acoesConsumer;
+        this.atrasos = List.copyOf(appConfig.getRetentativas().getAtrasos());
+        this.maxTentativas = appConfig.getRetentativas().getMaxTentativas();
+
+        int capacidade = appConfig.getTransporte().getCapacidade();
+        int quantidade = appConfig.getTransporte().getConsumidores();
+        if (capacidade < 1 || Integer.bitCount(capacidade) != 1) {
+            throw new IllegalArgumentException("app.transporte.capacidade deve ser uma potência de 2");
+        }
+        if (quantidade < 1) {
+            throw new IllegalArgumentException("app.transporte.consumidores deve ser ao menos 1");
+        }
+
+        this.anel = new Posicao[capacidade];
+        for (int i = 0; i < capacidade; i++) anel[i] = new Posicao();
+        this.mascara = capacidade - 1;
+
+        this.lidas = new AtomicLong[quantidade];
+        this.consumidores = new Thread[quantidade];
+        for (int i = 0; i < quantidade; i++) {
+            int indice = i;
+            lidas[i] = new AtomicLong(-1);
+            consumidores[i] = new Thread(() -> consumir(indice), "anel-consumidor-" + (i + 1));
+        }
+    }
+
+    @PostConstruct
+    public void iniciar() {
+        for (Thread consumidor : consumidores) consumidor.start();
+        System.out.println("[Transporte] Anel em memória: " + anel.length + " posições, "
+                + consumidores.length + " consumidores");
+    }
+
+    @Override
+    public String nome() {
+        return "memoria";
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>O anel tem uma faixa só: a classe de tráfego é ignorada.</p>
+     */
+    @Override
+    public void enviar(Acao acao, ContextoTrace contexto, FaixaCotacao faixa) {
+        // o consumidor grava o _id na cotação: não compartilha o objeto com quem publicou
+        publicar(MetadadosService.semMetadados(acao), contexto, System.nanoTime(), 0);
+    }
+
+    /**
+     * Copia a cotação para a próxima posição do anel e acorda os consumidores.
+     *
+     * @param publicadaEmNanos instante da primeira publicação (as retentativas o mantêm)
+     * @param tentativas       tentativas anteriores que falharam
+     */
+    private void publicar(Acao acao, ContextoTrace contexto, long publicadaEmNanos, int tentativas) {
+        if (!ativo) throw new IllegalStateException("Transporte em memória encerrado");
+
+        produtor.lock();
+        try {
+            long sequencia = proxima;
+            aguardarEspaco(sequencia - anel.length);
+            Posicao posicao = anel[(int) (sequencia & mascara)];
+            posicao.acao = acao;
+            posicao.contexto = contexto;
+            posicao.publicadaEmNanos = publicadaEmNanos;
+            posicao.tentativas = tentativas;
+            proxima = sequencia + 1;
+            publicada.set(sequencia);
+        } finally {
+            produtor.unlock();
+        }
+
+        if (aguardando.get() > 0) {
+            espera.lock();
+            try {
+                novaCotacao.signalAll();
+            } finally {
+                espera.unlock();
+            }
+        }
+    }
+
+    /**
+     * Espera até que todos os consumidores tenham passado da sequência que
+     * ocupava a posição a ser reaproveitada.
+     */
+    private void aguardarEspaco(long sequenciaAnterior) {
+        if (sequenciaAnterior < 0) return;
+        long prazo = System.nanoTime() + TimeUnit.SECONDS.toNanos(ESPERA_MAXIMA_PUBLICACAO_S);
+        while (menorLida() < sequenciaAnterior) {
+            if (System.nanoTime() > prazo) {
+                throw new IllegalStateException("Anel de cotações cheio: os consumidores não acompanham a publicação");
+            }
+            LockSupport.parkNanos(1_000);
+        }
+    }
+
+    private long menorLida() {
+        long menor = Long.MAX_VALUE;
+        for (AtomicLong lida : lidas) menor = Math.min(menor, lida.get());
+        return menor;
+    }
+
+    /**
+     * Laço de um consumidor: percorre as posições publicadas e processa as
+     * cotações da sua partição. No encerramento, termina o que já foi publicado.
+     */
+    private void consumir(int indice) {
+        AtomicLong lida = lidas[indice];
+        long proximaLeitura = 0;
+        while (ativo || proximaLeitura <= publicada.get()) {
+            long disponivel = publicada.get();
+            if (disponivel < proximaLeitura) {
+                aguardar(proximaLeitura);
+                continue;
+            }
+            for (; proximaLeitura <= disponivel; proximaLeitura++) {
+                Posicao posicao = anel[(int) (proximaLeitura & mascara)];
+                Acao acao = posicao.acao;
+                if (particao(acao) == indice) {
+                    entregar(acao, posicao.contexto, posicao.publicadaEmNanos, posicao.tentativas);
+                }
+                lida.set(proximaLeitura);
+            }
+        }
+    }
+
+    private void aguardar(long sequencia) {
+        for (int i = 0; i < GIROS_ANTES_DE_DORMIR && publicada.get() < sequencia; i++) Thread.onSpinWait();
+        if (publicada.get() >= sequencia) return;
+
+        espera.lock();
+        aguardando.incrementAndGet();
+        try {
+            while (ativo && publicada.get() < sequencia) novaCotacao.await(100, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            aguardando.decrementAndGet();
+            espera.unlock();
+        }
+    }
+
+    private int particao(Acao acao) {
+        String symbol = acao == null || acao.getSymbol() == null ? "" : acao.getSymbol().toUpperCase();
+        return Math.floorMod(symbol.hashCode(), consumidores.length);
+    }
+
+    /**
+     * Grava a cotação; em caso de falha, a agenda na fila lateral com o
+     * atraso de {@code app.retentativas} correspondente à tentativa.
+     */
+    private void entregar(Acao acao, ContextoTrace contexto, long publicadaEmNanos, int tentativas) {
+        long esperaMicros = (System.nanoTime() - publicadaEmNanos) / 1000;
+        try {
+            String resultado = acoesConsumer.receberLocal(acao, contexto, esperaMicros, tentativas);
+            switch (resultado) {
+                case AcoesConsumer.INVALIDA -> {
+                    descartadas.increment();
+                    System.err.println("[Transporte] Cotação descartada: " + acoesConsumer.validar(acao));
+                }
+                case "DUPLICADA" -> duplicadas.increment();
+                default -> {
+                    gravadas.increment();
+                    nanosAtePersistir.add(System.nanoTime() - publicadaEmNanos);
+                }
+            }
+        } catch (Exception e) {
+            int tentativa = tentativas + 1;
+            if (tentativa >= maxTentativas) {
+                descartadas.increment();
+                System.err.println("[Transporte] Cotação de " + acao.getSymbol() + " descartada após "
+                        + tentativa + " tentativas: " + e.getMessage());
+                return;
+            }
+            Duration atraso = atrasos.get(Math.min(tentativas, atrasos.size() - 1));
+            System.err.println("[Transporte] Tentativa " + tentativa + " falhou (" + e.getMessage()
+                    + "); nova tentativa em " + atraso);
+            emRetentativa.incrementAndGet();
+            try {
+                retentativas.schedule(() -> republicar(acao, contexto, publicadaEmNanos, tentativa),
+                        atraso.toNanos(), TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException re) {
+                emRetentativa.decrementAndGet();
+                descartadas.increment();
+                System.err.println("[Transporte] Cotação de " + acao.getSymbol() + " descartada no encerramento");
+            }
+        }
+    }
+
+    /**
+     * Devolve ao anel uma cotação cuja espera de retentativa terminou.
+     */
+    private void republicar(Acao acao, ContextoTrace contexto, long publicadaEmNanos, int tentativas) {
+        emRetentativa.decrementAndGet();
+        try {
+            publicar(acao, contexto, publicadaEmNanos, tentativas);
+        } catch (IllegalStateException e) {
+            descartadas.increment();
+            System.err.println("[Transporte] Cotação de " + acao.getSymbol() + " descartada na retentativa: "
+                    + e.getMessage());
+        }
+    }
+
+    @Override
+    public Map<String, Object> snapshot() {
+        long publicadas = publicada.get() + 1;
+        long persistidas = gravadas.sum();
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("transporte", "memoria");
+        info.put("capacidade", anel.length);
+        info.put("consumidores", consumidores.length);
+        info.put("publicadas", publicadas);
+        info.put("pendentes", publicadas - 1 - menorLida());
+        info.put("emRetentativa", emRetentativa.get());
+        info.put("gravadas", persistidas);
+        info.put("duplicadas", duplicadas.sum());
+        info.put("descartadas", descartadas.sum());
+        info.put("latenciaMediaPersistenciaUs", persistidas == 0 ? 0 : nanosAtePersistir.sum() / persistidas / 1000);
+        return info;
+    }
+
+    /**
+     * Para de aceitar publicações e aguarda os consumidores gravarem o que
+     * já está no anel. As cotações ainda na fila de retentativa são
+     * descartadas (registradas no log).
+     */
+    @PreDestroy
+    public void encerrar() throws InterruptedException {
+        ativo = false;
+        int pendentes = retentativas.shutdownNow().size();
+        if (pendentes > 0) {
+            descartadas.add(pendentes);
+            emRetentativa.addAndGet(-pendentes);
+            System.err.println("[Transporte] " + pendentes + " cotações em retentativa descartadas no encerramento");
+        }
+        espera.lock();
+        try {
+            novaCotacao.signalAll();
+        } finally {
+            espera.unlock();
+        }
+        for (Thread consumidor : consumidores) {
+            consumidor.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+}
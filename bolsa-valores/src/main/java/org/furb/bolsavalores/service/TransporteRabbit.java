@@ -0,0 +1,63 @@
+package org.furb.bolsavalores.service;
+
+import org.furb.bolsavalores.config.RabbitMQConfig;
+import org.furb.bolsavalores.model.Acao;
+import org.furb.bolsavalores.model.FaixaCotacao;
+import org.furb.bolsavalores.tracing.ContextoTrace;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Transporte padrão: publica a cotação na exchange {@link RabbitMQConfig#EXCHANGE_ACOES}
+ * com a routing key do shard do símbolo ({@code bolsa.acoes.shard.{n}.{symbol}}, ou
+ * {@code bolsa.acoes.lote.shard.{n}.{symbol}} para a faixa de lote).
+ * O consumo fica com o {@link ShardService} e o {@link ProcessadorAcoes} do
+ * nó dono de cada shard.
+ */
+@Service
+@ConditionalOnProperty(prefix = "app.transporte", name = "tipo", havingValue = "rabbit", matchIfMissing = true)
+public class TransporteRabbit implements TransporteCotacoes {
+
+    private final RabbitTemplate rabbitTemplate;
+    private final ProcessadorAcoes processadorAcoes;
+    private final int shardCount;
+
+    /**
+     * @param rabbitTemplate   template para publicar as cotações
+     * @param processadorAcoes processador dos shards deste nó (estado do consumo)
+     * @param shardCount       quantidade de shards das filas de ações
+     */
+    public TransporteRabbit(RabbitTemplate rabbitTemplate, ProcessadorAcoes processadorAcoes,
+                            @Value("${cluster.shard-count}") int shardCount) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.processadorAcoes = processadorAcoes;
+        this.shardCount = shardCount;
+    }
+
+    @Override
+    public String nome() {
+        return "amqp";
+    }
+
+    @Override
+    public void enviar(Acao acao, ContextoTrace contexto, FaixaCotacao faixa) {
+        String routingKey = RabbitMQConfig.routingKeyAcoes(acao.getSymbol(), shardCount, faixa);
+        rabbitTemplate.convertAndSend(RabbitMQConfig.EXCHANGE_ACOES, routingKey, acao, message -> {
+            message.getMessageProperties().setHeader(ContextoTrace.HEADER, contexto.traceparent());
+            return message;
+        });
+    }
+
+    @Override
+    public Map<String, Object> snapshot() {
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("transporte", "rabbit");
+        info.putAll(processadorAcoes.snapshot());
+        return info;
+    }
+}
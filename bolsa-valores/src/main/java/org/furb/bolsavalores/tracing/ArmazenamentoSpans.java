@@ -0,0 +1,18 @@
+package org.furb.bolsavalores.tracing;
+
+import java.util.List;
+
+/**
+ * Exportador que também guarda os trechos para consulta, permitindo
+ * reconstruir os traces de uma cotação.
+ */
+public interface ArmazenamentoSpans extends ExportadorSpans {
+
+    /**
+     * Busca todos os trechos dos traces que passaram por uma cotação.
+     *
+     * @param chaveCotacao chave {@code SYMBOL:epochMillis} (ver {@code Acao.chaveIdempotencia})
+     * @return trechos encontrados, em qualquer ordem
+     */
+    List<Span> buscarPorCotacao(String chaveCotacao);
+}
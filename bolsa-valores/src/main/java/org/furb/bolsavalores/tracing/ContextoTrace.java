@@ -0,0 +1,37 @@
+package org.furb.bolsavalores.tracing;
+
+/**
+ * Contexto de trace propagado entre threads e processos, no formato
+ * W3C Trace Context ({@code traceparent: 00-{traceId}-{spanId}-{flags}}).
+ *
+ * @param traceId  identificador do trace (32 hex)
+ * @param spanId   identificador do trecho pai (16 hex)
+ * @param amostrado se o trace deve ser exportado
+ */
+public record ContextoTrace(String traceId, String spanId, boolean amostrado) {
+
+    /** Nome do header HTTP/AMQP que carrega o contexto. */
+    public static final String HEADER = "traceparent";
+
+    /**
+     * @return valor do header {@code traceparent}
+     */
+    public String traceparent() {
+        return "00-" + traceId + "-" + spanId + (amostrado ? "-01" : "-00");
+    }
+
+    /**
+     * Lê um header {@code traceparent}.
+     *
+     * @param valor valor do header; pode ser nulo
+     * @return contexto, ou nulo se o valor estiver ausente ou malformado
+     */
+    public static ContextoTrace deTraceparent(Object valor) {
+        if (valor == null) return null;
+        String[] partes = valor.toString().trim().split("-");
+        if (partes.length != 4 || partes[1].length() != 32 || partes[2].length() != 16 || partes[3].length() != 2) {
+            return null;
+        }
+        return new ContextoTrace(partes[1], partes[2], (Integer.parseInt(partes[3], 16) & 1) == 1);
+    }
+}
@@ -0,0 +1,53 @@
+package org.furb.bolsavalores.tracing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Grava cada trecho como uma linha JSON no arquivo
+ * {@code app.tracing.arquivo.caminho} (habilitado quando a propriedade existe).
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.tracing.arquivo", name = "caminho")
+public class ExportadorArquivo implements ExportadorSpans {
+
+    private final ObjectMapper objectMapper;
+    private final BufferedWriter writer;
+
+    /**
+     * @param objectMapper serializador JSON da aplicação
+     * @param caminho      arquivo de destino (acrescentado, nunca sobrescrito)
+     */
+    public ExportadorArquivo(ObjectMapper objectMapper, @Value("${app.tracing.arquivo.caminho}") String caminho) throws IOException {
+        this.objectMapper = objectMapper;
+        this.writer = Files.newBufferedWriter(Path.of(caminho), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        System.out.println("[Tracing] Exportando spans para " + caminho);
+    }
+
+    @Override
+    public synchronized void exportar(Span span) {
+        try {
+            writer.write(objectMapper.writeValueAsString(span));
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            System.err.println("[Tracing] Falha ao gravar span: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public synchronized void fechar() throws IOException {
+        writer.close();
+    }
+}
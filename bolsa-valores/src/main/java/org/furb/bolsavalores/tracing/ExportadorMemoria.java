@@ -0,0 +1,70 @@
+package org.furb.bolsavalores.tracing;
+
+import org.furb.bolsavalores.config.AppConfig;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Guarda em memória os traces mais recentes desta instância, indexados pela
+ * cotação. Útil em testes e em um nó isolado; em um cluster cada nó só vê os
+ * trechos que executou (use o {@link ExportadorMongo} para a visão completa).
+ *
+ * <p>Mantém no máximo {@code app.tracing.memoria.max-traces} traces,
+ * descartando os mais antigos.</p>
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.tracing.memoria", name = "habilitado", havingValue = "true", matchIfMissing = true)
+public class ExportadorMemoria implements ArmazenamentoSpans {
+
+    private final int maxTraces;
+    private final LinkedHashMap<String, List<Span>> traces;
+    private final LinkedHashMap<String, Set<String>> tracesPorCotacao;
+
+    /**
+     * @param appConfig configuração com o limite de traces
+     */
+    public ExportadorMemoria(AppConfig appConfig) {
+        this.maxTraces = appConfig.getTracing().getMemoria().getMaxTraces();
+        this.traces = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<Span>> eldest) {
+                return size() > maxTraces;
+            }
+        };
+        this.tracesPorCotacao = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Set<String>> eldest) {
+                return size() > maxTraces;
+            }
+        };
+    }
+
+    @Override
+    public synchronized void exportar(Span span) {
+        traces.computeIfAbsent(span.getTraceId(), t -> new ArrayList<>()).add(span);
+        String cotacao = span.getAtributos().get("cotacao");
+        if (cotacao != null) {
+            tracesPorCotacao.computeIfAbsent(cotacao, c -> new LinkedHashSet<>()).add(span.getTraceId());
+        }
+    }
+
+    @Override
+    public synchronized List<Span> buscarPorCotacao(String chaveCotacao) {
+        List<Span> spans = new ArrayList<>();
+        for (String traceId : tracesPorCotacao.getOrDefault(chaveCotacao, Set.of())) {
+            spans.addAll(traces.getOrDefault(traceId, List.of()));
+        }
+        return spans;
+    }
+
+    /**
+     * @return cópia de todos os trechos guardados (para testes)
+     */
+    public synchronized List<Span> todos() {
+        List<Span> spans = new ArrayList<>();
+        traces.values().forEach(spans::addAll);
+        return spans;
+    }
+}
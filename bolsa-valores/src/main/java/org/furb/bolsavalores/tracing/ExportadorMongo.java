@@ -0,0 +1,86 @@
+package org.furb.bolsavalores.tracing;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Grava os trechos na coleção {@value #COLECAO}, compartilhada pelo cluster:
+ * como publicação e consumo de uma cotação costumam ocorrer em nós
+ * diferentes, é por aqui que o trace completo pode ser consultado de
+ * qualquer instância. Habilitado por {@code app.tracing.mongo.habilitado=true}.
+ *
+ * <p>Os trechos são acumulados em memória e gravados em lote a cada segundo,
+ * fora do caminho das cotações. Um índice TTL descarta os trechos após 7 dias.</p>
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.tracing.mongo", name = "habilitado", havingValue = "true")
+public class ExportadorMongo implements ArmazenamentoSpans {
+
+    static final String COLECAO = "spans";
+
+    private final MongoTemplate mongoTemplate;
+    private final ConcurrentLinkedQueue<Span> pendentes = new ConcurrentLinkedQueue<>();
+
+    public ExportadorMongo(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @PostConstruct
+    public void inicializar() {
+        try {
+            mongoTemplate.indexOps(COLECAO).createIndex(new Index().on("traceId", Sort.Direction.ASC));
+            mongoTemplate.indexOps(COLECAO).createIndex(new Index().on("atributos.cotacao", Sort.Direction.ASC).sparse());
+            mongoTemplate.indexOps(COLECAO).createIndex(new Index().on("inicio", Sort.Direction.ASC).expire(7, TimeUnit.DAYS));
+        } catch (Exception e) {
+            System.err.println("[Tracing] Falha ao garantir índices em " + COLECAO + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void exportar(Span span) {
+        pendentes.add(span);
+    }
+
+    /**
+     * Grava os trechos acumulados desde a última execução.
+     */
+    @Scheduled(fixedDelay = 1000)
+    @PreDestroy
+    public void gravar() {
+        List<Span> lote = new ArrayList<>();
+        Span span;
+        while ((span = pendentes.poll()) != null) lote.add(span);
+        if (lote.isEmpty()) return;
+        try {
+            mongoTemplate.insert(lote, COLECAO);
+        } catch (Exception e) {
+            System.err.println("[Tracing] Falha ao gravar " + lote.size() + " spans: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public List<Span> buscarPorCotacao(String chaveCotacao) {
+        Query porCotacao = new Query(where("atributos.cotacao").is(chaveCotacao));
+        porCotacao.fields().include("traceId");
+        Set<String> traceIds = new HashSet<>();
+        for (Span span : mongoTemplate.find(porCotacao, Span.class, COLECAO)) traceIds.add(span.getTraceId());
+        if (traceIds.isEmpty()) return List.of();
+        return mongoTemplate.find(new Query(where("traceId").in(traceIds)), Span.class, COLECAO);
+    }
+}
@@ -0,0 +1,17 @@
+package org.furb.bolsavalores.tracing;
+
+/**
+ * Destino dos trechos finalizados. Todo bean que implementa esta interface
+ * recebe os spans amostrados do {@link Tracer}; os exportadores embutidos são
+ * habilitados por {@code app.tracing.*}.
+ */
+public interface ExportadorSpans {
+
+    /**
+     * Recebe um trecho finalizado. É chamado na thread que executou a
+     * operação, então não deve bloquear.
+     *
+     * @param span trecho finalizado
+     */
+    void exportar(Span span);
+}
@@ -0,0 +1,39 @@
+package org.furb.bolsavalores.tracing;
+
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Trecho (span) finalizado de um trace, entregue aos {@link ExportadorSpans}.
+ */
+@Data
+public class Span {
+    private String traceId;
+    private String spanId;
+    private String parentSpanId;
+
+    /** Nome da operação (ex: provedor.cotacao, amqp.publicar, mongo.save). */
+    private String nome;
+
+    /** Porta da instância que executou o trecho. */
+    private String no;
+
+    private Instant inicio;
+    private long duracaoMicros;
+
+    /** Atributos livres; {@code cotacao} (chave SYMBOL:epochMillis) indexa o trace pela cotação. */
+    private Map<String, String> atributos = new LinkedHashMap<>();
+
+    /** Mensagem do erro, se a operação falhou. */
+    private String erro;
+
+    /**
+     * @return instante de término do trecho
+     */
+    public Instant fim() {
+        return inicio.plusNanos(duracaoMicros * 1000);
+    }
+}
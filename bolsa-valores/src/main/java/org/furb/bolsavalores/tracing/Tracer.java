@@ -0,0 +1,175 @@
+package org.furb.bolsavalores.tracing;
+
+import org.furb.bolsavalores.config.AppConfig;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tracing leve do caminho de uma cotação: busca no provedor, publicação,
+ * espera no broker, consumo e gravação no MongoDB, além das leituras REST.
+ *
+ * <p>
+ * O contexto corrente fica em uma {@link ThreadLocal} enquanto um
+ * {@link Escopo} está aberto; trechos abertos dentro dele viram filhos.
+ * Entre processos, o contexto viaja no header {@code traceparent}
+ * (W3C Trace Context) das mensagens AMQP e das requisições HTTP.
+ * </p>
+ *
+ * <p>
+ * A decisão de amostragem ({@code app.tracing.amostragem}) é tomada na raiz
+ * e propagada no próprio {@code traceparent}, então um trace é exportado
+ * inteiro ou não é exportado. Os trechos amostrados são entregues a todos os
+ * {@link ExportadorSpans} registrados.
+ * </p>
+ */
+@Component
+public class Tracer {
+
+    private final ThreadLocal<ContextoTrace> atual = new ThreadLocal<>();
+    private final List<ExportadorSpans> exportadores;
+    private final double amostragem;
+    private final String no;
+
+    /**
+     * @param exportadores destinos dos trechos finalizados (pode não haver nenhum)
+     * @param appConfig    configuração com a taxa de amostragem
+     * @param no           porta desta instância, gravada em cada trecho
+     */
+    public Tracer(ObjectProvider<ExportadorSpans> exportadores, AppConfig appConfig, @Value("${server.port}") String no) {
+        this.exportadores = exportadores.orderedStream().toList();
+        this.amostragem = appConfig.getTracing().getAmostragem();
+        this.no = no;
+    }
+
+    /**
+     * Abre um trecho filho do contexto corrente (ou a raiz de um novo trace).
+     *
+     * @param nome nome da operação
+     * @return escopo a ser fechado ao fim da operação (try-with-resources)
+     */
+    public Escopo iniciar(String nome) {
+        return iniciar(nome, atual.get());
+    }
+
+    /**
+     * Abre um trecho filho de um contexto recebido de outro processo.
+     *
+     * @param nome nome da operação
+     * @param pai  contexto remoto; se nulo, inicia um novo trace
+     * @return escopo a ser fechado ao fim da operação (try-with-resources)
+     */
+    public Escopo iniciar(String nome, ContextoTrace pai) {
+        String traceId = pai == null ? gerarId(16) : pai.traceId();
+        boolean amostrado = pai == null ? ThreadLocalRandom.current().nextDouble() < amostragem : pai.amostrado();
+        ContextoTrace contexto = new ContextoTrace(traceId, gerarId(8), amostrado);
+        return new Escopo(nome, contexto, pai == null ? null : pai.spanId());
+    }
+
+    /**
+     * @return header {@code traceparent} do trecho corrente, ou nulo fora de um trace
+     */
+    public String traceparent() {
+        ContextoTrace contexto = atual.get();
+        return contexto == null ? null : contexto.traceparent();
+    }
+
+    private static String gerarId(int bytes) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        StringBuilder id = new StringBuilder(bytes * 2);
+        for (int i = 0; i < bytes; i++) {
+            id.append(Character.forDigit(random.nextInt(16), 16)).append(Character.forDigit(random.nextInt(16), 16));
+        }
+        return id.toString();
+    }
+
+    /**
+     * Trecho em andamento. Enquanto aberto, é o contexto corrente da thread.
+     */
+    public final class Escopo implements AutoCloseable {
+        private final ContextoTrace contexto;
+        private final ContextoTrace anterior;
+        private final Span span = new Span();
+        private final long inicioNanos = System.nanoTime();
+        private final AtomicBoolean finalizado = new AtomicBoolean();
+        private boolean threadLiberada;
+
+        private Escopo(String nome, ContextoTrace contexto, String parentSpanId) {
+            this.contexto = contexto;
+            this.anterior = atual.get();
+            span.setTraceId(contexto.traceId());
+            span.setSpanId(contexto.spanId());
+            span.setParentSpanId(parentSpanId);
+            span.setNome(nome);
+            span.setNo(no);
+            span.setInicio(Instant.now());
+            atual.set(contexto);
+        }
+
+        /**
+         * Adiciona um atributo ao trecho.
+         *
+         * @param chave nome do atributo
+         * @param valor valor; nulo é ignorado
+         * @return o próprio escopo
+         */
+        public Escopo atributo(String chave, Object valor) {
+            if (valor != null) span.getAtributos().put(chave, valor.toString());
+            return this;
+        }
+
+        /**
+         * Marca o trecho como falho.
+         *
+         * @param erro falha ocorrida
+         */
+        public void erro(Throwable erro) {
+            span.setErro(erro.getClass().getSimpleName() + ": " + erro.getMessage());
+        }
+
+        /**
+         * @return contexto deste trecho, para propagação
+         */
+        public ContextoTrace contexto() {
+            return contexto;
+        }
+
+        /**
+         * Restaura o contexto anterior da thread sem finalizar o trecho. Usado
+         * quando o trecho termina em outra thread (ex: requisições
+         * assíncronas): o {@link #close()} feito lá só finaliza e exporta.
+         * Deve ser chamado na thread que abriu o trecho.
+         */
+        public void liberarThread() {
+            if (threadLiberada) return;
+            threadLiberada = true;
+            if (anterior == null) atual.remove();
+            else atual.set(anterior);
+        }
+
+        /**
+         * Finaliza o trecho, restaura o contexto anterior da thread (se ainda
+         * não foi liberada) e exporta. Chamadas repetidas são ignoradas.
+         */
+        @Override
+        public void close() {
+            if (!finalizado.compareAndSet(false, true)) return;
+            span.setDuracaoMicros((System.nanoTime() - inicioNanos) / 1000);
+            liberarThread();
+
+            if (!contexto.amostrado()) return;
+            for (ExportadorSpans exportador : exportadores) {
+                try {
+                    exportador.exportar(span);
+                } catch (Exception e) {
+                    System.err.println("[Tracing] Falha no exportador " + exportador.getClass().getSimpleName() + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.furb.bolsavalores.tracing;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Abre um trecho para cada requisição REST, continuando o trace do header
+ * {@code traceparent} quando o cliente o envia, e devolve o
+ * {@code traceparent} do trecho na resposta.
+ *
+ * <p>Nas requisições assíncronas (leituras reativas, streams) o filtro
+ * retorna antes da resposta: o trecho deixa a thread e é finalizado pelo
+ * {@link AsyncListener} ao fim da resposta, com a duração e o status reais,
+ * como a vaga do {@code ProtecaoCargaFilter}.</p>
+ *
+ * <p>Os endpoints {@code /status/*} ficam de fora: são chamados a cada
+ * poucos segundos pelos outros nós (pings da eleição e dos shards).</p>
+ */
+@Component
+public class TracingFilter extends OncePerRequestFilter {
+
+    private final Tracer tracer;
+
+    public TracingFilter(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getRequestURI().startsWith(request.getContextPath() + "/status");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        ContextoTrace pai = ContextoTrace.deTraceparent(request.getHeader(ContextoTrace.HEADER));
+        Tracer.Escopo escopo = tracer.iniciar("http " + request.getMethod() + " " + request.getRequestURI(), pai);
+        response.setHeader(ContextoTrace.HEADER, escopo.contexto().traceparent());
+        try {
+            chain.doFilter(request, response);
+        } catch (IOException | ServletException | RuntimeException e) {
+            escopo.erro(e);
+            escopo.atributo("status", response.getStatus());
+            escopo.close();
+            throw e;
+        }
+
+        if (!request.isAsyncStarted()) {
+            escopo.atributo("status", response.getStatus());
+            escopo.close();
+            return;
+        }
+        escopo.liberarThread();
+        request.getAsyncContext().addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                escopo.atributo("status", response.getStatus());
+                escopo.close();
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                escopo.atributo("timeout", true);
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                if (event.getThrowable() != null) escopo.erro(event.getThrowable());
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+                // reaberturas do ciclo assíncrono não mudam o trecho
+            }
+        });
+    }
+}
@@ -0,0 +1,35 @@
+package org.furb.bolsavalores.caos;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Substituto em memória da coleção de cotações: um índice único pela chave de
+ * idempotência, como o {@code _id} do MongoDB. A segunda gravação da mesma
+ * chave é descartada e contada como duplicada, como a
+ * {@code DuplicateKeyException} do {@code insert}.
+ */
+class ArmazemMemoria {
+
+    /** Chave de idempotência → porta do nó que gravou primeiro. */
+    private final Map<String, String> gravadas = new ConcurrentHashMap<>();
+    private final AtomicLong duplicadas = new AtomicLong();
+
+    /**
+     * @return true se a cotação foi gravada; false se a chave já existia
+     */
+    boolean inserir(String chave, String porta) {
+        if (gravadas.putIfAbsent(chave, porta) == null) return true;
+        duplicadas.incrementAndGet();
+        return false;
+    }
+
+    boolean contem(String chave) {
+        return gravadas.containsKey(chave);
+    }
+
+    long duplicadas() {
+        return duplicadas.get();
+    }
+}
@@ -0,0 +1,114 @@
+package org.furb.bolsavalores.caos;
+
+import org.furb.bolsavalores.config.RabbitMQConfig;
+import org.furb.bolsavalores.model.ElectionMessage;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Substituto em memória do RabbitMQ para as mensagens da eleição.
+ *
+ * <p>Reproduz as duas rotas usadas pelo {@code ElectionService}:
+ * {@code eleicao.exchange} (direta, routing key {@code process.<porta>}) e
+ * {@code coordenador.exchange} (fanout para a fila de eleição de todos os nós,
+ * inclusive o emissor). Cada nó consome sua fila em uma única thread, como o
+ * container do {@code @RabbitListener}.</p>
+ *
+ * <p>Falhas injetadas:</p>
+ * <ul>
+ *     <li><b>nó morto</b> — nada sai dele e o que é enviado a ele se perde
+ *         (a fila exclusiva some com a conexão);</li>
+ *     <li><b>nó pausado</b> — o que ele envia e o que é enviado a ele fica
+ *         retido e é entregue quando ele volta, como após uma pausa longa de GC;</li>
+ *     <li><b>partição</b> — mensagens entre nós de grupos diferentes se perdem.
+ *         Só as filas da eleição são particionadas; o HTTP continua passando.</li>
+ * </ul>
+ */
+class BrokerMemoria {
+
+    private final Map<String, NoSimulado> nos = new ConcurrentHashMap<>();
+
+    /** Grupo de cada nó durante uma partição; vazio sem partição. */
+    private volatile Map<String, Integer> grupos = Map.of();
+
+    /** Mensagens retidas por envolverem um nó pausado. */
+    private final List<Entrega> retidas = new ArrayList<>();
+
+    private record Entrega(String origem, String destino, ElectionMessage mensagem) {
+    }
+
+    void registrar(NoSimulado no) {
+        nos.put(no.getPorta(), no);
+    }
+
+    /**
+     * @param porta porta do nó emissor
+     * @return template cujas publicações saem deste nó
+     */
+    RabbitTemplate template(String porta) {
+        return new RabbitTemplate() {
+            @Override
+            public void convertAndSend(String exchange, String routingKey, Object object) {
+                publicar(porta, exchange, routingKey, (ElectionMessage) object);
+            }
+        };
+    }
+
+    /**
+     * Separa as filas da eleição em grupos isolados entre si.
+     *
+     * @param grupos grupo de cada porta
+     */
+    void particionar(Map<String, Integer> grupos) {
+        this.grupos = Map.copyOf(grupos);
+    }
+
+    void curarParticao() {
+        this.grupos = Map.of();
+    }
+
+    /**
+     * Entrega o que ficou retido enquanto algum nó estava pausado.
+     */
+    void liberarRetidas() {
+        List<Entrega> pendentes;
+        synchronized (retidas) {
+            pendentes = new ArrayList<>(retidas);
+            retidas.clear();
+        }
+        for (Entrega entrega : pendentes) entregar(entrega);
+    }
+
+    private void publicar(String origem, String exchange, String routingKey, ElectionMessage mensagem) {
+        if (RabbitMQConfig.EXCHANGE_LEADER.equals(exchange)) {
+            for (String destino : Set.copyOf(nos.keySet())) entregar(new Entrega(origem, destino, mensagem));
+        } else if (RabbitMQConfig.EXCHANGE_ELECTION.equals(exchange) && routingKey.startsWith("process.")) {
+            entregar(new Entrega(origem, routingKey.substring("process.".length()), mensagem));
+        }
+    }
+
+    private void entregar(Entrega entrega) {
+        NoSimulado origem = nos.get(entrega.origem());
+        NoSimulado destino = nos.get(entrega.destino());
+        if (origem == null || destino == null || origem.isMorto() || destino.isMorto()) return;
+
+        Map<String, Integer> particao = grupos;
+        if (!particao.isEmpty()
+                && !particao.getOrDefault(entrega.origem(), -1).equals(particao.getOrDefault(entrega.destino(), -1))) {
+            return;
+        }
+
+        if (origem.isPausado() || destino.isPausado()) {
+            synchronized (retidas) {
+                retidas.add(entrega);
+            }
+            return;
+        }
+        destino.receber(entrega.mensagem());
+    }
+}
@@ -0,0 +1,325 @@
+package org.furb.bolsavalores.caos;
+
+import org.furb.bolsavalores.model.Acao;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Benchmark de caos do failover da eleição (Bully por startTime).
+ *
+ * <p>Cada rodada sobe um cluster novo de {@code caos.nos} {@link NoSimulado}s
+ * em portas distintas, ligados pelo {@link BrokerMemoria}, espera o primeiro
+ * líder e injeta uma falha sorteada:</p>
+ * <ul>
+ *     <li><b>QUEDA_LIDER</b> — o líder cai sem aviso;</li>
+ *     <li><b>PAUSA_LIDER</b> — o líder congela por 2 a 6 s e volta;</li>
+ *     <li><b>PARTICAO</b> — as filas da eleição são divididas em dois grupos
+ *         (por 2 a 6 s) e o líder cai logo em seguida;</li>
+ *     <li><b>SAIDA_LIDER</b> — o líder sai de forma ordenada (RESIGN com sucessor).</li>
+ * </ul>
+ *
+ * <p>Medidas por rodada, amostradas a cada 5 ms a partir da falha:</p>
+ * <ul>
+ *     <li><b>convergência</b> — até a falha ter terminado e todos os nós vivos
+ *         reconhecerem um único líder vivo ({@code -1}: não convergiu no prazo
+ *         ou o cluster não chegou a um líder antes da falha — {@code liderAntes} nulo);</li>
+ *     <li><b>split-brain</b> — tempo com dois ou mais nós com {@code isLeader=true}
+ *         (um líder pausado conta: ele volta agindo como líder);</li>
+ *     <li><b>líderes após a convergência</b> — máximo de líderes simultâneos
+ *         observado por {@code caos.observacao-ms} depois da convergência;</li>
+ *     <li><b>cotações perdidas/duplicadas</b> — contadas no {@link ArmazemMemoria}
+ *         em que os próprios nós gravam, pela regra real de quem busca cotações
+ *         (ver {@link NoSimulado}), uma cotação a cada {@code caos.tick-ms}.
+ *         Perdida: intervalo da falha até a convergência sem nenhuma gravação.
+ *         Duplicada: gravação descartada pela chave de idempotência
+ *         ({@link Acao#chaveIdempotencia}).</li>
+ * </ul>
+ *
+ * <p>Cada rodada precisa: formar o cluster, convergir em até
+ * {@code caos.max-failover-ms} após o fim da falha, terminar com um único
+ * líder e não ter dois líderes após a convergência. Split-brain só é aceito
+ * na pausa do líder, enquanto ele está congelado (mais
+ * {@code caos.folga-split-brain-ms} para a troca quando ele volta); nos
+ * demais cenários o líder antigo está fora e não pode haver dois líderes.</p>
+ *
+ * <p>Fica fora do {@code mvn test} padrão (tag {@code caos}). Execução:</p>
+ * <pre>
+ * mvn -Pcaos test -Dcaos.seed=42 -Dcaos.nos=5 -Dcaos.rodadas=20
+ * </pre>
+ * <p>A mesma semente sorteia as mesmas falhas, durações e partições; o
+ * resumo sai no console e as rodadas em {@code target/caos/failover-<seed>.csv}.
+ * Com {@code -Dcaos.log=true} os logs dos nós não são suprimidos.</p>
+ */
+@Tag("caos")
+class FailoverCaosBenchmarkTest {
+
+    private static final String SYMBOL = "PETR4";
+    private static final long AMOSTRAGEM_MS = 5;
+
+    enum Cenario { QUEDA_LIDER, PAUSA_LIDER, PARTICAO, SAIDA_LIDER }
+
+    record Rodada(int numero, Cenario cenario, String liderAntes, String liderDepois, long duracaoFalhaMs,
+                  long convergenciaMs, long splitBrainMs, int maxLideres, int lideresAposConvergencia,
+                  long ticks, long perdidas, long duplicadas) {
+    }
+
+    private final long seed = Long.getLong("caos.seed", 42L);
+    private final int quantidadeNos = Integer.getInteger("caos.nos", 3);
+    private final int rodadas = Integer.getInteger("caos.rodadas", 8);
+    private final Duration intervaloPing = Duration.ofMillis(Long.getLong("caos.ping-ms", 1000L));
+    private final int pingTimeoutMs = Integer.getInteger("caos.ping-timeout-ms", 1000);
+    private final long tickMs = Long.getLong("caos.tick-ms", 100L);
+    private final long prazoMs = Long.getLong("caos.timeout-ms", 30_000L);
+    private final long maxFailoverMs = Long.getLong("caos.max-failover-ms", 10_000L);
+    private final long observacaoMs = Long.getLong("caos.observacao-ms", 2_000L);
+    private final long folgaSplitBrainMs = Long.getLong("caos.folga-split-brain-ms", 1_000L);
+    private final boolean log = Boolean.getBoolean("caos.log");
+
+    @Test
+    void failoverDoLider() throws Exception {
+        Random random = new Random(seed);
+        List<Rodada> resultados = new ArrayList<>();
+
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        if (!log) {
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+        }
+        try {
+            for (int i = 1; i <= rodadas; i++) {
+                Cenario cenario = Cenario.values()[random.nextInt(Cenario.values().length)];
+                Rodada rodada = executar(i, cenario, random);
+                resultados.add(rodada);
+                out.println("[Caos] " + rodada);
+            }
+        } finally {
+            System.setOut(out);
+            System.setErr(err);
+        }
+
+        imprimirResumo(resultados);
+        gravarCsv(resultados);
+        assertThat(resultados).hasSize(rodadas).allSatisfy(r -> {
+            assertThat(r.liderAntes()).as("rodada %d: cluster sem líder antes da falha", r.numero()).isNotNull();
+            assertThat(r.convergenciaMs()).as("rodada %d: convergência", r.numero())
+                    .isBetween(0L, r.duracaoFalhaMs() + maxFailoverMs);
+            assertThat(r.liderDepois()).as("rodada %d: líder final", r.numero()).isNotNull().doesNotContain("+");
+            assertThat(r.lideresAposConvergencia()).as("rodada %d: líderes após a convergência", r.numero())
+                    .isEqualTo(1);
+            long splitBrainAceito = r.cenario() == Cenario.PAUSA_LIDER ? r.duracaoFalhaMs() + folgaSplitBrainMs : 0;
+            assertThat(r.splitBrainMs()).as("rodada %d (%s): split-brain", r.numero(), r.cenario())
+                    .isLessThanOrEqualTo(splitBrainAceito);
+        });
+    }
+
+    private Rodada executar(int numero, Cenario cenario, Random random) throws Exception {
+        List<String> portas = portasLivres(quantidadeNos);
+        String csv = String.join(",", portas);
+        BrokerMemoria broker = new BrokerMemoria();
+        ArmazemMemoria armazem = new ArmazemMemoria();
+        List<NoSimulado> nos = new ArrayList<>();
+        for (String porta : portas) {
+            nos.add(new NoSimulado(porta, csv, broker, intervaloPing, pingTimeoutMs, armazem, SYMBOL,
+                    Duration.ofMillis(tickMs)));
+            Thread.sleep(5); // startTimes distintos
+        }
+
+        try {
+            nos.forEach(NoSimulado::iniciar);
+            if (!aguardar(() -> consistente(nos), prazoMs)) {
+                return new Rodada(numero, cenario, null, null, 0, -1, 0, lideres(nos), 0, 0, 0, 0);
+            }
+            Thread.sleep(1000);
+
+            // o primeiro líder pode ter sido trocado por uma eleição atrasada durante o aquecimento
+            if (!aguardar(() -> consistente(nos), prazoMs)) {
+                return new Rodada(numero, cenario, null, null, 0, -1, 0, lideres(nos), 0, 0, 0, 0);
+            }
+            NoSimulado lider = nos.stream().filter(NoSimulado::isLider).findFirst().orElse(null);
+            if (lider == null) {
+                return new Rodada(numero, cenario, null, null, 0, -1, 0, 0, 0, 0, 0, 0);
+            }
+            long duracaoFalha = cenario == Cenario.PAUSA_LIDER || cenario == Cenario.PARTICAO
+                    ? 2000 + random.nextInt(4001) : 0;
+            Map<String, Integer> grupos = cenario == Cenario.PARTICAO ? sortearParticao(nos, lider, random) : Map.of();
+
+            long primeiroTick = System.currentTimeMillis() / tickMs;
+            long duplicadasAntes = armazem.duplicadas();
+            long inicio = System.nanoTime();
+            switch (cenario) {
+                case QUEDA_LIDER -> lider.matar();
+                case PAUSA_LIDER -> lider.pausar();
+                case PARTICAO -> {
+                    broker.particionar(grupos);
+                    lider.matar();
+                }
+                case SAIDA_LIDER -> lider.sair();
+            }
+
+            long fimFalha = inicio + TimeUnit.MILLISECONDS.toNanos(duracaoFalha);
+            long prazo = inicio + TimeUnit.MILLISECONDS.toNanos(prazoMs) + TimeUnit.MILLISECONDS.toNanos(duracaoFalha);
+            boolean falhaAtiva = duracaoFalha > 0;
+            long splitBrainNanos = 0;
+            int maxLideres = 0;
+            long convergencia = -1;
+            long anterior = System.nanoTime();
+
+            while (System.nanoTime() < prazo) {
+                long agora = System.nanoTime();
+                if (falhaAtiva && agora >= fimFalha) {
+                    falhaAtiva = false;
+                    if (cenario == Cenario.PAUSA_LIDER) lider.retomar();
+                    else broker.curarParticao();
+                    broker.liberarRetidas();
+                }
+
+                int lideres = lideres(nos);
+                maxLideres = Math.max(maxLideres, lideres);
+                if (lideres > 1) splitBrainNanos += agora - anterior;
+                anterior = agora;
+
+                if (!falhaAtiva && consistente(nos)) {
+                    convergencia = TimeUnit.NANOSECONDS.toMillis(agora - inicio);
+                    break;
+                }
+                Thread.sleep(AMOSTRAGEM_MS);
+            }
+
+            // o intervalo em curso ainda pode ser gravado: conta até o anterior
+            long ultimoTick = System.currentTimeMillis() / tickMs - 1;
+            long duplicadas = armazem.duplicadas() - duplicadasAntes;
+
+            int lideresAposConvergencia = lideres(nos);
+            long fimObservacao = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(observacaoMs);
+            while (convergencia >= 0 && System.nanoTime() < fimObservacao) {
+                lideresAposConvergencia = Math.max(lideresAposConvergencia, lideres(nos));
+                Thread.sleep(AMOSTRAGEM_MS);
+            }
+
+            long perdidas = 0;
+            for (long t = primeiroTick; t <= ultimoTick; t++) {
+                if (!armazem.contem(Acao.chaveIdempotencia(SYMBOL, Instant.ofEpochMilli(t * tickMs)))) perdidas++;
+            }
+
+            String liderDepois = nos.stream().filter(no -> !no.isMorto() && no.isLider())
+                    .map(NoSimulado::getPorta).collect(Collectors.joining("+"));
+            return new Rodada(numero, cenario, lider.getPorta(), liderDepois.isEmpty() ? null : liderDepois,
+                    duracaoFalha, convergencia, TimeUnit.NANOSECONDS.toMillis(splitBrainNanos), maxLideres,
+                    lideresAposConvergencia, Math.max(0, ultimoTick - primeiroTick + 1), perdidas, duplicadas);
+        } finally {
+            nos.forEach(no -> {
+                if (!no.isMorto()) no.matar();
+            });
+        }
+    }
+
+    /**
+     * O líder fica no grupo 0; os demais são divididos para que os dois
+     * grupos tenham nós vivos após a queda do líder (com 2 nós não há partição).
+     */
+    private Map<String, Integer> sortearParticao(List<NoSimulado> nos, NoSimulado lider, Random random) {
+        List<NoSimulado> outros = new ArrayList<>(nos);
+        outros.remove(lider);
+        Collections.shuffle(outros, random);
+        Map<String, Integer> grupos = new HashMap<>();
+        grupos.put(lider.getPorta(), 0);
+        int metade = outros.size() < 2 ? outros.size() : 1 + random.nextInt(outros.size() - 1);
+        for (int i = 0; i < outros.size(); i++) grupos.put(outros.get(i).getPorta(), i < metade ? 0 : 1);
+        return grupos;
+    }
+
+    /**
+     * Todos os nós vivos (nenhum pausado) reconhecem um único líder, que se
+     * declara líder.
+     */
+    private static boolean consistente(List<NoSimulado> nos) {
+        List<NoSimulado> vivos = nos.stream().filter(no -> !no.isMorto()).toList();
+        if (vivos.isEmpty() || vivos.stream().anyMatch(NoSimulado::isPausado)) return false;
+        List<NoSimulado> lideres = vivos.stream().filter(NoSimulado::isLider).toList();
+        if (lideres.size() != 1) return false;
+        String porta = lideres.get(0).getPorta();
+        return vivos.stream().allMatch(no -> porta.equals(no.getLider()));
+    }
+
+    private static int lideres(List<NoSimulado> nos) {
+        return (int) nos.stream().filter(no -> !no.isMorto() && no.isLider()).count();
+    }
+
+    private static boolean aguardar(BooleanSupplier condicao, long prazoMs) throws InterruptedException {
+        long prazo = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(prazoMs);
+        while (System.nanoTime() < prazo) {
+            if (condicao.getAsBoolean()) return true;
+            Thread.sleep(AMOSTRAGEM_MS);
+        }
+        return false;
+    }
+
+    private static List<String> portasLivres(int quantidade) throws IOException {
+        List<ServerSocket> sockets = new ArrayList<>();
+        try {
+            for (int i = 0; i < quantidade; i++) sockets.add(new ServerSocket(0));
+            return sockets.stream().map(s -> String.valueOf(s.getLocalPort())).toList();
+        } finally {
+            for (ServerSocket socket : sockets) socket.close();
+        }
+    }
+
+    private void imprimirResumo(List<Rodada> resultados) {
+        System.out.println();
+        System.out.println("[Caos] seed=" + seed + " nos=" + quantidadeNos + " rodadas=" + rodadas
+                + " ping=" + intervaloPing.toMillis() + "ms tick=" + tickMs + "ms");
+        System.out.printf("%-12s %7s %12s %9s %9s %9s %13s %11s %12s %9s %10s%n", "cenario", "rodadas",
+                "nao-converg", "conv-p50", "conv-p95", "conv-max", "split-brain", "max-lideres", "lideres-apos",
+                "perdidas", "duplicadas");
+        for (Cenario cenario : Cenario.values()) {
+            List<Rodada> doCenario = resultados.stream().filter(r -> r.cenario() == cenario).toList();
+            if (doCenario.isEmpty()) continue;
+            List<Long> convergencias = doCenario.stream().map(Rodada::convergenciaMs).filter(ms -> ms >= 0).sorted().toList();
+            System.out.printf("%-12s %7d %12d %9s %9s %9s %11dms %11d %12d %9d %10d%n", cenario, doCenario.size(),
+                    doCenario.size() - convergencias.size(),
+                    percentil(convergencias, 50), percentil(convergencias, 95), percentil(convergencias, 100),
+                    doCenario.stream().mapToLong(Rodada::splitBrainMs).sum(),
+                    doCenario.stream().mapToInt(Rodada::maxLideres).max().orElse(0),
+                    doCenario.stream().mapToInt(Rodada::lideresAposConvergencia).max().orElse(0),
+                    doCenario.stream().mapToLong(Rodada::perdidas).sum(),
+                    doCenario.stream().mapToLong(Rodada::duplicadas).sum());
+        }
+    }
+
+    /** Percentil pelo método nearest-rank, em ms; "-" sem amostras. */
+    private static String percentil(List<Long> ordenados, int p) {
+        if (ordenados.isEmpty()) return "-";
+        int indice = (int) Math.ceil(p / 100.0 * ordenados.size()) - 1;
+        return ordenados.get(Math.max(0, indice)) + "ms";
+    }
+
+    private void gravarCsv(List<Rodada> resultados) throws IOException {
+        Path arquivo = Path.of(System.getProperty("caos.saida", "target/caos"), "failover-" + seed + ".csv");
+        Files.createDirectories(arquivo.getParent());
+        List<String> linhas = new ArrayList<>();
+        linhas.add("rodada,cenario,liderAntes,liderDepois,duracaoFalhaMs,convergenciaMs,splitBrainMs,maxLideres,lideresAposConvergencia,ticks,perdidas,duplicadas");
+        for (Rodada r : resultados) {
+            linhas.add(r.numero() + "," + r.cenario() + "," + r.liderAntes() + "," + r.liderDepois() + ","
+                    + r.duracaoFalhaMs() + "," + r.convergenciaMs() + "," + r.splitBrainMs() + "," + r.maxLideres() + ","
+                    + r.lideresAposConvergencia() + "," + r.ticks() + "," + r.perdidas() + "," + r.duplicadas());
+        }
+        Files.write(arquivo, linhas);
+        System.out.println("[Caos] Rodadas gravadas em " + arquivo);
+    }
+}
@@ -0,0 +1,193 @@
+package org.furb.bolsavalores.caos;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.Getter;
+import org.furb.bolsavalores.config.AppConfig;
+import org.furb.bolsavalores.model.Acao;
+import org.furb.bolsavalores.model.ElectionMessage;
+import org.furb.bolsavalores.service.ElectionConsumer;
+import org.furb.bolsavalores.service.ElectionService;
+import org.furb.bolsavalores.service.ShardService;
+import org.furb.bolsavalores.service.StartupMetrics;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Um nó do cluster dentro do processo de teste: o {@link ElectionService} e o
+ * {@link ElectionConsumer} reais, com
+ * <ul>
+ *     <li>um servidor HTTP na porta do nó respondendo os endpoints que a
+ *         eleição consulta nos outros nós ({@code /api/status},
+ *         {@code /api/status/ping} e {@code /api/status/uptime});</li>
+ *     <li>a fila de eleição do {@link BrokerMemoria}, consumida em uma única thread;</li>
+ *     <li>o ping periódico ao líder que o {@code BolsaScheduler} faria, com
+ *         intervalo configurável;</li>
+ *     <li>a coleta de cotações: a cada {@code intervaloColeta}, se a regra real
+ *         ({@link ElectionService#deveBuscarCotacoes()}) manda este nó buscar, ele
+ *         grava no {@link ArmazemMemoria} a cotação do intervalo, com o horário
+ *         truncado ao início do intervalo e a chave de idempotência real.</li>
+ * </ul>
+ *
+ * <p>Uma pausa congela o HTTP (as chamadas dos outros nós expiram) e retém as
+ * mensagens, mas não as threads internas do serviço: é uma aproximação de uma
+ * pausa de GC, suficiente para o líder antigo voltar achando que ainda lidera.
+ * A coleta fica parada durante a pausa.</p>
+ */
+class NoSimulado {
+
+    /** Atraso do primeiro ping, para não competir com a eleição da subida. */
+    private static final Duration ATRASO_PRIMEIRO_PING = Duration.ofSeconds(5);
+
+    @Getter private final String porta;
+    private final ElectionService electionService;
+    private final ElectionConsumer electionConsumer;
+    private final ThreadPoolTaskScheduler scheduler;
+    private final ExecutorService fila;
+    private final HttpServer http;
+    private final Duration intervaloPing;
+    private final ArmazemMemoria armazem;
+    private final String symbol;
+    private final Duration intervaloColeta;
+
+    @Getter private volatile boolean morto;
+    @Getter private volatile boolean pausado;
+    private volatile CountDownLatch retomada = new CountDownLatch(0);
+
+    NoSimulado(String porta, String portasCsv, BrokerMemoria broker, Duration intervaloPing, int pingTimeoutMs,
+               ArmazemMemoria armazem, String symbol, Duration intervaloColeta) throws IOException {
+        this.porta = porta;
+        this.intervaloPing = intervaloPing;
+        this.armazem = armazem;
+        this.symbol = symbol;
+        this.intervaloColeta = intervaloColeta;
+
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(4);
+        scheduler.setThreadNamePrefix("no-" + porta + "-");
+        scheduler.initialize();
+        fila = Executors.newSingleThreadExecutor(r -> new Thread(r, "fila-eleicao-" + porta));
+
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        beans.addBean("rabbitTemplate", broker.template(porta));
+        electionService = new ElectionService(beans.getBeanProvider(RabbitTemplate.class), portasCsv, porta,
+                scheduler, new StartupMetrics(), beans.getBeanProvider(ShardService.class), pingTimeoutMs,
+                new AppConfig());
+        electionConsumer = new ElectionConsumer(electionService);
+
+        http = HttpServer.create(new InetSocketAddress(Integer.parseInt(porta)), 50);
+        http.setExecutor(Executors.newFixedThreadPool(4));
+        http.createContext("/api/status", this::responder);
+        broker.registrar(this);
+    }
+
+    void iniciar() {
+        http.start();
+        electionService.init();
+        scheduler.scheduleWithFixedDelay(() -> {
+            if (!pausado && !morto) electionService.pingLeader();
+        }, Instant.now().plus(ATRASO_PRIMEIRO_PING), intervaloPing);
+        scheduler.scheduleAtFixedRate(this::coletar, intervaloColeta);
+    }
+
+    private void coletar() {
+        if (pausado || morto || !electionService.deveBuscarCotacoes()) return;
+        long intervalo = intervaloColeta.toMillis();
+        Instant horario = Instant.ofEpochMilli(System.currentTimeMillis() / intervalo * intervalo);
+        armazem.inserir(Acao.chaveIdempotencia(symbol, horario), porta);
+    }
+
+    /**
+     * Enfileira uma mensagem na fila de eleição do nó.
+     */
+    void receber(ElectionMessage mensagem) {
+        if (morto) return;
+        fila.execute(() -> {
+            if (!morto) electionConsumer.onMessage(mensagem);
+        });
+    }
+
+    boolean isLider() {
+        return electionService.isLeader();
+    }
+
+    String getLider() {
+        return electionService.getCurrentLeaderPort();
+    }
+
+    /**
+     * Queda abrupta: sem RESIGN, HTTP e fila fecham na hora.
+     */
+    void matar() {
+        morto = true;
+        retomada.countDown();
+        http.stop(0);
+        ((ExecutorService) http.getExecutor()).shutdownNow();
+        fila.shutdownNow();
+        scheduler.getScheduledExecutor().shutdownNow();
+    }
+
+    /**
+     * Saída ordenada ({@link ElectionService#renunciar()}, chamada pelo {@code stop()} do serviço,
+     * com RESIGN), seguida da queda.
+     */
+    void sair() {
+        electionService.renunciar();
+        matar();
+    }
+
+    void pausar() {
+        retomada = new CountDownLatch(1);
+        pausado = true;
+    }
+
+    void retomar() {
+        pausado = false;
+        retomada.countDown();
+    }
+
+    private void responder(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (pausado) {
+                retomada.await(1, TimeUnit.MINUTES);
+            }
+            if (morto) return;
+
+            String caminho = exchange.getRequestURI().getPath();
+            String corpo;
+            String tipo = "text/plain";
+            switch (caminho) {
+                case "/api/status" -> corpo = electionService.isLeader() ? "leader" : "follower";
+                case "/api/status/ping" -> corpo = "alive";
+                case "/api/status/uptime" -> {
+                    corpo = String.valueOf(electionService.getMyStartTime());
+                    tipo = "application/json";
+                }
+                default -> {
+                    exchange.sendResponseHeaders(404, -1);
+                    return;
+                }
+            }
+            byte[] bytes = corpo.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", tipo);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.furb.bolsavalores.carga;
+
+import org.furb.bolsavalores.config.AppConfig;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LimitadorAdaptativoTest {
+
+    private static LimitadorAdaptativo criar(int limiteInicial) {
+        AppConfig appConfig = new AppConfig();
+        appConfig.getCarga().setLimiteInicial(limiteInicial);
+        appConfig.getCarga().setLimiteMinimo(2);
+        appConfig.getCarga().setLimiteMaximo(100);
+        appConfig.getCarga().setJanela(Duration.ZERO);
+        return new LimitadorAdaptativo(appConfig);
+    }
+
+    private static int limite(LimitadorAdaptativo limitador) {
+        return (int) limitador.snapshot().get("limite");
+    }
+
+    @Test
+    void recusaAcimaDoLimite() {
+        LimitadorAdaptativo limitador = criar(3);
+        List<LimitadorAdaptativo.Permissao> permissoes = new ArrayList<>();
+        for (int i = 0; i < 3; i++) permissoes.add(limitador.adquirir());
+
+        assertNull(limitador.adquirir());
+        permissoes.get(0).liberar(false);
+        assertNotNull(limitador.adquirir());
+        assertEquals(1L, limitador.snapshot().get("recusadas"));
+    }
+
+    @Test
+    void liberarDuasVezesDevolveUmaVaga() {
+        LimitadorAdaptativo limitador = criar(3);
+        LimitadorAdaptativo.Permissao permissao = limitador.adquirir();
+        permissao.liberar(true);
+        permissao.liberar(false);
+
+        assertEquals(0, limitador.snapshot().get("emUso"));
+    }
+
+    @Test
+    void quedaReduzOLimite() {
+        LimitadorAdaptativo limitador = criar(20);
+        limitador.adquirir().liberar(true);
+        assertEquals(18, limite(limitador));
+
+        for (int i = 0; i < 50; i++) limitador.adquirir().liberar(true);
+        assertEquals(2, limite(limitador), "o limite não passa do mínimo");
+    }
+
+    @Test
+    void cresceComLatenciaEstavelQuandoSaturado() {
+        LimitadorAdaptativo limitador = criar(10);
+        for (int rodada = 0; rodada < 20; rodada++) {
+            List<LimitadorAdaptativo.Permissao> permissoes = new ArrayList<>();
+            LimitadorAdaptativo.Permissao permissao;
+            while ((permissao = limitador.adquirir()) != null) permissoes.add(permissao);
+            permissoes.forEach(p -> p.liberar(false));
+        }
+        assertTrue(limite(limitador) > 10, "limite=" + limite(limitador));
+    }
+
+    @Test
+    void naoCresceOcioso() {
+        LimitadorAdaptativo limitador = criar(10);
+        for (int i = 0; i < 200; i++) limitador.adquirir().liberar(false);
+        assertEquals(10, limite(limitador));
+    }
+}
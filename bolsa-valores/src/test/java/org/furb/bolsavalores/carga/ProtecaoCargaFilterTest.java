@@ -0,0 +1,64 @@
+package org.furb.bolsavalores.carga;
+
+import org.furb.bolsavalores.config.AppConfig;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProtecaoCargaFilterTest {
+
+    private final AppConfig appConfig = criarConfig();
+    private final LimitadorAdaptativo limitador = new LimitadorAdaptativo(appConfig);
+    private final BaldesPorCliente baldes = new BaldesPorCliente(appConfig);
+    private final ProtecaoCargaFilter filter = new ProtecaoCargaFilter(limitador, baldes, appConfig);
+
+    private static AppConfig criarConfig() {
+        AppConfig appConfig = new AppConfig();
+        appConfig.getCarga().setRajada(2);
+        appConfig.getCarga().setRequisicoesPorSegundo(0.001);
+        appConfig.getCarga().setLimiteInicial(1);
+        appConfig.getCarga().setLimiteMinimo(1);
+        appConfig.getCarga().setMaxClientes(2);
+        return appConfig;
+    }
+
+    private int executar(String metodo, String caminho, String ip, String clientId) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(metodo, "/api" + caminho);
+        request.setContextPath("/api");
+        request.setRemoteAddr(ip);
+        if (clientId != null) request.addHeader("X-Client-Id", clientId);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, (req, res) -> {});
+        return response.getStatus();
+    }
+
+    @Test
+    void trocarOHeaderNaoGanhaBaldeNovo() throws Exception {
+        assertEquals(200, executar("GET", "/acoes/PETR4", "10.0.0.1", "a"));
+        assertEquals(200, executar("GET", "/acoes/PETR4", "10.0.0.1", "b"));
+        assertEquals(429, executar("GET", "/acoes/PETR4", "10.0.0.1", "c"));
+        assertEquals(200, executar("GET", "/acoes/PETR4", "10.0.0.2", null));
+    }
+
+    @Test
+    void clientesAlemDoLimiteDividemUmBalde() throws Exception {
+        executar("GET", "/acoes/PETR4", "10.0.0.1", null);
+        executar("GET", "/acoes/PETR4", "10.0.0.2", null);
+
+        assertEquals(200, executar("GET", "/acoes/PETR4", "10.0.0.3", null));
+        assertEquals(200, executar("GET", "/acoes/PETR4", "10.0.0.4", null));
+        assertEquals(429, executar("GET", "/acoes/PETR4", "10.0.0.5", null));
+        assertEquals(2, baldes.clientes());
+    }
+
+    @Test
+    void refreshNaoPassaPeloLimitador() throws Exception {
+        LimitadorAdaptativo.Permissao ocupada = limitador.adquirir();
+
+        assertEquals(503, executar("GET", "/acoes/PETR4", "10.0.0.1", null));
+        assertEquals(200, executar("POST", "/acoes/PETR4/refresh", "10.0.0.1", null));
+        ocupada.liberar(false);
+    }
+}
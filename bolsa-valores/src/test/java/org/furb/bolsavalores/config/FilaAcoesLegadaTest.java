@@ -0,0 +1,47 @@
+package org.furb.bolsavalores.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.QueueInformation;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class FilaAcoesLegadaTest {
+
+    private final AmqpAdmin amqpAdmin = mock(AmqpAdmin.class);
+    private final FilaAcoesLegada legada = new FilaAcoesLegada(amqpAdmin);
+
+    @Test
+    void filaVaziaEhDesligadaEApagada() {
+        when(amqpAdmin.getQueueInfo(RabbitMQConfig.QUEUE_ACOES))
+                .thenReturn(new QueueInformation(RabbitMQConfig.QUEUE_ACOES, 0, 0));
+
+        legada.remover();
+
+        verify(amqpAdmin).removeBinding(argThat((Binding b) -> RabbitMQConfig.QUEUE_ACOES.equals(b.getDestination())
+                && RabbitMQConfig.EXCHANGE_ACOES.equals(b.getExchange())
+                && "bolsa.acoes.#".equals(b.getRoutingKey())));
+        verify(amqpAdmin).deleteQueue(RabbitMQConfig.QUEUE_ACOES);
+    }
+
+    @Test
+    void filaComMensagensSoEhDesligada() {
+        when(amqpAdmin.getQueueInfo(RabbitMQConfig.QUEUE_ACOES))
+                .thenReturn(new QueueInformation(RabbitMQConfig.QUEUE_ACOES, 120, 0));
+
+        legada.remover();
+
+        verify(amqpAdmin).removeBinding(any());
+        verify(amqpAdmin, never()).deleteQueue(anyString());
+    }
+
+    @Test
+    void semFilaLegadaNaoFazNada() {
+        legada.remover();
+
+        verify(amqpAdmin, never()).removeBinding(any());
+        verify(amqpAdmin, never()).deleteQueue(anyString());
+    }
+}
@@ -0,0 +1,87 @@
+package org.furb.bolsavalores.service;
+
+import org.furb.bolsavalores.config.RabbitMQConfig;
+import org.furb.bolsavalores.model.Acao;
+import org.furb.bolsavalores.model.RegraAlerta;
+import org.furb.bolsavalores.repository.AcoesRepository;
+import org.furb.bolsavalores.repository.RegraAlertaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AlertasServiceTest {
+
+    private static final int SHARDS = 8;
+    private static final Instant T0 = Instant.parse("2026-03-02T14:00:00Z");
+
+    private final RegraAlertaRepository regraRepository = mock(RegraAlertaRepository.class);
+    private final AcoesRepository acoesRepository = mock(AcoesRepository.class);
+    private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+    private AlertasService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void criar() {
+        ObjectProvider<RabbitTemplate> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(rabbitTemplate);
+        RegraAlerta regra = new RegraAlerta();
+        regra.setId("r1");
+        regra.setSymbol("PETR4");
+        regra.setTipo(RegraAlerta.Tipo.CRUZA_ACIMA);
+        regra.setLimite(20);
+        when(regraRepository.findAll()).thenReturn(List.of(regra));
+        service = new AlertasService(regraRepository, acoesRepository, provider);
+        service.carregar();
+    }
+
+    private static Acao cotacao(int minutos, double preco) {
+        Acao acao = new Acao();
+        acao.setSymbol("PETR4");
+        acao.setRegularMarketTime(T0.plusSeconds(minutos * 60L));
+        acao.setRegularMarketPrice(preco);
+        return acao;
+    }
+
+    private void verificarAlertas(int quantidade) {
+        verify(rabbitTemplate, times(quantidade))
+                .convertAndSend(eq(RabbitMQConfig.EXCHANGE_ALERTAS), anyString(), any(Object.class));
+    }
+
+    @Test
+    void disparaAoCruzarOLimite() {
+        service.avaliar(cotacao(0, 19));
+        service.avaliar(cotacao(1, 21));
+        verificarAlertas(1);
+    }
+
+    @Test
+    void shardDeVoltaReleOPrecoAnteriorDoMongo() {
+        service.avaliar(cotacao(0, 19));
+
+        // o shard sai deste nó; o novo dono grava 21 (e dispara o alerta lá); o shard volta
+        int shard = RabbitMQConfig.shardDe("PETR4", SHARDS);
+        service.esquecerShard(shard, SHARDS);
+        when(acoesRepository.findFirstBySymbolAndRegularMarketTimeLessThanOrderByRegularMarketTimeDesc(eq("PETR4"), any()))
+                .thenReturn(Optional.of(cotacao(1, 21)));
+        service.esquecerShard(shard, SHARDS);
+
+        service.avaliar(cotacao(2, 22));
+        verificarAlertas(0);
+    }
+
+    @Test
+    void outroShardNaoPerdeOEstado() {
+        service.avaliar(cotacao(0, 19));
+        service.esquecerShard((RabbitMQConfig.shardDe("PETR4", SHARDS) + 1) % SHARDS, SHARDS);
+        service.avaliar(cotacao(1, 21));
+        verificarAlertas(1);
+    }
+}
@@ -0,0 +1,120 @@
+package org.furb.bolsavalores.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.furb.bolsavalores.config.AppConfig;
+import org.furb.bolsavalores.model.Acao;
+import org.furb.bolsavalores.model.AcaoPersistidaEvent;
+import org.furb.bolsavalores.model.Simbolo;
+import org.furb.bolsavalores.model.SimboloAtualizadoEvent;
+import org.furb.bolsavalores.repository.AcoesRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class CacheRespostasServiceTest {
+
+    private static final Instant T0 = Instant.parse("2026-03-02T13:00:00Z");
+
+    private final AcoesRepository repository = mock(AcoesRepository.class);
+    private CacheRespostasService cache;
+
+    @BeforeEach
+    void criar() {
+        MetadadosService metadadosService = mock(MetadadosService.class);
+        when(metadadosService.completar(any())).thenAnswer(inv -> inv.getArgument(0));
+        AppConfig appConfig = new AppConfig();
+        appConfig.getCacheRespostas().setMaxEntradas(2);
+        cache = new CacheRespostasService(repository, metadadosService,
+                new ObjectMapper().registerModule(new JavaTimeModule()), appConfig);
+
+        for (String symbol : new String[]{"PETR4", "VALE3", "ITUB4"}) {
+            when(repository.findFirstBySymbolOrderByRegularMarketTimeDesc(symbol))
+                    .thenAnswer(inv -> Optional.of(cotacao(symbol, 10)));
+        }
+    }
+
+    private static Acao cotacao(String symbol, double preco) {
+        Acao acao = new Acao();
+        acao.setSymbol(symbol);
+        acao.setRegularMarketPrice(preco);
+        acao.setRegularMarketTime(T0);
+        return acao;
+    }
+
+    private String ultima(String symbol) {
+        return new String(cache.ultima(symbol).orElseThrow(), StandardCharsets.UTF_8);
+    }
+
+    private void consultasAoBanco(String symbol, int vezes) {
+        verify(repository, times(vezes)).findFirstBySymbolOrderByRegularMarketTimeDesc(symbol);
+    }
+
+    @Test
+    void serveOAcertoSemConsultarOBanco() {
+        String primeira = ultima("petr4");
+        String segunda = ultima("PETR4");
+
+        assertThat(segunda).isEqualTo(primeira).contains("\"symbol\":\"PETR4\"");
+        consultasAoBanco("PETR4", 1);
+        assertThat(cache.snapshot()).containsEntry("acertos", 1L).containsEntry("falhas", 1L);
+    }
+
+    @Test
+    void cotacaoPersistidaOuNomeAlteradoInvalidamAResposta() {
+        ultima("PETR4");
+
+        cache.onAcaoPersistida(new AcaoPersistidaEvent(this, cotacao("PETR4", 11)));
+        ultima("PETR4");
+        consultasAoBanco("PETR4", 2);
+
+        Simbolo simbolo = new Simbolo();
+        simbolo.setSymbol("PETR4");
+        cache.onSimboloAtualizado(new SimboloAtualizadoEvent(this, simbolo));
+        ultima("PETR4");
+        consultasAoBanco("PETR4", 3);
+    }
+
+    @Test
+    void cheioDescartaAUsadaHaMaisTempo() {
+        ultima("PETR4");
+        ultima("VALE3");
+        ultima("PETR4");
+
+        ultima("ITUB4");
+
+        assertThat(cache.snapshot()).containsEntry("entradas", 2);
+        ultima("PETR4");
+        ultima("ITUB4");
+        consultasAoBanco("PETR4", 1);
+        consultasAoBanco("ITUB4", 1);
+
+        ultima("VALE3");
+        consultasAoBanco("VALE3", 2);
+    }
+
+    @Test
+    void simboloSemCotacoesNaoEGuardado() {
+        when(repository.findFirstBySymbolOrderByRegularMarketTimeDesc("OIBR3")).thenReturn(Optional.empty());
+
+        assertThat(cache.ultima("OIBR3")).isEmpty();
+        assertThat(cache.snapshot()).containsEntry("entradas", 0);
+    }
+
+    @Test
+    void leituraNaoCriaVersaoParaOSimbolo() {
+        for (int i = 0; i < 100; i++) cache.ultima("INEXISTENTE" + i);
+        ultima("PETR4");
+
+        assertThat(cache.snapshot()).containsEntry("simbolosVersionados", 0);
+        cache.onAcaoPersistida(new AcaoPersistidaEvent(this, cotacao("PETR4", 11)));
+        assertThat(cache.snapshot()).containsEntry("simbolosVersionados", 1);
+    }
+}
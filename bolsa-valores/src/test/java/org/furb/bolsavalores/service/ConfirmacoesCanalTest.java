@@ -0,0 +1,76 @@
+package org.furb.bolsavalores.service;
+
+import com.rabbitmq.client.Channel;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class ConfirmacoesCanalTest {
+
+    private final Channel canal = mock(Channel.class);
+    private final ConfirmacoesCanal confirmacoes = new ConfirmacoesCanal(canal, "consumidor-0", "acoes.shard.0");
+
+    @Test
+    void confirmacoesForaDeOrdemViramUmAckDoPrefixo() throws IOException {
+        for (long tag = 1; tag <= 3; tag++) confirmacoes.registrar(tag);
+
+        confirmacoes.confirmar(3);
+        confirmacoes.confirmar(2);
+        verifyNoInteractions(canal);
+
+        confirmacoes.confirmar(1);
+        verify(canal).basicAck(3, true);
+        verifyNoMoreInteractions(canal);
+        assertEquals(0, confirmacoes.pendentes());
+    }
+
+    @Test
+    void rejeicaoEEnviadaNaSuaPosicao() throws IOException {
+        for (long tag = 1; tag <= 4; tag++) confirmacoes.registrar(tag);
+
+        confirmacoes.confirmar(4);
+        confirmacoes.rejeitar(2);
+        confirmacoes.confirmar(1);
+        confirmacoes.confirmar(3);
+
+        InOrder ordem = inOrder(canal);
+        ordem.verify(canal).basicAck(1, true);
+        ordem.verify(canal).basicReject(2, false);
+        ordem.verify(canal).basicAck(4, true);
+        verifyNoMoreInteractions(canal);
+    }
+
+    @Test
+    void entregaLiquidadaNaoMuda() throws IOException {
+        confirmacoes.registrar(1);
+        confirmacoes.registrar(2);
+
+        confirmacoes.confirmar(2);
+        confirmacoes.rejeitar(2);
+        confirmacoes.rejeitar(1);
+
+        InOrder ordem = inOrder(canal);
+        ordem.verify(canal).basicReject(1, false);
+        ordem.verify(canal).basicAck(2, true);
+        verifyNoMoreInteractions(canal);
+    }
+
+    @Test
+    void falhaDoCanalDescartaAsPendentes() throws IOException {
+        doThrow(new IOException("canal fechado")).when(canal).basicAck(anyLong(), anyBoolean());
+        confirmacoes.registrar(1);
+        confirmacoes.registrar(2);
+
+        confirmacoes.confirmar(1);
+        assertEquals(0, confirmacoes.pendentes());
+
+        confirmacoes.confirmar(2);
+        verify(canal, times(1)).basicAck(anyLong(), anyBoolean());
+    }
+}
@@ -0,0 +1,71 @@
+package org.furb.bolsavalores.service;
+
+import org.bson.Document;
+import org.furb.bolsavalores.config.AppConfig;
+import org.furb.bolsavalores.model.Acao;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ConsultaLoteServiceTest {
+
+    private static final Instant FIM = Instant.parse("2026-03-06T21:00:00Z");
+
+    private final ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+    private final MetadadosService metadadosService = mock(MetadadosService.class);
+    private final ConsultaLoteService service = criar();
+
+    private ConsultaLoteService criar() {
+        AppConfig appConfig = new AppConfig();
+        appConfig.getConsultaLote().setJanelaPadrao(Duration.ofDays(7));
+        appConfig.getConsultaLote().setMaxDocumentos(3);
+        when(metadadosService.completar(any())).thenAnswer(inv -> inv.getArgument(0));
+        return new ConsultaLoteService(mongoTemplate, metadadosService, appConfig);
+    }
+
+    private static Acao cotacao(String symbol, int hora) {
+        Acao acao = new Acao();
+        acao.setSymbol(symbol);
+        acao.setRegularMarketTime(FIM.minus(Duration.ofHours(hora)));
+        return acao;
+    }
+
+    @Test
+    void semFromUsaAJanelaPadraoELimitaAConsulta() {
+        when(mongoTemplate.find(any(Query.class), eq(Acao.class)))
+                .thenReturn(Flux.just(cotacao("PETR4", 2), cotacao("PETR4", 1), cotacao("VALE3", 1)));
+
+        Map<String, List<Acao>> grupos = service.historico(List.of("vale3", "petr4"), null, FIM).block();
+
+        assertEquals(List.of("VALE3", "PETR4"), List.copyOf(grupos.keySet()));
+        assertEquals(2, grupos.get("PETR4").size());
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(Acao.class));
+        Document horario = (Document) query.getValue().getQueryObject().get("regularMarketTime");
+        assertEquals(FIM.minus(Duration.ofDays(7)), horario.get("$gte"));
+        assertEquals(FIM, horario.get("$lte"));
+        assertEquals(4, query.getValue().getLimit());
+    }
+
+    @Test
+    void recusaIntervaloComCotacoesDemais() {
+        when(mongoTemplate.find(any(Query.class), eq(Acao.class))).thenReturn(Flux.just(
+                cotacao("PETR4", 4), cotacao("PETR4", 3), cotacao("PETR4", 2), cotacao("PETR4", 1)));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> service.historico(List.of("PETR4"), FIM.minus(Duration.ofDays(365)), FIM).block());
+    }
+}
@@ -0,0 +1,92 @@
+package org.furb.bolsavalores.service;
+
+import org.furb.bolsavalores.model.Acao;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DecodificadorMercadoBrapiTest {
+
+    private static final Instant HORARIO = Instant.parse("2026-03-02T14:00:00Z");
+
+    private static final String RESPOSTA = """
+            {"indexes":[{"stock":"^BVSP","name":"IBOVESPA"}],
+             "stocks":[
+               {"stock":"PETR4","name":"PETROBRAS PN","close":38.5,"change":1.2,"sector":{"nome":"Energia"}},
+               {"stock":"VALE3","name":"VALE ON","close":61,"logo":null},
+               {"stock":"SEMPRECO","name":"SEM PRECO","close":null},
+               {"name":"SEM SIMBOLO","close":10.0}
+             ],
+             "availableSectors":["Energia"],
+             "hasNextPage":true}
+            """;
+
+    /** Alimenta o corpo em pedaços de {@code tamanho} bytes, como chegariam da rede. */
+    private static List<Acao> decodificar(DecodificadorMercadoBrapi decodificador, String corpo, int tamanho) {
+        byte[] bytes = corpo.getBytes(StandardCharsets.UTF_8);
+        List<Acao> acoes = new ArrayList<>();
+        for (int i = 0; i < bytes.length; i += tamanho) {
+            acoes.addAll(decodificador.alimentar(Arrays.copyOfRange(bytes, i, Math.min(bytes.length, i + tamanho))));
+        }
+        acoes.addAll(decodificador.finalizar());
+        return acoes;
+    }
+
+    @Test
+    void decodificaOsItensDeStocksEmPedacosPequenos() {
+        DecodificadorMercadoBrapi decodificador = new DecodificadorMercadoBrapi(HORARIO);
+
+        List<Acao> acoes = decodificar(decodificador, RESPOSTA, 7);
+
+        assertThat(acoes).extracting(Acao::getSymbol).containsExactly("PETR4", "VALE3");
+        assertThat(acoes).extracting(Acao::getRegularMarketPrice).containsExactly(38.5, 61.0);
+        assertThat(acoes).extracting(Acao::getLongName).containsExactly("PETROBRAS PN", "VALE ON");
+        assertThat(acoes).allSatisfy(a -> assertThat(a.getRegularMarketTime()).isEqualTo(HORARIO));
+        assertThat(decodificador.getCotacoes()).isEqualTo(2);
+        assertThat(decodificador.getDescartadas()).isEqualTo(2);
+        assertThat(decodificador.isProximaPagina()).isTrue();
+    }
+
+    @Test
+    void emiteCadaCotacaoAssimQueOItemTermina() {
+        DecodificadorMercadoBrapi decodificador = new DecodificadorMercadoBrapi(HORARIO);
+        String corpo = RESPOSTA;
+        int fimPetr4 = corpo.indexOf("}}", corpo.indexOf("PETR4")) + 2;
+
+        List<Acao> primeiras = decodificador.alimentar(corpo.substring(0, fimPetr4).getBytes(StandardCharsets.UTF_8));
+
+        assertThat(primeiras).extracting(Acao::getSymbol).containsExactly("PETR4");
+    }
+
+    @Test
+    void corpoTruncadoEhErro() {
+        DecodificadorMercadoBrapi decodificador = new DecodificadorMercadoBrapi(HORARIO);
+        String truncado = RESPOSTA.substring(0, RESPOSTA.indexOf("{\"stock\":\"VALE3"));
+
+        decodificador.alimentar(truncado.getBytes(StandardCharsets.UTF_8));
+
+        assertThatThrownBy(decodificador::finalizar).isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("/quote/list");
+    }
+
+    @Test
+    void execucoesNoMesmoIntervaloRecebemOMesmoHorario() {
+        long intervalo = Duration.ofMinutes(15).toMillis();
+        Instant agendada = Instant.parse("2026-03-02T14:00:02Z");
+        Instant novoLider = Instant.parse("2026-03-02T14:09:40Z");
+
+        assertThat(IngestaoMercadoService.inicioDoIntervalo(agendada, intervalo))
+                .isEqualTo(IngestaoMercadoService.inicioDoIntervalo(novoLider, intervalo))
+                .isEqualTo(Instant.parse("2026-03-02T14:00:00Z"));
+        assertThat(IngestaoMercadoService.inicioDoIntervalo(Instant.parse("2026-03-02T14:15:00Z"), intervalo))
+                .isEqualTo(Instant.parse("2026-03-02T14:15:00Z"));
+    }
+}
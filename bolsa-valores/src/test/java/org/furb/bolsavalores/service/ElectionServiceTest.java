@@ -0,0 +1,76 @@
+package org.furb.bolsavalores.service;
+
+import org.furb.bolsavalores.config.AppConfig;
+import org.furb.bolsavalores.config.RabbitMQConfig;
+import org.furb.bolsavalores.model.ElectionMessage;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ElectionServiceTest {
+
+    private final List<String> eventos = new CopyOnWriteArrayList<>();
+
+    /** Faz o papel da {@code CachingConnectionFactory}: fase mínima, fecha as conexões no stop. */
+    private class Conexao implements SmartLifecycle {
+        private volatile boolean rodando;
+
+        @Override public void start() { rodando = true; }
+        @Override public void stop() { rodando = false; eventos.add("conexao-fechada"); }
+        @Override public boolean isRunning() { return rodando; }
+        @Override public int getPhase() { return Integer.MIN_VALUE; }
+    }
+
+    /** Bean destruído no fim do encerramento, como os com {@code @PreDestroy}. */
+    private class Destruido implements DisposableBean {
+        @Override public void destroy() { eventos.add("pre-destroy"); }
+    }
+
+    private ElectionService criar(ShardService shardService, RabbitTemplate rabbitTemplate) {
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        beans.addBean("rabbitTemplate", rabbitTemplate);
+        beans.addBean("shardService", shardService);
+        return new ElectionService(beans.getBeanProvider(RabbitTemplate.class), "8081", "8081",
+                mock(TaskScheduler.class), new StartupMetrics(), beans.getBeanProvider(ShardService.class),
+                100, new AppConfig());
+    }
+
+    @Test
+    void renunciaNoEncerramentoAntesDeFecharAConexao() {
+        ShardService shardService = mock(ShardService.class);
+        RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+        doAnswer(inv -> eventos.add("shards-liberados")).when(shardService).encerrar();
+        doAnswer(inv -> eventos.add("resign")).when(rabbitTemplate)
+                .convertAndSend(eq(RabbitMQConfig.EXCHANGE_LEADER), eq(""), any(ElectionMessage.class));
+
+        GenericApplicationContext contexto = new GenericApplicationContext();
+        contexto.registerBean(Conexao.class, Conexao::new);
+        contexto.registerBean(Destruido.class, Destruido::new);
+        contexto.registerBean(ElectionService.class, () -> criar(shardService, rabbitTemplate));
+        contexto.refresh();
+        contexto.close();
+
+        assertThat(eventos).containsExactly("shards-liberados", "resign", "conexao-fechada", "pre-destroy");
+    }
+
+    @Test
+    void naoRenunciaSeNaoFoiIniciado() {
+        ShardService shardService = mock(ShardService.class);
+        ElectionService service = criar(shardService, mock(RabbitTemplate.class));
+
+        service.stop();
+
+        verifyNoInteractions(shardService);
+    }
+}
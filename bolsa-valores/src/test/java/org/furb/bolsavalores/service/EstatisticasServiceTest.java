@@ -0,0 +1,188 @@
+package org.furb.bolsavalores.service;
+
+import org.furb.bolsavalores.config.AppConfig;
+import org.furb.bolsavalores.config.ArmazenamentoConfig;
+import org.furb.bolsavalores.model.Acao;
+import org.furb.bolsavalores.model.EstatisticasAcao;
+import org.furb.bolsavalores.model.TopMovers;
+import org.bson.Document;
+import org.furb.bolsavalores.model.AcaoPersistidaEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class EstatisticasServiceTest {
+
+    private static final Duration JANELA = Duration.ofHours(1);
+    private static final Instant T0 = Instant.parse("2026-03-02T13:00:00Z");
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final EstatisticasService service = criar();
+
+    private EstatisticasService criar() {
+        AppConfig appConfig = new AppConfig();
+        appConfig.getEstatisticas().setJanelas(List.of(JANELA));
+        ArmazenamentoConfig armazenamentoConfig = mock(ArmazenamentoConfig.class);
+        when(armazenamentoConfig.getColecaoAcoes()).thenReturn(ArmazenamentoConfig.COLECAO_DOCUMENTO);
+        return new EstatisticasService(appConfig, mongoTemplate, armazenamentoConfig);
+    }
+
+    private static Acao cotacao(String symbol, int minutos, double preco) {
+        Acao acao = new Acao();
+        acao.setSymbol(symbol);
+        acao.setRegularMarketTime(T0.plus(Duration.ofMinutes(minutos)));
+        acao.setRegularMarketPrice(preco);
+        return acao;
+    }
+
+    private void registrar(int minutos, double preco) {
+        service.registrar(cotacao("PETR4", minutos, preco));
+    }
+
+    private EstatisticasAcao stats() {
+        return service.consultar("PETR4", JANELA).orElseThrow();
+    }
+
+    @Test
+    void calculaOsAgregadosDaJanela() {
+        registrar(0, 10);
+        registrar(10, 12);
+        registrar(20, 11);
+
+        EstatisticasAcao stats = stats();
+        assertEquals(3, stats.getAmostras());
+        assertEquals(11, stats.getMedia(), 1e-9);
+        assertEquals(10, stats.getMinimo());
+        assertEquals(12, stats.getMaximo());
+        assertEquals(10, stats.getVariacaoPercentual(), 1e-9);
+    }
+
+    @Test
+    void descartaAsCotacoesQueSaemDaJanela() {
+        registrar(0, 10);
+        registrar(30, 20);
+        registrar(90, 30);
+
+        EstatisticasAcao stats = stats();
+        assertEquals(2, stats.getAmostras());
+        assertEquals(20, stats.getMinimo());
+        assertEquals(T0.plus(Duration.ofMinutes(30)), stats.getInicio());
+    }
+
+    @Test
+    void insereCotacaoAtrasadaNaSuaPosicao() {
+        registrar(0, 10);
+        registrar(20, 11);
+        // volta de uma retentativa depois da cotação das 13:20
+        registrar(10, 5);
+
+        EstatisticasAcao stats = stats();
+        assertEquals(3, stats.getAmostras());
+        assertEquals(26.0 / 3, stats.getMedia(), 1e-9);
+        assertEquals(5, stats.getMinimo());
+        assertEquals(11, stats.getMaximo());
+        assertEquals(T0.plus(Duration.ofMinutes(20)), stats.getFim());
+
+        // a deque de mínimos continua correta depois da inserção
+        registrar(30, 12);
+        registrar(75, 13);
+        assertEquals(11, stats().getMinimo());
+    }
+
+    @Test
+    void cotacaoAtrasadaNoInicioMudaORanking() {
+        registrar(10, 11);
+        registrar(20, 12);
+        registrar(0, 10);
+
+        EstatisticasAcao stats = stats();
+        assertEquals(T0, stats.getInicio());
+        assertEquals(20, stats.getVariacaoPercentual(), 1e-9);
+        TopMovers topMovers = service.topMovers(JANELA, 1);
+        assertEquals(20, topMovers.getAltas().get(0).getVariacaoPercentual(), 1e-9);
+    }
+
+    @Test
+    void ignoraCotacaoRepetidaOuAnteriorAJanela() {
+        registrar(0, 10);
+        registrar(50, 12);
+        registrar(50, 99);
+        registrar(-15, 99);
+
+        EstatisticasAcao stats = stats();
+        assertEquals(2, stats.getAmostras());
+        assertEquals(12, stats.getMaximo());
+    }
+
+    private void historico(Runnable duranteALeitura, Acao... cotacoes) {
+        when(mongoTemplate.aggregateStream(any(Aggregation.class), eq(ArmazenamentoConfig.COLECAO_DOCUMENTO),
+                eq(Acao.class))).thenAnswer(inv -> {
+            duranteALeitura.run();
+            return Stream.of(cotacoes);
+        });
+    }
+
+    @Test
+    void aqueceAsJanelasComOHistorico() {
+        historico(() -> {}, cotacao("PETR4", 0, 10), cotacao("PETR4", 30, 12), cotacao("VALE3", 0, 50));
+
+        service.aquecer();
+
+        EstatisticasAcao stats = stats();
+        assertEquals(2, stats.getAmostras());
+        assertEquals(20, stats.getVariacaoPercentual(), 1e-9);
+        assertEquals(2, service.topMovers(JANELA, 5).getSimbolos());
+    }
+
+    @Test
+    void cotacaoRecebidaDuranteOAquecimentoEntraDepoisDoHistorico() {
+        historico(() -> {
+            service.onAcaoPersistida(new AcaoPersistidaEvent(this, cotacao("PETR4", 40, 15)));
+            assertTrue(service.consultar("PETR4", JANELA).isEmpty(), "deve esperar o fim do aquecimento");
+        }, cotacao("PETR4", 0, 10), cotacao("PETR4", 30, 12));
+
+        service.aquecer();
+
+        EstatisticasAcao stats = stats();
+        assertEquals(3, stats.getAmostras());
+        assertEquals(T0.plus(Duration.ofMinutes(40)), stats.getFim());
+        service.onAcaoPersistida(new AcaoPersistidaEvent(this, cotacao("PETR4", 50, 16)));
+        assertEquals(4, stats().getAmostras());
+    }
+
+    @Test
+    void falhaNoAquecimentoAplicaAsCotacoesRecebidas() {
+        when(mongoTemplate.aggregateStream(any(Aggregation.class), eq(ArmazenamentoConfig.COLECAO_DOCUMENTO),
+                eq(Acao.class))).thenAnswer(inv -> {
+            service.onAcaoPersistida(new AcaoPersistidaEvent(this, cotacao("PETR4", 0, 10)));
+            throw new IllegalStateException("MongoDB indisponível");
+        });
+
+        service.aquecer();
+
+        assertEquals(1, stats().getAmostras());
+    }
+
+    @Test
+    void agregacaoDoAquecimentoBuscaAMaiorJanelaDeCadaSimbolo() {
+        List<Document> estagios = EstatisticasService.agregacaoAquecimento("acoes", 3_600_000)
+                .toPipeline(Aggregation.DEFAULT_CONTEXT);
+
+        assertEquals(List.of("$sort", "$group", "$lookup", "$unwind", "$project"),
+                estagios.stream().map(e -> e.keySet().iterator().next()).toList());
+        Document lookup = estagios.get(2).get("$lookup", Document.class);
+        assertEquals("acoes", lookup.getString("from"));
+        assertEquals("symbol", lookup.getString("foreignField"));
+        assertEquals(new Document("inicio", new Document("$subtract", List.of("$fim", 3_600_000L))),
+                lookup.get("let", Document.class));
+    }
+}
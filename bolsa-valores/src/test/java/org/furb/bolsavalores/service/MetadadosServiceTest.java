@@ -0,0 +1,83 @@
+package org.furb.bolsavalores.service;
+
+import org.furb.bolsavalores.config.AppConfig;
+import org.furb.bolsavalores.config.ArmazenamentoConfig;
+import org.furb.bolsavalores.config.RabbitMQConfig;
+import org.furb.bolsavalores.model.Acao;
+import org.furb.bolsavalores.model.Simbolo;
+import org.furb.bolsavalores.model.SimboloAtualizadoEvent;
+import org.furb.bolsavalores.repository.SimbolosRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MetadadosServiceTest {
+
+    private final SimbolosRepository repository = mock(SimbolosRepository.class);
+    private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private MetadadosService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void criar() {
+        ObjectProvider<RabbitTemplate> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(rabbitTemplate);
+        when(repository.findAll()).thenReturn(List.of(simbolo("PETR4", "Petrobras")));
+        service = new MetadadosService(repository, mock(MongoTemplate.class), mock(ArmazenamentoConfig.class),
+                new AppConfig(), provider, eventPublisher);
+        service.inicializar();
+        clearInvocations(eventPublisher);
+    }
+
+    private static Simbolo simbolo(String symbol, String longName) {
+        Simbolo simbolo = new Simbolo();
+        simbolo.setSymbol(symbol);
+        simbolo.setLongName(longName);
+        return simbolo;
+    }
+
+    private static Acao cotacao(String longName) {
+        Acao acao = new Acao();
+        acao.setSymbol("PETR4");
+        acao.setLongName(longName);
+        return acao;
+    }
+
+    @Test
+    void nomeAlteradoEGravadoPropagadoEInvalidaAsRespostas() {
+        service.registrar(cotacao("Petróleo Brasileiro"));
+
+        verify(repository).save(argThat(s -> "Petróleo Brasileiro".equals(s.getLongName())));
+        verify(rabbitTemplate).convertAndSend(eq(RabbitMQConfig.EXCHANGE_SIMBOLOS), eq(""),
+                argThat((Object s) -> "Petróleo Brasileiro".equals(((Simbolo) s).getLongName())));
+        verify(eventPublisher).publishEvent(any(SimboloAtualizadoEvent.class));
+        assertThat(service.buscar("petr4")).get().extracting(Simbolo::getLongName).isEqualTo("Petróleo Brasileiro");
+    }
+
+    @Test
+    void nomeIgualNaoGravaNemPropaga() {
+        service.registrar(cotacao("Petrobras"));
+
+        verify(repository, never()).save(any());
+        verifyNoInteractions(rabbitTemplate, eventPublisher);
+    }
+
+    @Test
+    void mudancaRecebidaDeOutroNoAtualizaOCacheUmaVez() {
+        service.aplicar(simbolo("PETR4", "Petróleo Brasileiro"));
+        service.aplicar(simbolo("PETR4", "Petróleo Brasileiro")); // volta do fanout
+
+        verify(eventPublisher, times(1)).publishEvent(any(SimboloAtualizadoEvent.class));
+        assertThat(service.completar(cotacao(null)).getLongName()).isEqualTo("Petróleo Brasileiro");
+    }
+}
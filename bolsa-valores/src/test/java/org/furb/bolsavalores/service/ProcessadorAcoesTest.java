@@ -0,0 +1,177 @@
+package org.furb.bolsavalores.service;
+
+import com.rabbitmq.client.Channel;
+import org.furb.bolsavalores.config.AppConfig;
+import org.furb.bolsavalores.model.Acao;
+import org.furb.bolsavalores.model.FaixaCotacao;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class ProcessadorAcoesTest {
+
+    private static final String[] SIMBOLOS = {"PETR4", "VALE3", "ITUB4", "BBDC4"};
+    private static final int POR_SIMBOLO = 50;
+
+    private final AcoesConsumer acoesConsumer = mock(AcoesConsumer.class);
+    private final Channel canal = mock(Channel.class);
+    private ProcessadorAcoes processador;
+
+    @AfterEach
+    void encerrar() throws InterruptedException {
+        if (processador != null) processador.encerrar();
+    }
+
+    private ProcessadorAcoes criar(int consumidores, double fracaoLote) {
+        AppConfig appConfig = new AppConfig();
+        appConfig.getConsumo().setMinConsumidores(consumidores);
+        appConfig.getConsumo().setMaxConsumidores(consumidores);
+        appConfig.getConsumo().setFracaoLote(fracaoLote);
+        processador = new ProcessadorAcoes(acoesConsumer, mock(AmqpAdmin.class), appConfig);
+        return processador;
+    }
+
+    private void despachar(FaixaCotacao faixa, String symbol, long tag) {
+        Acao acao = new Acao();
+        acao.setSymbol(symbol);
+        MessageProperties props = new MessageProperties();
+        props.setDeliveryTag(tag);
+        props.setConsumerTag("consumidor-" + faixa);
+        Message message = new Message(new byte[0], props);
+        ConfirmacoesCanal confirmacoes = processador.registrarEntrega(0, faixa, message, canal);
+        processador.despachar(0, faixa, acao, message, confirmacoes);
+    }
+
+    @Test
+    void mantemAOrdemPorSimboloEConfirmaTudo() throws Exception {
+        criar(4, 0.25);
+        Map<String, List<Long>> gravadas = new ConcurrentHashMap<>();
+        Map<String, AtomicInteger> emExecucao = new ConcurrentHashMap<>();
+        AtomicInteger sobreposicoes = new AtomicInteger();
+        CountDownLatch fim = new CountDownLatch(SIMBOLOS.length * POR_SIMBOLO);
+        doAnswer(inv -> {
+            Acao acao = inv.getArgument(0);
+            Message message = inv.getArgument(1);
+            ConfirmacoesCanal confirmacoes = inv.getArgument(2);
+            AtomicInteger execucoes = emExecucao.computeIfAbsent(acao.getSymbol(), s -> new AtomicInteger());
+            if (execucoes.incrementAndGet() > 1) sobreposicoes.incrementAndGet();
+            Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+            gravadas.computeIfAbsent(acao.getSymbol(), s -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(message.getMessageProperties().getDeliveryTag());
+            execucoes.decrementAndGet();
+            confirmacoes.confirmar(message.getMessageProperties().getDeliveryTag());
+            fim.countDown();
+            return null;
+        }).when(acoesConsumer).receive(any(), any(), any());
+
+        long tag = 0;
+        for (int i = 0; i < POR_SIMBOLO; i++) {
+            for (String symbol : SIMBOLOS) despachar(FaixaCotacao.VIVO, symbol, ++tag);
+        }
+        assertTrue(fim.await(10, TimeUnit.SECONDS));
+        processador.liberarShard(0, Duration.ofSeconds(5));
+
+        assertEquals(0, sobreposicoes.get(), "duas threads gravaram o mesmo símbolo ao mesmo tempo");
+        for (String symbol : SIMBOLOS) {
+            List<Long> tags = gravadas.get(symbol);
+            assertEquals(POR_SIMBOLO, tags.size());
+            List<Long> ordenadas = new ArrayList<>(tags);
+            Collections.sort(ordenadas);
+            assertEquals(ordenadas, tags, "ordem quebrada em " + symbol);
+        }
+        verify(canal, atLeastOnce()).basicAck(tag, true);
+        verify(canal, never()).basicReject(anyLong(), anyBoolean());
+        verify(canal, never()).basicNack(anyLong(), anyBoolean(), anyBoolean());
+        assertEquals(0, processador.snapshot().get("pistas"), "pistas ociosas devem sair do mapa");
+    }
+
+    @Test
+    void entregaNaoLiquidadaERejeitada() throws Exception {
+        criar(1, 0.25);
+        CountDownLatch fim = new CountDownLatch(1);
+        doAnswer(inv -> {
+            fim.countDown();
+            throw new IllegalStateException("falha inesperada");
+        }).when(acoesConsumer).receive(any(), any(), any());
+
+        despachar(FaixaCotacao.VIVO, "PETR4", 1);
+        assertTrue(fim.await(5, TimeUnit.SECONDS));
+        processador.liberarShard(0, Duration.ofSeconds(5));
+
+        verify(canal).basicReject(1, false);
+    }
+
+    @Test
+    void liberarShardCancelaOConsumoAntesDeDrenar() throws Exception {
+        criar(2, 0.5);
+        CountDownLatch gravando = new CountDownLatch(1);
+        CountDownLatch continuar = new CountDownLatch(1);
+        doAnswer(inv -> {
+            Message message = inv.getArgument(1);
+            ConfirmacoesCanal confirmacoes = inv.getArgument(2);
+            gravando.countDown();
+            assertTrue(continuar.await(5, TimeUnit.SECONDS));
+            confirmacoes.confirmar(message.getMessageProperties().getDeliveryTag());
+            return null;
+        }).when(acoesConsumer).receive(any(), any(), any());
+
+        despachar(FaixaCotacao.VIVO, "PETR4", 1);
+        assertTrue(gravando.await(5, TimeUnit.SECONDS));
+        Thread liberacao = new Thread(() -> processador.liberarShard(0, Duration.ofSeconds(5)));
+        liberacao.start();
+
+        // o canal ao vivo é cancelado na hora; o de lote, na sua primeira entrega
+        verify(canal, timeout(1000)).basicCancel("consumidor-VIVO");
+        despachar(FaixaCotacao.LOTE, "VALE3", 1);
+        verify(canal, timeout(1000)).basicCancel("consumidor-LOTE");
+        verify(canal, never()).basicAck(anyLong(), anyBoolean());
+
+        continuar.countDown();
+        liberacao.join(5000);
+        assertFalse(liberacao.isAlive(), "a liberação deve terminar assim que as pistas esvaziam");
+        verify(canal, times(2)).basicAck(1, true);
+        verify(canal, times(2)).basicCancel(any());
+    }
+
+    @Test
+    void limitaAsPistasDeLoteSimultaneas() throws Exception {
+        criar(4, 0.25);
+        AtomicInteger loteEmExecucao = new AtomicInteger();
+        AtomicInteger maximoLote = new AtomicInteger();
+        CountDownLatch fim = new CountDownLatch(SIMBOLOS.length * 5);
+        doAnswer(inv -> {
+            Message message = inv.getArgument(1);
+            ConfirmacoesCanal confirmacoes = inv.getArgument(2);
+            maximoLote.accumulateAndGet(loteEmExecucao.incrementAndGet(), Math::max);
+            Thread.sleep(5);
+            loteEmExecucao.decrementAndGet();
+            confirmacoes.confirmar(message.getMessageProperties().getDeliveryTag());
+            fim.countDown();
+            return null;
+        }).when(acoesConsumer).receive(any(), any(), any());
+
+        long tag = 0;
+        for (int i = 0; i < 5; i++) {
+            for (String symbol : SIMBOLOS) despachar(FaixaCotacao.LOTE, symbol, ++tag);
+        }
+        assertTrue(fim.await(10, TimeUnit.SECONDS));
+
+        assertEquals(1, maximoLote.get(), "com 4 consumidores e fração 0.25 só uma pista de lote roda por vez");
+    }
+}
@@ -0,0 +1,76 @@
+package org.furb.bolsavalores.service;
+
+import org.furb.bolsavalores.model.VariacaoSimbolo;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+class RankingVariacaoTest {
+
+    private static final Duration JANELA = Duration.ofHours(1);
+    private static final Instant T0 = Instant.parse("2026-03-02T13:00:00Z");
+
+    private final RankingVariacao ranking = new RankingVariacao(JANELA);
+
+    private void atualizar(String symbol, double referencia, double preco, int minutos) {
+        Instant fim = T0.plus(Duration.ofMinutes(minutos));
+        ranking.atualizar(symbol, referencia, preco, fim.minus(JANELA), fim);
+    }
+
+    private static List<String> simbolos(List<VariacaoSimbolo> variacoes) {
+        return variacoes.stream().map(VariacaoSimbolo::getSymbol).toList();
+    }
+
+    @Test
+    void separaAltasEBaixasOrdenadasPelaVariacao() {
+        atualizar("PETR4", 10, 11, 0);
+        atualizar("VALE3", 10, 13, 0);
+        atualizar("ITUB4", 10, 9, 0);
+        atualizar("BBDC4", 10, 7, 0);
+        atualizar("WEGE3", 10, 10, 0);
+
+        assertThat(simbolos(ranking.altas(5))).containsExactly("VALE3", "PETR4");
+        assertThat(simbolos(ranking.baixas(5))).containsExactly("BBDC4", "ITUB4");
+        assertThat(ranking.altas(1)).singleElement()
+                .satisfies(v -> assertThat(v.getVariacaoPercentual()).isCloseTo(30, offset(1e-9)));
+        assertThat(ranking.tamanho()).isEqualTo(5);
+    }
+
+    @Test
+    void reposicionaOSimboloAtualizado() {
+        atualizar("PETR4", 10, 11, 0);
+        atualizar("VALE3", 10, 12, 0);
+
+        atualizar("PETR4", 10, 8, 5);
+
+        assertThat(simbolos(ranking.altas(5))).containsExactly("VALE3");
+        assertThat(simbolos(ranking.baixas(5))).containsExactly("PETR4");
+        assertThat(ranking.tamanho()).isEqualTo(2);
+    }
+
+    @Test
+    void descartaSimboloComUltimaCotacaoForaDaJanela() {
+        atualizar("OIBR3", 10, 15, 0);
+        atualizar("PETR4", 10, 11, 30);
+        assertThat(simbolos(ranking.altas(5))).containsExactly("OIBR3", "PETR4");
+
+        atualizar("PETR4", 10, 12, 61);
+
+        assertThat(simbolos(ranking.altas(5))).containsExactly("PETR4");
+        assertThat(ranking.tamanho()).isEqualTo(1);
+    }
+
+    @Test
+    void ignoraAtualizacaoJaForaDaJanela() {
+        atualizar("PETR4", 10, 11, 120);
+        atualizar("OIBR3", 10, 15, 0);
+
+        assertThat(simbolos(ranking.altas(5))).containsExactly("PETR4");
+        assertThat(ranking.tamanho()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,132 @@
+package org.furb.bolsavalores.service;
+
+import org.furb.bolsavalores.config.AppConfig;
+import org.furb.bolsavalores.model.Acao;
+import org.furb.bolsavalores.model.FaixaCotacao;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class TransporteMemoriaTest {
+
+    private static final Instant T0 = Instant.parse("2026-03-02T14:00:00Z");
+
+    private final AcoesConsumer acoesConsumer = mock(AcoesConsumer.class);
+    private TransporteMemoria transporte;
+
+    @AfterEach
+    void encerrar() throws InterruptedException {
+        if (transporte != null) transporte.encerrar();
+    }
+
+    private TransporteMemoria criar(int capacidade, int consumidores, Duration atraso) {
+        AppConfig appConfig = new AppConfig();
+        appConfig.getTransporte().setCapacidade(capacidade);
+        appConfig.getTransporte().setConsumidores(consumidores);
+        appConfig.getRetentativas().setAtrasos(List.of(atraso));
+        appConfig.getRetentativas().setMaxTentativas(3);
+        transporte = new TransporteMemoria(acoesConsumer, appConfig);
+        transporte.iniciar();
+        return transporte;
+    }
+
+    private static Acao cotacao(String symbol, int segundo) {
+        Acao acao = new Acao();
+        acao.setSymbol(symbol);
+        acao.setRegularMarketTime(T0.plusSeconds(segundo));
+        acao.setRegularMarketPrice(10 + segundo);
+        return acao;
+    }
+
+    @Test
+    void entregaTudoNaOrdemDePublicacaoPorSimbolo() throws Exception {
+        criar(8, 3, Duration.ofMillis(10));
+        String[] simbolos = {"PETR4", "VALE3", "ITUB4", "BBDC4", "WEGE3"};
+        int porSimbolo = 200;
+        Map<String, List<Instant>> gravadas = new ConcurrentHashMap<>();
+        CountDownLatch fim = new CountDownLatch(simbolos.length * porSimbolo);
+        when(acoesConsumer.receberLocal(any(), any(), anyLong(), anyInt())).thenAnswer(inv -> {
+            Acao acao = inv.getArgument(0);
+            gravadas.computeIfAbsent(acao.getSymbol(), s -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(acao.getRegularMarketTime());
+            fim.countDown();
+            return "GRAVADA";
+        });
+
+        for (int i = 0; i < porSimbolo; i++) {
+            for (String symbol : simbolos) transporte.enviar(cotacao(symbol, i), null, FaixaCotacao.VIVO);
+        }
+        assertTrue(fim.await(10, TimeUnit.SECONDS));
+        transporte.encerrar();
+
+        for (String symbol : simbolos) {
+            List<Instant> horarios = gravadas.get(symbol);
+            assertEquals(porSimbolo, horarios.size());
+            List<Instant> ordenados = new ArrayList<>(horarios);
+            Collections.sort(ordenados);
+            assertEquals(ordenados, horarios, "ordem quebrada em " + symbol);
+        }
+        assertEquals((long) simbolos.length * porSimbolo, transporte.snapshot().get("gravadas"));
+    }
+
+    @Test
+    void retentativaNaoSeguraAPosicaoDoAnel() throws Exception {
+        // um consumidor e um anel de 4 posições: antes, a espera da retentativa parava tudo
+        criar(4, 1, Duration.ofMillis(800));
+        AtomicBoolean falhou = new AtomicBoolean();
+        List<Integer> tentativasDaPrimeira = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch seguintes = new CountDownLatch(20);
+        CountDownLatch retentativa = new CountDownLatch(1);
+        when(acoesConsumer.receberLocal(any(), any(), anyLong(), anyInt())).thenAnswer(inv -> {
+            Acao acao = inv.getArgument(0);
+            if (acao.getRegularMarketTime().equals(T0)) {
+                tentativasDaPrimeira.add(inv.getArgument(3));
+                if (falhou.compareAndSet(false, true)) throw new IllegalStateException("MongoDB indisponível");
+                retentativa.countDown();
+            } else {
+                seguintes.countDown();
+            }
+            return "GRAVADA";
+        });
+
+        transporte.enviar(cotacao("PETR4", 0), null, FaixaCotacao.VIVO);
+        long inicio = System.nanoTime();
+        for (int i = 1; i <= 20; i++) transporte.enviar(cotacao("PETR4", i), null, FaixaCotacao.VIVO);
+
+        assertTrue(seguintes.await(400, TimeUnit.MILLISECONDS), "as cotações seguintes esperaram a retentativa");
+        assertTrue(System.nanoTime() - inicio < TimeUnit.MILLISECONDS.toNanos(400));
+        assertEquals(1, transporte.snapshot().get("emRetentativa"));
+
+        assertTrue(retentativa.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(0, 1), tentativasDaPrimeira);
+        assertEquals(0, transporte.snapshot().get("emRetentativa"));
+    }
+
+    @Test
+    void descartaAposEsgotarAsTentativas() throws Exception {
+        criar(8, 1, Duration.ofMillis(10));
+        CountDownLatch tentativas = new CountDownLatch(3);
+        when(acoesConsumer.receberLocal(any(), any(), anyLong(), anyInt())).thenAnswer(inv -> {
+            tentativas.countDown();
+            throw new IllegalStateException("MongoDB indisponível");
+        });
+
+        transporte.enviar(cotacao("PETR4", 0), null, FaixaCotacao.VIVO);
+
+        assertTrue(tentativas.await(5, TimeUnit.SECONDS));
+        transporte.encerrar();
+        verify(acoesConsumer, times(3)).receberLocal(any(), any(), anyLong(), anyInt());
+        assertEquals(1L, transporte.snapshot().get("descartadas"));
+    }
+}
@@ -0,0 +1,65 @@
+package org.furb.bolsavalores.tracing;
+
+import jakarta.servlet.FilterChain;
+import org.furb.bolsavalores.config.AppConfig;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TracingFilterTest {
+
+    private final List<Span> exportados = new CopyOnWriteArrayList<>();
+    private final Tracer tracer = criarTracer();
+    private final TracingFilter filter = new TracingFilter(tracer);
+
+    @SuppressWarnings("unchecked")
+    private Tracer criarTracer() {
+        ObjectProvider<ExportadorSpans> provider = mock(ObjectProvider.class);
+        when(provider.orderedStream()).thenAnswer(inv -> Stream.<ExportadorSpans>of(exportados::add));
+        return new Tracer(provider, new AppConfig(), "8081");
+    }
+
+    @Test
+    void requisicaoSincronaFechaOTrechoAoRetornar() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/acoes/PETR4");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, (req, res) -> {});
+
+        assertEquals(1, exportados.size());
+        assertEquals("200", exportados.get(0).getAtributos().get("status"));
+        assertNull(tracer.traceparent());
+    }
+
+    @Test
+    void requisicaoAssincronaFechaOTrechoNoFimDaResposta() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/acoes/PETR4/historico");
+        request.setAsyncSupported(true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain chain = (req, res) -> request.startAsync(req, res);
+
+        filter.doFilter(request, response, chain);
+
+        assertTrue(exportados.isEmpty(), "o trecho não pode fechar no início do despacho assíncrono");
+        assertNull(tracer.traceparent(), "a thread da requisição deve ficar sem contexto");
+
+        Thread.sleep(20);
+        response.setStatus(503);
+        ((MockAsyncContext) request.getAsyncContext()).complete();
+
+        assertEquals(1, exportados.size());
+        Span span = exportados.get(0);
+        assertEquals("503", span.getAtributos().get("status"));
+        assertTrue(span.getDuracaoMicros() >= 20_000);
+    }
+}